@@ -6,14 +6,20 @@ package com.intel.mtwilson.audit.controller;
 
 import com.intel.mtwilson.audit.controller.exceptions.AuditDataException;
 import com.intel.mtwilson.audit.controller.exceptions.NonexistentEntityException;
+import com.intel.mtwilson.audit.converter.AuditDataConverter;
 import com.intel.mtwilson.audit.data.AuditLogEntry;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.ParameterMode;
+import javax.persistence.PersistenceException;
 import javax.persistence.StoredProcedureQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -55,6 +61,38 @@ public class AuditLogEntryJpaController implements Serializable {
         }
     }
 
+    /**
+     * Inserts the entries with a single JDBC batch in one transaction.
+     */
+    public void create(List<AuditLogEntry> auditLogEntries) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            AuditDataConverter converter = new AuditDataConverter();
+            try (PreparedStatement statement = em.unwrap(Connection.class).prepareStatement(
+                    "INSERT INTO mw_audit_log_entry (id, entity_id, entity_type, created, action, data) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (AuditLogEntry auditLogEntry : auditLogEntries) {
+                    statement.setString(1, auditLogEntry.getId());
+                    statement.setString(2, auditLogEntry.getEntityId());
+                    statement.setString(3, auditLogEntry.getEntityType());
+                    statement.setTimestamp(4, new Timestamp(auditLogEntry.getCreated().getTime()));
+                    statement.setString(5, auditLogEntry.getAction());
+                    statement.setObject(6, converter.convertToDatabaseColumn(auditLogEntry.getData()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } catch (SQLException ex) {
+                throw new PersistenceException("Error during batch insert of audit log entries", ex);
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
     public void edit(AuditLogEntry auditLogEntry) throws NonexistentEntityException, AuditDataException {
         EntityManager em = getEntityManager();
         try {
@@ -114,6 +152,53 @@ public class AuditLogEntryJpaController implements Serializable {
         }
     }
 
+    /**
+     * Returns the estimated number of rows in mw_audit_log_entry_0, the
+     * partition that receives new entries in the row count rotation layout.
+     */
+    public long getPrimaryPartitionRowCount() {
+        EntityManager em = getEntityManager();
+        try {
+            List<?> result = em.createNativeQuery("SELECT n_live_tup FROM pg_stat_all_tables WHERE relname = 'mw_audit_log_entry_0'").getResultList();
+            return result.isEmpty() || result.get(0) == null ? 0 : ((Number) result.get(0)).longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Creates the monthly partitions of the time partitioned layout up to
+     * the specified number of months ahead.
+     */
+    public int createTimePartitions(int monthsAhead) {
+        return executeFunction("SELECT create_audit_log_time_partitions(CAST(now() AS timestamp), ?)", monthsAhead);
+    }
+
+    /**
+     * Drops the monthly partitions of the time partitioned layout that are
+     * older than the specified number of months.
+     */
+    public int dropTimePartitions(int retentionMonths) {
+        return executeFunction("SELECT drop_audit_log_time_partitions(?)", retentionMonths);
+    }
+
+    private int executeFunction(String sql, int parameter) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            Query query = em.createNativeQuery(sql);
+            query.setParameter(1, parameter);
+            int result = ((Number) query.getSingleResult()).intValue();
+            em.getTransaction().commit();
+            return result;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
     public List<AuditLogEntry> findAuditLogEntryEntities() {
         return findAuditLogEntryEntities(true, -1, -1);
     }
@@ -4,12 +4,21 @@
  */
 package com.intel.mtwilson.audit.api;
 
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.intel.dcsg.cpg.extensions.Extensions;
 import com.intel.mtwilson.audit.api.worker.AuditAsyncWorker;
 import com.intel.mtwilson.audit.helper.AuditHandlerException;
+import com.intel.mtwilson.audit.data.AuditColumnData;
 import com.intel.mtwilson.audit.data.AuditContext;
 import com.intel.mtwilson.audit.data.AuditLog;
 import com.intel.mtwilson.audit.data.AuditLogEntry;
+import com.intel.mtwilson.audit.data.AuditTableData;
 import com.intel.mtwilson.audit.helper.MtWilsonThreadLocal;
+import com.intel.mtwilson.jackson.bouncycastle.BouncyCastleModule;
+import com.intel.mtwilson.jackson.validation.ValidationModule;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 
 import java.util.Date;
 import javax.naming.NamingException;
@@ -22,6 +31,14 @@ import org.slf4j.LoggerFactory;
  */
 public class AuditLogger {
     private static Logger log = LoggerFactory.getLogger(AuditLogger.class);
+    private static final ObjectMapper mapper;
+
+    static {
+        Extensions.register(Module.class, BouncyCastleModule.class);
+        Extensions.register(Module.class, ValidationModule.class);
+        mapper = JacksonObjectMapperProvider.createDefaultMapper();
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    }
 
     public void addLog(AuditLog log) throws AuditHandlerException{
         
@@ -38,12 +55,37 @@ public class AuditLogger {
         auditLogEntry.setId(log.getId());
         auditLogEntry.setAction(log.getAction());
         auditLogEntry.setCreated(new Date(System.currentTimeMillis()));
-        auditLogEntry.setData(log.getData());
+        auditLogEntry.setData(snapshot(log.getData()));
         auditLogEntry.setEntityId(log.getEntityId());
         auditLogEntry.setEntityType(log.getEntityType());
         return auditLogEntry;
     }
 
+    /**
+     * Copies the audited column values into JSON trees. The entry is written
+     * later by the audit writer, and must not refer to entity objects that
+     * may change before then.
+     */
+    private AuditTableData snapshot(AuditTableData data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            AuditTableData copy = new AuditTableData();
+            for (AuditColumnData column : data.getColumns()) {
+                AuditColumnData columnCopy = new AuditColumnData();
+                columnCopy.setName(column.getName());
+                columnCopy.setIsUpdated(column.isUpdated());
+                columnCopy.setValue(mapper.valueToTree(column.getValue()));
+                copy.getColumns().add(columnCopy);
+            }
+            return copy;
+        } catch (IllegalArgumentException e) {
+            log.error("Could not copy audit table data", e);
+            return null;
+        }
+    }
+
     private AuditWorker getAuditWorker() throws NamingException {
         
         return new AuditAsyncWorker();
@@ -4,42 +4,25 @@
  */
 package com.intel.mtwilson.audit.api.worker;
 
-import com.intel.mtwilson.MyConfiguration;
 import com.intel.mtwilson.audit.api.AuditWorker;
-import com.intel.mtwilson.audit.controller.AuditLogEntryJpaController;
 import com.intel.mtwilson.audit.data.AuditLogEntry;
 import com.intel.mtwilson.audit.helper.AuditHandlerException;
-import com.intel.mtwilson.audit.helper.AuditPersistenceManager;
-import javax.persistence.EntityManagerFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
+ * Hands audit log entries to the {@link AuditBatchWriter}, which writes them
+ * to the database in batches from its own thread.
  *
  * @author dsmagadx
  */
 public class AuditAsyncWorker implements AuditWorker {
 
-    private Logger logger = LoggerFactory.getLogger(getClass().getName());
-
-    private static AuditPersistenceManager persistenceManager = new AuditPersistenceManager();
-    
-    // Audit log table size
-    private static final int DEFAULT_AUDIT_LOG_MAX_ROW_COUNT = 1000000;
-    private final int maxRowCount = new MyConfiguration().getConfiguration().getInt("mtwilson.audit.log.max.row.count", DEFAULT_AUDIT_LOG_MAX_ROW_COUNT);
-    
-    // Audit log number of rotations
-    private static final int DEFAULT_AUDIT_LOG_NUM_ROTATIONS = 10;
-    private final int numRotations = new MyConfiguration().getConfiguration().getInt("mtwilson.audit.log.num.rotations", DEFAULT_AUDIT_LOG_NUM_ROTATIONS);
-    
     @Override
     public void addLog(AuditLogEntry log) throws AuditHandlerException {
-        AuditLogEntryJpaController controller = new AuditLogEntryJpaController(getEntityManagerFactory());
-        controller.rotate(maxRowCount,numRotations);
-		controller.create(log);
-    }
-
-    private EntityManagerFactory getEntityManagerFactory() {
-        return persistenceManager.getEntityManagerFactory("AuditDataPU");
+        try {
+            AuditBatchWriter.getInstance().add(log);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuditHandlerException(e);
+        }
     }
 }
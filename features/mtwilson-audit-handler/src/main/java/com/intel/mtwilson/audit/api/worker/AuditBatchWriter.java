@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.audit.api.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.mtwilson.Folders;
+import com.intel.mtwilson.audit.controller.AuditLogEntryJpaController;
+import com.intel.mtwilson.audit.data.AuditLogEntry;
+import com.intel.mtwilson.audit.helper.AuditConfig;
+import com.intel.mtwilson.audit.helper.AuditPersistenceManager;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit log entries to the database from a dedicated thread, so audit
+ * does not add a database round trip to every audited insert, update and
+ * delete.
+ *
+ * Entries are held in a bounded queue of {@code mtwilson.audit.queue.size}
+ * entries and inserted in JDBC batches of up to {@code mtwilson.audit.batch.size}
+ * entries, at least every {@code mtwilson.audit.flush.interval} milliseconds.
+ * When the queue is full, {@code mtwilson.audit.overflow.policy} decides
+ * what happens to a new entry: {@code block} waits for space, {@code drop}
+ * discards it and {@code spill} appends it to a local file, whose entries are
+ * written to the database when the writer starts and whenever the queue is
+ * idle. The spill file is only appended to; the writer keeps the offset of the
+ * first entry not yet written in a {@code .offset} file next to it and
+ * truncates the spill file once every entry in it has been written. Entries
+ * still queued at shutdown are flushed before the writer stops.
+ * {@link AuditWriterLoader} starts and stops the writer with the application.
+ */
+public class AuditBatchWriter {
+    private static final Logger log = LoggerFactory.getLogger(AuditBatchWriter.class);
+    public static final String AUDIT_QUEUE_SIZE = "mtwilson.audit.queue.size";
+    public static final String AUDIT_BATCH_SIZE = "mtwilson.audit.batch.size";
+    public static final String AUDIT_FLUSH_INTERVAL = "mtwilson.audit.flush.interval";
+    public static final String AUDIT_OVERFLOW_POLICY = "mtwilson.audit.overflow.policy";
+    public static final String AUDIT_SPILL_FILE = "mtwilson.audit.spill.file";
+    public static final String AUDIT_SHUTDOWN_TIMEOUT = "mtwilson.audit.shutdown.timeout";
+    private static final int DEFAULT_AUDIT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_AUDIT_BATCH_SIZE = 200;
+    private static final long DEFAULT_AUDIT_FLUSH_INTERVAL = 1000;
+    private static final long DEFAULT_AUDIT_SHUTDOWN_TIMEOUT = 10000;
+
+    public enum OverflowPolicy { BLOCK, DROP, SPILL }
+
+    private static final Object lock = new Object();
+    private static AuditBatchWriter instance = null;
+    private static final AuditPersistenceManager persistenceManager = new AuditPersistenceManager();
+
+    private final BlockingQueue<AuditLogEntry> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long shutdownTimeout;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillFile;
+    private final File offsetFile;
+    private final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+    private final Object spillLock = new Object();
+    private final Object stateLock = new Object();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // only used by the writer thread
+    private long replayOffset;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private AuditBatchWriter() {
+        Configuration configuration = AuditConfig.getConfiguration();
+        queue = new ArrayBlockingQueue<>(Math.max(1, configuration.getInt(AUDIT_QUEUE_SIZE, DEFAULT_AUDIT_QUEUE_SIZE)));
+        batchSize = Math.max(1, configuration.getInt(AUDIT_BATCH_SIZE, DEFAULT_AUDIT_BATCH_SIZE));
+        flushInterval = Math.max(1, configuration.getLong(AUDIT_FLUSH_INTERVAL, DEFAULT_AUDIT_FLUSH_INTERVAL));
+        shutdownTimeout = configuration.getLong(AUDIT_SHUTDOWN_TIMEOUT, DEFAULT_AUDIT_SHUTDOWN_TIMEOUT);
+        overflowPolicy = OverflowPolicy.valueOf(configuration.getString(AUDIT_OVERFLOW_POLICY, OverflowPolicy.BLOCK.name()).toUpperCase());
+        spillFile = new File(configuration.getString(AUDIT_SPILL_FILE, Folders.repository() + File.separator + "audit-spill.json"));
+        offsetFile = new File(spillFile.getPath() + ".offset");
+        replayOffset = loadReplayOffset();
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "audit-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Returns the audit writer, starting it on first use.
+     */
+    public static AuditBatchWriter getInstance() {
+        synchronized (lock) {
+            if (instance == null) {
+                instance = new AuditBatchWriter();
+                instance.writer.start();
+                AuditLogMaintenance.start();
+                log.debug("Started audit writer with batch size {}, flush interval {} ms and overflow policy {}",
+                        instance.batchSize, instance.flushInterval, instance.overflowPolicy);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Stops the audit writer, if it was started, after writing the entries
+     * that are still queued. Entries added afterwards are written directly.
+     */
+    public static void shutdown() {
+        AuditBatchWriter current;
+        synchronized (lock) {
+            current = instance;
+        }
+        if (current != null && current.running) {
+            current.stop();
+        }
+    }
+
+    /**
+     * Queues the entry to be written, applying the overflow policy if the
+     * queue is full.
+     */
+    public void add(AuditLogEntry entry) throws InterruptedException {
+        while (true) {
+            // the writer checks for queued entries under the same lock before
+            // it stops, so an entry is either queued in time or written here
+            synchronized (stateLock) {
+                if (!running) {
+                    break;
+                }
+                if (queue.offer(entry)) {
+                    return;
+                }
+                switch (overflowPolicy) {
+                    case DROP:
+                        if (dropped.incrementAndGet() % 1000 == 1) {
+                            log.warn("Audit queue is full, {} audit log entries dropped so far", dropped.get());
+                        }
+                        return;
+                    case SPILL:
+                        spill(singletonList(entry));
+                        return;
+                    default:
+                        // the running writer takes entries without the lock; wait
+                        // a bounded time so stop() is not held up
+                        if (queue.offer(entry, flushInterval, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                }
+            }
+        }
+        // stopped writers do not drain the queue
+        write(singletonList(entry));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    private void stop() {
+        synchronized (stateLock) {
+            running = false;
+        }
+        try {
+            writer.join(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Audit writer did not stop within {} ms, {} audit log entries not written", shutdownTimeout, queue.size());
+        }
+        log.debug("Stopped audit writer: written={}, dropped={}, spilled={}", written.get(), dropped.get(), spilled.get());
+    }
+
+    private void drain() {
+        replaySpillFile();
+        List<AuditLogEntry> batch = new ArrayList<>(batchSize);
+        while (!isDrained()) {
+            try {
+                AuditLogEntry first = running ? queue.poll(flushInterval, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    replaySpillFile();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    AuditLogEntry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                log.debug("Audit writer interrupted, flushing queued audit log entries");
+                synchronized (stateLock) {
+                    running = false;
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns true when the writer is stopped and the queue is empty. The
+     * queue is checked under the lock that {@link #add} queues entries with.
+     */
+    private boolean isDrained() {
+        if (running) {
+            return false;
+        }
+        synchronized (stateLock) {
+            return queue.isEmpty();
+        }
+    }
+
+    private void write(List<AuditLogEntry> batch) {
+        try {
+            AuditLogEntryJpaController controller = new AuditLogEntryJpaController(persistenceManager.getEntityManagerFactory("AuditDataPU"));
+            controller.create(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            log.error("Cannot write {} audit log entries: {}", batch.size(), e.getMessage());
+            log.debug("Cannot write audit log entries", e);
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                spill(batch);
+            } else {
+                dropped.addAndGet(batch.size());
+            }
+        }
+    }
+
+    private void spill(List<AuditLogEntry> entries) {
+        synchronized (spillLock) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(spillFile, true), StandardCharsets.UTF_8)) {
+                for (AuditLogEntry entry : entries) {
+                    out.write(mapper.writeValueAsString(entry));
+                    out.write('\n');
+                }
+                spilled.addAndGet(entries.size());
+            } catch (IOException e) {
+                log.error("Cannot spill {} audit log entries to {}: {}", entries.size(), spillFile.getAbsolutePath(), e.getMessage());
+                dropped.addAndGet(entries.size());
+            }
+        }
+    }
+
+    /**
+     * Writes the entries spilled to the local file while the queue was full
+     * or the database was unavailable, starting at the replay offset. Each
+     * batch is committed on its own and moves the offset past it; if a batch
+     * fails, the offset stays at that batch for the next replay. When every
+     * entry has been written and nothing was spilled meanwhile, the spill
+     * file is truncated. An entry may be written twice if the writer stops
+     * between committing a batch and saving the offset.
+     */
+    private void replaySpillFile() {
+        long end;
+        synchronized (spillLock) {
+            end = spillFile.length();
+        }
+        if (end < replayOffset) {
+            log.warn("Spilled audit log file {} is shorter than its replay offset {}, replaying it from the start", spillFile.getAbsolutePath(), replayOffset);
+            setReplayOffset(0);
+        }
+        if (end <= replayOffset) {
+            return;
+        }
+        log.info("Writing audit log entries spilled to {}", spillFile.getAbsolutePath());
+        List<String> lines = new ArrayList<>(batchSize);
+        try (FileInputStream file = new FileInputStream(spillFile)) {
+            file.getChannel().position(replayOffset);
+            InputStream in = new BufferedInputStream(file);
+            AuditLogEntryJpaController controller = new AuditLogEntryJpaController(persistenceManager.getEntityManagerFactory("AuditDataPU"));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = replayOffset;
+            long consumed = replayOffset;
+            int b;
+            // entries spilled after the end was read are left for the next replay
+            while (position < end && (b = in.read()) >= 0) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (line.size() > 0) {
+                    lines.add(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                    line.reset();
+                }
+                consumed = position;
+                if (lines.size() >= batchSize) {
+                    if (!replay(controller, lines)) {
+                        return;
+                    }
+                    lines.clear();
+                    setReplayOffset(consumed);
+                }
+            }
+            if (!lines.isEmpty() && !replay(controller, lines)) {
+                return;
+            }
+            setReplayOffset(consumed);
+        } catch (Exception e) {
+            log.error("Cannot write spilled audit log entries from {}: {}", spillFile.getAbsolutePath(), e.getMessage());
+            return;
+        }
+        synchronized (spillLock) {
+            if (spillFile.length() != replayOffset) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            } catch (IOException e) {
+                log.warn("Cannot truncate spilled audit log file {}: {}", spillFile.getAbsolutePath(), e.getMessage());
+                return;
+            }
+            setReplayOffset(0);
+        }
+    }
+
+    /**
+     * Writes one batch of spilled entries, skipping the unreadable ones.
+     * Returns false if the batch cannot be written.
+     */
+    private boolean replay(AuditLogEntryJpaController controller, List<String> lines) {
+        List<AuditLogEntry> batch = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                batch.add(mapper.readValue(line, AuditLogEntry.class));
+            } catch (IOException e) {
+                log.error("Skipping unreadable audit log entry in {}: {}", spillFile.getAbsolutePath(), e.getMessage());
+                dropped.incrementAndGet();
+            }
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            controller.create(batch);
+            written.addAndGet(batch.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Cannot write {} spilled audit log entries from {}: {}", batch.size(), spillFile.getAbsolutePath(), e.getMessage());
+            log.debug("Cannot write spilled audit log entries", e);
+            return false;
+        }
+    }
+
+    private long loadReplayOffset() {
+        if (!offsetFile.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(offsetFile.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Cannot read audit spill replay offset from {}, replaying from the start: {}", offsetFile.getAbsolutePath(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Sets the replay offset and saves it next to the spill file, so a
+     * restarted writer does not write the same entries again.
+     */
+    private void setReplayOffset(long offset) {
+        replayOffset = offset;
+        try {
+            if (offset == 0) {
+                Files.deleteIfExists(offsetFile.toPath());
+                return;
+            }
+            File tmpFile = new File(offsetFile.getPath() + ".tmp");
+            Files.write(tmpFile.toPath(), Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmpFile.toPath(), offsetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot save audit spill replay offset to {}: {}", offsetFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private static List<AuditLogEntry> singletonList(AuditLogEntry entry) {
+        List<AuditLogEntry> list = new ArrayList<>(1);
+        list.add(entry);
+        return list;
+    }
+}
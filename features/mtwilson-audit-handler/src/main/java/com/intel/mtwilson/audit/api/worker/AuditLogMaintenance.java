@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.audit.api.worker;
+
+import com.intel.mtwilson.audit.controller.AuditLogEntryJpaController;
+import com.intel.mtwilson.audit.helper.AuditConfig;
+import com.intel.mtwilson.audit.helper.AuditPersistenceManager;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that keeps the audit log partitions within their limits,
+ * every {@code mtwilson.audit.log.maintenance.interval} seconds.
+ *
+ * With the default {@code rotation} layout ({@code mtwilson.audit.log.partitioning})
+ * the task checks the row count of the current partition and runs the
+ * rotate_audit_log_partitions procedure only when it has reached
+ * {@code mtwilson.audit.log.max.row.count} rows. With the {@code time} layout,
+ * created by the optional audit_log_time_partitioning.sql script, it creates
+ * the monthly partitions from the current month to
+ * {@code mtwilson.audit.log.partitions.ahead} months ahead, so entries can be
+ * written even if the task does not run for a while, and drops the ones older
+ * than {@code mtwilson.audit.log.retention.months}.
+ *
+ * The task is started with the audit writer, so it runs wherever audit log
+ * entries are written.
+ */
+public class AuditLogMaintenance implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(AuditLogMaintenance.class);
+    public static final String AUDIT_LOG_MAINTENANCE_INTERVAL = "mtwilson.audit.log.maintenance.interval";
+    public static final String AUDIT_LOG_PARTITIONING = "mtwilson.audit.log.partitioning";
+    public static final String AUDIT_LOG_RETENTION_MONTHS = "mtwilson.audit.log.retention.months";
+    public static final String AUDIT_LOG_PARTITIONS_AHEAD = "mtwilson.audit.log.partitions.ahead";
+    private static final long DEFAULT_AUDIT_LOG_MAINTENANCE_INTERVAL = 60;
+    private static final int DEFAULT_AUDIT_LOG_RETENTION_MONTHS = 12;
+    private static final int DEFAULT_AUDIT_LOG_PARTITIONS_AHEAD = 3;
+
+    // Audit log table size
+    private static final int DEFAULT_AUDIT_LOG_MAX_ROW_COUNT = 1000000;
+    // Audit log number of rotations
+    private static final int DEFAULT_AUDIT_LOG_NUM_ROTATIONS = 10;
+
+    private static final Object lock = new Object();
+    private static ScheduledExecutorService scheduler = null;
+    private static final AuditPersistenceManager persistenceManager = new AuditPersistenceManager();
+
+    private final boolean timePartitioning;
+    private final int maxRowCount;
+    private final int numRotations;
+    private final int retentionMonths;
+    private final int partitionsAhead;
+
+    private AuditLogMaintenance() {
+        Configuration configuration = AuditConfig.getConfiguration();
+        timePartitioning = "time".equalsIgnoreCase(configuration.getString(AUDIT_LOG_PARTITIONING, "rotation"));
+        maxRowCount = configuration.getInt("mtwilson.audit.log.max.row.count", DEFAULT_AUDIT_LOG_MAX_ROW_COUNT);
+        numRotations = configuration.getInt("mtwilson.audit.log.num.rotations", DEFAULT_AUDIT_LOG_NUM_ROTATIONS);
+        retentionMonths = configuration.getInt(AUDIT_LOG_RETENTION_MONTHS, DEFAULT_AUDIT_LOG_RETENTION_MONTHS);
+        partitionsAhead = Math.max(1, configuration.getInt(AUDIT_LOG_PARTITIONS_AHEAD, DEFAULT_AUDIT_LOG_PARTITIONS_AHEAD));
+    }
+
+    /**
+     * Schedules the maintenance task, running it once immediately.
+     */
+    public static void start() {
+        synchronized (lock) {
+            if (scheduler != null) {
+                return;
+            }
+            long interval = Math.max(1, AuditConfig.getConfiguration().getLong(AUDIT_LOG_MAINTENANCE_INTERVAL, DEFAULT_AUDIT_LOG_MAINTENANCE_INTERVAL));
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "audit-log-maintenance");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleWithFixedDelay(new AuditLogMaintenance(), 0, interval, TimeUnit.SECONDS);
+            log.debug("Scheduled audit log maintenance every {} seconds", interval);
+        }
+    }
+
+    public static void stop() {
+        synchronized (lock) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            AuditLogEntryJpaController controller = new AuditLogEntryJpaController(persistenceManager.getEntityManagerFactory("AuditDataPU"));
+            if (timePartitioning) {
+                int created = controller.createTimePartitions(partitionsAhead);
+                int dropped = controller.dropTimePartitions(retentionMonths);
+                if (created > 0 || dropped > 0) {
+                    log.info("Audit log maintenance created {} and dropped {} monthly partitions", created, dropped);
+                }
+            } else {
+                long rowCount = controller.getPrimaryPartitionRowCount();
+                if (rowCount >= maxRowCount) {
+                    log.info("Audit log partition has {} rows, rotating audit log partitions", rowCount);
+                    controller.rotate(maxRowCount, numRotations);
+                }
+            }
+        } catch (Exception e) {
+            // keep the task scheduled, the next run tries again
+            log.error("Error during audit log maintenance: {}", e.getMessage());
+            log.debug("Error during audit log maintenance", e);
+        }
+    }
+}
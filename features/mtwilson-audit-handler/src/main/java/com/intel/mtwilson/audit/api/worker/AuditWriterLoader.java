@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.audit.api.worker;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Starts the audit writer with the application, so audit log entries spilled
+ * to the local file before the last shutdown are written, and flushes the
+ * queued entries when the application stops. Also schedules the audit log
+ * partition maintenance task.
+ */
+@WebListener
+public class AuditWriterLoader implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        AuditBatchWriter.getInstance();
+        AuditLogMaintenance.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        AuditLogMaintenance.stop();
+        AuditBatchWriter.shutdown();
+    }
+}
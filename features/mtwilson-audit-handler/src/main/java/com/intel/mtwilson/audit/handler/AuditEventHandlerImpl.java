@@ -7,20 +7,31 @@ package com.intel.mtwilson.audit.handler;
 import com.intel.mtwilson.audit.annotations.AuditIgnore;
 import com.intel.mtwilson.audit.api.AuditLogger;
 import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.audit.helper.AuditConfig;
 import com.intel.mtwilson.audit.helper.AuditEntryType;
 import com.intel.mtwilson.audit.helper.AuditHandlerException;
+import com.intel.mtwilson.audit.helper.AuditPolicy;
 import com.intel.mtwilson.audit.data.AuditColumnData;
 import com.intel.mtwilson.audit.data.AuditLog;
 import com.intel.mtwilson.audit.data.AuditTableData;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.persistence.Column;
 import javax.persistence.Id;
+import javax.persistence.Lob;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.eclipse.persistence.descriptors.DescriptorEvent;
 import org.eclipse.persistence.descriptors.DescriptorEventAdapter;
 import org.eclipse.persistence.queries.WriteObjectQuery;
@@ -40,32 +51,28 @@ public class AuditEventHandlerImpl extends DescriptorEventAdapter {
 
     private static Logger log = LoggerFactory.getLogger(AuditEventHandlerImpl.class);
     private static boolean isAuditEnabled = true;
-    private static boolean isUnchangedColumnsRequired = true;
 
     static {
         isAuditEnabled = true; // AuditConfig.isAuditEnabled();
 
-        isUnchangedColumnsRequired = true; // AuditConfig.isUnchangedColumnsRequired();
-
         log.debug("Audit - {}", isAuditEnabled);
-        log.debug("Log Unchanged Columns  - {}", isUnchangedColumnsRequired);
     }
     /*
      * Get the security context
      */
 
-    private static ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    // audited columns and primary key of each entity class, in declaration order
+    private static final Map<Class<?>, AuditFields> auditFields = new ConcurrentHashMap<>();
 
-    private AuditColumnData getAuditColumnData(Column col, Field field, Object table, HashMap<String, Object> changedColumns) throws IllegalAccessException, IllegalArgumentException, SecurityException {
+    private AuditColumnData getAuditColumnData(AuditField auditField, Object value, HashMap<String, Object> changedColumns) {
         AuditColumnData auditColumnData = new AuditColumnData();
-        log.trace("Column: " + col.name());
-        auditColumnData.setName(col.name());
-        log.trace("Field: " + field.getName());
-        field.setAccessible(true);
-        log.trace("Value: " + field.get(table));
-        auditColumnData.setValue(field.get(table));
-        field.setAccessible(false);
-        auditColumnData.setIsUpdated(changedColumns.containsKey(field.getName()));
+        log.trace("Column: {}", auditField.columnName);
+        auditColumnData.setName(auditField.columnName);
+        log.trace("Field: {}", auditField.field.getName());
+        auditColumnData.setValue(value);
+        auditColumnData.setIsUpdated(changedColumns.containsKey(auditField.field.getName()));
         return auditColumnData;
     }
 
@@ -100,24 +107,53 @@ public class AuditEventHandlerImpl extends DescriptorEventAdapter {
         }
     }
 
-    private AuditTableData getTableData(DescriptorEvent event) throws IllegalAccessException, IllegalArgumentException, SecurityException {
+    private AuditTableData getTableData(DescriptorEvent event, AuditPolicy policy) throws IllegalAccessException, IllegalArgumentException, SecurityException, IOException {
         AuditTableData auditTableData = new AuditTableData();
         Object table = event.getObject();
         HashMap<String, Object> changedColumns = getChangedColumns(event);
-        for (Field field : table.getClass().getDeclaredFields()) {
-            Column col;
-            log.trace("Is it required to log this column {}", field.isAnnotationPresent(AuditIgnore.class));
-            if ((col = field.getAnnotation(Column.class)) != null && !field.isAnnotationPresent(AuditIgnore.class)) {
-                if (isUnchangedColumnsRequired || event.getEventCode() != 7) { // Log all columns
-                    auditTableData.getColumns().add(getAuditColumnData(col, field, table, changedColumns));
-                } else if (changedColumns.containsKey(field.getName())) { // log only changed colmuns
-                    auditTableData.getColumns().add(getAuditColumnData(col, field, table, changedColumns));
-                }
+        //PostUpdateEvent is 7
+        boolean changedColumnsOnly = policy != AuditPolicy.FULL && event.getEventCode() == 7;
+        for (AuditField auditField : getAuditFields(table.getClass()).columns) {
+            if (changedColumnsOnly && !changedColumns.containsKey(auditField.field.getName())) {
+                continue;
             }
+            Object value = auditField.field.get(table);
+            log.trace("Value: {}", value);
+            if (policy == AuditPolicy.DIGEST) {
+                value = digestIfLarge(auditField, value);
+            }
+            auditTableData.getColumns().add(getAuditColumnData(auditField, value, changedColumns));
         }
         return auditTableData;
     }
 
+    /**
+     * Replaces a LOB or text value larger than the digest threshold with its
+     * SHA-256 digest and size in bytes.
+     */
+    private Object digestIfLarge(AuditField auditField, Object value) throws IOException {
+        if (value == null || !(auditField.lob || value instanceof String)) {
+            return value;
+        }
+        byte[] content = value instanceof String ? ((String) value).getBytes(StandardCharsets.UTF_8) : mapper.writeValueAsBytes(value);
+        if (content.length <= AuditConfig.getDigestThreshold()) {
+            return value;
+        }
+        Map<String, Object> digest = new LinkedHashMap<>();
+        digest.put("sha256", DigestUtils.sha256Hex(content));
+        digest.put("size", content.length);
+        return digest;
+    }
+
+    private static AuditFields getAuditFields(Class<?> entityClass) {
+        AuditFields fields = auditFields.get(entityClass);
+        if (fields == null) {
+            fields = new AuditFields(entityClass);
+            auditFields.put(entityClass, fields);
+        }
+        return fields;
+    }
+
     private HashMap<String, Object> getChangedColumns(DescriptorEvent event) {
 
         HashMap<String, Object> changedColumns = new HashMap<String, Object>();
@@ -142,7 +178,7 @@ public class AuditEventHandlerImpl extends DescriptorEventAdapter {
         AuditLog auditLog = new AuditLog();
         auditLog.setId(new UUID().toString());
         auditLog.setEntityType(event.getObject().getClass().getSimpleName());
-        AuditTableData auditTableData = getTableData(event);
+        AuditTableData auditTableData = getTableData(event, AuditConfig.getAuditPolicy(auditLog.getEntityType()));
         if (auditTableData.getColumns().size() > 0) {
             auditLog.setData(auditTableData);
             auditLog.setEntityId(getPrimaryKey(event));
@@ -155,17 +191,44 @@ public class AuditEventHandlerImpl extends DescriptorEventAdapter {
     }
 
     private String getPrimaryKey(DescriptorEvent event) throws IllegalArgumentException, IllegalAccessException {
-        String pk = "";
         Object table = event.getObject();
-        for (Field field : table.getClass().getDeclaredFields()) {
-            if ((field.getAnnotation(Id.class)) != null) {
-                log.trace("ID Column Field: " + field.getName());
-                field.setAccessible(true);
-                log.trace("ID Data Type :" + field.getType() + "value: " + field.get(table));
-                pk = field.get(table).toString();
-                field.setAccessible(false);
+        Field idField = getAuditFields(table.getClass()).id;
+        if (idField == null) {
+            return "";
+        }
+        log.trace("ID Column Field: {}", idField.getName());
+        return idField.get(table).toString();
+    }
+
+    private static class AuditField {
+        private final Field field;
+        private final String columnName;
+        private final boolean lob;
+
+        private AuditField(Field field, Column column) {
+            this.field = field;
+            this.columnName = column.name();
+            this.lob = field.isAnnotationPresent(Lob.class);
+        }
+    }
+
+    private static class AuditFields {
+        private final List<AuditField> columns = new ArrayList<>();
+        private Field id = null;
+
+        private AuditFields(Class<?> entityClass) {
+            for (Field field : entityClass.getDeclaredFields()) {
+                Column col;
+                log.trace("Is it required to log this column {}", field.isAnnotationPresent(AuditIgnore.class));
+                if ((col = field.getAnnotation(Column.class)) != null && !field.isAnnotationPresent(AuditIgnore.class)) {
+                    field.setAccessible(true);
+                    columns.add(new AuditField(field, col));
+                }
+                if (field.getAnnotation(Id.class) != null) {
+                    field.setAccessible(true);
+                    id = field;
+                }
             }
         }
-        return pk;
     }
 }
@@ -7,7 +7,9 @@ package com.intel.mtwilson.audit.helper;
 
 
 import com.intel.mtwilson.My;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,10 @@ import org.slf4j.LoggerFactory;
 public class AuditConfig  {
 
     private static final Logger log = LoggerFactory.getLogger(AuditConfig.class);
+    public static final String AUDIT_POLICY = "mtwilson.audit.policy";
+    public static final String AUDIT_DIGEST_THRESHOLD = "mtwilson.audit.digest.threshold";
+    private static final int DEFAULT_AUDIT_DIGEST_THRESHOLD = 1024;
+    private static final Map<String, AuditPolicy> policies = new ConcurrentHashMap<>();
 
     public static Configuration getConfiguration() {
         return My.configuration().getConfiguration();
@@ -64,6 +70,31 @@ public class AuditConfig  {
         return true;
     }
     
+    /**
+     * Returns the audit policy for the entity type, set by
+     * {@code mtwilson.audit.policy.<entity type>} or else by
+     * {@code mtwilson.audit.policy}. Host status changes are audited in full
+     * by default because host status history is read from the audit log.
+     */
+    public static AuditPolicy getAuditPolicy(String entityType) {
+        AuditPolicy policy = policies.get(entityType);
+        if (policy == null) {
+            String defaultPolicy = "MwHostStatus".equals(entityType) ? AuditPolicy.FULL.name()
+                    : getConfiguration().getString(AUDIT_POLICY, AuditPolicy.DIGEST.name());
+            policy = AuditPolicy.valueOf(getConfiguration().getString(AUDIT_POLICY + "." + entityType, defaultPolicy).toUpperCase());
+            policies.put(entityType, policy);
+        }
+        return policy;
+    }
+
+    /**
+     * Returns the size in bytes above which the {@link AuditPolicy#DIGEST}
+     * policy records a digest instead of the value.
+     */
+    public static int getDigestThreshold() {
+        return getConfiguration().getInt(AUDIT_DIGEST_THRESHOLD, DEFAULT_AUDIT_DIGEST_THRESHOLD);
+    }
+
     public static boolean isUnchangedColumnsRequired(){
         if(getConfiguration().getString("mountwilson.audit.logunchangedcolumns", "true").equalsIgnoreCase("false") )
             return false;
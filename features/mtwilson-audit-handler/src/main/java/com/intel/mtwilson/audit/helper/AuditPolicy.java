@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.audit.helper;
+
+/**
+ * What the audit log records for an entity.
+ */
+public enum AuditPolicy {
+    /**
+     * Every column with its full value, also for updates.
+     */
+    FULL,
+    /**
+     * Every column on insert and delete, only the changed columns on update.
+     */
+    CHANGED,
+    /**
+     * Like {@link #CHANGED}, with large LOB and text values replaced by their
+     * SHA-256 digest and size.
+     */
+    DIGEST
+}
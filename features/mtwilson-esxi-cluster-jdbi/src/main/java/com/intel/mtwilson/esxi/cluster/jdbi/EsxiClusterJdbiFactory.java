@@ -15,7 +15,7 @@ public class EsxiClusterJdbiFactory {
 
     public static EsxiClusterDAO esxiClusterDAO() {
         try {
-            return JdbiUtil.getDBI(My.jdbc().connection()).open(EsxiClusterDAO.class);
+            return JdbiUtil.getDBI(My.jdbc().dataSource().getConnection()).open(EsxiClusterDAO.class);
         }
         catch(Exception e) {
             throw new RuntimeException(e);
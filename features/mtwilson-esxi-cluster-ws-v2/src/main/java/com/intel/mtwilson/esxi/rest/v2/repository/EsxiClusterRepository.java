@@ -22,6 +22,7 @@ import com.intel.mtwilson.jaxrs2.server.resource.DocumentRepository;
 import com.intel.mtwilson.repository.RepositoryCreateException;
 import com.intel.mtwilson.repository.RepositoryDeleteException;
 import com.intel.mtwilson.repository.RepositoryRetrieveException;
+import com.intel.mtwilson.repository.RepositorySearchException;
 import com.intel.mtwilson.tls.policy.TlsPolicyDescriptor;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -56,9 +57,8 @@ public class EsxiClusterRepository implements DocumentRepository<EsxiCluster, Es
         log.debug("EsxiClusterCollection:Search - Got request to search for cluster info"); 
         
         EsxiClusterCollection objCollection = new EsxiClusterCollection();
-            EsxiClusterDAO clusterDAO = EsxiClusterJdbiFactory.esxiClusterDAO();
-            
-            EsxiHostDAO hostDAO = EsxiHostJdbiFactory.esxiHostDAO();
+        try(EsxiClusterDAO clusterDAO = EsxiClusterJdbiFactory.esxiClusterDAO();
+            EsxiHostDAO hostDAO = EsxiHostJdbiFactory.esxiHostDAO()) {
             
             if(criteria.filter) {
                 if(criteria.id != null) {
@@ -96,10 +96,13 @@ public class EsxiClusterRepository implements DocumentRepository<EsxiCluster, Es
                     
                 }
               }
-            
-            return objCollection;
-            
         }
+        catch(Exception ex) {
+            log.error("EsxiCluster:Search - Error during search for clusters.", ex);
+            throw new RepositorySearchException(ex, criteria);
+        }
+        return objCollection;
+    }
     
     @Override
     @RequiresPermissions("esxi_clusters:create")
@@ -278,8 +281,9 @@ public class EsxiClusterRepository implements DocumentRepository<EsxiCluster, Es
                      log.error("Error on Esxi host deletion for cluster with id {}", obj.getId());
                      throw new RepositoryDeleteException(ex);
                  }
-                EsxiClusterDAO clusterDAO = EsxiClusterJdbiFactory.esxiClusterDAO();
-                clusterDAO.deleteEsxiClusterById(obj.getId());
+                try(EsxiClusterDAO clusterDAO = EsxiClusterJdbiFactory.esxiClusterDAO()) {
+                    clusterDAO.deleteEsxiClusterById(obj.getId());
+                }
             }
         }
         catch(Exception ex) {
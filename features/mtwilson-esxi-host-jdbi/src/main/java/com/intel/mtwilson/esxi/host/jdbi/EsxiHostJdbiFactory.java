@@ -15,7 +15,7 @@ public class EsxiHostJdbiFactory {
     
     public static EsxiHostDAO esxiHostDAO() {
         try {
-            return JdbiUtil.getDBI(My.jdbc().connection()).open(EsxiHostDAO.class);
+            return JdbiUtil.getDBI(My.jdbc().dataSource().getConnection()).open(EsxiHostDAO.class);
         }
         catch(Exception e) {
             throw new RuntimeException(e);
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.controller;
+
+import com.intel.mtwilson.flavor.data.MwFlavor;
+import com.intel.mtwilson.flavor.data.MwFlavorgroup;
+import com.intel.mtwilson.flavor.data.MwLinkFlavorFlavorgroup;
+import com.intel.mtwilson.flavor.model.FlavorMatchPolicy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * In-memory index of which flavor parts each flavorgroup contains, used to
+ * answer the existence checks made for every host verification without a
+ * COUNT query per flavor part.
+ *
+ * Flavor IDs are indexed by flavorgroup and flavor part, and also by hardware
+ * UUID for flavors that have one. The index is loaded on first use and kept
+ * up to date by the flavor, flavorgroup and flavor-flavorgroup link JPA
+ * controllers after each committed change. Changes made outside this process
+ * are only picked up when the index is reloaded, at most {@link #MAX_AGE_MILLIS}
+ * after it was last loaded, so a lookup that does not find a flavor is not
+ * an answer: callers check the database instead. The index is loaded without
+ * holding the lock used by lookups and swapped in when complete, and lookups
+ * made while the first load is running also go to the database.
+ */
+public class FlavorIndex {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorIndex.class);
+    public static final long MAX_AGE_MILLIS = 60 * 1000L;
+    private static final String HOST_UNIQUE_FLAVORGROUP = "host_unique";
+    private static final Object lock = new Object();
+    private static final AtomicBoolean loading = new AtomicBoolean();
+    private static volatile FlavorIndex current = null;
+
+    private final long loaded = System.currentTimeMillis();
+    // flavor id -> { flavor part, hardware uuid }
+    private final Map<String, String[]> flavors = new HashMap<>();
+    // link id -> { flavor id, flavorgroup id }
+    private final Map<String, String[]> links = new HashMap<>();
+    private final Map<String, Set<String>> linksByFlavor = new HashMap<>();
+    private final Map<String, Set<String>> flavorgroupParts = new HashMap<>();
+    private final Map<String, String> flavorgroupIdsByName = new HashMap<>();
+    // flavorgroup id, flavor part and optional hardware uuid -> flavor ids
+    private final Map<String, Set<String>> flavorIds = new HashMap<>();
+
+    private FlavorIndex() { }
+
+    /**
+     * Returns true if the index knows the flavorgroup has a match policy for
+     * the flavor part and contains at least one flavor of that part. False
+     * means the index does not know of such a flavor.
+     */
+    public static boolean flavorgroupContainsFlavorType(EntityManagerFactory emf, String flavorgroupId, String flavorPart) {
+        FlavorIndex index = get(emf);
+        if (index == null) {
+            return false;
+        }
+        synchronized (lock) {
+            Set<String> parts = index.flavorgroupParts.get(flavorgroupId);
+            return parts != null && parts.contains(flavorPart) && index.contains(key(flavorgroupId, flavorPart, null));
+        }
+    }
+
+    /**
+     * Returns true if the index knows the host_unique flavorgroup contains a
+     * flavor of the flavor part for the host with the specified hardware UUID.
+     * False means the index does not know of such a flavor.
+     */
+    public static boolean hostHasUniqueFlavor(EntityManagerFactory emf, String hardwareUuid, String flavorPart) {
+        FlavorIndex index = get(emf);
+        if (index == null) {
+            return false;
+        }
+        synchronized (lock) {
+            String flavorgroupId = index.flavorgroupIdsByName.get(HOST_UNIQUE_FLAVORGROUP);
+            return flavorgroupId != null && index.contains(key(flavorgroupId, flavorPart, hardwareUuid.toLowerCase()));
+        }
+    }
+
+    /**
+     * Discards the index so it is loaded again on next use.
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            current = null;
+        }
+    }
+
+    static void flavorSaved(MwFlavor mwFlavor) {
+        synchronized (lock) {
+            if (current != null) {
+                current.putFlavor(mwFlavor.getId(), mwFlavor.getFlavorPart(), mwFlavor.getHardwareUuid());
+            }
+        }
+    }
+
+    static void flavorDeleted(String flavorId) {
+        synchronized (lock) {
+            if (current != null) {
+                current.removeFlavor(flavorId);
+            }
+        }
+    }
+
+    static void linkSaved(MwLinkFlavorFlavorgroup link) {
+        synchronized (lock) {
+            if (current == null) {
+                return;
+            }
+            if (!current.flavors.containsKey(link.getFlavorId())) {
+                // the flavor was created outside this process
+                log.debug("Flavor [{}] is not indexed, reloading flavor index", link.getFlavorId());
+                current = null;
+                return;
+            }
+            current.putLink(link.getId(), link.getFlavorId(), link.getFlavorgroupId());
+        }
+    }
+
+    static void linkDeleted(String linkId) {
+        synchronized (lock) {
+            if (current != null) {
+                current.removeLink(linkId);
+            }
+        }
+    }
+
+    static void flavorgroupSaved(MwFlavorgroup mwFlavorgroup) {
+        synchronized (lock) {
+            if (current != null) {
+                current.putFlavorgroup(mwFlavorgroup);
+            }
+        }
+    }
+
+    static void flavorgroupDeleted(String flavorgroupId) {
+        synchronized (lock) {
+            if (current != null) {
+                current.removeFlavorgroup(flavorgroupId);
+            }
+        }
+    }
+
+    /**
+     * Returns the current index, loading a new one if it is missing or too
+     * old. Only one thread loads at a time; other threads keep using the
+     * previous index meanwhile, or get null if there is none yet.
+     */
+    private static FlavorIndex get(EntityManagerFactory emf) {
+        FlavorIndex index = current;
+        if ((index == null || System.currentTimeMillis() - index.loaded > MAX_AGE_MILLIS)
+                && loading.compareAndSet(false, true)) {
+            try {
+                FlavorIndex loaded = load(emf);
+                synchronized (lock) {
+                    current = loaded;
+                }
+                index = loaded;
+            } catch (RuntimeException e) {
+                log.warn("Cannot load flavor index: {}", e.getMessage());
+                log.debug("Cannot load flavor index", e);
+            } finally {
+                loading.set(false);
+            }
+        }
+        return index;
+    }
+
+    private static FlavorIndex load(EntityManagerFactory emf) {
+        FlavorIndex index = new FlavorIndex();
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Object[]> rows = em.createNativeQuery("SELECT id, flavor_part, hardware_uuid FROM mw_flavor").getResultList();
+            for (Object[] row : rows) {
+                index.putFlavor(trim(row[0]), trim(row[1]), trim(row[2]));
+            }
+        } finally {
+            em.close();
+        }
+        for (MwFlavorgroup mwFlavorgroup : new MwFlavorgroupJpaController(emf).findMwFlavorgroupEntities()) {
+            index.putFlavorgroup(mwFlavorgroup);
+        }
+        for (MwLinkFlavorFlavorgroup link : new MwLinkFlavorFlavorgroupJpaController(emf).findMwLinkFlavorFlavorgroupEntities()) {
+            index.putLink(link.getId(), link.getFlavorId(), link.getFlavorgroupId());
+        }
+        log.debug("Loaded flavor index with {} flavors, {} flavorgroups and {} links",
+                index.flavors.size(), index.flavorgroupParts.size(), index.links.size());
+        return index;
+    }
+
+    private boolean contains(String key) {
+        Set<String> ids = flavorIds.get(key);
+        return ids != null && !ids.isEmpty();
+    }
+
+    private void putFlavor(String flavorId, String flavorPart, String hardwareUuid) {
+        Set<String> flavorLinks = linksByFlavor.get(flavorId);
+        if (flavorLinks != null) {
+            for (String linkId : flavorLinks) {
+                unindex(links.get(linkId));
+            }
+        }
+        flavors.put(flavorId, new String[] { flavorPart, hardwareUuid });
+        if (flavorLinks != null) {
+            for (String linkId : flavorLinks) {
+                index(links.get(linkId));
+            }
+        }
+    }
+
+    private void removeFlavor(String flavorId) {
+        Set<String> flavorLinks = linksByFlavor.get(flavorId);
+        if (flavorLinks != null) {
+            for (String linkId : flavorLinks) {
+                unindex(links.get(linkId));
+            }
+        }
+        flavors.remove(flavorId);
+    }
+
+    private void putLink(String linkId, String flavorId, String flavorgroupId) {
+        removeLink(linkId);
+        String[] link = new String[] { flavorId, flavorgroupId };
+        links.put(linkId, link);
+        Set<String> flavorLinks = linksByFlavor.get(flavorId);
+        if (flavorLinks == null) {
+            flavorLinks = new HashSet<>();
+            linksByFlavor.put(flavorId, flavorLinks);
+        }
+        flavorLinks.add(linkId);
+        index(link);
+    }
+
+    private void removeLink(String linkId) {
+        String[] link = links.remove(linkId);
+        if (link == null) {
+            return;
+        }
+        unindex(link);
+        Set<String> flavorLinks = linksByFlavor.get(link[0]);
+        if (flavorLinks != null) {
+            flavorLinks.remove(linkId);
+            if (flavorLinks.isEmpty()) {
+                linksByFlavor.remove(link[0]);
+            }
+        }
+    }
+
+    private void putFlavorgroup(MwFlavorgroup mwFlavorgroup) {
+        removeFlavorgroup(mwFlavorgroup.getId());
+        Set<String> parts = new HashSet<>();
+        if (mwFlavorgroup.getFlavorTypeMatchPolicy() != null && mwFlavorgroup.getFlavorTypeMatchPolicy().getFlavorMatchPolicies() != null) {
+            for (FlavorMatchPolicy flavorMatchPolicy : mwFlavorgroup.getFlavorTypeMatchPolicy().getFlavorMatchPolicies()) {
+                if (flavorMatchPolicy.getFlavorPart() != null) {
+                    parts.add(flavorMatchPolicy.getFlavorPart().name());
+                }
+            }
+        }
+        flavorgroupParts.put(mwFlavorgroup.getId(), parts);
+        flavorgroupIdsByName.put(mwFlavorgroup.getName(), mwFlavorgroup.getId());
+    }
+
+    private void removeFlavorgroup(String flavorgroupId) {
+        flavorgroupParts.remove(flavorgroupId);
+        flavorgroupIdsByName.values().remove(flavorgroupId);
+    }
+
+    private void index(String[] link) {
+        String[] flavor = flavors.get(link[0]);
+        if (flavor == null || flavor[0] == null) {
+            return;
+        }
+        add(key(link[1], flavor[0], null), link[0]);
+        if (flavor[1] != null) {
+            add(key(link[1], flavor[0], flavor[1]), link[0]);
+        }
+    }
+
+    private void unindex(String[] link) {
+        String[] flavor = flavors.get(link[0]);
+        if (flavor == null || flavor[0] == null) {
+            return;
+        }
+        remove(key(link[1], flavor[0], null), link[0]);
+        if (flavor[1] != null) {
+            remove(key(link[1], flavor[0], flavor[1]), link[0]);
+        }
+    }
+
+    private void add(String key, String flavorId) {
+        Set<String> ids = flavorIds.get(key);
+        if (ids == null) {
+            ids = new HashSet<>();
+            flavorIds.put(key, ids);
+        }
+        ids.add(flavorId);
+    }
+
+    private void remove(String key, String flavorId) {
+        Set<String> ids = flavorIds.get(key);
+        if (ids != null) {
+            ids.remove(flavorId);
+            if (ids.isEmpty()) {
+                flavorIds.remove(key);
+            }
+        }
+    }
+
+    private static String key(String flavorgroupId, String flavorPart, String hardwareUuid) {
+        return hardwareUuid == null ? flavorgroupId + "|" + flavorPart : flavorgroupId + "|" + flavorPart + "|" + hardwareUuid;
+    }
+
+    private static String trim(Object value) {
+        return value == null ? null : value.toString().trim();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.intel.mtwilson.flavor.data.MwFlavor;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fills the mw_flavor columns that flavor matching filters on from the flavor
+ * content, so flavor searches use indexed columns instead of JSON paths.
+ *
+ * Hardware features are stored in one bitmask with two bits per feature, in
+ * the order of {@link #FEATURE_MASK_KEYS}: 00 if the flavor does not have the
+ * feature, 01 if the feature is disabled and 11 if it is enabled. A feature
+ * without an enabled value of true or false is stored as 10, which no host
+ * matches, as it matched no host in the JSON conditions the mask replaced.
+ * The order must match the one used by the migrations that fill the column.
+ */
+public class FlavorMatchColumns {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorMatchColumns.class);
+    public static final List<String> FEATURE_MASK_KEYS = Arrays.asList("tpm", "txt", "cbnt", "suefi");
+    private static final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+    private FlavorMatchColumns() { }
+
+    public static void apply(MwFlavor mwFlavor) {
+        if (mwFlavor.getContent() == null) {
+            return;
+        }
+        JsonNode content;
+        try {
+            content = mapper.valueToTree(mwFlavor.getContent());
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot determine flavor match columns for flavor [{}]: {}", mwFlavor.getId(), e.getMessage());
+            return;
+        }
+        JsonNode description = content.path("meta").path("description");
+        mwFlavor.setFlavorPart(text(description, "flavor_part"));
+        mwFlavor.setOsName(text(description, "os_name"));
+        mwFlavor.setOsVersion(text(description, "os_version"));
+        mwFlavor.setVmmName(text(description, "vmm_name"));
+        mwFlavor.setVmmVersion(text(description, "vmm_version"));
+        mwFlavor.setTbootInstalled(text(description, "tboot_installed"));
+        String hardwareUuid = text(description, "hardware_uuid");
+        mwFlavor.setHardwareUuid(hardwareUuid == null ? null : hardwareUuid.toLowerCase());
+        JsonNode features = content.path("hardware").path("feature");
+        int featureMask = 0;
+        for (String key : FEATURE_MASK_KEYS) {
+            JsonNode feature = features.path(key);
+            if (feature.isMissingNode()) {
+                continue;
+            }
+            String enabled = text(feature, "enabled");
+            if ("true".equals(enabled) || "false".equals(enabled)) {
+                featureMask |= getFeatureBits(key, Boolean.valueOf(enabled));
+            } else {
+                featureMask |= getFeatureMask(key) & ~getFeatureBits(key, false);
+            }
+        }
+        mwFlavor.setFeatureMask(featureMask);
+    }
+
+    /**
+     * Returns the mask bits for a feature the flavor has, or -1 if the
+     * feature is not part of the mask.
+     */
+    public static int getFeatureBits(String key, boolean enabled) {
+        int position = FEATURE_MASK_KEYS.indexOf(key);
+        if (position < 0) {
+            return -1;
+        }
+        return (enabled ? 3 : 1) << (position * 2);
+    }
+
+    /**
+     * Returns both mask bits of a feature, or 0 if the feature is not part of
+     * the mask.
+     */
+    public static int getFeatureMask(String key) {
+        int position = FEATURE_MASK_KEYS.indexOf(key);
+        return position < 0 ? 0 : 3 << (position * 2);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        if (value.isMissingNode() || value.isNull()) {
+            return null;
+        }
+        return value.asText();
+    }
+}
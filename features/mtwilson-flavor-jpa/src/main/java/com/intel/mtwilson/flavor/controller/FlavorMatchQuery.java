@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.mtwilson.core.common.model.AttestationExemptFeature;
+import com.intel.mtwilson.core.common.model.HardwareFeature;
+import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.core.flavor.common.FlavorPart;
+import com.intel.mtwilson.flavor.utils.HostMeasurementUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Parameterized native query that finds the flavors matching a host manifest.
+ *
+ * Host manifest values are bound as positional parameters instead of being
+ * written into the query text, so the text only depends on which flavor parts
+ * are requested and which manifest fields are present. Hosts of the same kind
+ * therefore share one statement text, which lets the JDBC driver and the
+ * database reuse the prepared statement and its plan. Fields that have their
+ * own mw_flavor column (see {@link FlavorMatchColumns}) are matched on the
+ * column so the lookup can use its index.
+ */
+public class FlavorMatchQuery {
+    private static final String FLAVOR_SELECT = "SELECT f.id, f.content, f.signature FROM mw_flavor AS f";
+    private static final String DESCRIPTION = "f.content -> 'meta' -> 'description' ->>";
+    private static final String BIOS = "f.content -> 'bios' ->>";
+    private static final String HARDWARE_FEATURE = "f.content -> 'hardware' -> 'feature' ->";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    private FlavorMatchQuery(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the values to bind to the positional parameters of the query,
+     * in order.
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Builds the flavor match query for the host manifest. Each requested
+     * flavor part contributes one sub-select, and those flagged as latest are
+     * limited to the most recently created matching flavor.
+     */
+    public static FlavorMatchQuery build(String flavorgroupId, HostManifest hostManifest, Map<String, Boolean> flavorTypesWithLatestStatus) {
+        Part platform = null;
+        Part os = null;
+        Part software = null;
+        Part assetTag = null;
+        Part hostUnique = null;
+        if (flavorTypesWithLatestStatus != null) {
+            for (String flavorType : flavorTypesWithLatestStatus.keySet()) {
+                boolean latest = Boolean.TRUE.equals(flavorTypesWithLatestStatus.get(flavorType));
+                switch (FlavorPart.valueOf(flavorType)) {
+                    case PLATFORM:
+                        platform = buildPlatform(flavorgroupId, hostManifest, latest);
+                        break;
+                    case OS:
+                        os = buildOs(flavorgroupId, hostManifest, latest);
+                        break;
+                    case SOFTWARE:
+                        software = buildSoftware(flavorgroupId, hostManifest);
+                        break;
+                    case ASSET_TAG:
+                        assetTag = buildAssetTag(hostManifest, latest);
+                        break;
+                    case HOST_UNIQUE:
+                        hostUnique = buildHostUnique(hostManifest, latest);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Invalid partial flavor type: %s", flavorType));
+                }
+            }
+        }
+
+        // combine the flavor part sub-selects in a fixed order so the parameter order is stable
+        StringBuilder where = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+        for (Part part : new Part[] { platform, os, software, assetTag, hostUnique }) {
+            if (part == null) {
+                continue;
+            }
+            if (where.length() > 0) {
+                where.append("\nOR ");
+            }
+            where.append("f.id IN (").append(part.sql).append(")");
+            parameters.addAll(part.parameters);
+        }
+        if (where.length() == 0 && flavorgroupId != null && !flavorgroupId.isEmpty()) {
+            Part flavorgroup = new Part(flavorgroupSelect());
+            flavorgroup.parameters.add(flavorgroupId);
+            where.append("f.id IN (").append(flavorgroup.sql).append(")");
+            parameters.addAll(flavorgroup.parameters);
+        }
+        if (where.length() == 0) {
+            return new FlavorMatchQuery(FLAVOR_SELECT, parameters);
+        }
+        return new FlavorMatchQuery(String.format("%s WHERE (%s)", FLAVOR_SELECT, where), parameters);
+    }
+
+    private static Part buildPlatform(String flavorgroupId, HostManifest hostManifest, boolean latest) {
+        Part part = flavorPartSelect(FlavorPart.PLATFORM, flavorgroupId);
+        if (hostManifest != null && hostManifest.getHostInfo() != null) {
+            addTbootInstalled(part, hostManifest);
+            String biosName = hostManifest.getHostInfo().getBiosName();
+            if (biosName != null && !biosName.isEmpty()) {
+                // TODO: Remove the meta description match post CCB
+                part.and(String.format("( %s 'bios_name' = ? OR %s 'bios_name' = ? )", BIOS, DESCRIPTION), biosName, biosName);
+            }
+            String biosVersion = hostManifest.getHostInfo().getBiosVersion();
+            if (biosVersion != null && !biosVersion.isEmpty()) {
+                // TODO: Remove the meta description match post CCB
+                part.and(String.format("( %s 'bios_version' = ? OR %s 'bios_version' = ? )", BIOS, DESCRIPTION), biosVersion, biosVersion);
+            }
+            // features in the feature mask are matched together, others on the flavor content
+            int featureMask = 0;
+            int featureBits = 0;
+            for (HardwareFeature feature : HardwareFeature.values()) {
+                // hardware features that are exempt from attestation are not matched
+                if (EnumUtils.isValidEnum(AttestationExemptFeature.class, feature.getValue())) {
+                    continue;
+                }
+                String featureKey = feature.getValue().toLowerCase();
+                HardwareFeatureDetails featureDetails = getHardwareFeatureDetails(hostManifest, feature);
+                int mask = FlavorMatchColumns.getFeatureMask(featureKey);
+                if (mask != 0) {
+                    featureMask |= mask;
+                    if (featureDetails != null) {
+                        featureBits |= FlavorMatchColumns.getFeatureBits(featureKey, Boolean.TRUE.equals(featureDetails.getEnabled()));
+                    }
+                } else if (featureDetails != null) {
+                    part.and(String.format("( %s '%s' ->> 'enabled' = ? )", HARDWARE_FEATURE, featureKey), String.valueOf(featureDetails.getEnabled()));
+                } else {
+                    part.and(String.format("( %s> '%s' ) is null", HARDWARE_FEATURE, featureKey));
+                }
+                if (featureDetails != null && feature == HardwareFeature.CBNT && featureDetails.getEnabled() && !StringUtils.isEmpty(featureDetails.getMeta().get("profile"))) {
+                    part.and(String.format("( %s '%s' ->> 'profile' = ? )", HARDWARE_FEATURE, featureKey), featureDetails.getMeta().get("profile"));
+                }
+            }
+            if (featureMask != 0) {
+                part.and("( f.feature_mask & ? ) = ?", featureMask, featureBits);
+            }
+        }
+        if (latest) {
+            part.latest();
+        }
+        return part;
+    }
+
+    private static Part buildOs(String flavorgroupId, HostManifest hostManifest, boolean latest) {
+        Part part = flavorPartSelect(FlavorPart.OS, flavorgroupId);
+        if (hostManifest != null && hostManifest.getHostInfo() != null) {
+            addTbootInstalled(part, hostManifest);
+            addColumnMatch(part, "os_name", hostManifest.getHostInfo().getOsName());
+            addColumnMatch(part, "os_version", hostManifest.getHostInfo().getOsVersion());
+            addColumnMatch(part, "vmm_name", hostManifest.getHostInfo().getVmmName());
+            addColumnMatch(part, "vmm_version", hostManifest.getHostInfo().getVmmVersion());
+        }
+        if (latest) {
+            part.latest();
+        }
+        return part;
+    }
+
+    private static Part buildSoftware(String flavorgroupId, HostManifest hostManifest) {
+        Part part = flavorPartSelect(FlavorPart.SOFTWARE, flavorgroupId);
+        if (hostManifest != null && hostManifest.getPcrManifest() != null && hostManifest.getMeasurementXmls() != null) {
+            List<String> labels = HostMeasurementUtils.getMeasurementLabels(hostManifest);
+            if (!labels.isEmpty()) {
+                // the labels are bound as one JSON array so the query text does not depend on how many there are
+                part.and("f.label IN (SELECT json_array_elements_text(CAST(? AS json)))", toJson(labels));
+            }
+        }
+        return part;
+    }
+
+    private static Part buildAssetTag(HostManifest hostManifest, boolean latest) {
+        Part part = new Part("SELECT f.id FROM mw_flavor AS f\nWHERE f.flavor_part = ?");
+        part.parameters.add(FlavorPart.ASSET_TAG.getValue());
+        addHardwareUuid(part, hostManifest);
+        if (latest) {
+            part.latest();
+        }
+        return part;
+    }
+
+    private static Part buildHostUnique(HostManifest hostManifest, boolean latest) {
+        Part part = new Part("SELECT f.id FROM mw_flavor AS f\nWHERE f.flavor_part = ?");
+        part.parameters.add(FlavorPart.HOST_UNIQUE.getValue());
+        if (hostManifest != null && hostManifest.getHostInfo() != null) {
+            addTbootInstalled(part, hostManifest);
+        }
+        addHardwareUuid(part, hostManifest);
+        if (latest) {
+            part.latest();
+        }
+        return part;
+    }
+
+    private static String flavorgroupSelect() {
+        return "SELECT f.id FROM mw_flavor AS f\n"
+                + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id\n"
+                + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id\n";
+    }
+
+    private static Part flavorPartSelect(FlavorPart flavorPart, String flavorgroupId) {
+        Part part;
+        if (flavorgroupId != null) {
+            part = new Part(String.format("%sWHERE fg.id = ?\nAND f.flavor_part = ?", flavorgroupSelect()));
+            part.parameters.add(flavorgroupId);
+        } else {
+            part = new Part(String.format("%sWHERE f.flavor_part = ?", flavorgroupSelect()));
+        }
+        part.parameters.add(flavorPart.getValue());
+        return part;
+    }
+
+    private static void addTbootInstalled(Part part, HostManifest hostManifest) {
+        String tbootInstalled = hostManifest.getHostInfo().getTbootInstalled();
+        if (tbootInstalled == null) {
+            return;
+        }
+        if (Boolean.valueOf(tbootInstalled)) {
+            // if tboot is installed, flavors of the old format without the tboot_installed field also match
+            part.and("( f.tboot_installed = ? OR f.tboot_installed is null )", tbootInstalled);
+        } else {
+            part.and("( f.tboot_installed = ? )", tbootInstalled);
+        }
+    }
+
+    private static void addColumnMatch(Part part, String column, String value) {
+        if (value != null && !value.isEmpty()) {
+            part.and(String.format("f.%s = ?", column), value);
+        }
+    }
+
+    private static void addHardwareUuid(Part part, HostManifest hostManifest) {
+        if (hostManifest != null && hostManifest.getHostInfo() != null
+                && hostManifest.getHostInfo().getHardwareUuid() != null && !hostManifest.getHostInfo().getHardwareUuid().isEmpty()) {
+            part.and("f.hardware_uuid = ?", hostManifest.getHostInfo().getHardwareUuid().toLowerCase());
+        }
+    }
+
+    private static HardwareFeatureDetails getHardwareFeatureDetails(HostManifest hostManifest, HardwareFeature feature) {
+        HardwareFeatureDetails featureDetails = null;
+        if (hostManifest.getHostInfo().getHardwareFeatures() != null && hostManifest.getHostInfo().getHardwareFeatures().size() != 0) {
+            featureDetails = hostManifest.getHostInfo().getHardwareFeatures().get(feature);
+        } else if (feature.equals(HardwareFeature.TPM)) {
+            featureDetails = new HardwareFeatureDetails();
+            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTpmEnabled()));
+        } else if (feature.equals(HardwareFeature.TXT)) {
+            featureDetails = new HardwareFeatureDetails();
+            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTxtEnabled()));
+        }
+        return featureDetails;
+    }
+
+    private static String toJson(List<String> values) {
+        try {
+            return mapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize measurement labels", e);
+        }
+    }
+
+    private static class Part {
+        private final StringBuilder sql;
+        private final List<Object> parameters = new ArrayList<>();
+
+        private Part(String select) {
+            this.sql = new StringBuilder(select);
+        }
+
+        private void and(String condition, Object... values) {
+            sql.append("\nAND ").append(condition);
+            Collections.addAll(parameters, values);
+        }
+
+        private void latest() {
+            sql.append("\nORDER BY f.created desc LIMIT 1");
+        }
+    }
+}
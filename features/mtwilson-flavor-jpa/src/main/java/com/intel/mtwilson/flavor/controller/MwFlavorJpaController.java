@@ -5,10 +5,6 @@
 package com.intel.mtwilson.flavor.controller;
 
 import com.intel.dcsg.cpg.io.UUID;
-import com.intel.mtwilson.core.common.model.HardwareFeature;
-import com.intel.mtwilson.core.common.model.AttestationExemptFeature;
-import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
-import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
 import com.intel.mtwilson.flavor.data.MwFlavor;
@@ -19,17 +15,10 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 
-import static com.intel.mtwilson.core.flavor.common.FlavorPart.*;
-import static java.util.Optional.ofNullable;
-
 import javax.persistence.*;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
-import com.intel.mtwilson.flavor.utils.HostMeasurementUtils;
-import org.apache.commons.lang3.EnumUtils;
-import org.apache.commons.lang3.StringUtils;
-
 /**
  *
  * @author rksavino
@@ -50,10 +39,12 @@ public class MwFlavorJpaController implements Serializable {
         EntityManager em = null;
         try {
             mwFlavor.setCreated(Calendar.getInstance().getTime());
+            FlavorMatchColumns.apply(mwFlavor);
             em = getEntityManager();
             em.getTransaction().begin();
             em.persist(mwFlavor);
             em.getTransaction().commit();
+            FlavorIndex.flavorSaved(mwFlavor);
         } catch (Exception ex) {
             if (findMwFlavor(mwFlavor.getId()) != null) {
                 throw new PreexistingEntityException("The flavor " + mwFlavor + " already exists.", ex);
@@ -69,10 +60,12 @@ public class MwFlavorJpaController implements Serializable {
     public void edit(MwFlavor mwFlavor) throws NonexistentEntityException, Exception {
         EntityManager em = null;
         try {
+            FlavorMatchColumns.apply(mwFlavor);
             em = getEntityManager();
             em.getTransaction().begin();
             em.merge(mwFlavor);
             em.getTransaction().commit();
+            FlavorIndex.flavorSaved(mwFlavor);
         } catch (Exception ex) {
             String msg = ex.getLocalizedMessage();
             if (msg == null || msg.length() == 0) {
@@ -103,6 +96,7 @@ public class MwFlavorJpaController implements Serializable {
             }
             em.remove(mwFlavor);
             em.getTransaction().commit();
+            FlavorIndex.flavorDeleted(id);
         } finally {
             if (em != null) {
                 em.close();
@@ -218,202 +212,6 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
-    private String buildFlavorPartQueryStringWithFlavorParts(String flavorType, String flavorgroupId) {
-        if (flavorgroupId != null) {
-            return String.format("%s AND f.content -> 'meta' -> 'description' ->> 'flavor_part'='%s'", buildFlavorPartQueryStringWithFlavorgroup(flavorgroupId), flavorType);
-        } else {
-            return String.format("SELECT f.id FROM mw_flavor AS f\n"
-                    + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id \n"
-                    + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id \n"
-                    + "WHERE f.content -> 'meta' -> 'description' ->> 'flavor_part'='%s'", flavorType);
-        }
-    }
-
-    private String buildFlavorPartQueryStringWithFlavorgroup(String flavorgroupId) {
-        return String.format("SELECT f.id FROM mw_flavor AS f\n"
-                + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id \n"
-                + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id \n"
-                + "WHERE fg.id = '%s'\n", flavorgroupId);
-    }
-    
-    private String buildMultipleFlavorPartQueryString(String flavorgroupId,HostManifest hostManifest, HashMap<String, Boolean> flavorTypesWithLatestStatus) {        
-
-        String jsonDescriptionQueryTemplate = "f.content -> 'meta' -> 'description' ->>";
-        String jsonBiosQueryTemplate = "f.content -> 'bios' ->>";
-        String jsonHardwareQueryTemplate = "(f.content -> 'hardware' -> 'feature' ->";
-        String jsonBiosQueryText = null;
-        String jsonOsQueryText = null;
-        String jsonSoftwareQueryText = null;
-        String jsonAssetTagQueryText = null;
-        String jsonHostUniqueQueryText = null;        
-
-        if(!flavorTypesWithLatestStatus.isEmpty()){
-            for(String flavorType : flavorTypesWithLatestStatus.keySet()){
-                switch (FlavorPart.valueOf(flavorType)) {
-                    case PLATFORM:
-                        jsonBiosQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
-                            jsonBiosQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
-                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
-                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) { // If tboot is enabled and flavor is of old format tboot_installed field wont be there
-                                jsonBiosQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
-                                        jsonBiosQueryText, jsonDescriptionQueryTemplate);
-                            } else {
-                                jsonBiosQueryText = String.format("%s )", jsonBiosQueryText);
-                            }
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getBiosName() != null && !hostManifest.getHostInfo().getBiosName().isEmpty()) {
-                            jsonBiosQueryText = String.format("%s\nAND ( %s 'bios_name' = '%s'",
-                                    jsonBiosQueryText, jsonBiosQueryTemplate, hostManifest.getHostInfo().getBiosName());
-                            // TODO: Remove following post CCB
-                            jsonBiosQueryText = String.format("%s\nOR %s 'bios_name' = '%s')",
-                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getBiosName());
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getBiosVersion() != null && !hostManifest.getHostInfo().getBiosVersion().isEmpty()) {
-                            jsonBiosQueryText = String.format("%s\nAND ( %s 'bios_version' = '%s'",
-                                    jsonBiosQueryText, jsonBiosQueryTemplate, hostManifest.getHostInfo().getBiosVersion());
-                            // TODO: Remove following post CCB
-                            jsonBiosQueryText = String.format("%s\nOR %s 'bios_version' = '%s')",
-                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getBiosVersion());
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null) {
-                            for(HardwareFeature feature : HardwareFeature.values()) {
-                                /*
-                                Check whether the hardware feature is a type of AttestationExemptFeature,
-                                if it is not then include it in flavor retrieval query
-                                 */
-                                if (!EnumUtils.isValidEnum(AttestationExemptFeature.class, feature.getValue())) {
-                                    HardwareFeatureDetails featureDetails = getHardwareFeatureDetails(hostManifest, feature);
-                                    if (featureDetails != null) {
-                                        String jsonHardwareFeatureQueryTemplate = jsonHardwareQueryTemplate.concat(" '" + feature.getValue().toLowerCase() + "' ->>");
-                                        jsonBiosQueryText = String.format("%s\nAND %s 'enabled' = '%s')",
-                                                jsonBiosQueryText, jsonHardwareFeatureQueryTemplate, featureDetails.getEnabled());
-                                        if (feature == HardwareFeature.CBNT && featureDetails.getEnabled() && !StringUtils.isEmpty(featureDetails.getMeta().get("profile"))) {
-                                            jsonBiosQueryText = String.format("%s\nAND %s 'profile' = '%s')",
-                                                    jsonBiosQueryText, jsonHardwareFeatureQueryTemplate, featureDetails.getMeta().get("profile"));
-                                        }
-                                    } else {
-                                        String jsonHardwareFeatureQueryTemplate = jsonHardwareQueryTemplate.concat("> '" + feature.getValue().toLowerCase() + "' ");
-                                        jsonBiosQueryText = String.format("%s\nAND %s) is null", jsonBiosQueryText, jsonHardwareFeatureQueryTemplate);
-                                    }
-                                }
-                            }
-                        }
-                        if(flavorTypesWithLatestStatus.get(PLATFORM.getValue())){
-                           jsonBiosQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1",jsonBiosQueryText); 
-                        }
-                        break;
-                    case OS:
-                        jsonOsQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
-                            jsonOsQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
-                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
-                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) {
-                                jsonOsQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
-                                        jsonOsQueryText, jsonDescriptionQueryTemplate);
-                            } else {
-                                jsonOsQueryText = String.format("%s )", jsonOsQueryText);
-                            }
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getOsName() != null && !hostManifest.getHostInfo().getOsName().isEmpty()) {
-                            jsonOsQueryText = String.format("%s\nAND %s 'os_name' = '%s'",
-                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getOsName());
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getOsVersion() != null && !hostManifest.getHostInfo().getOsVersion().isEmpty()) {
-                            jsonOsQueryText = String.format("%s\nAND %s 'os_version' = '%s'",
-                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getOsVersion());
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getVmmName() != null && !hostManifest.getHostInfo().getVmmName().isEmpty()) {
-                            jsonOsQueryText = String.format("%s\nAND %s 'vmm_name' = '%s'",
-                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getVmmName());
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getVmmVersion() != null && !hostManifest.getHostInfo().getVmmVersion().isEmpty()) {
-                            jsonOsQueryText = String.format("%s\nAND %s 'vmm_version' = '%s'",
-                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getVmmVersion());
-                        }
-                        if(flavorTypesWithLatestStatus.get(OS.getValue())){
-                           jsonOsQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonOsQueryText); 
-                        }
-                        break;
-                    case SOFTWARE:
-                        jsonSoftwareQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
-                        if (hostManifest != null && hostManifest.getPcrManifest() != null && hostManifest.getMeasurementXmls() != null && !HostMeasurementUtils.getMeasurementLabels(hostManifest).isEmpty()) {
-                            jsonSoftwareQueryText = String.format("%s\nAND f.label in ('%s')",
-                                    jsonSoftwareQueryText, StringUtils.join(HostMeasurementUtils.getMeasurementLabels(hostManifest), "','"));
-                        }
-                        break;
-                    case ASSET_TAG:
-                        jsonAssetTagQueryText = String.format("SELECT f.id FROM mw_flavor AS f\nWHERE %s ",buildFlavorPartQueryString(FlavorPart.ASSET_TAG.getValue()));
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getHardwareUuid() != null && !hostManifest.getHostInfo().getHardwareUuid().isEmpty()) {
-                            jsonAssetTagQueryText = String.format("%s\nAND LOWER(%s 'hardware_uuid') = '%s'",
-                                    jsonAssetTagQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getHardwareUuid().toLowerCase());
-                        }
-                        if(flavorTypesWithLatestStatus.get(FlavorPart.ASSET_TAG.getValue())){
-                           jsonAssetTagQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonAssetTagQueryText); 
-                        }
-                        break;
-                    case HOST_UNIQUE:
-                        jsonHostUniqueQueryText = String.format("SELECT f.id FROM mw_flavor AS f\nWHERE %s ",buildFlavorPartQueryString(FlavorPart.HOST_UNIQUE.getValue()));
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
-                            jsonHostUniqueQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
-                                    jsonHostUniqueQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
-                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) {
-                                jsonHostUniqueQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
-                                        jsonHostUniqueQueryText, jsonDescriptionQueryTemplate);
-                            } else {
-                                jsonHostUniqueQueryText = String.format("%s )", jsonHostUniqueQueryText);
-                            }
-                        }
-                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getHardwareUuid() != null && !hostManifest.getHostInfo().getHardwareUuid().isEmpty()) {
-                            jsonHostUniqueQueryText = String.format("%s\nAND LOWER(%s 'hardware_uuid') = '%s'",
-                                    jsonHostUniqueQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getHardwareUuid().toLowerCase());
-                        }
-                        if(flavorTypesWithLatestStatus.get(FlavorPart.HOST_UNIQUE.getValue())){
-                           jsonHostUniqueQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonHostUniqueQueryText); 
-                        }
-                        break;
-                    default:
-                        throw new IllegalArgumentException(String.format("Invalid partial flavor type: %s", flavorType));
-                }
-            }
-        }
-        
-        String jsonFlavorTypeQueryText = null;
-        String jsonQueryText = null;
-        
-        // add automatic flavor group types to query string
-        if (jsonBiosQueryText != null && !jsonBiosQueryText.isEmpty()) {
-            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonBiosQueryText);
-        }
-        if (jsonOsQueryText != null && !jsonOsQueryText.isEmpty()) {
-            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonOsQueryText);
-        }
-        if (jsonSoftwareQueryText != null && !jsonSoftwareQueryText.isEmpty()) {
-            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonSoftwareQueryText);
-        }
-        if (jsonAssetTagQueryText != null && !jsonAssetTagQueryText.isEmpty()) {
-            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonAssetTagQueryText);
-        }
-        if (jsonHostUniqueQueryText != null && !jsonHostUniqueQueryText.isEmpty()) {
-            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonHostUniqueQueryText);
-        }
-        
-        // strip off trailing spaces and "OR", and 
-        jsonFlavorTypeQueryText = StringUtils.stripEnd(StringUtils.stripEnd(jsonFlavorTypeQueryText, " "), "OR");
-        
-        if (jsonFlavorTypeQueryText != null && !jsonFlavorTypeQueryText.isEmpty()) {
-            jsonQueryText = String.format(" %s ", jsonFlavorTypeQueryText);
-        } else if (flavorgroupId != null && !flavorgroupId.isEmpty()) {
-            jsonQueryText = String.format("f.id IN (%s)", buildFlavorPartQueryStringWithFlavorgroup(flavorgroupId));
-        }
-        // add WHERE statement
-        if (jsonQueryText != null && !jsonQueryText.isEmpty()) {
-            jsonQueryText = String.format("WHERE (%s)", jsonQueryText);
-        }
-        
-        return jsonQueryText;
-    }
-
     public List<MwFlavor> findMwFlavorEntities(UUID flavorgroupId, HostManifest hostManifest, HashMap<String, Boolean> flavorTypeswithLatestStatus) {
         List<MwFlavor> mwFlavorList = null;
         EntityManager em = getEntityManager();
@@ -422,11 +220,12 @@ public class MwFlavorJpaController implements Serializable {
             flavorgroupIdString = flavorgroupId.toString();
         }
         try {
-            String queryString = String.format("SELECT f.id, f.content, f.signature FROM mw_flavor AS f %s",
-                    ofNullable(buildMultipleFlavorPartQueryString(flavorgroupIdString, hostManifest, 
-                            flavorTypeswithLatestStatus)).orElse(""));
-            log.debug("The Flavor search query string is:\n{}", queryString);
-            Query query = em.createNativeQuery(queryString, MwFlavor.class);
+            FlavorMatchQuery flavorMatchQuery = FlavorMatchQuery.build(flavorgroupIdString, hostManifest, flavorTypeswithLatestStatus);
+            log.debug("The Flavor search query string is:\n{}\nwith parameters: {}", flavorMatchQuery.getSql(), flavorMatchQuery.getParameters());
+            Query query = em.createNativeQuery(flavorMatchQuery.getSql(), MwFlavor.class);
+            for (int i = 0; i < flavorMatchQuery.getParameters().size(); i++) {
+                query.setParameter(i + 1, flavorMatchQuery.getParameters().get(i));
+            }
 
             if (query.getResultList() != null && !query.getResultList().isEmpty()) {
                 mwFlavorList = query.getResultList();
@@ -437,11 +236,16 @@ public class MwFlavorJpaController implements Serializable {
         }
     }
     
-    private String buildFlavorPartQueryString(String flavorType) {
-        return String.format("f.content -> 'meta' -> 'description' ->> 'flavor_part' = '%s'", flavorType);
-    }
-    
+    /**
+     * Returns true if the host_unique flavorgroup contains a flavor of the
+     * specified type for the host. The {@link FlavorIndex} may lag changes
+     * made by other nodes, so the database is asked when the index does not
+     * find the flavor.
+     */
     public boolean hostHasUniqueFlavor(String hardwareUuid, String flavorType) {
+        if (FlavorIndex.hostHasUniqueFlavor(emf, hardwareUuid, flavorType)) {
+            return true;
+        }
         EntityManager em = getEntityManager();
         try {
             Query query = em.createNativeQuery("SELECT COUNT(*) " +
@@ -449,50 +253,61 @@ public class MwFlavorJpaController implements Serializable {
                     "INNER JOIN mw_link_flavor_flavorgroup as l ON f.id = l.flavor_id " +
                     "INNER JOIN mw_flavorgroup as fg ON l.flavorgroup_id = fg.id " +
                     "WHERE fg.name = 'host_unique' " +
-                    "AND (" + buildFlavorPartQueryString(flavorType) + " " +
-                    "AND LOWER(f.content -> 'meta' -> 'description' ->> 'hardware_uuid') = ?)");
-            query.setParameter(1, hardwareUuid.toLowerCase());
+                    "AND f.flavor_part = ? AND f.hardware_uuid = ?");
+            query.setParameter(1, flavorType);
+            query.setParameter(2, hardwareUuid.toLowerCase());
             Long uniqueFlavorsForHostCount = (Long) query.getResultList().get(0);
-            if (uniqueFlavorsForHostCount > 0) {
-                return true;
-            }
-            return false;
+            return uniqueFlavorsForHostCount > 0;
         } finally {
             em.close();
         }
     }
-    
+
+    /**
+     * Returns true if the flavorgroup has a match policy for the flavor type
+     * and contains a flavor of that type. The {@link FlavorIndex} may lag
+     * changes made by other nodes, so the database is asked when the index
+     * does not find the flavor.
+     */
     public boolean flavorgroupContainsFlavorType(UUID flavorgroupId, String flavorType) {
+        if (FlavorIndex.flavorgroupContainsFlavorType(emf, flavorgroupId.toString(), flavorType)) {
+            return true;
+        }
         EntityManager em = getEntityManager();
         try {
             Query query = em.createNativeQuery("SELECT COUNT(*) " +
                     "FROM mw_flavor as f " +
                     "INNER JOIN mw_link_flavor_flavorgroup as l ON f.id = l.flavor_id " +
                     "INNER JOIN mw_flavorgroup as fg ON l.flavorgroup_id = fg.id, json_array_elements(fg.flavor_type_match_policy ->'flavor_match_policies') policies " +
-                    "WHERE fg.id = ? AND policies ->> 'flavor_part' = ? AND " + buildFlavorPartQueryString(flavorType));
+                    "WHERE fg.id = ? AND policies ->> 'flavor_part' = ? AND f.flavor_part = ?");
             query.setParameter(1, flavorgroupId.toString());
             query.setParameter(2, flavorType);
+            query.setParameter(3, flavorType);
             Long flavorCount = (Long) query.getResultList().get(0);
-            if (flavorCount > 0) {
-                return true;
-            }
-            return false;
+            return flavorCount > 0;
         } finally {
             em.close();
         }
     }
-    
-    private HardwareFeatureDetails getHardwareFeatureDetails(HostManifest hostManifest, HardwareFeature feature) {
-        HardwareFeatureDetails featureDetails = null;
-        if(hostManifest.getHostInfo().getHardwareFeatures() != null && hostManifest.getHostInfo().getHardwareFeatures().size() != 0) {
-            featureDetails = hostManifest.getHostInfo().getHardwareFeatures().get(feature);
-        } else if(feature.equals(HardwareFeature.TPM)) {
-            featureDetails = new HardwareFeatureDetails();
-            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTpmEnabled()));
-        } else if(feature.equals(HardwareFeature.TXT)) {
-            featureDetails = new HardwareFeatureDetails();
-            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTxtEnabled()));
+
+    /**
+     * Returns an MD5 digest of the IDs and signatures of the flavors in the
+     * flavorgroup that can apply to the host with the specified hardware UUID,
+     * which changes whenever one of those flavors is added, removed or replaced.
+     * Returns null if the flavorgroup has no such flavors.
+     */
+    public String getFlavorgroupDigest(String flavorgroupId, String hardwareUuid) {
+        EntityManager em = getEntityManager();
+        try {
+            Query query = em.createNativeQuery("SELECT md5(string_agg(f.id || ':' || md5(coalesce(f.signature, '')), ',' ORDER BY f.id)) "
+                    + "FROM mw_link_flavor_flavorgroup l INNER JOIN mw_flavor f ON f.id = l.flavor_id "
+                    + "WHERE l.flavorgroup_id = ? AND (f.hardware_uuid IS NULL OR f.hardware_uuid = ?)");
+            query.setParameter(1, flavorgroupId);
+            query.setParameter(2, hardwareUuid == null ? null : hardwareUuid.toLowerCase());
+            Object digest = query.getSingleResult();
+            return digest == null ? null : digest.toString();
+        } finally {
+            em.close();
         }
-        return featureDetails;
     }
 }
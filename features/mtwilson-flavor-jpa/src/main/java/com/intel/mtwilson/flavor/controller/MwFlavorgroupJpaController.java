@@ -41,6 +41,7 @@ public class MwFlavorgroupJpaController implements Serializable {
             em.getTransaction().begin();
             em.persist(mwFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.flavorgroupSaved(mwFlavorgroup);
         } catch (Exception ex) {
             if (findMwFlavorgroup(mwFlavorgroup.getId()) != null) {
                 throw new PreexistingEntityException("The flavor group " + mwFlavorgroup + " already exists.", ex);
@@ -60,6 +61,7 @@ public class MwFlavorgroupJpaController implements Serializable {
             em.getTransaction().begin();
             mwFlavorgroup = em.merge(mwFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.flavorgroupSaved(mwFlavorgroup);
         } catch (Exception ex) {
             String msg = ex.getLocalizedMessage();
             if (msg == null || msg.length() == 0) {
@@ -90,6 +92,7 @@ public class MwFlavorgroupJpaController implements Serializable {
             }
             em.remove(mwFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.flavorgroupDeleted(id);
         } finally {
             if (em != null) {
                 em.close();
@@ -0,0 +1,582 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.flavor.data.MwHostStatus;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+/**
+ * Content addressed store for host manifests.
+ *
+ * A manifest is keyed by the SHA-256 digest of its JSON serialized with sorted
+ * properties and map keys. Each top level section other than host_info and
+ * aik_certificate is stored separately, deflate compressed and keyed by its
+ * own digest, so sections that many hosts have in common (PCR banks, event
+ * logs, measurements) are stored once. host_info and aik_certificate are
+ * unique to a host and are kept uncompressed in the manifest row so host
+ * status can be searched by them.
+ *
+ * Manifests are written through a {@link Batch}, whose statements are run by
+ * {@link MwHostStatusJpaController} in the same transaction as the host status
+ * that references them.
+ *
+ * Stored manifests and sections never change, so recently used ones are
+ * cached in memory by digest and shared by all instances of this controller.
+ * The caches are bounded by the size of the cached JSON rather than by the
+ * number of entries, since an event log section alone can be hundreds of
+ * kilobytes.
+ */
+public class MwHostManifestJpaController implements Serializable {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwHostManifestJpaController.class);
+    private static final String HOST_INFO = "host_info";
+    private static final String AIK_CERTIFICATE = "aik_certificate";
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final long MANIFEST_CACHE_BYTES = 8L * 1024 * 1024;
+    private static final long SECTION_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final ObjectReader reader = mapper.readerFor(HostManifest.class);
+    private static final ObjectWriter writer = mapper.writer();
+    private static final SizeBoundedCache<StoredManifest> manifests = new SizeBoundedCache<>(MANIFEST_CACHE_BYTES);
+    private static final SizeBoundedCache<byte[]> sections = new SizeBoundedCache<>(SECTION_CACHE_BYTES);
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    public MwHostManifestJpaController(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+    private EntityManagerFactory emf = null;
+
+    public EntityManager getEntityManager() {
+        return emf.createEntityManager();
+    }
+
+    /**
+     * Stores the host manifest and any of its sections that are not stored
+     * yet, in a transaction of its own.
+     * @param hostManifest the host manifest to store
+     * @return the digest referencing the stored manifest, or null if the
+     * manifest is null
+     */
+    public String create(HostManifest hostManifest) {
+        Batch batch = new Batch();
+        String digest = batch.add(hostManifest);
+        if (batch.isEmpty()) {
+            return digest;
+        }
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = getEntityManager();
+            EntityTransaction entityTransaction = em.getTransaction();
+            try {
+                entityTransaction.begin();
+                batch.write(em.unwrap(Connection.class));
+                entityTransaction.commit();
+                break;
+            } catch (PersistenceException e) {
+                // another node stored the same manifest or section concurrently, and
+                // the second attempt skips it
+                if (attempt > 1 || !isUniqueViolation(e)) {
+                    throw e;
+                }
+                log.debug("Host manifest {} was stored concurrently, retrying", digest);
+            } finally {
+                if (entityTransaction.isActive()) {
+                    entityTransaction.rollback();
+                }
+                em.close();
+            }
+        }
+        batch.stored();
+        return digest;
+    }
+
+    /**
+     * Returns the host manifest stored with the specified digest, or null if
+     * there is none.
+     */
+    public HostManifest findHostManifest(String digest) {
+        if (digest == null || digest.isEmpty()) {
+            return null;
+        }
+        return findHostManifests(Collections.singletonList(digest)).get(digest);
+    }
+
+    /**
+     * Returns the host manifest of the host status record: the referenced
+     * manifest, or for records written before manifests were stored
+     * separately, the manifest in the host_report column.
+     */
+    public HostManifest findHostManifest(MwHostStatus mwHostStatus) {
+        if (mwHostStatus == null) {
+            return null;
+        }
+        if (mwHostStatus.getHostManifestDigest() != null) {
+            return findHostManifest(mwHostStatus.getHostManifestDigest());
+        }
+        return mwHostStatus.getHostManifest();
+    }
+
+    /**
+     * Returns the host manifests stored with the specified digests, keyed by
+     * digest. Manifests and sections that are not cached are loaded with one
+     * query each for all of the digests. Digests with no stored manifest are
+     * not in the returned map.
+     */
+    public Map<String, HostManifest> findHostManifests(Collection<String> digests) {
+        Map<String, StoredManifest> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String digest : digests) {
+            if (digest == null || digest.isEmpty() || found.containsKey(digest)) {
+                continue;
+            }
+            StoredManifest manifest = manifests.get(digest);
+            if (manifest == null) {
+                misses.incrementAndGet();
+                missing.add(digest);
+            } else {
+                hits.incrementAndGet();
+            }
+            found.put(digest, manifest);
+        }
+        Map<String, StoredManifest> loadedManifests = new HashMap<>();
+        Map<String, byte[]> loadedSections = new HashMap<>();
+        Map<String, byte[]> sectionJson = new HashMap<>();
+        EntityManager em = null;
+        EntityTransaction entityTransaction = null;
+        try {
+            Connection connection = null;
+            if (!missing.isEmpty()) {
+                em = getEntityManager();
+                entityTransaction = em.getTransaction();
+                entityTransaction.begin();
+                connection = em.unwrap(Connection.class);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT digest, host_info, aik_certificate, sections FROM mw_host_manifest WHERE digest = ANY (?)")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", missing.toArray(new String[missing.size()])));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            Map<String, String> sectionDigests = new LinkedHashMap<>();
+                            Iterator<Map.Entry<String, JsonNode>> fields = mapper.readTree(rs.getString(4)).fields();
+                            while (fields.hasNext()) {
+                                Map.Entry<String, JsonNode> field = fields.next();
+                                sectionDigests.put(field.getKey(), field.getValue().asText());
+                            }
+                            StoredManifest manifest = new StoredManifest(rs.getString(2), rs.getString(3), sectionDigests);
+                            loadedManifests.put(rs.getString(1), manifest);
+                            found.put(rs.getString(1), manifest);
+                        }
+                    }
+                }
+            }
+            List<String> missingSections = new ArrayList<>();
+            for (StoredManifest manifest : found.values()) {
+                if (manifest == null) {
+                    continue;
+                }
+                for (String sectionDigest : manifest.sectionDigests.values()) {
+                    if (sectionJson.containsKey(sectionDigest)) {
+                        continue;
+                    }
+                    byte[] json = sections.get(sectionDigest);
+                    if (json == null) {
+                        missingSections.add(sectionDigest);
+                    }
+                    sectionJson.put(sectionDigest, json);
+                }
+            }
+            if (!missingSections.isEmpty()) {
+                if (em == null) {
+                    em = getEntityManager();
+                    entityTransaction = em.getTransaction();
+                    entityTransaction.begin();
+                    connection = em.unwrap(Connection.class);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT digest, body FROM mw_host_manifest_section WHERE digest = ANY (?)")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", missingSections.toArray(new String[missingSections.size()])));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            byte[] json = inflate(rs.getBytes(2));
+                            loadedSections.put(rs.getString(1), json);
+                            sectionJson.put(rs.getString(1), json);
+                        }
+                    }
+                }
+            }
+            if (entityTransaction != null) {
+                entityTransaction.commit();
+            }
+        } catch (SQLException | IOException ex) {
+            throw new PersistenceException("Error retrieving host manifests " + missing, ex);
+        } finally {
+            if (entityTransaction != null && entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            if (em != null) {
+                em.close();
+            }
+        }
+        for (Map.Entry<String, byte[]> section : loadedSections.entrySet()) {
+            sections.put(section.getKey(), section.getValue(), section.getValue().length);
+        }
+        for (Map.Entry<String, StoredManifest> manifest : loadedManifests.entrySet()) {
+            manifests.put(manifest.getKey(), manifest.getValue(), manifest.getValue().size());
+        }
+        Map<String, HostManifest> hostManifests = new LinkedHashMap<>();
+        for (Map.Entry<String, StoredManifest> manifest : found.entrySet()) {
+            if (manifest.getValue() == null) {
+                log.warn("No host manifest exists with digest: {}", manifest.getKey());
+                continue;
+            }
+            HostManifest hostManifest = toHostManifest(manifest.getKey(), manifest.getValue(), sectionJson);
+            if (hostManifest != null) {
+                hostManifests.put(manifest.getKey(), hostManifest);
+            }
+        }
+        return hostManifests;
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    private static HostManifest toHostManifest(String digest, StoredManifest manifest, Map<String, byte[]> sectionJson) {
+        try {
+            ObjectNode tree = mapper.createObjectNode();
+            if (manifest.hostInfo != null) {
+                tree.set(HOST_INFO, mapper.readTree(manifest.hostInfo));
+            }
+            if (manifest.aikCertificate != null) {
+                tree.put(AIK_CERTIFICATE, manifest.aikCertificate);
+            }
+            for (Map.Entry<String, String> sectionDigest : manifest.sectionDigests.entrySet()) {
+                byte[] json = sectionJson.get(sectionDigest.getValue());
+                if (json == null) {
+                    log.error("Host manifest {} section {} is missing", digest, sectionDigest.getKey());
+                    return null;
+                }
+                tree.set(sectionDigest.getKey(), mapper.readTree(json));
+            }
+            return reader.readValue(tree);
+        } catch (IOException e) {
+            log.error("Could not convert stored host manifest {} to host manifest model", digest, e);
+            return null;
+        }
+    }
+
+    static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && UNIQUE_VIOLATION.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] deflate(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length * 4);
+        try (InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(content))) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inflater.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Host manifests and sections to store together with the host status
+     * records that reference them. Manifests and sections already stored by
+     * this node, or already in the batch, are skipped when added; the ones
+     * stored concurrently by another node are skipped by the statement.
+     *
+     * The statement is a list of WITH queries, so it can be prepended to the
+     * statement that writes the host status and sent in the same round trip.
+     * Call {@link #stored()} after the transaction is committed so the new
+     * manifests and sections are cached.
+     */
+    static class Batch {
+        private static final String WITH_QUERIES =
+                "new_host_manifest_section AS (INSERT INTO mw_host_manifest_section (digest, body, size, created) "
+                + "SELECT ns.digest, decode(ns.body, 'base64'), ns.size, ? FROM unnest(?::varchar[], ?::text[], ?::int[]) AS ns(digest, body, size) "
+                + "WHERE NOT EXISTS (SELECT 1 FROM mw_host_manifest_section s WHERE s.digest = ns.digest)), "
+                + "new_host_manifest AS (INSERT INTO mw_host_manifest (digest, host_info, aik_certificate, sections, created) "
+                + "SELECT nm.digest, nm.host_info::json, nm.aik_certificate, nm.sections::json, ? FROM unnest(?::varchar[], ?::text[], ?::text[], ?::text[]) AS nm(digest, host_info, aik_certificate, sections) "
+                + "WHERE NOT EXISTS (SELECT 1 FROM mw_host_manifest m WHERE m.digest = nm.digest))";
+        private final Map<String, StoredManifest> newManifests = new LinkedHashMap<>();
+        private final Map<String, byte[]> newSections = new LinkedHashMap<>();
+
+        /**
+         * Adds the host manifest to the batch.
+         * @return the digest referencing the manifest, or null if the
+         * manifest is null
+         */
+        String add(HostManifest hostManifest) {
+            if (hostManifest == null) {
+                return null;
+            }
+            ObjectNode tree = mapper.valueToTree(hostManifest);
+            try {
+                String digest = sha256(writer.writeValueAsBytes(tree));
+                if (newManifests.containsKey(digest) || manifests.get(digest) != null) {
+                    return digest;
+                }
+                String hostInfo = null;
+                String aikCertificate = null;
+                Map<String, String> sectionDigests = new LinkedHashMap<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    JsonNode value = field.getValue();
+                    if (value == null || value.isNull()) {
+                        continue;
+                    }
+                    if (HOST_INFO.equals(field.getKey())) {
+                        hostInfo = writer.writeValueAsString(value);
+                    } else if (AIK_CERTIFICATE.equals(field.getKey()) && value.isTextual()) {
+                        aikCertificate = value.asText();
+                    } else {
+                        byte[] json = writer.writeValueAsBytes(value);
+                        String sectionDigest = sha256(json);
+                        sectionDigests.put(field.getKey(), sectionDigest);
+                        if (!newSections.containsKey(sectionDigest) && sections.get(sectionDigest) == null) {
+                            newSections.put(sectionDigest, json);
+                        }
+                    }
+                }
+                newManifests.put(digest, new StoredManifest(hostInfo, aikCertificate, sectionDigests));
+                return digest;
+            } catch (IOException e) {
+                throw new PersistenceException("Cannot serialize host manifest", e);
+            }
+        }
+
+        /**
+         * Returns true if every manifest added is already stored, so there is
+         * nothing to write.
+         */
+        boolean isEmpty() {
+            return newManifests.isEmpty();
+        }
+
+        /**
+         * Returns the WITH queries storing the new manifests and sections,
+         * without the WITH keyword, to be followed by a comma or the primary
+         * query. The parameters are set by {@link #setParameters}.
+         */
+        String getWithQueries() {
+            return WITH_QUERIES;
+        }
+
+        /**
+         * Sets the parameters of the WITH queries starting at the specified
+         * index, and returns the index of the next parameter.
+         */
+        int setParameters(Connection connection, PreparedStatement statement, int index) throws SQLException {
+            Timestamp created = new Timestamp(Calendar.getInstance().getTimeInMillis());
+            String[] sectionDigests = new String[newSections.size()];
+            String[] bodies = new String[newSections.size()];
+            Integer[] sizes = new Integer[newSections.size()];
+            int i = 0;
+            try {
+                for (Map.Entry<String, byte[]> section : newSections.entrySet()) {
+                    sectionDigests[i] = section.getKey();
+                    bodies[i] = Base64.getEncoder().encodeToString(deflate(section.getValue()));
+                    sizes[i] = section.getValue().length;
+                    i++;
+                }
+                String[] digests = new String[newManifests.size()];
+                String[] hostInfos = new String[newManifests.size()];
+                String[] aikCertificates = new String[newManifests.size()];
+                String[] manifestSections = new String[newManifests.size()];
+                i = 0;
+                for (Map.Entry<String, StoredManifest> manifest : newManifests.entrySet()) {
+                    digests[i] = manifest.getKey();
+                    hostInfos[i] = manifest.getValue().hostInfo;
+                    aikCertificates[i] = manifest.getValue().aikCertificate;
+                    manifestSections[i] = writer.writeValueAsString(manifest.getValue().sectionDigests);
+                    i++;
+                }
+                statement.setTimestamp(index++, created);
+                statement.setArray(index++, connection.createArrayOf("varchar", sectionDigests));
+                statement.setArray(index++, connection.createArrayOf("text", bodies));
+                statement.setArray(index++, connection.createArrayOf("int4", sizes));
+                statement.setTimestamp(index++, created);
+                statement.setArray(index++, connection.createArrayOf("varchar", digests));
+                statement.setArray(index++, connection.createArrayOf("text", hostInfos));
+                statement.setArray(index++, connection.createArrayOf("text", aikCertificates));
+                statement.setArray(index++, connection.createArrayOf("text", manifestSections));
+                return index;
+            } catch (IOException e) {
+                throw new PersistenceException("Cannot serialize host manifest", e);
+            }
+        }
+
+        /**
+         * Stores the new manifests and sections with a statement of their
+         * own, in the current transaction of the connection.
+         */
+        void write(Connection connection) {
+            if (isEmpty()) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement("WITH " + getWithQueries() + " SELECT 1")) {
+                setParameters(connection, statement, 1);
+                statement.execute();
+                log.debug("Stored {} host manifests with {} new sections", newManifests.size(), newSections.size());
+            } catch (SQLException ex) {
+                throw new PersistenceException("Error storing host manifests " + newManifests.keySet(), ex);
+            }
+        }
+
+        /**
+         * Caches the manifests and sections of the batch once the
+         * transaction storing them is committed.
+         */
+        void stored() {
+            for (Map.Entry<String, byte[]> section : newSections.entrySet()) {
+                sections.put(section.getKey(), section.getValue(), section.getValue().length);
+            }
+            for (Map.Entry<String, StoredManifest> manifest : newManifests.entrySet()) {
+                manifests.put(manifest.getKey(), manifest.getValue(), manifest.getValue().size());
+            }
+        }
+    }
+
+    /**
+     * The manifest row: host_info, aik_certificate and the digest of each
+     * section by name.
+     */
+    private static class StoredManifest {
+        private final String hostInfo;
+        private final String aikCertificate;
+        private final Map<String, String> sectionDigests;
+
+        private StoredManifest(String hostInfo, String aikCertificate, Map<String, String> sectionDigests) {
+            this.hostInfo = hostInfo;
+            this.aikCertificate = aikCertificate;
+            this.sectionDigests = sectionDigests;
+        }
+
+        private long size() {
+            long size = 2L * ((hostInfo == null ? 0 : hostInfo.length()) + (aikCertificate == null ? 0 : aikCertificate.length()));
+            for (Map.Entry<String, String> sectionDigest : sectionDigests.entrySet()) {
+                size += 2L * (sectionDigest.getKey().length() + sectionDigest.getValue().length());
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Least recently used cache evicting entries once the total size of the
+     * cached values exceeds the limit.
+     */
+    private static class SizeBoundedCache<T> {
+        private final long maxBytes;
+        private final LinkedHashMap<String, CacheEntry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        private SizeBoundedCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized T get(String key) {
+            CacheEntry<T> entry = entries.get(key);
+            return entry == null ? null : entry.value;
+        }
+
+        private synchronized void put(String key, T value, long size) {
+            if (size > maxBytes) {
+                return;
+            }
+            CacheEntry<T> previous = entries.put(key, new CacheEntry<>(value, size));
+            if (previous != null) {
+                bytes -= previous.size;
+            }
+            bytes += size;
+            Iterator<CacheEntry<T>> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static class CacheEntry<T> {
+        private final T value;
+        private final long size;
+
+        private CacheEntry(T value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -11,26 +11,34 @@ import com.intel.mtwilson.audit.data.AuditLogEntry;
 import com.intel.mtwilson.core.common.model.HostManifest;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
-import com.intel.mtwilson.flavor.converter.HostManifestConverter;
 import com.intel.mtwilson.flavor.converter.HostStatusConverter;
 import com.intel.mtwilson.flavor.data.MwHostStatus;
 import com.intel.mtwilson.flavor.model.HostStatusInformation;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import org.postgresql.util.PGobject;
 
 /**
  *
@@ -39,6 +47,12 @@ import javax.persistence.criteria.Root;
 public class MwHostStatusJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwHostStatusJpaController.class);
+    // host_info and aik_certificate of the referenced manifest; records written before
+    // manifests were stored separately have them in host_report instead
+    private static final String HOST_MANIFEST_JOIN = "LEFT JOIN mw_host_manifest m ON m.digest = hs.host_manifest_digest";
+    // the audit log records the digest of the host manifest in column 4, or the
+    // manifest itself for records written before manifests were stored separately
+    private static final String AUDIT_HOST_MANIFEST_JOIN = "LEFT JOIN mw_host_manifest m ON m.digest = %s.data -> 'columns' -> 4 ->> 'value'";
 
     public MwHostStatusJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -50,119 +64,194 @@ public class MwHostStatusJpaController implements Serializable {
     }
 
     public void create(MwHostStatus mwHostStatus) throws PreexistingEntityException, Exception {
-        EntityManager em = null;
-        try {
-            mwHostStatus.setCreated(Calendar.getInstance().getTime());
-            em = getEntityManager();
-            em.getTransaction().begin();
-            em.persist(mwHostStatus);
-            em.getTransaction().commit();
-        } catch (Exception ex) {
-            if (findMwHostStatus(mwHostStatus.getId()) != null) {
-                throw new PreexistingEntityException("The host status " + mwHostStatus + " already exists.", ex);
-            }
-            throw ex;
-        } finally {
-            if (em != null) {
-                em.close();
-            }
+        mwHostStatus.setCreated(Calendar.getInstance().getTime());
+        MwHostManifestJpaController.Batch batch = new MwHostManifestJpaController.Batch();
+        if (mwHostStatus.getHostManifest() != null) {
+            mwHostStatus.setHostManifestDigest(batch.add(mwHostStatus.getHostManifest()));
         }
-    }
-
-    public void edit(MwHostStatus mwHostStatus) throws NonexistentEntityException, Exception {
-        EntityManager em = getEntityManager();
-        EntityTransaction entityTransaction = em.getTransaction();
-        HostStatusConverter hostStatusConverter = new HostStatusConverter();
-        HostManifestConverter hostManifestConverter = new HostManifestConverter();
-        try {
-            mwHostStatus.setCreated(Calendar.getInstance().getTime());
-            entityTransaction.begin();
-            if (mwHostStatus.getHostId() != null && !mwHostStatus.getHostId().isEmpty()) {
-                Query updateQuery;
-                if (mwHostStatus.getHostManifest() == null) {
-                    updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ? WHERE host_id = ?");
-                    updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
-                            .setParameter(2, mwHostStatus.getCreated())
-                            .setParameter(3, mwHostStatus.getHostId());
-                } else {
-                    updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ?, host_report = ? WHERE host_id = ?");
-                    updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
-                            .setParameter(2, mwHostStatus.getCreated())
-                            .setParameter(3, hostManifestConverter.convertToDatabaseColumn(mwHostStatus.getHostManifest()))
-                            .setParameter(4, mwHostStatus.getHostId());
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = getEntityManager();
+            EntityTransaction entityTransaction = em.getTransaction();
+            try {
+                entityTransaction.begin();
+                batch.write(em.unwrap(Connection.class));
+                em.persist(mwHostStatus);
+                entityTransaction.commit();
+                break;
+            } catch (Exception ex) {
+                // another node stored the same host manifest concurrently, and the
+                // second attempt skips it
+                if (attempt == 1 && !batch.isEmpty() && MwHostManifestJpaController.isUniqueViolation(ex)) {
+                    log.debug("Host manifest {} was stored concurrently, retrying", mwHostStatus.getHostManifestDigest());
+                    continue;
                 }
-                int updateCount = updateQuery.executeUpdate();
-                // Insert a new record when updateCount is 0 i.e no records were updated for the given host id
-                if (updateCount <= 0) {
-                    mwHostStatus.setId(new UUID().toString());
-                    Query insertQuery = em.createNativeQuery("INSERT INTO mw_host_status(id, host_id, status, created, host_report) "
-                            + "VALUES (?, ?, ?, ?, ?)");
-                    insertQuery.setParameter(1, mwHostStatus.getId())
-                            .setParameter(2, mwHostStatus.getHostId())
-                            .setParameter(3, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
-                            .setParameter(4, mwHostStatus.getCreated())
-                            .setParameter(5, hostManifestConverter.convertToDatabaseColumn(mwHostStatus.getHostManifest()))
-                            .executeUpdate();
+                if (findMwHostStatus(mwHostStatus.getId()) != null) {
+                    throw new PreexistingEntityException("The host status " + mwHostStatus + " already exists.", ex);
                 }
+                throw ex;
+            } finally {
+                if (entityTransaction.isActive()) {
+                    entityTransaction.rollback();
+                }
+                em.close();
             }
-            entityTransaction.commit();
-        } catch (RuntimeException e) {
-            if (entityTransaction.isActive()) {
-                entityTransaction.rollback();
-            }
-            throw e;
-        } finally {
-            em.close();
         }
+        batch.stored();
     }
 
-    public void editHostStatusList(List<MwHostStatus> mwHostStatusList) {
-        int batchSize = 100;
-        EntityManager em = getEntityManager();
-        EntityTransaction entityTransaction = em.getTransaction();
+    public void edit(MwHostStatus mwHostStatus) throws NonexistentEntityException, Exception {
         HostStatusConverter hostStatusConverter = new HostStatusConverter();
-        HostManifestConverter hostManifestConverter = new HostManifestConverter();
-        try {
-            entityTransaction.begin();
-            for (int i = 0; i < mwHostStatusList.size(); i++) {
-                // perform commits only in batches
-                if (i > 0 && i % batchSize == 0) {
-                    entityTransaction.commit();
-                    entityTransaction.begin();
-                    em.clear();
-                }
-                //initialize the host status entity class with the list record
-                MwHostStatus mwHostStatus = mwHostStatusList.get(i);
-                mwHostStatus.setCreated(Calendar.getInstance().getTime());
+        mwHostStatus.setCreated(Calendar.getInstance().getTime());
+        MwHostManifestJpaController.Batch batch = new MwHostManifestJpaController.Batch();
+        if (mwHostStatus.getHostManifest() != null) {
+            mwHostStatus.setHostManifestDigest(batch.add(mwHostStatus.getHostManifest()));
+        }
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = getEntityManager();
+            EntityTransaction entityTransaction = em.getTransaction();
+            try {
+                entityTransaction.begin();
                 if (mwHostStatus.getHostId() != null && !mwHostStatus.getHostId().isEmpty()) {
-                    Query updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ? WHERE host_id = ?");
-                    int updateCount = updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
-                            .setParameter(2, mwHostStatus.getCreated())
-                            .setParameter(3, mwHostStatus.getHostId())
-                            .executeUpdate();
+                    batch.write(em.unwrap(Connection.class));
+                    Query updateQuery;
+                    if (mwHostStatus.getHostManifestDigest() == null) {
+                        updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ? WHERE host_id = ?");
+                        updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
+                                .setParameter(2, mwHostStatus.getCreated())
+                                .setParameter(3, mwHostStatus.getHostId());
+                    } else {
+                        updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ?, host_manifest_digest = ?, host_report = NULL WHERE host_id = ?");
+                        updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
+                                .setParameter(2, mwHostStatus.getCreated())
+                                .setParameter(3, mwHostStatus.getHostManifestDigest())
+                                .setParameter(4, mwHostStatus.getHostId());
+                    }
+                    int updateCount = updateQuery.executeUpdate();
                     // Insert a new record when updateCount is 0 i.e no records were updated for the given host id
                     if (updateCount <= 0) {
                         mwHostStatus.setId(new UUID().toString());
-                        Query insertQuery = em.createNativeQuery("INSERT INTO mw_host_status(id, host_id, status, created, host_report) "
+                        Query insertQuery = em.createNativeQuery("INSERT INTO mw_host_status(id, host_id, status, created, host_manifest_digest) "
                                 + "VALUES (?, ?, ?, ?, ?)");
                         insertQuery.setParameter(1, mwHostStatus.getId())
                                 .setParameter(2, mwHostStatus.getHostId())
                                 .setParameter(3, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
                                 .setParameter(4, mwHostStatus.getCreated())
-                                .setParameter(5, hostManifestConverter.convertToDatabaseColumn(mwHostStatus.getHostManifest()))
+                                .setParameter(5, mwHostStatus.getHostManifestDigest())
                                 .executeUpdate();
                     }
                 }
+                entityTransaction.commit();
+                break;
+            } catch (RuntimeException e) {
+                // another node stored the same host manifest concurrently, and the
+                // second attempt skips it
+                if (attempt == 1 && !batch.isEmpty() && MwHostManifestJpaController.isUniqueViolation(e)) {
+                    log.debug("Host manifest {} was stored concurrently, retrying", mwHostStatus.getHostManifestDigest());
+                    continue;
+                }
+                throw e;
+            } finally {
+                if (entityTransaction.isActive()) {
+                    entityTransaction.rollback();
+                }
+                em.close();
             }
-            entityTransaction.commit();
-        } catch (RuntimeException e) {
-            if (entityTransaction.isActive()) {
-                entityTransaction.rollback();
+        }
+        batch.stored();
+    }
+
+    /**
+     * Updates the status of each host in the list, or inserts it if the host
+     * has no status yet, in a single statement: the rows are passed as array
+     * parameters, existing rows are updated and the remaining ones inserted.
+     * Host manifests that are not stored yet are inserted by the same
+     * statement. Unlike {@link #edit(MwHostStatus)} the host report of
+     * existing rows is not changed. If the list has several entries for the
+     * same host the last one is used.
+     */
+    public void editHostStatusList(List<MwHostStatus> mwHostStatusList) {
+        Map<String, MwHostStatus> byHostId = new LinkedHashMap<>();
+        for (MwHostStatus mwHostStatus : mwHostStatusList) {
+            if (mwHostStatus.getHostId() != null && !mwHostStatus.getHostId().isEmpty()) {
+                byHostId.put(mwHostStatus.getHostId(), mwHostStatus);
             }
-            throw e;
-        } finally {
-            em.close();
         }
+        if (byHostId.isEmpty()) {
+            return;
+        }
+        Date created = Calendar.getInstance().getTime();
+        HostStatusConverter hostStatusConverter = new HostStatusConverter();
+        MwHostManifestJpaController.Batch batch = new MwHostManifestJpaController.Batch();
+        String[] ids = new String[byHostId.size()];
+        String[] hostIds = new String[byHostId.size()];
+        String[] statuses = new String[byHostId.size()];
+        String[] hostManifestDigests = new String[byHostId.size()];
+        int i = 0;
+        for (MwHostStatus mwHostStatus : byHostId.values()) {
+            mwHostStatus.setCreated(created);
+            ids[i] = new UUID().toString();
+            hostIds[i] = mwHostStatus.getHostId();
+            statuses[i] = jsonValue(hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()));
+            if (mwHostStatus.getHostManifest() != null) {
+                mwHostStatus.setHostManifestDigest(batch.add(mwHostStatus.getHostManifest()));
+            }
+            hostManifestDigests[i] = mwHostStatus.getHostManifestDigest();
+            i++;
+        }
+        String sql = "WITH " + (batch.isEmpty() ? "" : batch.getWithQueries() + ", ")
+                + "d AS (SELECT * FROM unnest(?::char(36)[], ?::char(36)[], ?::text[], ?::varchar[]) AS d(id, host_id, status, host_manifest_digest)), "
+                + "u AS (UPDATE mw_host_status s SET status = d.status::json, created = ? FROM d WHERE s.host_id = d.host_id RETURNING s.host_id) "
+                + "INSERT INTO mw_host_status (id, host_id, status, created, host_manifest_digest) "
+                + "SELECT d.id, d.host_id, d.status::json, ?, d.host_manifest_digest FROM d WHERE NOT EXISTS (SELECT 1 FROM u WHERE u.host_id = d.host_id) "
+                + "RETURNING id, host_id";
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = getEntityManager();
+            EntityTransaction entityTransaction = em.getTransaction();
+            try {
+                entityTransaction.begin();
+                Connection connection = em.unwrap(Connection.class);
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = batch.isEmpty() ? 1 : batch.setParameters(connection, statement, 1);
+                    Timestamp timestamp = new Timestamp(created.getTime());
+                    statement.setArray(index++, connection.createArrayOf("bpchar", ids));
+                    statement.setArray(index++, connection.createArrayOf("bpchar", hostIds));
+                    statement.setArray(index++, connection.createArrayOf("text", statuses));
+                    statement.setArray(index++, connection.createArrayOf("varchar", hostManifestDigests));
+                    statement.setTimestamp(index++, timestamp);
+                    statement.setTimestamp(index++, timestamp);
+                    int inserted = 0;
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            byHostId.get(rs.getString(2).trim()).setId(rs.getString(1).trim());
+                            inserted++;
+                        }
+                    }
+                    log.debug("Updated {} and inserted {} host status records", byHostId.size() - inserted, inserted);
+                } catch (SQLException ex) {
+                    throw new PersistenceException("Error during bulk update of host status", ex);
+                }
+                entityTransaction.commit();
+                break;
+            } catch (RuntimeException e) {
+                // another node stored one of the host manifests concurrently, and the
+                // second attempt skips it
+                if (attempt == 1 && !batch.isEmpty() && MwHostManifestJpaController.isUniqueViolation(e)) {
+                    log.debug("Host manifests were stored concurrently, retrying");
+                    continue;
+                }
+                throw e;
+            } finally {
+                if (entityTransaction.isActive()) {
+                    entityTransaction.rollback();
+                }
+                em.close();
+            }
+        }
+        batch.stored();
+    }
+
+    private static String jsonValue(PGobject column) {
+        return column == null ? null : column.getValue();
     }
 
     public void destroy(String id) throws NonexistentEntityException {
@@ -249,12 +338,12 @@ public class MwHostStatusJpaController implements Serializable {
     }
 
     public MwHostStatus findMwHostStatusByAikCertificate(String aikCertificate) {
-        String jsonQueryText = String.format("host_report ->> 'aik_certificate' = '%s'", aikCertificate);
         EntityManager em = getEntityManager();
         try {
             Query query = em.createNativeQuery(
-                    "SELECT * FROM mw_host_status WHERE "
-                    + jsonQueryText, MwHostStatus.class);
+                    "SELECT hs.* FROM mw_host_status hs " + HOST_MANIFEST_JOIN
+                    + " WHERE COALESCE(m.aik_certificate, hs.host_report ->> 'aik_certificate') = ?", MwHostStatus.class);
+            query.setParameter(1, aikCertificate);
             MwHostStatus mwHostStatus = (MwHostStatus) query.getSingleResult();
             return mwHostStatus;
         } catch (NoResultException e) {
@@ -269,7 +358,8 @@ public class MwHostStatusJpaController implements Serializable {
         List<String> hostList = null;
         EntityManager em = getEntityManager();
         try {
-            Query query = em.createNativeQuery("SELECT host_id FROM mw_host_status WHERE host_report::text != 'null' AND host_report -> 'host_info' ->> ? = ?");
+            Query query = em.createNativeQuery("SELECT hs.host_id FROM mw_host_status hs " + HOST_MANIFEST_JOIN
+                    + " WHERE COALESCE(m.host_info, hs.host_report -> 'host_info') ->> ? = ?");
             query.setParameter(1, key);
             query.setParameter(2, value);
 
@@ -334,7 +424,7 @@ public class MwHostStatusJpaController implements Serializable {
 
             //Build aik certificate query string and add it to the additional options query string
             if (aikCertificate != null && !aikCertificate.isEmpty()) {
-                String aikCertificateQueryString = String.format("hs.host_report ->> aik_certificate = '%s'", aikCertificate);
+                String aikCertificateQueryString = String.format("COALESCE(m.aik_certificate, hs.host_report ->> 'aik_certificate') = '%s'", aikCertificate);
                 if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
                     additionalOptionsQueryString = String.format("%s", aikCertificateQueryString);
                 } else {
@@ -347,6 +437,9 @@ public class MwHostStatusJpaController implements Serializable {
             if (tableJoinString != null && !tableJoinString.isEmpty()) {
                 formattedQuery = String.format("%s %s", formattedQuery, tableJoinString);
             }
+            if (aikCertificate != null && !aikCertificate.isEmpty()) {
+                formattedQuery = String.format("%s %s", formattedQuery, HOST_MANIFEST_JOIN);
+            }
             if (additionalOptionsQueryString != null && !additionalOptionsQueryString.isEmpty()) {
                 formattedQuery = String.format("%s WHERE %s", formattedQuery, additionalOptionsQueryString);
             }
@@ -375,6 +468,7 @@ public class MwHostStatusJpaController implements Serializable {
                 auditLogAbbrv = "auj";
             }
             String tableJoinString = null;
+            String manifestJoinString = null;
             String additionalOptionsQueryString = String.format("WHERE %s.entity_type = 'MwHostStatus' ", auditLogAbbrv);
 
             //Build table join string with host table if host identifier is set
@@ -400,13 +494,15 @@ public class MwHostStatusJpaController implements Serializable {
 
                 //Build host name partial query string and add it to the additional options query string
                 if (hostName != null && !hostName.isEmpty()) {
-                    String hostNameQueryString = String.format("%s.data -> 'columns' -> 4 -> 'value' -> 'host_info' ->> 'host_name' = '%s'", auditLogAbbrv, hostName);
+                    String hostNameQueryString = String.format("COALESCE(m.host_info, %s.data -> 'columns' -> 4 -> 'value' -> 'host_info') ->> 'host_name' = '%s'", auditLogAbbrv, hostName);
+                    manifestJoinString = String.format(AUDIT_HOST_MANIFEST_JOIN, auditLogAbbrv);
                     additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostNameQueryString);
                 }
 
                 //Build hardware uuid partial query string and add it to the additional options query string
                 if (hardwareUuid != null && !hardwareUuid.isEmpty()) {
-                    String hardwareUuidQueryString = String.format("LOWER(%s.data -> 'columns' -> 4 -> 'value' -> 'host_info' ->> 'hardware_uuid') = '%s' ", auditLogAbbrv, hardwareUuid.toLowerCase());
+                    String hardwareUuidQueryString = String.format("LOWER(COALESCE(m.host_info, %s.data -> 'columns' -> 4 -> 'value' -> 'host_info') ->> 'hardware_uuid') = '%s' ", auditLogAbbrv, hardwareUuid.toLowerCase());
+                    manifestJoinString = String.format(AUDIT_HOST_MANIFEST_JOIN, auditLogAbbrv);
                     additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hardwareUuidQueryString);
                 }
             }
@@ -425,7 +521,8 @@ public class MwHostStatusJpaController implements Serializable {
 
             //Build aik certificate query string and add it to the additional options query string
             if (aikCertificate != null && !aikCertificate.isEmpty()) {
-                String aikCertificateQueryString = String.format("%s.data -> 'columns' -> 4 -> 'value' ->> 'aik_certificate' = '%s'", auditLogAbbrv, aikCertificate);
+                String aikCertificateQueryString = String.format("COALESCE(m.aik_certificate, %s.data -> 'columns' -> 4 -> 'value' ->> 'aik_certificate') = '%s'", auditLogAbbrv, aikCertificate);
+                manifestJoinString = String.format(AUDIT_HOST_MANIFEST_JOIN, auditLogAbbrv);
                 additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, aikCertificateQueryString);
             }
 
@@ -443,6 +540,9 @@ public class MwHostStatusJpaController implements Serializable {
                 additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, toDateQueryString);
             }
 
+            if (manifestJoinString != null) {
+                additionalOptionsQueryString = String.format("%s %s", manifestJoinString, additionalOptionsQueryString);
+            }
             if (tableJoinString != null && !tableJoinString.isEmpty()) {
                 additionalOptionsQueryString = String.format("%s %s", tableJoinString, additionalOptionsQueryString);
             }
@@ -530,12 +630,18 @@ public class MwHostStatusJpaController implements Serializable {
                     created = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(createdString);
                 }
 
-                //Set host manifest if audit log entry data field has host manifest value
+                //Set host manifest if audit log entry data field has host manifest digest or, for older entries, host manifest value
                 HostManifest hostManifest = null;
+                String hostManifestDigest = null;
                 if (auditLogEntry.getData().getColumns().get(4) != null
                         && auditLogEntry.getData().getColumns().get(4).getValue() != null) {
-                    ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-                    hostManifest = mapper.convertValue(auditLogEntry.getData().getColumns().get(4).getValue(), HostManifest.class);
+                    Object hostManifestValue = auditLogEntry.getData().getColumns().get(4).getValue();
+                    if (hostManifestValue instanceof String) {
+                        hostManifestDigest = (String) hostManifestValue;
+                    } else {
+                        ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+                        hostManifest = mapper.convertValue(hostManifestValue, HostManifest.class);
+                    }
                 }
 
                 //Build host status entity object and add the object to the array list
@@ -544,6 +650,7 @@ public class MwHostStatusJpaController implements Serializable {
                 hostStatus.setHostId(hostId);
                 hostStatus.setCreated(created);
                 hostStatus.setStatus(hostStatusInformation);
+                hostStatus.setHostManifestDigest(hostManifestDigest);
                 hostStatus.setHostManifest(hostManifest);
                 hostStatusList.add(hostStatus);
             }
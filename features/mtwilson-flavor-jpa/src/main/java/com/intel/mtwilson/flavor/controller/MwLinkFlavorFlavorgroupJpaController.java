@@ -42,6 +42,7 @@ public class MwLinkFlavorFlavorgroupJpaController implements Serializable {
             em.getTransaction().begin();
             em.persist(mwLinkFlavorFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.linkSaved(mwLinkFlavorFlavorgroup);
         } catch (Exception ex) {
             if (findMwLinkFlavorFlavorgroup(mwLinkFlavorFlavorgroup.getId()) != null) {
                 throw new PreexistingEntityException("The link between flavor and flavor group " + mwLinkFlavorFlavorgroup + " already exists.", ex);
@@ -61,6 +62,7 @@ public class MwLinkFlavorFlavorgroupJpaController implements Serializable {
             em.getTransaction().begin();
             mwLinkFlavorFlavorgroup = em.merge(mwLinkFlavorFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.linkSaved(mwLinkFlavorFlavorgroup);
         } catch (Exception ex) {
             String msg = ex.getLocalizedMessage();
             if (msg == null || msg.length() == 0) {
@@ -91,6 +93,7 @@ public class MwLinkFlavorFlavorgroupJpaController implements Serializable {
             }
             em.remove(mwLinkFlavorFlavorgroup);
             em.getTransaction().commit();
+            FlavorIndex.linkDeleted(id);
         } finally {
             if (em != null) {
                 em.close();
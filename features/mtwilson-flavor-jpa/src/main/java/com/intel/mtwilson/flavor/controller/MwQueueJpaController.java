@@ -5,18 +5,30 @@
 
 package com.intel.mtwilson.flavor.controller;
 
+import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
 import com.intel.mtwilson.flavor.data.MwQueue;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
@@ -27,6 +39,7 @@ import javax.persistence.criteria.Root;
 public class MwQueueJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwQueueJpaController.class);
+    private static final long FLAVOR_VERIFY_ENQUEUE_LOCK = 0x6d775f7175657565L;
     
     public MwQueueJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -88,6 +101,79 @@ public class MwQueueJpaController implements Serializable {
         } 
     }
 
+    /**
+     * Adds a flavor-verify queue entry for each of the specified hosts in a
+     * single statement, skipping hosts that are already queued: with force
+     * update false a host is skipped if it has any flavor-verify entry, and
+     * with force update true only if it has an entry with force update true.
+     * Concurrent calls are serialized with a transaction advisory lock so two
+     * of them cannot both find a host missing and queue it twice.
+     * @param hostIds host IDs to queue
+     * @param forceUpdate value of the force_update action parameter
+     * @return IDs of the hosts that were queued
+     */
+    public List<String> createFlavorVerifyQueueEntries(List<String> hostIds, boolean forceUpdate) {
+        Set<String> uniqueHostIds = new LinkedHashSet<>();
+        for (String hostId : hostIds) {
+            if (hostId != null && !hostId.isEmpty()) {
+                uniqueHostIds.add(hostId);
+            }
+        }
+        List<String> queuedHostIds = new ArrayList<>();
+        if (uniqueHostIds.isEmpty()) {
+            return queuedHostIds;
+        }
+        String[] ids = new String[uniqueHostIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new UUID().toString();
+        }
+        Timestamp created = new Timestamp(Calendar.getInstance().getTimeInMillis());
+        EntityManager em = getEntityManager();
+        EntityTransaction entityTransaction = em.getTransaction();
+        try {
+            entityTransaction.begin();
+            Connection connection = em.unwrap(Connection.class);
+            try (PreparedStatement lock = connection.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+                lock.setLong(1, FLAVOR_VERIFY_ENQUEUE_LOCK);
+                lock.execute();
+            } catch (SQLException ex) {
+                throw new PersistenceException("Error locking flavor verify queue", ex);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO mw_queue (id, queue_action, action_parameters, created, updated, status) "
+                    + "SELECT d.id, 'flavor-verify', json_build_object('host_id', d.host_id, 'force_update', ?::text), ?, ?, 'NEW' "
+                    + "FROM unnest(?::char(36)[], ?::text[]) AS d(id, host_id) "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM mw_queue q WHERE q.queue_action = 'flavor-verify' "
+                    + "AND q.action_parameters ->> 'host_id' = d.host_id "
+                    + "AND (NOT ? OR q.action_parameters ->> 'force_update' = 'true')) "
+                    + "RETURNING action_parameters ->> 'host_id'")) {
+                statement.setString(1, String.valueOf(forceUpdate));
+                statement.setTimestamp(2, created);
+                statement.setTimestamp(3, created);
+                statement.setArray(4, connection.createArrayOf("bpchar", ids));
+                statement.setArray(5, connection.createArrayOf("text", uniqueHostIds.toArray(new String[uniqueHostIds.size()])));
+                statement.setBoolean(6, forceUpdate);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        queuedHostIds.add(rs.getString(1));
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new PersistenceException("Error during bulk insert of flavor verify queue entries", ex);
+            }
+            entityTransaction.commit();
+            log.debug("Queued {} of {} hosts for flavor verification", queuedHostIds.size(), uniqueHostIds.size());
+            return queuedHostIds;
+        } catch (RuntimeException e) {
+            if (entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
     public void edit(MwQueue mwQueue) throws NonexistentEntityException, Exception {
         EntityManager em = null;
         try {
@@ -196,6 +282,90 @@ public class MwQueueJpaController implements Serializable {
         }
     }
     
+    /**
+     * Atomically claims up to maxEntries queue entries in the NEW or RETURNED
+     * state for the specified node, moving them to PENDING and recording the
+     * claiming node and time in a single statement. Entries in the ERROR state
+     * are retried once they have not been updated for errorRetrySeconds, so a
+     * failing entry is not claimed again as soon as it fails. PENDING entries that
+     * were claimed more than claimTimeoutSeconds ago, or that were never
+     * claimed by a node, are taken over as well, so entries held by a node
+     * that stopped are not stuck forever. Rows already locked by another
+     * node's claim are skipped, so concurrent nodes never claim the same entry.
+     * The claimed rows are written to the shared cache, replacing any copies
+     * read before the claim.
+     * @param nodeId identifier of the claiming verification service node
+     * @param maxEntries maximum number of entries to claim
+     * @param claimTimeoutSeconds age after which a PENDING claim is reclaimed
+     * @param errorRetrySeconds age after which an ERROR entry is retried
+     * @return the claimed entries, oldest first
+     */
+    public List<MwQueue> claimMwQueueEntries(String nodeId, int maxEntries, int claimTimeoutSeconds, int errorRetrySeconds) {
+        EntityManager em = getEntityManager();
+        EntityTransaction entityTransaction = em.getTransaction();
+        try {
+            entityTransaction.begin();
+            Query query = em.createNativeQuery("UPDATE mw_queue SET status = 'PENDING', claimed_by = ?, claimed_at = now(), updated = now() "
+                    + "WHERE id IN (SELECT id FROM mw_queue WHERE status IN ('NEW', 'RETURNED') "
+                    + "OR (status = 'ERROR' AND updated < now() - ? * interval '1 second') "
+                    + "OR (status = 'PENDING' AND (claimed_at IS NULL OR claimed_at < now() - ? * interval '1 second')) "
+                    + "ORDER BY created LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING *", MwQueue.class);
+            query.setHint("eclipselink.refresh", "true");
+            query.setParameter(1, nodeId);
+            query.setParameter(2, errorRetrySeconds);
+            query.setParameter(3, claimTimeoutSeconds);
+            query.setParameter(4, maxEntries);
+            List<MwQueue> mwQueueList = new ArrayList<>(query.getResultList());
+            entityTransaction.commit();
+            Collections.sort(mwQueueList, new Comparator<MwQueue>() {
+                @Override
+                public int compare(MwQueue a, MwQueue b) {
+                    return a.getCreated().compareTo(b.getCreated());
+                }
+            });
+            return mwQueueList;
+        } catch (RuntimeException e) {
+            if (entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+    
+    /**
+     * Returns PENDING queue entries claimed by the specified node to the
+     * RETURNED state. Entries claimed by other nodes are left alone; they are
+     * reclaimed by {@link #claimMwQueueEntries} once their claim times out.
+     * @param nodeId identifier of the verification service node
+     * @param message message recorded on the returned entries
+     * @return number of entries returned to the queue
+     */
+    public int returnClaimedMwQueueEntries(String nodeId, String message) {
+        EntityManager em = getEntityManager();
+        EntityTransaction entityTransaction = em.getTransaction();
+        try {
+            entityTransaction.begin();
+            Query query = em.createNativeQuery("UPDATE mw_queue SET status = 'RETURNED', message = ?, claimed_by = NULL, claimed_at = NULL, updated = now() "
+                    + "WHERE status = 'PENDING' AND claimed_by = ?");
+            query.setParameter(1, message);
+            query.setParameter(2, nodeId);
+            int count = query.executeUpdate();
+            entityTransaction.commit();
+            // the update bypasses the shared cache, drop the copies it made stale
+            emf.getCache().evict(MwQueue.class);
+            return count;
+        } catch (RuntimeException e) {
+            if (entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+    
     public List<MwQueue> findMwQueueByQueueStates(List<String> queueStates) {
         List<MwQueue> mwQueueList = null;
         EntityManager em = getEntityManager();
@@ -5,15 +5,22 @@
 
 package com.intel.mtwilson.flavor.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
-import com.intel.mtwilson.audit.data.AuditLogEntry;
+import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
+import com.intel.mtwilson.flavor.converter.TrustReportConverter;
 import com.intel.mtwilson.flavor.data.MwReport;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
-import java.text.ParseException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
 import java.text.SimpleDateFormat;
@@ -25,8 +32,10 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  *
@@ -35,6 +44,9 @@ import javax.persistence.criteria.Root;
 public class MwReportJpaController implements Serializable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MwReportJpaController.class);
+    private static final int REPORT_FETCH_SIZE = 100;
+    private static final ObjectReader trustReportReader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(TrustReport.class);
+    private static final String REPORT_HISTORY_COLUMNS = "rh.report_id AS id, rh.host_id, rh.trust_report, rh.created, rh.expiration, rh.saml";
 
     public MwReportJpaController(EntityManagerFactory emf) {
         this.emf = emf;
@@ -56,6 +68,7 @@ public class MwReportJpaController implements Serializable {
             MwReport report = findMwReportByHostId(mwReport.getHostId());
             if(report == null) {
                 em.persist(mwReport);
+                createReportHistory(em, mwReport);
             } else
                 edit(mwReport);
             em.getTransaction().commit();
@@ -80,6 +93,7 @@ public class MwReportJpaController implements Serializable {
             em = getEntityManager();
             em.getTransaction().begin();
             mwReport = em.merge(mwReport);
+            createReportHistory(em, mwReport);
             em.getTransaction().commit();
         } catch (Exception ex) {
             String msg = ex.getLocalizedMessage();
@@ -182,262 +196,160 @@ public class MwReportJpaController implements Serializable {
 
     public List<MwReport> findLatestMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
             String hostState, int limit) {
-        List<MwReport> reportsList = null;
-        EntityManager em = getEntityManager();
+        ReportListHandler handler = new ReportListHandler();
         try {
-
-            //Build table join string for host table if host identifier is set
-            String tableJoinString = null;
-            if ((hostName != null && !hostName.isEmpty())
-                    || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
-                tableJoinString = String.format("INNER JOIN mw_host h on h.id = r.host_id");
-            }
-
-            //Build table join string for host status statble if host state is set 
-            if (hostState != null && !hostState.isEmpty()) {
-                if (tableJoinString == null || tableJoinString.isEmpty()) {
-                    tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = r.host_id");
-                } else {
-                    tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = r.host_id", tableJoinString);
-                }
-            }
-
-            String hostIdentifierQueryString = hostIdentifierQueryString(hostName, hardwareUuid);
-            String additionalOptionsQueryString = null;
-
-            // Build the additional options query string if host identifier is set
-            if (hostIdentifierQueryString != null && !hostIdentifierQueryString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s", hostIdentifierQueryString);
-            }
-
-            //Build host id partial query string and add it to the additional options query string
-            if (hostId != null && !hostId.isEmpty()) {
-                String hostIdQueryString = String.format("r.host_id = '%s'", hostId);
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", hostIdQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
-                }
-            }
-
-            //Build host state partial query string and add it to the additional options query string
-            if (hostState != null && !hostState.isEmpty()) {
-                String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", hostStateQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
-                }
-            }
-
-            //Build reports id partial query string and add it to the additional options query string
-            if (reportId != null && !reportId.isEmpty()) {
-                String reportIdQueryString = String.format("r.id = '%s'", reportId);
-                if (additionalOptionsQueryString == null || additionalOptionsQueryString.isEmpty()) {
-                    additionalOptionsQueryString = String.format("%s", reportIdQueryString);
-                } else {
-                    additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, reportIdQueryString);
-                }
-            }
-
-            // build final formatted string with additional options string and the table join string
-            String formattedQuery = "SELECT r.* FROM mw_report r";
-            if (tableJoinString != null && !tableJoinString.isEmpty()) {
-                formattedQuery = String.format("%s %s", formattedQuery, tableJoinString);
-            }
-            if (additionalOptionsQueryString != null && !additionalOptionsQueryString.isEmpty()) {
-                formattedQuery = String.format("%s WHERE %s", formattedQuery, additionalOptionsQueryString);
-            }
-
-            Query query = em.createNativeQuery(formattedQuery, MwReport.class);
-            query.setMaxResults(limit);
-            if (query.getResultList() != null && !query.getResultList().isEmpty()) {
-                reportsList = query.getResultList();
-            }
-            return reportsList;
-        } finally {
-            em.close();
+            streamLatestMwReport(reportId, hostId, hostName, hardwareUuid, hostState, limit, handler);
+        } catch (IOException ex) {
+            log.error("Error converting report to reports entity", ex);
+            return null;
         }
+        return handler.getReports();
     }
 
     public List<MwReport> findMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
             String hostState, Date fromDate, Date toDate, boolean latestPerHost, int limit) {
-
-        EntityManager em = getEntityManager();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
+        ReportListHandler handler = new ReportListHandler();
         try {
+            streamMwReport(reportId, hostId, hostName, hardwareUuid, hostState, fromDate, toDate, latestPerHost, limit, handler);
+        } catch (IOException ex) {
+            log.error("Error converting report history to reports entity", ex);
+            return null;
+        }
+        return handler.getReports();
+    }
 
-            String auditLogAbbrv = "au";
-            if (latestPerHost) {
-                auditLogAbbrv = "auj";
-            }
-            String tableJoinString = null;
-            String hostIdentifierString = null;
-            String additionalOptionsQueryString = String.format("WHERE %s.entity_type = 'MwReport'", auditLogAbbrv);
-
-            //Build table join string with host table if host identifier is set
-            if ((hostName != null && !hostName.isEmpty())
-                    || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
-                tableJoinString = String.format("INNER JOIN mw_host h on h.id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
-                hostIdentifierString = hostIdentifierQueryString(hostName, hardwareUuid);
-            }
-
-            //Build table join string with host status table if host state identifier is set
-            if (hostState != null && !hostState.isEmpty()) {
-                if (tableJoinString == null || tableJoinString.isEmpty()) {
-                    tableJoinString = String.format("INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", auditLogAbbrv);
-                } else {
-                    tableJoinString = String.format("%s INNER JOIN mw_host_status hs on hs.host_id = %s.data -> 'columns' -> 1 ->> 'value'", tableJoinString, auditLogAbbrv);
-                }
-            }
-
-            //Build additional options query string if host identifier is set
-            if (hostIdentifierString != null && !hostIdentifierString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdentifierString);
-            }
-
-            //Build host ID partial query string and add it to the additional options query string
-            if (hostId != null && !hostId.isEmpty()) {
-                String hostIdQueryString = String.format("%s.data -> 'columns' -> 1 ->> 'value' = '%s'", auditLogAbbrv, hostId);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostIdQueryString);
-            }
-
-            //Build host state partial query string and add it to the additional options query string
-            if (hostState != null && !hostState.isEmpty()) {
-                String hostStateQueryString = String.format("hs.status ->> 'host_state' = '%s'", hostState.toUpperCase());
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, hostStateQueryString);
-            }
-
-            //Build from date query string and add it to the additional options query string
-            if (fromDate != null) {
-                //Using created column itself to make query faster
-                String fromDateQueryString = String.format("CAST(%s.created AS TIMESTAMP) >= CAST(? AS TIMESTAMP)", auditLogAbbrv);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, fromDateQueryString);
-            }
-
-            //Build to date and add it to the additional options query string
-            if (toDate != null) {
-                //Using created column itself to make query faster
-                String toDateQueryString = String.format("CAST(%s.created AS TIMESTAMP) <= CAST(? AS TIMESTAMP)", auditLogAbbrv);
-                additionalOptionsQueryString = String.format("%s AND %s", additionalOptionsQueryString, toDateQueryString);
-            }
+    /**
+     * Passes the current report of each matching host to the handler as it
+     * is read from the database, without holding the results in memory.
+     */
+    public void streamLatestMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, int limit, MwReportHandler handler) throws IOException {
+        try (MwReportCursor cursor = openLatestMwReport(reportId, hostId, hostName, hardwareUuid, hostState, limit)) {
+            cursor.forEach(handler);
+        }
+    }
 
-            //Add table join string to additional options query string
-            if (tableJoinString != null && !tableJoinString.isEmpty()) {
-                additionalOptionsQueryString = String.format("%s %s", tableJoinString, additionalOptionsQueryString);
-            }
+    /**
+     * Passes each matching report in the report history to the handler as it
+     * is read from the database, without holding the results in memory.
+     */
+    public void streamMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, Date fromDate, Date toDate, boolean latestPerHost, int limit, MwReportHandler handler) throws IOException {
+        try (MwReportCursor cursor = openMwReport(reportId, hostId, hostName, hardwareUuid, hostState, fromDate, toDate, latestPerHost, limit)) {
+            cursor.forEach(handler);
+        }
+    }
 
-            //Build final formatted query string
-            String formattedQuery = String.format("SELECT au.* "
-                    + "FROM mw_audit_log_entry au");
-
-            // Build final formatted query string for latest per host filter criteria
-            if (latestPerHost) {
-                //Using created column itself to make query faster
-                String maxDateQueryString = String.format("INNER JOIN (SELECT entity_id, max(auj.created) AS max_date "
-                        + "FROM mw_audit_log_entry auj %s GROUP BY entity_id)a "
-                        + "ON a.entity_id = au.entity_id "
-                        + "AND a.max_date = au.created", additionalOptionsQueryString);
-                formattedQuery = String.format("%s %s ORDER BY au.created DESC", formattedQuery, maxDateQueryString);
-            } else {
-                formattedQuery = String.format("%s %s", formattedQuery, additionalOptionsQueryString);
-            }
+    /**
+     * Opens a cursor over the current report of each matching host. The
+     * cursor holds a database connection until it is closed.
+     */
+    public MwReportCursor openLatestMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, int limit) {
+        ReportQuery reportQuery = new ReportQuery("r", hostName, hardwareUuid, hostState);
+        reportQuery.and("r.host_id = ?", hostId);
+        reportQuery.and("r.id = ?", reportId);
+        String formattedQuery = String.format("SELECT r.id, r.host_id, r.trust_report, r.created, r.expiration, r.saml FROM mw_report r%s",
+                reportQuery.getFromString());
+        return openReports(formattedQuery, reportQuery.parameters, limit);
+    }
 
-            List<AuditLogEntry> auditLogEntryList = null;
+    /**
+     * Opens a cursor over the matching reports in the report history. The
+     * cursor holds a database connection until it is closed.
+     */
+    public MwReportCursor openMwReport(String reportId, String hostId, String hostName, String hardwareUuid,
+            String hostState, Date fromDate, Date toDate, boolean latestPerHost, int limit) {
+        ReportQuery reportQuery = new ReportQuery("rh", hostName, hardwareUuid, hostState);
+        reportQuery.and("rh.host_id = ?", hostId);
+        reportQuery.and("rh.report_id = ?", reportId);
+        reportQuery.and("rh.created >= ?", fromDate == null ? null : new Timestamp(fromDate.getTime()));
+        reportQuery.and("rh.created <= ?", toDate == null ? null : new Timestamp(toDate.getTime()));
+        String formattedQuery;
+        if (latestPerHost) {
+            formattedQuery = String.format("SELECT * FROM (SELECT DISTINCT ON (rh.host_id) %s FROM mw_report_history rh%s ORDER BY rh.host_id, rh.created DESC) latest "
+                    + "ORDER BY latest.created DESC", REPORT_HISTORY_COLUMNS, reportQuery.getFromString());
+        } else {
+            formattedQuery = String.format("SELECT %s FROM mw_report_history rh%s ORDER BY rh.created DESC", REPORT_HISTORY_COLUMNS, reportQuery.getFromString());
+        }
+        return openReports(formattedQuery, reportQuery.parameters, limit);
+    }
 
-            Query query = em.createNativeQuery(formattedQuery, AuditLogEntry.class);
-            if (fromDate != null) {
-                query.setParameter(1, dateFormat.format(fromDate));
-            }
-            if (toDate != null) {
-                if (fromDate == null) {
-                    query.setParameter(1, dateFormat.format(toDate));
-                } else {
-                    query.setParameter(2, dateFormat.format(toDate));
+    private MwReportCursor openReports(String formattedQuery, List<Object> parameters, int limit) {
+        EntityManager em = getEntityManager();
+        PreparedStatement statement = null;
+        try {
+            // the PostgreSQL driver only reads results in batches of the fetch size within a transaction
+            em.getTransaction().begin();
+            statement = em.unwrap(Connection.class).prepareStatement(formattedQuery);
+            statement.setFetchSize(REPORT_FETCH_SIZE);
+            if (limit > 0) {
+                statement.setMaxRows(limit);
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            return new MwReportCursor(em, statement, statement.executeQuery());
+        } catch (SQLException | RuntimeException ex) {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    log.debug("Cannot close report search statement", e);
                 }
             }
-
-            query.setMaxResults(limit);
-            if (query.getResultList() != null && !query.getResultList().isEmpty()) {
-                auditLogEntryList = query.getResultList();
-
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
             }
-
-            return convertToReport(auditLogEntryList);
-
-        } finally {
             em.close();
+            if (ex instanceof SQLException) {
+                throw new PersistenceException("Error during search for reports", ex);
+            }
+            throw (RuntimeException) ex;
         }
     }
 
-    private List<MwReport> convertToReport(List<AuditLogEntry> auditLogEntryList) {
-        List<MwReport> reportsList = new ArrayList();
-        if (auditLogEntryList == null || auditLogEntryList.isEmpty()) {
-            return null;
+    /**
+     * Adds the report to the report history. The history is append-only and
+     * is kept in monthly partitions, one row per stored report.
+     */
+    private void createReportHistory(EntityManager em, MwReport mwReport) {
+        if (mwReport.getTrustReport() == null) {
+            return;
         }
+        Query query = em.createNativeQuery("INSERT INTO mw_report_history "
+                + "(id, report_id, host_id, created, expiration, trusted, trust_report, saml) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        query.setParameter(1, new UUID().toString());
+        query.setParameter(2, mwReport.getId());
+        query.setParameter(3, mwReport.getHostId());
+        query.setParameter(4, new Timestamp(mwReport.getCreated().getTime()));
+        query.setParameter(5, new Timestamp(mwReport.getExpiration().getTime()));
+        query.setParameter(6, mwReport.getTrustReport().isTrusted());
+        query.setParameter(7, new TrustReportConverter().convertToDatabaseColumn(mwReport.getTrustReport()));
+        query.setParameter(8, mwReport.getSaml());
+        query.executeUpdate();
+    }
 
+    /**
+     * Drops the monthly report history partitions older than the specified
+     * number of months before the current month.
+     * @return the number of partitions dropped
+     */
+    public int dropReportHistoryPartitions(int retentionMonths) {
+        EntityManager em = getEntityManager();
         try {
-            for (AuditLogEntry auditLogEntry : auditLogEntryList) {
-                if (auditLogEntry == null
-                        || auditLogEntry.getData() == null
-                        || auditLogEntry.getData().getColumns() == null) {
-                    continue;
-                }
-
-                String reportId = null;
-                if (auditLogEntry.getEntityId() != null
-                        && !auditLogEntry.getEntityId().isEmpty()) {
-                    reportId = auditLogEntry.getEntityId();
-                }
-
-                String hostId = null;
-                if (auditLogEntry.getData().getColumns().get(1) != null
-                        && auditLogEntry.getData().getColumns().get(1).getValue() != null) {
-                    hostId = auditLogEntry.getData().getColumns().get(1).getValue().toString();
-                }
-
-                TrustReport trustReport = null;
-                if (auditLogEntry.getData().getColumns().get(2) != null
-                        && auditLogEntry.getData().getColumns().get(2).getValue() != null) {
-                    ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-                    trustReport = mapper.convertValue(auditLogEntry.getData().getColumns().get(2).getValue(), TrustReport.class);
-                }
-
-                Date created = null;
-                if (auditLogEntry.getData().getColumns().get(3) != null
-                        && auditLogEntry.getData().getColumns().get(3).getValue() != null) {
-                    String createdString = auditLogEntry.getData().getColumns().get(3).getValue().toString();
-                    created = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(createdString);
-                }
-
-                Date expiration = null;
-                if (auditLogEntry.getData().getColumns().get(4) != null
-                        && auditLogEntry.getData().getColumns().get(4).getValue() != null) {
-                    String expirationString = auditLogEntry.getData().getColumns().get(4).getValue().toString();
-                    expiration = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(expirationString);
-                }
-
-                String saml = null;
-                if (auditLogEntry.getData().getColumns().get(5) != null
-                        && auditLogEntry.getData().getColumns().get(5).getValue() != null) {
-                    saml = auditLogEntry.getData().getColumns().get(5).getValue().toString();
-                }
-
-                MwReport report = new MwReport();
-                report.setId(reportId);
-                report.setHostId(hostId);
-                report.setTrustReport(trustReport);
-                report.setCreated(created);
-                report.setExpiration(expiration);
-                report.setSaml(saml);
-                reportsList.add(report);
+            em.getTransaction().begin();
+            Query query = em.createNativeQuery("SELECT drop_mw_report_history_partitions(?)");
+            query.setParameter(1, retentionMonths);
+            int dropped = ((Number) query.getSingleResult()).intValue();
+            em.getTransaction().commit();
+            return dropped;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
             }
-        } catch (ParseException ex) {
-            log.error("Error converting audit log entry entity to reports entity", ex);
+            em.close();
         }
-
-        return reportsList;
     }
 
     /* *
@@ -464,27 +376,127 @@ public class MwReportJpaController implements Serializable {
         }
     }
 
-    private String hostIdentifierQueryString(String hostName, String hardwareUuid) {
+    /**
+     * Receives the reports found by a report search, one at a time.
+     */
+    public interface MwReportHandler {
+        void handle(MwReport mwReport) throws IOException;
+    }
 
-        String hostIdentifierQueryString = null;
+    /**
+     * Reports found by a report search, read from the database one at a time
+     * as they are requested. Closing the cursor ends the read-only
+     * transaction and returns the connection.
+     */
+    public static class MwReportCursor implements Closeable {
+        private final EntityManager em;
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+
+        private MwReportCursor(EntityManager em, PreparedStatement statement, ResultSet rs) {
+            this.em = em;
+            this.statement = statement;
+            this.rs = rs;
+        }
 
-        //Build host name partial query string and add it to the additional options query string
-        if (hostName != null && !hostName.isEmpty()) {
-            String hostNameQueryString = String.format("h.name = '%s'", hostName);
-            hostIdentifierQueryString = String.format("%s", hostNameQueryString);
+        /**
+         * Returns the next report, or null if there are no more reports.
+         */
+        public MwReport next() throws IOException {
+            try {
+                if (!rs.next()) {
+                    return null;
+                }
+                MwReport report = new MwReport();
+                report.setId(rs.getString("id").trim());
+                report.setHostId(rs.getString("host_id").trim());
+                report.setTrustReport(trustReportReader.<TrustReport>readValue(rs.getString("trust_report")));
+                report.setCreated(rs.getTimestamp("created"));
+                report.setExpiration(rs.getTimestamp("expiration"));
+                report.setSaml(rs.getString("saml"));
+                return report;
+            } catch (SQLException ex) {
+                throw new PersistenceException("Error during search for reports", ex);
+            }
         }
 
-        //Build hardware uuid partial query string and add it to the additional options query string
-        if (hardwareUuid != null && !hardwareUuid.isEmpty()) {
-            String hardwareUuidQueryString = String.format("h.hardware_uuid = '%s'", hardwareUuid);
-            if (hostIdentifierQueryString == null || hostIdentifierQueryString.isEmpty()) {
-                hostIdentifierQueryString = String.format("%s", hardwareUuidQueryString);
-            } else {
-                hostIdentifierQueryString = String.format("%s AND %s", hostIdentifierQueryString, hardwareUuidQueryString);
+        private void forEach(MwReportHandler handler) throws IOException {
+            MwReport report;
+            while ((report = next()) != null) {
+                handler.handle(report);
             }
         }
 
-        return hostIdentifierQueryString;
+        @Override
+        public void close() {
+            try {
+                rs.close();
+                statement.close();
+            } catch (SQLException ex) {
+                log.debug("Cannot close report search statement", ex);
+            } finally {
+                try {
+                    if (em.getTransaction().isActive()) {
+                        em.getTransaction().rollback();
+                    }
+                } finally {
+                    em.close();
+                }
+            }
+        }
     }
 
+    private static class ReportListHandler implements MwReportHandler {
+        private final List<MwReport> reports = new ArrayList<>();
+
+        @Override
+        public void handle(MwReport mwReport) {
+            reports.add(mwReport);
+        }
+
+        private List<MwReport> getReports() {
+            return reports.isEmpty() ? null : reports;
+        }
+    }
+
+    /**
+     * Table joins and parameterized conditions shared by the report searches.
+     */
+    private static class ReportQuery {
+        private final String tableJoinString;
+        private final List<String> conditions = new ArrayList<>();
+        private final List<Object> parameters = new ArrayList<>();
+
+        private ReportQuery(String alias, String hostName, String hardwareUuid, String hostState) {
+            String joins = "";
+            //Build table join string with host table if host identifier is set
+            if ((hostName != null && !hostName.isEmpty())
+                    || (hardwareUuid != null && !hardwareUuid.isEmpty())) {
+                joins = String.format(" INNER JOIN mw_host h ON h.id = %s.host_id", alias);
+            }
+            //Build table join string with host status table if host state is set
+            if (hostState != null && !hostState.isEmpty()) {
+                joins = String.format("%s INNER JOIN mw_host_status hs ON hs.host_id = %s.host_id", joins, alias);
+            }
+            this.tableJoinString = joins;
+            and("h.name = ?", hostName);
+            and("h.hardware_uuid = ?", hardwareUuid);
+            and("hs.status ->> 'host_state' = ?", hostState == null ? null : hostState.toUpperCase());
+        }
+
+        private void and(String condition, Object value) {
+            if (value == null || (value instanceof String && ((String) value).isEmpty())) {
+                return;
+            }
+            conditions.add(condition);
+            parameters.add(value);
+        }
+
+        private String getFromString() {
+            if (conditions.isEmpty()) {
+                return tableJoinString;
+            }
+            return String.format("%s WHERE %s", tableJoinString, StringUtils.join(conditions, " AND "));
+        }
+    }
 }
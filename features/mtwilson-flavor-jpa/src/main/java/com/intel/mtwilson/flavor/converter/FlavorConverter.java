@@ -7,7 +7,8 @@ package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.Module;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.intel.dcsg.cpg.extensions.Extensions;
 import com.intel.mtwilson.core.flavor.model.Flavor;
@@ -29,17 +30,22 @@ import org.slf4j.LoggerFactory;
 @Converter
 public class FlavorConverter implements AttributeConverter<Flavor, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(FlavorConverter.class);
+    private static final ObjectReader reader;
+    private static final ObjectWriter writer;
+
+    static {
+        Extensions.register(Module.class, BouncyCastleModule.class);
+        Extensions.register(Module.class, ValidationModule.class);
+        reader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(Flavor.class);
+        writer = JacksonObjectMapperProvider.createDefaultMapper().writer().without(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+    }
     
     @Override
     public PGobject convertToDatabaseColumn(Flavor flavor) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            Extensions.register(Module.class, BouncyCastleModule.class);
-            Extensions.register(Module.class, ValidationModule.class);
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-            po.setValue(mapper.writeValueAsString(flavor));
+            po.setValue(writer.writeValueAsString(flavor));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert flavor model to postgresql object", e);
@@ -50,8 +56,7 @@ public class FlavorConverter implements AttributeConverter<Flavor, PGobject> {
     @Override
     public Flavor convertToEntityAttribute(PGobject po) {
         try {
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            return mapper.readValue(po.getValue(), Flavor.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to flavor model", e);
             return null;
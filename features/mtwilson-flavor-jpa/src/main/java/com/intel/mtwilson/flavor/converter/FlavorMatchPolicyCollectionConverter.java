@@ -6,7 +6,8 @@
 package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.intel.mtwilson.flavor.model.FlavorMatchPolicyCollection;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import java.io.IOException;
@@ -24,14 +25,15 @@ import org.slf4j.LoggerFactory;
 @Converter
 public class FlavorMatchPolicyCollectionConverter implements AttributeConverter<FlavorMatchPolicyCollection, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(FlavorMatchPolicyCollectionConverter.class);
+    private static final ObjectReader reader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(FlavorMatchPolicyCollection.class);
+    private static final ObjectWriter writer = JacksonObjectMapperProvider.createDefaultMapper().writer();
     
     @Override
     public PGobject convertToDatabaseColumn(FlavorMatchPolicyCollection flavorMatchPolicyCollection) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            po.setValue(mapper.writeValueAsString(flavorMatchPolicyCollection));
+            po.setValue(writer.writeValueAsString(flavorMatchPolicyCollection));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert flavor match policy collection model to postgresql object", e);
@@ -42,8 +44,7 @@ public class FlavorMatchPolicyCollectionConverter implements AttributeConverter<
     @Override
     public FlavorMatchPolicyCollection convertToEntityAttribute(PGobject po) {
         try {
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            return mapper.readValue(po.getValue(), FlavorMatchPolicyCollection.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to flavor match policy collection model", e);
             return null;
@@ -6,7 +6,8 @@
 package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import com.intel.mtwilson.core.common.model.HostManifest;
 import java.io.IOException;
@@ -24,14 +25,15 @@ import org.slf4j.LoggerFactory;
 @Converter
 public class HostManifestConverter implements AttributeConverter<HostManifest, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(HostManifestConverter.class);
+    private static final ObjectReader reader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(HostManifest.class);
+    private static final ObjectWriter writer = JacksonObjectMapperProvider.createDefaultMapper().writer();
     
     @Override
     public PGobject convertToDatabaseColumn(HostManifest hostManifest) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            po.setValue(mapper.writeValueAsString(hostManifest));
+            po.setValue(writer.writeValueAsString(hostManifest));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert host manifest model to postgresql object", e);
@@ -45,8 +47,7 @@ public class HostManifestConverter implements AttributeConverter<HostManifest, P
             if(po == null){
                 return null;
             }
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            return mapper.readValue(po.getValue(), HostManifest.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to host manifest model", e);
             return null;
@@ -7,7 +7,8 @@
 package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import java.io.IOException;
 import java.sql.SQLException;
@@ -25,14 +26,15 @@ import com.intel.mtwilson.flavor.model.HostStatusInformation;
 @Converter
 public class HostStatusConverter implements AttributeConverter<HostStatusInformation, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(HostManifestConverter.class);
+    private static final ObjectReader reader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(HostStatusInformation.class);
+    private static final ObjectWriter writer = JacksonObjectMapperProvider.createDefaultMapper().writer();
     
     @Override
     public PGobject convertToDatabaseColumn(HostStatusInformation hostStatus) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            po.setValue(mapper.writeValueAsString(hostStatus));
+            po.setValue(writer.writeValueAsString(hostStatus));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert host status model to postgresql object", e);
@@ -43,8 +45,7 @@ public class HostStatusConverter implements AttributeConverter<HostStatusInforma
     @Override
     public HostStatusInformation convertToEntityAttribute(PGobject po) {
         try {
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            return mapper.readValue(po.getValue(), HostStatusInformation.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to host status model", e);
             return null;
@@ -7,6 +7,8 @@ package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Map;
@@ -23,13 +25,15 @@ import org.slf4j.LoggerFactory;
 @Converter
 public class StringMapConverter implements AttributeConverter<Map<String, String>, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(StringMapConverter.class);
+    private static final ObjectReader reader = new ObjectMapper().readerFor(Map.class);
+    private static final ObjectWriter writer = new ObjectMapper().writer();
     
     @Override
     public PGobject convertToDatabaseColumn(Map<String, String> stringMap) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            po.setValue((new ObjectMapper()).writeValueAsString(stringMap));
+            po.setValue(writer.writeValueAsString(stringMap));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert string map to postgresql object", e);
@@ -40,7 +44,7 @@ public class StringMapConverter implements AttributeConverter<Map<String, String
     @Override
     public Map<String, String> convertToEntityAttribute(PGobject po) {
         try {
-            return (new ObjectMapper()).readValue(po.getValue(), Map.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to string map", e);
             return null;
@@ -6,7 +6,8 @@
 package com.intel.mtwilson.flavor.converter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import java.io.IOException;
@@ -24,14 +25,15 @@ import org.slf4j.LoggerFactory;
 @Converter
 public class TrustReportConverter implements AttributeConverter<TrustReport, PGobject> {
     private static final Logger log = LoggerFactory.getLogger(TrustReportConverter.class);
+    private static final ObjectReader reader = JacksonObjectMapperProvider.createDefaultMapper().readerFor(TrustReport.class);
+    private static final ObjectWriter writer = JacksonObjectMapperProvider.createDefaultMapper().writer();
     
     @Override
     public PGobject convertToDatabaseColumn(TrustReport trustReport) {
         try {
             PGobject po = new PGobject();
             po.setType("json");
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            po.setValue(mapper.writeValueAsString(trustReport));
+            po.setValue(writer.writeValueAsString(trustReport));
             return po;
         } catch (JsonProcessingException | SQLException e) {
             log.error("Could not convert trust report model to postgresql object", e);
@@ -42,8 +44,7 @@ public class TrustReportConverter implements AttributeConverter<TrustReport, PGo
     @Override
     public TrustReport convertToEntityAttribute(PGobject po) {
         try {
-            ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
-            return mapper.readValue(po.getValue(), TrustReport.class);
+            return reader.readValue(po.getValue());
         } catch (IOException e) {
             log.error("Could not convert postgresql object to trust report model", e);
             return null;
@@ -59,6 +59,30 @@ public class MwFlavor implements Serializable {
     @Column(name = "created")
     @Temporal(TemporalType.TIMESTAMP)
     private Date created;
+
+    @Column(name = "flavor_part")
+    private String flavorPart;
+
+    @Column(name = "os_name")
+    private String osName;
+
+    @Column(name = "os_version")
+    private String osVersion;
+
+    @Column(name = "vmm_name")
+    private String vmmName;
+
+    @Column(name = "vmm_version")
+    private String vmmVersion;
+
+    @Column(name = "tboot_installed")
+    private String tbootInstalled;
+
+    @Column(name = "hardware_uuid")
+    private String hardwareUuid;
+
+    @Column(name = "feature_mask")
+    private Integer featureMask;
     
     public MwFlavor() {
     }
@@ -133,6 +157,70 @@ public class MwFlavor implements Serializable {
 
     public void setSignature(String signature) { this.signature = signature; }
 
+    public String getFlavorPart() {
+        return flavorPart;
+    }
+
+    public void setFlavorPart(String flavorPart) {
+        this.flavorPart = flavorPart;
+    }
+
+    public String getOsName() {
+        return osName;
+    }
+
+    public void setOsName(String osName) {
+        this.osName = osName;
+    }
+
+    public String getOsVersion() {
+        return osVersion;
+    }
+
+    public void setOsVersion(String osVersion) {
+        this.osVersion = osVersion;
+    }
+
+    public String getVmmName() {
+        return vmmName;
+    }
+
+    public void setVmmName(String vmmName) {
+        this.vmmName = vmmName;
+    }
+
+    public String getVmmVersion() {
+        return vmmVersion;
+    }
+
+    public void setVmmVersion(String vmmVersion) {
+        this.vmmVersion = vmmVersion;
+    }
+
+    public String getTbootInstalled() {
+        return tbootInstalled;
+    }
+
+    public void setTbootInstalled(String tbootInstalled) {
+        this.tbootInstalled = tbootInstalled;
+    }
+
+    public String getHardwareUuid() {
+        return hardwareUuid;
+    }
+
+    public void setHardwareUuid(String hardwareUuid) {
+        this.hardwareUuid = hardwareUuid;
+    }
+
+    public Integer getFeatureMask() {
+        return featureMask;
+    }
+
+    public void setFeatureMask(Integer featureMask) {
+        this.featureMask = featureMask;
+    }
+
     @Override
     public int hashCode() {
         int hash = 0;
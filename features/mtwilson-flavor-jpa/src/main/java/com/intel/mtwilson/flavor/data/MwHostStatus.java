@@ -25,6 +25,7 @@ import javax.persistence.TemporalType;
 import javax.xml.bind.annotation.XmlRootElement;
 import org.eclipse.persistence.annotations.Customizer;
 import com.intel.mtwilson.audit.handler.AuditEventHandler;
+import com.intel.mtwilson.audit.annotations.AuditIgnore;
 
 /**
  *
@@ -60,8 +61,14 @@ public class MwHostStatus implements Serializable {
     @Temporal(TemporalType.TIMESTAMP)
     private Date created;
     @Basic(optional = true)
+    @Column(name = "host_manifest_digest")
+    private String hostManifestDigest;
+    // only read for records written before host manifests were stored in
+    // mw_host_manifest; new records reference the manifest by digest
+    @AuditIgnore
+    @Basic(optional = true)
     @Lob
-    @Column(name = "host_report", columnDefinition = "json")
+    @Column(name = "host_report", columnDefinition = "json", insertable = false, updatable = false)
     @Convert(converter = HostManifestConverter.class)
     private HostManifest hostManifest;
 
@@ -117,6 +124,14 @@ public class MwHostStatus implements Serializable {
         this.created = created;
     }
     
+    public String getHostManifestDigest() {
+        return hostManifestDigest;
+    }
+
+    public void setHostManifestDigest(String hostManifestDigest) {
+        this.hostManifestDigest = hostManifestDigest;
+    }
+
     public HostManifest getHostManifest() {
         return hostManifest;
     }
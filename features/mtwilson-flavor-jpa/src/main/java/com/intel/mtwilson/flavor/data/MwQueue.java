@@ -64,6 +64,11 @@ public class MwQueue implements Serializable {
     @Basic(optional = false)
     @Column(name = "message")
     private String message;
+    @Column(name = "claimed_by")
+    private String claimedBy;
+    @Column(name = "claimed_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date claimedAt;
     
     public MwQueue() { }
     
@@ -141,6 +146,22 @@ public class MwQueue implements Serializable {
         this.message = message;
     }
     
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+    
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+    
+    public Date getClaimedAt() {
+        return claimedAt;
+    }
+    
+    public void setClaimedAt(Date claimedAt) {
+        this.claimedAt = claimedAt;
+    }
+    
     @Override
     public int hashCode() {
         int hash = 0;
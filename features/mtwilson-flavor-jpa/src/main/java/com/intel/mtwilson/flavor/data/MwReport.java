@@ -66,6 +66,10 @@ public class MwReport implements Serializable {
     @Basic(optional = false)
     @Column(name = "saml")
     private String saml;
+    @Column(name = "host_manifest_digest")
+    private String hostManifestDigest;
+    @Column(name = "flavor_digest")
+    private String flavorDigest;
 
     public MwReport() {
     }
@@ -131,6 +135,22 @@ public class MwReport implements Serializable {
         this.saml = saml;
     }
 
+    public String getHostManifestDigest() {
+        return hostManifestDigest;
+    }
+
+    public void setHostManifestDigest(String hostManifestDigest) {
+        this.hostManifestDigest = hostManifestDigest;
+    }
+
+    public String getFlavorDigest() {
+        return flavorDigest;
+    }
+
+    public void setFlavorDigest(String flavorDigest) {
+        this.flavorDigest = flavorDigest;
+    }
+
     @Override
     public int hashCode() {
         int hash = 0;
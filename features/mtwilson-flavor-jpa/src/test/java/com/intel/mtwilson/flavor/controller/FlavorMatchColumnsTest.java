@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.core.flavor.model.Flavor;
+import com.intel.mtwilson.flavor.data.MwFlavor;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+
+/**
+ * Checks the feature mask of a flavor matches the same hosts as the JSON
+ * conditions on the flavor's hardware features that it replaced.
+ */
+public class FlavorMatchColumnsTest {
+    private final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+
+    @Test
+    public void testEnabledFeatures() throws Exception {
+        ObjectNode flavor = readFlavor();
+        int featureMask = getFeatureMask(flavor);
+        assertEquals(FlavorMatchColumns.getFeatureBits("tpm", true) | FlavorMatchColumns.getFeatureBits("txt", true), featureMask);
+        assertEquals(0, featureMask & FlavorMatchColumns.getFeatureMask("cbnt"));
+    }
+
+    @Test
+    public void testDisabledFeature() throws Exception {
+        ObjectNode flavor = readFlavor();
+        ((ObjectNode) flavor.path("hardware").path("feature").path("tpm")).put("enabled", false);
+        int featureMask = getFeatureMask(flavor);
+        assertEquals(FlavorMatchColumns.getFeatureBits("tpm", false), featureMask & FlavorMatchColumns.getFeatureMask("tpm"));
+    }
+
+    @Test
+    public void testFeatureWithoutEnabledMatchesNoHost() throws Exception {
+        ObjectNode flavor = readFlavor();
+        ((ObjectNode) flavor.path("hardware").path("feature").path("tpm")).remove("enabled");
+        int tpmBits = getFeatureMask(flavor) & FlavorMatchColumns.getFeatureMask("tpm");
+        // hosts with the feature enabled, disabled or missing all ask for other bits
+        assertNotEquals(FlavorMatchColumns.getFeatureBits("tpm", true), tpmBits);
+        assertNotEquals(FlavorMatchColumns.getFeatureBits("tpm", false), tpmBits);
+        assertNotEquals(0, tpmBits);
+    }
+
+    private ObjectNode readFlavor() throws Exception {
+        String flavorJson = Resources.toString(Resources.getResource("rhel-bios-flavor-test.json"), Charsets.UTF_8);
+        return (ObjectNode) mapper.readTree(flavorJson);
+    }
+
+    private int getFeatureMask(ObjectNode flavor) throws Exception {
+        MwFlavor mwFlavor = new MwFlavor(new UUID().toString(), mapper.treeToValue(flavor, Flavor.class));
+        FlavorMatchColumns.apply(mwFlavor);
+        return mwFlavor.getFeatureMask();
+    }
+}
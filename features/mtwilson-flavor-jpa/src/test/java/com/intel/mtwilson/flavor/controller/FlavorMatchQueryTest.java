@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.core.common.model.AttestationExemptFeature;
+import com.intel.mtwilson.core.common.model.HardwareFeature;
+import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.core.flavor.common.FlavorPart;
+import com.intel.mtwilson.flavor.data.MwFlavor;
+import com.intel.mtwilson.flavor.data.MwFlavorgroup;
+import com.intel.mtwilson.flavor.utils.HostMeasurementUtils;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import static com.intel.mtwilson.core.flavor.common.FlavorPart.*;
+import static java.util.Optional.ofNullable;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the flavors found by the parameterized flavor match query with
+ * those found by the query text built from host manifest values that it
+ * replaced, across a set of representative host manifests and flavor part
+ * combinations.
+ */
+public class FlavorMatchQueryTest {
+    private static final Logger log = LoggerFactory.getLogger(FlavorMatchQueryTest.class);
+    
+    private static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "org.postgresql.Driver";
+    private static final String JAVAX_PERSISTENCE_JDBC_URL = "jdbc:postgresql://192.168.0.1:5432/mw_as";
+    private static final String JAVAX_PERSISTENCE_JDBC_USER = "root";
+    private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "password";
+    
+    private static final String PERSISTENCE_UNIT_NAME = "FlavorDataPU";
+    private static EntityManagerFactory emf;
+    private static MwFlavorJpaController mwFlavorJpaController;
+    private static MwFlavorgroupJpaController mwFlavorgroupJpaController;
+    private static final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        mapper.setPropertyNamingStrategy(new PropertyNamingStrategy.LowerCaseWithUnderscoresStrategy());
+        Properties jpaProperties = new Properties();
+        jpaProperties.put(TRANSACTION_TYPE, PersistenceUnitTransactionType.RESOURCE_LOCAL.name());
+        jpaProperties.put(JDBC_DRIVER, JAVAX_PERSISTENCE_JDBC_DRIVER);
+        jpaProperties.put(JDBC_URL, JAVAX_PERSISTENCE_JDBC_URL);
+        jpaProperties.put(JDBC_USER, JAVAX_PERSISTENCE_JDBC_USER);
+        jpaProperties.put(JDBC_PASSWORD, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, jpaProperties);
+        mwFlavorJpaController = new MwFlavorJpaController(emf);
+        mwFlavorgroupJpaController = new MwFlavorgroupJpaController(emf);
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+        emf.close();
+    }
+    
+    private static HostManifest readHostManifest() throws Exception {
+        String hostManifestAsJson = Resources.toString(Resources.getResource("rhel-host-manifest-test.json"), Charsets.UTF_8);
+        return mapper.readValue(hostManifestAsJson, HostManifest.class);
+    }
+    
+    private static List<HostManifest> representativeHostManifests() throws Exception {
+        List<HostManifest> hostManifests = new ArrayList<>();
+        hostManifests.add(readHostManifest());
+        
+        HostManifest tbootInstalled = readHostManifest();
+        tbootInstalled.getHostInfo().setTbootInstalled("true");
+        hostManifests.add(tbootInstalled);
+        
+        HostManifest tbootNotInstalled = readHostManifest();
+        tbootNotInstalled.getHostInfo().setTbootInstalled("false");
+        hostManifests.add(tbootNotInstalled);
+        
+        HostManifest otherBiosAndVmm = readHostManifest();
+        otherBiosAndVmm.getHostInfo().setBiosVersion("9.9.9");
+        otherBiosAndVmm.getHostInfo().setVmmName("Docker");
+        otherBiosAndVmm.getHostInfo().setVmmVersion("19.03.5");
+        hostManifests.add(otherBiosAndVmm);
+        
+        HostManifest withoutHardwareFeatures = readHostManifest();
+        withoutHardwareFeatures.getHostInfo().setHardwareFeatures(null);
+        hostManifests.add(withoutHardwareFeatures);
+        return hostManifests;
+    }
+    
+    private static List<HashMap<String, Boolean>> representativeFlavorTypes() {
+        List<HashMap<String, Boolean>> flavorTypes = new ArrayList<>();
+        HashMap<String, Boolean> all = new HashMap<>();
+        HashMap<String, Boolean> allLatest = new HashMap<>();
+        for (FlavorPart flavorPart : new FlavorPart[] { PLATFORM, OS, SOFTWARE, ASSET_TAG, HOST_UNIQUE }) {
+            all.put(flavorPart.getValue(), false);
+            allLatest.put(flavorPart.getValue(), flavorPart != SOFTWARE);
+        }
+        flavorTypes.add(all);
+        flavorTypes.add(allLatest);
+        HashMap<String, Boolean> platformOnly = new HashMap<>();
+        platformOnly.put(PLATFORM.getValue(), true);
+        flavorTypes.add(platformOnly);
+        HashMap<String, Boolean> softwareOnly = new HashMap<>();
+        softwareOnly.put(SOFTWARE.getValue(), false);
+        flavorTypes.add(softwareOnly);
+        flavorTypes.add(new HashMap<String, Boolean>());
+        return flavorTypes;
+    }
+    
+    private static Set<String> flavorIds(List<MwFlavor> mwFlavors) {
+        Set<String> ids = new HashSet<>();
+        if (mwFlavors != null) {
+            for (MwFlavor mwFlavor : mwFlavors) {
+                ids.add(mwFlavor.getId());
+            }
+        }
+        return ids;
+    }
+    
+    private static Set<String> findWithLegacyQuery(String flavorgroupId, HostManifest hostManifest, HashMap<String, Boolean> flavorTypes) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            String queryString = String.format("SELECT f.id, f.content, f.signature FROM mw_flavor AS f %s",
+                    ofNullable(buildLegacyQueryString(flavorgroupId, hostManifest, flavorTypes)).orElse(""));
+            return flavorIds(em.createNativeQuery(queryString, MwFlavor.class).getResultList());
+        } finally {
+            em.close();
+        }
+    }
+    
+    @Test
+    public void testParameterizedQueryMatchesLegacyQuery() throws Exception {
+        List<String> flavorgroupIds = new ArrayList<>();
+        flavorgroupIds.add(null);
+        for (MwFlavorgroup mwFlavorgroup : mwFlavorgroupJpaController.findMwFlavorgroupEntities()) {
+            flavorgroupIds.add(mwFlavorgroup.getId());
+        }
+        int comparisons = 0;
+        for (HostManifest hostManifest : representativeHostManifests()) {
+            for (HashMap<String, Boolean> flavorTypes : representativeFlavorTypes()) {
+                for (String flavorgroupId : flavorgroupIds) {
+                    Set<String> expected = findWithLegacyQuery(flavorgroupId, hostManifest, flavorTypes);
+                    Set<String> actual = flavorIds(mwFlavorJpaController.findMwFlavorEntities(
+                            flavorgroupId == null ? null : UUID.valueOf(flavorgroupId), hostManifest, flavorTypes));
+                    assertEquals(String.format("Flavors for flavorgroup %s and flavor types %s", flavorgroupId, flavorTypes), expected, actual);
+                    comparisons++;
+                }
+            }
+        }
+        log.debug("Compared {} flavor match queries", comparisons);
+    }
+    
+    @Test
+    public void testQueryTextDoesNotDependOnManifestValues() throws Exception {
+        HashMap<String, Boolean> flavorTypes = representativeFlavorTypes().get(0);
+        HostManifest hostManifest = readHostManifest();
+        HostManifest otherHostManifest = readHostManifest();
+        otherHostManifest.getHostInfo().setBiosVersion("9.9.9");
+        otherHostManifest.getHostInfo().setHardwareUuid("00000000-0000-0000-0000-000000000001");
+        String flavorgroupId = new UUID().toString();
+        FlavorMatchQuery query = FlavorMatchQuery.build(flavorgroupId, hostManifest, flavorTypes);
+        FlavorMatchQuery otherQuery = FlavorMatchQuery.build(flavorgroupId, otherHostManifest, flavorTypes);
+        assertEquals(query.getSql(), otherQuery.getSql());
+        assertNotEquals(query.getParameters(), otherQuery.getParameters());
+        assertFalse(query.getSql().contains(flavorgroupId));
+        assertFalse(otherQuery.getSql().contains("9.9.9"));
+        assertEquals(query.getSql().length() - query.getSql().replace("?", "").length(), query.getParameters().size());
+    }
+    
+    // flavor match query text built from host manifest values, kept to compare results with
+    private static String buildFlavorPartQueryStringWithFlavorParts(String flavorType, String flavorgroupId) {
+        if (flavorgroupId != null) {
+            return String.format("%s AND f.content -> 'meta' -> 'description' ->> 'flavor_part'='%s'", buildFlavorPartQueryStringWithFlavorgroup(flavorgroupId), flavorType);
+        } else {
+            return String.format("SELECT f.id FROM mw_flavor AS f\n"
+                    + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id \n"
+                    + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id \n"
+                    + "WHERE f.content -> 'meta' -> 'description' ->> 'flavor_part'='%s'", flavorType);
+        }
+    }
+
+    private static String buildFlavorPartQueryStringWithFlavorgroup(String flavorgroupId) {
+        return String.format("SELECT f.id FROM mw_flavor AS f\n"
+                + "INNER JOIN mw_link_flavor_flavorgroup AS l ON f.id = l.flavor_id \n"
+                + "INNER JOIN mw_flavorgroup AS fg ON l.flavorgroup_id = fg.id \n"
+                + "WHERE fg.id = '%s'\n", flavorgroupId);
+    }
+    
+    private static String buildLegacyQueryString(String flavorgroupId,HostManifest hostManifest, HashMap<String, Boolean> flavorTypesWithLatestStatus) {        
+
+        String jsonDescriptionQueryTemplate = "f.content -> 'meta' -> 'description' ->>";
+        String jsonBiosQueryTemplate = "f.content -> 'bios' ->>";
+        String jsonHardwareQueryTemplate = "(f.content -> 'hardware' -> 'feature' ->";
+        String jsonBiosQueryText = null;
+        String jsonOsQueryText = null;
+        String jsonSoftwareQueryText = null;
+        String jsonAssetTagQueryText = null;
+        String jsonHostUniqueQueryText = null;        
+
+        if(!flavorTypesWithLatestStatus.isEmpty()){
+            for(String flavorType : flavorTypesWithLatestStatus.keySet()){
+                switch (FlavorPart.valueOf(flavorType)) {
+                    case PLATFORM:
+                        jsonBiosQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
+                            jsonBiosQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
+                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
+                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) { // If tboot is enabled and flavor is of old format tboot_installed field wont be there
+                                jsonBiosQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
+                                        jsonBiosQueryText, jsonDescriptionQueryTemplate);
+                            } else {
+                                jsonBiosQueryText = String.format("%s )", jsonBiosQueryText);
+                            }
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getBiosName() != null && !hostManifest.getHostInfo().getBiosName().isEmpty()) {
+                            jsonBiosQueryText = String.format("%s\nAND ( %s 'bios_name' = '%s'",
+                                    jsonBiosQueryText, jsonBiosQueryTemplate, hostManifest.getHostInfo().getBiosName());
+                            // TODO: Remove following post CCB
+                            jsonBiosQueryText = String.format("%s\nOR %s 'bios_name' = '%s')",
+                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getBiosName());
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getBiosVersion() != null && !hostManifest.getHostInfo().getBiosVersion().isEmpty()) {
+                            jsonBiosQueryText = String.format("%s\nAND ( %s 'bios_version' = '%s'",
+                                    jsonBiosQueryText, jsonBiosQueryTemplate, hostManifest.getHostInfo().getBiosVersion());
+                            // TODO: Remove following post CCB
+                            jsonBiosQueryText = String.format("%s\nOR %s 'bios_version' = '%s')",
+                                    jsonBiosQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getBiosVersion());
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null) {
+                            for(HardwareFeature feature : HardwareFeature.values()) {
+                                /*
+                                Check whether the hardware feature is a type of AttestationExemptFeature,
+                                if it is not then include it in flavor retrieval query
+                                 */
+                                if (!EnumUtils.isValidEnum(AttestationExemptFeature.class, feature.getValue())) {
+                                    HardwareFeatureDetails featureDetails = getHardwareFeatureDetails(hostManifest, feature);
+                                    if (featureDetails != null) {
+                                        String jsonHardwareFeatureQueryTemplate = jsonHardwareQueryTemplate.concat(" '" + feature.getValue().toLowerCase() + "' ->>");
+                                        jsonBiosQueryText = String.format("%s\nAND %s 'enabled' = '%s')",
+                                                jsonBiosQueryText, jsonHardwareFeatureQueryTemplate, featureDetails.getEnabled());
+                                        if (feature == HardwareFeature.CBNT && featureDetails.getEnabled() && !StringUtils.isEmpty(featureDetails.getMeta().get("profile"))) {
+                                            jsonBiosQueryText = String.format("%s\nAND %s 'profile' = '%s')",
+                                                    jsonBiosQueryText, jsonHardwareFeatureQueryTemplate, featureDetails.getMeta().get("profile"));
+                                        }
+                                    } else {
+                                        String jsonHardwareFeatureQueryTemplate = jsonHardwareQueryTemplate.concat("> '" + feature.getValue().toLowerCase() + "' ");
+                                        jsonBiosQueryText = String.format("%s\nAND %s) is null", jsonBiosQueryText, jsonHardwareFeatureQueryTemplate);
+                                    }
+                                }
+                            }
+                        }
+                        if(flavorTypesWithLatestStatus.get(PLATFORM.getValue())){
+                           jsonBiosQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1",jsonBiosQueryText); 
+                        }
+                        break;
+                    case OS:
+                        jsonOsQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
+                            jsonOsQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
+                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
+                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) {
+                                jsonOsQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
+                                        jsonOsQueryText, jsonDescriptionQueryTemplate);
+                            } else {
+                                jsonOsQueryText = String.format("%s )", jsonOsQueryText);
+                            }
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getOsName() != null && !hostManifest.getHostInfo().getOsName().isEmpty()) {
+                            jsonOsQueryText = String.format("%s\nAND %s 'os_name' = '%s'",
+                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getOsName());
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getOsVersion() != null && !hostManifest.getHostInfo().getOsVersion().isEmpty()) {
+                            jsonOsQueryText = String.format("%s\nAND %s 'os_version' = '%s'",
+                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getOsVersion());
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getVmmName() != null && !hostManifest.getHostInfo().getVmmName().isEmpty()) {
+                            jsonOsQueryText = String.format("%s\nAND %s 'vmm_name' = '%s'",
+                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getVmmName());
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getVmmVersion() != null && !hostManifest.getHostInfo().getVmmVersion().isEmpty()) {
+                            jsonOsQueryText = String.format("%s\nAND %s 'vmm_version' = '%s'",
+                                    jsonOsQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getVmmVersion());
+                        }
+                        if(flavorTypesWithLatestStatus.get(OS.getValue())){
+                           jsonOsQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonOsQueryText); 
+                        }
+                        break;
+                    case SOFTWARE:
+                        jsonSoftwareQueryText = buildFlavorPartQueryStringWithFlavorParts(flavorType, flavorgroupId);
+                        if (hostManifest != null && hostManifest.getPcrManifest() != null && hostManifest.getMeasurementXmls() != null && !HostMeasurementUtils.getMeasurementLabels(hostManifest).isEmpty()) {
+                            jsonSoftwareQueryText = String.format("%s\nAND f.label in ('%s')",
+                                    jsonSoftwareQueryText, StringUtils.join(HostMeasurementUtils.getMeasurementLabels(hostManifest), "','"));
+                        }
+                        break;
+                    case ASSET_TAG:
+                        jsonAssetTagQueryText = String.format("SELECT f.id FROM mw_flavor AS f\nWHERE %s ",buildFlavorPartQueryString(FlavorPart.ASSET_TAG.getValue()));
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getHardwareUuid() != null && !hostManifest.getHostInfo().getHardwareUuid().isEmpty()) {
+                            jsonAssetTagQueryText = String.format("%s\nAND LOWER(%s 'hardware_uuid') = '%s'",
+                                    jsonAssetTagQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getHardwareUuid().toLowerCase());
+                        }
+                        if(flavorTypesWithLatestStatus.get(FlavorPart.ASSET_TAG.getValue())){
+                           jsonAssetTagQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonAssetTagQueryText); 
+                        }
+                        break;
+                    case HOST_UNIQUE:
+                        jsonHostUniqueQueryText = String.format("SELECT f.id FROM mw_flavor AS f\nWHERE %s ",buildFlavorPartQueryString(FlavorPart.HOST_UNIQUE.getValue()));
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getTbootInstalled() != null) {
+                            jsonHostUniqueQueryText = String.format("%s\nAND ( %s 'tboot_installed' = '%s'",
+                                    jsonHostUniqueQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getTbootInstalled());
+                            if(Boolean.valueOf(hostManifest.getHostInfo().getTbootInstalled())) {
+                                jsonHostUniqueQueryText = String.format("%s\nOR ( %s 'tboot_installed' ) is null )",
+                                        jsonHostUniqueQueryText, jsonDescriptionQueryTemplate);
+                            } else {
+                                jsonHostUniqueQueryText = String.format("%s )", jsonHostUniqueQueryText);
+                            }
+                        }
+                        if (hostManifest != null && hostManifest.getHostInfo() != null && hostManifest.getHostInfo().getHardwareUuid() != null && !hostManifest.getHostInfo().getHardwareUuid().isEmpty()) {
+                            jsonHostUniqueQueryText = String.format("%s\nAND LOWER(%s 'hardware_uuid') = '%s'",
+                                    jsonHostUniqueQueryText, jsonDescriptionQueryTemplate, hostManifest.getHostInfo().getHardwareUuid().toLowerCase());
+                        }
+                        if(flavorTypesWithLatestStatus.get(FlavorPart.HOST_UNIQUE.getValue())){
+                           jsonHostUniqueQueryText = String.format("%s\nORDER BY f.created desc LIMIT 1", jsonHostUniqueQueryText); 
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Invalid partial flavor type: %s", flavorType));
+                }
+            }
+        }
+        
+        String jsonFlavorTypeQueryText = null;
+        String jsonQueryText = null;
+        
+        // add automatic flavor group types to query string
+        if (jsonBiosQueryText != null && !jsonBiosQueryText.isEmpty()) {
+            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonBiosQueryText);
+        }
+        if (jsonOsQueryText != null && !jsonOsQueryText.isEmpty()) {
+            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonOsQueryText);
+        }
+        if (jsonSoftwareQueryText != null && !jsonSoftwareQueryText.isEmpty()) {
+            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR ", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonSoftwareQueryText);
+        }
+        if (jsonAssetTagQueryText != null && !jsonAssetTagQueryText.isEmpty()) {
+            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonAssetTagQueryText);
+        }
+        if (jsonHostUniqueQueryText != null && !jsonHostUniqueQueryText.isEmpty()) {
+            jsonFlavorTypeQueryText = String.format("%s f.id IN (%s)\nOR", ofNullable(jsonFlavorTypeQueryText).orElse(""), jsonHostUniqueQueryText);
+        }
+        
+        // strip off trailing spaces and "OR", and 
+        jsonFlavorTypeQueryText = StringUtils.stripEnd(StringUtils.stripEnd(jsonFlavorTypeQueryText, " "), "OR");
+        
+        if (jsonFlavorTypeQueryText != null && !jsonFlavorTypeQueryText.isEmpty()) {
+            jsonQueryText = String.format(" %s ", jsonFlavorTypeQueryText);
+        } else if (flavorgroupId != null && !flavorgroupId.isEmpty()) {
+            jsonQueryText = String.format("f.id IN (%s)", buildFlavorPartQueryStringWithFlavorgroup(flavorgroupId));
+        }
+        // add WHERE statement
+        if (jsonQueryText != null && !jsonQueryText.isEmpty()) {
+            jsonQueryText = String.format("WHERE (%s)", jsonQueryText);
+        }
+        
+        return jsonQueryText;
+    }
+
+    private static String buildFlavorPartQueryString(String flavorType) {
+        return String.format("f.content -> 'meta' -> 'description' ->> 'flavor_part' = '%s'", flavorType);
+    }
+    
+    private static HardwareFeatureDetails getHardwareFeatureDetails(HostManifest hostManifest, HardwareFeature feature) {
+        HardwareFeatureDetails featureDetails = null;
+        if(hostManifest.getHostInfo().getHardwareFeatures() != null && hostManifest.getHostInfo().getHardwareFeatures().size() != 0) {
+            featureDetails = hostManifest.getHostInfo().getHardwareFeatures().get(feature);
+        } else if(feature.equals(HardwareFeature.TPM)) {
+            featureDetails = new HardwareFeatureDetails();
+            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTpmEnabled()));
+        } else if(feature.equals(HardwareFeature.TXT)) {
+            featureDetails = new HardwareFeatureDetails();
+            featureDetails.setEnabled(Boolean.valueOf(hostManifest.getHostInfo().getTxtEnabled()));
+        }
+        return featureDetails;
+    }
+}
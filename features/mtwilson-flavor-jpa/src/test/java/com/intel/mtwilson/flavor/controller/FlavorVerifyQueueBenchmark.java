@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.flavor.data.MwQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to queue 50,000 hosts for flavor verification with the single
+ * statement {@link MwQueueJpaController#createFlavorVerifyQueueEntries(List, boolean)},
+ * compared with persisting one entity per host and committing every 25 hosts
+ * with {@link MwQueueJpaController#createQueueList(List)}.
+ *
+ * Needs the database configured below; the queue entries created by each
+ * iteration are deleted before the next one.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.intel.mtwilson.flavor.controller.FlavorVerifyQueueBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FlavorVerifyQueueBenchmark {
+    private static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "org.postgresql.Driver";
+    private static final String JAVAX_PERSISTENCE_JDBC_URL = "jdbc:postgresql://192.168.0.1:5432/mw_as";
+    private static final String JAVAX_PERSISTENCE_JDBC_USER = "root";
+    private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "Kt0pWmXqZiOyF1SXKfsPOg";
+    private static final String PERSISTENCE_UNIT_NAME = "FlavorDataPU";
+    private static final int HOST_COUNT = 50000;
+
+    private EntityManagerFactory emf;
+    private MwQueueJpaController mwQueueJpaController;
+    private final List<String> hostIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Properties jpaProperties = new Properties();
+        jpaProperties.put(TRANSACTION_TYPE, PersistenceUnitTransactionType.RESOURCE_LOCAL.name());
+        jpaProperties.put(JDBC_DRIVER, JAVAX_PERSISTENCE_JDBC_DRIVER);
+        jpaProperties.put(JDBC_URL, JAVAX_PERSISTENCE_JDBC_URL);
+        jpaProperties.put(JDBC_USER, JAVAX_PERSISTENCE_JDBC_USER);
+        jpaProperties.put(JDBC_PASSWORD, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, jpaProperties);
+        mwQueueJpaController = new MwQueueJpaController(emf);
+        for (int i = 0; i < HOST_COUNT; i++) {
+            hostIds.add(new UUID().toString());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteQueueEntries() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("DELETE FROM mw_queue WHERE queue_action = 'flavor-verify' AND action_parameters ->> 'host_id' = ANY (?::text[])")
+                    .setParameter(1, hostIds.toString().replace('[', '{').replace(']', '}').replace(" ", ""))
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public void bulkInsert() {
+        mwQueueJpaController.createFlavorVerifyQueueEntries(hostIds, false);
+    }
+
+    @Benchmark
+    public void persistPerHost() {
+        List<MwQueue> mwQueueList = new ArrayList<>(HOST_COUNT);
+        for (String hostId : hostIds) {
+            Map<String, String> actionParameters = new HashMap<>();
+            actionParameters.put("host_id", hostId);
+            actionParameters.put("force_update", "false");
+            MwQueue mwQueue = new MwQueue();
+            mwQueue.setId(new UUID().toString());
+            mwQueue.setQueueAction("flavor-verify");
+            mwQueue.setActionParameters(actionParameters);
+            mwQueue.setStatus("NEW");
+            mwQueueList.add(mwQueue);
+        }
+        mwQueueJpaController.createQueueList(mwQueueList);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FlavorVerifyQueueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.flavor.converter.HostManifestConverter;
+import com.intel.mtwilson.flavor.converter.HostStatusConverter;
+import com.intel.mtwilson.flavor.data.MwHostStatus;
+import com.intel.mtwilson.flavor.model.HostStatusInformation;
+import com.intel.mtwilson.i18n.HostState;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to move 10,000 hosts to a new state with the set-based
+ * {@link MwHostStatusJpaController#editHostStatusList(List)}, compared with
+ * the previous implementation that updated each host, inserted it if the
+ * update found no row, and committed every 100 hosts.
+ *
+ * Needs the database configured below; the benchmark creates its own host
+ * status records and deletes them at the end.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.intel.mtwilson.flavor.controller.HostStatusBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HostStatusBenchmark {
+    private static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "org.postgresql.Driver";
+    private static final String JAVAX_PERSISTENCE_JDBC_URL = "jdbc:postgresql://192.168.0.1:5432/mw_as";
+    private static final String JAVAX_PERSISTENCE_JDBC_USER = "root";
+    private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "Kt0pWmXqZiOyF1SXKfsPOg";
+    private static final String PERSISTENCE_UNIT_NAME = "FlavorDataPU";
+    private static final int HOST_COUNT = 10000;
+
+    private EntityManagerFactory emf;
+    private MwHostStatusJpaController mwHostStatusJpaController;
+    private final List<String> hostIds = new ArrayList<>();
+    private boolean connected = false;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Properties jpaProperties = new Properties();
+        jpaProperties.put(TRANSACTION_TYPE, PersistenceUnitTransactionType.RESOURCE_LOCAL.name());
+        jpaProperties.put(JDBC_DRIVER, JAVAX_PERSISTENCE_JDBC_DRIVER);
+        jpaProperties.put(JDBC_URL, JAVAX_PERSISTENCE_JDBC_URL);
+        jpaProperties.put(JDBC_USER, JAVAX_PERSISTENCE_JDBC_USER);
+        jpaProperties.put(JDBC_PASSWORD, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, jpaProperties);
+        mwHostStatusJpaController = new MwHostStatusJpaController(emf);
+        for (int i = 0; i < HOST_COUNT; i++) {
+            hostIds.add(new UUID().toString());
+        }
+        mwHostStatusJpaController.editHostStatusList(nextTransition());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Query query = em.createNativeQuery("DELETE FROM mw_host_status WHERE host_id = ?");
+            for (String hostId : hostIds) {
+                query.setParameter(1, hostId).executeUpdate();
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        emf.close();
+    }
+
+    @Benchmark
+    public void bulkUpsert() {
+        mwHostStatusJpaController.editHostStatusList(nextTransition());
+    }
+
+    @Benchmark
+    public void updateThenInsertPerHost() {
+        editHostStatusListPerHost(nextTransition());
+    }
+
+    /**
+     * Alternates all hosts between the queue and connected states.
+     */
+    private List<MwHostStatus> nextTransition() {
+        connected = !connected;
+        HostStatusInformation hostStatus = new HostStatusInformation();
+        hostStatus.setHostState(connected ? HostState.CONNECTED : HostState.QUEUE);
+        hostStatus.setLastTimeConnected(Calendar.getInstance().getTime());
+        List<MwHostStatus> mwHostStatusList = new ArrayList<>(HOST_COUNT);
+        for (String hostId : hostIds) {
+            MwHostStatus mwHostStatus = new MwHostStatus();
+            mwHostStatus.setHostId(hostId);
+            mwHostStatus.setStatus(hostStatus);
+            mwHostStatusList.add(mwHostStatus);
+        }
+        return mwHostStatusList;
+    }
+
+    private void editHostStatusListPerHost(List<MwHostStatus> mwHostStatusList) {
+        int batchSize = 100;
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction entityTransaction = em.getTransaction();
+        HostStatusConverter hostStatusConverter = new HostStatusConverter();
+        HostManifestConverter hostManifestConverter = new HostManifestConverter();
+        try {
+            entityTransaction.begin();
+            for (int i = 0; i < mwHostStatusList.size(); i++) {
+                if (i > 0 && i % batchSize == 0) {
+                    entityTransaction.commit();
+                    entityTransaction.begin();
+                    em.clear();
+                }
+                MwHostStatus mwHostStatus = mwHostStatusList.get(i);
+                mwHostStatus.setCreated(Calendar.getInstance().getTime());
+                Query updateQuery = em.createNativeQuery("UPDATE mw_host_status SET status = ?, created = ? WHERE host_id = ?");
+                int updateCount = updateQuery.setParameter(1, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
+                        .setParameter(2, mwHostStatus.getCreated())
+                        .setParameter(3, mwHostStatus.getHostId())
+                        .executeUpdate();
+                if (updateCount <= 0) {
+                    mwHostStatus.setId(new UUID().toString());
+                    em.createNativeQuery("INSERT INTO mw_host_status(id, host_id, status, created, host_report) VALUES (?, ?, ?, ?, ?)")
+                            .setParameter(1, mwHostStatus.getId())
+                            .setParameter(2, mwHostStatus.getHostId())
+                            .setParameter(3, hostStatusConverter.convertToDatabaseColumn(mwHostStatus.getStatus()))
+                            .setParameter(4, mwHostStatus.getCreated())
+                            .setParameter(5, hostManifestConverter.convertToDatabaseColumn(mwHostStatus.getHostManifest()))
+                            .executeUpdate();
+                }
+            }
+            entityTransaction.commit();
+        } finally {
+            if (entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            em.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(HostStatusBenchmark.class.getSimpleName()).build()).run();
+    }
+}
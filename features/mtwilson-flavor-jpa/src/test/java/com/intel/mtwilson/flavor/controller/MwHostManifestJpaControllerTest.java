@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.controller;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.intel.dcsg.cpg.extensions.Extensions;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.jackson.bouncycastle.BouncyCastleModule;
+import com.intel.mtwilson.jackson.validation.ValidationModule;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MwHostManifestJpaControllerTest {
+    private static final Logger log = LoggerFactory.getLogger(MwHostManifestJpaControllerTest.class);
+
+    private static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "org.postgresql.Driver";
+    private static final String JAVAX_PERSISTENCE_JDBC_URL = "jdbc:postgresql://192.168.0.1:5432/mw_as";
+    private static final String JAVAX_PERSISTENCE_JDBC_USER = "root";
+    private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "password";
+
+    private static final String PERSISTENCE_UNIT_NAME = "FlavorDataPU";
+    private static final int THREADS = 8;
+    private static EntityManagerFactory emf;
+    private static MwHostManifestJpaController mwHostManifestJpaController;
+    private final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+
+    private static void registerJacksonModules() {
+        Extensions.register(Module.class, BouncyCastleModule.class);
+        Extensions.register(Module.class, ValidationModule.class);
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        registerJacksonModules();
+        Properties jpaProperties = new Properties();
+        jpaProperties.put(TRANSACTION_TYPE, PersistenceUnitTransactionType.RESOURCE_LOCAL.name());
+        jpaProperties.put(JDBC_DRIVER, JAVAX_PERSISTENCE_JDBC_DRIVER);
+        jpaProperties.put(JDBC_URL, JAVAX_PERSISTENCE_JDBC_URL);
+        jpaProperties.put(JDBC_USER, JAVAX_PERSISTENCE_JDBC_USER);
+        jpaProperties.put(JDBC_PASSWORD, JAVAX_PERSISTENCE_JDBC_PASSWORD);
+
+        log.debug("Loading database driver {} for persistence unit {}",  jpaProperties.getProperty("javax.persistence.jdbc.driver"), PERSISTENCE_UNIT_NAME);
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, jpaProperties);
+        mwHostManifestJpaController = new MwHostManifestJpaController(emf);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        emf.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        HostManifest hostManifest = createHostManifest(new UUID().toString(), new UUID().toString());
+        String digest = mwHostManifestJpaController.create(hostManifest);
+        assertNotNull(digest);
+
+        HostManifest stored = mwHostManifestJpaController.findHostManifest(digest);
+        assertNotNull(stored);
+        assertEquals(mapper.valueToTree(hostManifest), mapper.valueToTree(stored));
+
+        Map<String, HostManifest> found = mwHostManifestJpaController.findHostManifests(Arrays.asList(digest, digest, "0000"));
+        assertEquals(1, found.size());
+        assertEquals(mapper.valueToTree(hostManifest), mapper.valueToTree(found.get(digest)));
+        assertNull(mwHostManifestJpaController.findHostManifest("0000"));
+        System.out.println("Stored and retrieved host manifest " + digest);
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        String hostUuid = new UUID().toString();
+        HostManifest first = createHostManifest("host-" + new UUID().toString(), hostUuid);
+        HostManifest second = createHostManifest("host-" + new UUID().toString(), hostUuid);
+
+        String firstDigest = mwHostManifestJpaController.create(first);
+        long manifestCount = count("mw_host_manifest");
+        long sectionCount = count("mw_host_manifest_section");
+
+        // same content is stored once
+        assertEquals(firstDigest, mwHostManifestJpaController.create(createHostManifest(first.getHostInfo().getHostName(), hostUuid)));
+        assertEquals(manifestCount, count("mw_host_manifest"));
+
+        // a host with the same measurements only adds a manifest row
+        String secondDigest = mwHostManifestJpaController.create(second);
+        assertNotEquals(firstDigest, secondDigest);
+        assertEquals(manifestCount + 1, count("mw_host_manifest"));
+        assertEquals(sectionCount, count("mw_host_manifest_section"));
+        assertEquals(second.getHostInfo().getHostName(), mwHostManifestJpaController.findHostManifest(secondDigest).getHostInfo().getHostName());
+        System.out.println("Stored host manifests " + firstDigest + " and " + secondDigest + " sharing " + sectionCount + " sections");
+    }
+
+    @Test
+    public void testConcurrentInsert() throws Exception {
+        final HostManifest hostManifest = createHostManifest("host-" + new UUID().toString(), new UUID().toString());
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        start.await();
+                        return new MwHostManifestJpaController(emf).create(hostManifest);
+                    }
+                }));
+            }
+            start.countDown();
+            String digest = results.get(0).get();
+            for (Future<String> result : results) {
+                assertEquals(digest, result.get());
+            }
+            assertEquals(1L, count("mw_host_manifest WHERE digest = '" + digest + "'"));
+            assertNotNull(mwHostManifestJpaController.findHostManifest(digest));
+            System.out.println("Stored host manifest " + digest + " from " + THREADS + " threads");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the test manifest with the specified host name and a
+     * host_attributes section unique to the host UUID.
+     */
+    private HostManifest createHostManifest(String hostName, String hostUuid) throws Exception {
+        String hostManifestJson = Resources.toString(Resources.getResource("rhel-host-manifest-test.json"), Charsets.UTF_8);
+        ObjectNode tree = (ObjectNode) mapper.readTree(hostManifestJson);
+        ((ObjectNode) tree.get("host_info")).put("host_name", hostName);
+        ((ObjectNode) tree.get("host_attributes")).put("Host_UUID", hostUuid);
+        return mapper.treeToValue(tree, HostManifest.class);
+    }
+
+    private long count(String table) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT count(*) FROM " + table).getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -17,6 +17,8 @@ import javax.persistence.spi.PersistenceUnitTransactionType;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -111,6 +113,39 @@ public class MwQueueJpaControllerTest {
         }
     }
     
+    @Test
+    public void claimRetriesFailedEntriesAfterDelay() throws Exception {
+        Map<String, String> actionParameters = new HashMap();
+        actionParameters.put("host_id", new UUID().toString());
+        actionParameters.put("force_update", "false");
+        MwQueue queueEntry = new MwQueue();
+        queueEntry.setId(new UUID().toString());
+        queueEntry.setQueueAction("flavor-verify");
+        queueEntry.setActionParameters(actionParameters);
+        mwQueueJpaController.create(queueEntry);
+        queueEntry.setStatus("ERROR");
+        mwQueueJpaController.edit(queueEntry);
+        
+        String nodeId = "test-" + new UUID().toString();
+        try {
+            // the entry just failed, so it is not retried before the delay passes
+            assertFalse(containsId(mwQueueJpaController.claimMwQueueEntries(nodeId, 10000, 3600, 3600), queueEntry.getId()));
+            assertTrue(containsId(mwQueueJpaController.claimMwQueueEntries(nodeId, 10000, 3600, 0), queueEntry.getId()));
+        } finally {
+            mwQueueJpaController.returnClaimedMwQueueEntries(nodeId, "Returned by test.");
+            mwQueueJpaController.destroy(queueEntry.getId());
+        }
+    }
+    
+    private boolean containsId(List<MwQueue> queueEntries, String id) {
+        for (MwQueue queueEntry : queueEntries) {
+            if (queueEntry.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     @Test
     public void findFlavorVerifyQueueEntriesByHostId() throws Exception {
         List<MwQueue> wholeQueueList = mwQueueJpaController.findMwQueueEntities(1, 1);
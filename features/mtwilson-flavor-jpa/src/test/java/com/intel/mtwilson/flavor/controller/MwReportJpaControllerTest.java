@@ -24,12 +24,15 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.persistence.spi.PersistenceUnitTransactionType;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.*;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -191,4 +194,39 @@ public class MwReportJpaControllerTest {
                     mwHost.getId(), mwReport.getCreated(), mwReport.getTrustReport().isTrusted()));
         }
     }
+
+    @Test
+    public void dropExpiredReportHistoryPartitions() throws Exception {
+        // a partition far outside any retention period and one for the current month
+        String expired = "mw_report_history_200001";
+        String current = "mw_report_history_" + new SimpleDateFormat("yyyyMM").format(new Date());
+        execute("CREATE TABLE IF NOT EXISTS " + expired + " () INHERITS (mw_report_history)");
+        execute("CREATE TABLE IF NOT EXISTS " + current + " () INHERITS (mw_report_history)");
+        assertTrue(mwReportJpaController.dropReportHistoryPartitions(12) >= 1);
+        assertEquals(0L, countTables(expired));
+        assertEquals(1L, countTables(current));
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private long countTables(String name) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT count(*) FROM pg_class WHERE relname = '" + name + "'").getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
 }
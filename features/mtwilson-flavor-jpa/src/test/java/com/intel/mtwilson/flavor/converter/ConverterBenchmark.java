@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.core.verifier.policy.TrustReport;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.postgresql.util.PGobject;
+
+/**
+ * Throughput of the JSON column converters on the RHEL host manifest and
+ * trust report test resources, compared with building a new object mapper
+ * for every conversion.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.intel.mtwilson.flavor.converter.ConverterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverterBenchmark {
+    private final HostManifestConverter hostManifestConverter = new HostManifestConverter();
+    private final TrustReportConverter trustReportConverter = new TrustReportConverter();
+    private HostManifest hostManifest;
+    private TrustReport trustReport;
+    private PGobject hostManifestColumn;
+    private PGobject trustReportColumn;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+        hostManifest = mapper.readValue(Resources.toString(Resources.getResource("rhel-host-manifest-test.json"), Charsets.UTF_8), HostManifest.class);
+        trustReport = mapper.readValue(Resources.toString(Resources.getResource("trust-report-rhel-tpm2.json"), Charsets.UTF_8), TrustReport.class);
+        hostManifestColumn = hostManifestConverter.convertToDatabaseColumn(hostManifest);
+        trustReportColumn = trustReportConverter.convertToDatabaseColumn(trustReport);
+    }
+
+    @Benchmark
+    public HostManifest readHostManifest() {
+        return hostManifestConverter.convertToEntityAttribute(hostManifestColumn);
+    }
+
+    @Benchmark
+    public PGobject writeHostManifest() {
+        return hostManifestConverter.convertToDatabaseColumn(hostManifest);
+    }
+
+    @Benchmark
+    public TrustReport readTrustReport() {
+        return trustReportConverter.convertToEntityAttribute(trustReportColumn);
+    }
+
+    @Benchmark
+    public PGobject writeTrustReport() {
+        return trustReportConverter.convertToDatabaseColumn(trustReport);
+    }
+
+    @Benchmark
+    public HostManifest readHostManifestNewMapper() throws Exception {
+        return JacksonObjectMapperProvider.createDefaultMapper().readValue(hostManifestColumn.getValue(), HostManifest.class);
+    }
+
+    @Benchmark
+    public TrustReport readTrustReportNewMapper() throws Exception {
+        return JacksonObjectMapperProvider.createDefaultMapper().readValue(trustReportColumn.getValue(), TrustReport.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ConverterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
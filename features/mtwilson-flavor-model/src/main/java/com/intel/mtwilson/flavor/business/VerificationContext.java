@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.dcsg.cpg.x509.X509Util;
+import com.intel.mtwilson.core.verifier.Verifier;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable set of trust anchors used to verify host manifests against
+ * flavors: the privacy CA, asset tag CA, CMS CA and flavor signing
+ * certificates, and the flavor signature verification flag.
+ *
+ * The certificates are parsed once when the context is loaded. The verifier
+ * library only reads certificates from files, so the parsed certificates are
+ * written to a snapshot directory and the verifier and trust policy manager
+ * are given the snapshot paths; they verify against exactly the certificates
+ * the context was loaded with, even if the configured files change later.
+ * The verifier is not known to be thread safe, so each thread verifying with
+ * the context gets its own verifier instance. A new context must be loaded
+ * when any of the certificate files change.
+ */
+public class VerificationContext {
+    private final String privacyCaCertPath;
+    private final String tagCaCertPath;
+    private final String flavorSigningCertPath;
+    private final String caCertPath;
+    private final List<X509Certificate> privacyCaCertificates;
+    private final List<X509Certificate> tagCaCertificates;
+    private final List<X509Certificate> caCertificates;
+    private final List<X509Certificate> flavorSigningCertificates;
+    private final boolean skipFlavorSignatureVerification;
+    private final ThreadLocal<Verifier> verifiers = new ThreadLocal<Verifier>() {
+        @Override
+        protected Verifier initialValue() {
+            return new Verifier(privacyCaCertPath, tagCaCertPath, flavorSigningCertPath, caCertPath);
+        }
+    };
+
+    public VerificationContext(String privacyCaCertPath, String tagCaCertPath, String flavorSigningCertPath,
+            String caCertPath, boolean skipFlavorSignatureVerification) throws IOException, CertificateException {
+        this.privacyCaCertificates = readPemCertificates(privacyCaCertPath);
+        this.tagCaCertificates = readPemCertificates(tagCaCertPath);
+        this.caCertificates = readPemCertificates(caCertPath);
+        this.flavorSigningCertificates = readPemCertificates(flavorSigningCertPath);
+        this.skipFlavorSignatureVerification = skipFlavorSignatureVerification;
+        File snapshotDirectory = null;
+        if (!privacyCaCertificates.isEmpty() || !tagCaCertificates.isEmpty()
+                || !caCertificates.isEmpty() || !flavorSigningCertificates.isEmpty()) {
+            snapshotDirectory = Files.createTempDirectory("verification-context").toFile();
+            snapshotDirectory.deleteOnExit();
+        }
+        this.privacyCaCertPath = writePemCertificates(snapshotDirectory, privacyCaCertPath, privacyCaCertificates);
+        this.tagCaCertPath = writePemCertificates(snapshotDirectory, tagCaCertPath, tagCaCertificates);
+        this.flavorSigningCertPath = writePemCertificates(snapshotDirectory, flavorSigningCertPath, flavorSigningCertificates);
+        this.caCertPath = writePemCertificates(snapshotDirectory, caCertPath, caCertificates);
+    }
+
+    private static List<X509Certificate> readPemCertificates(String path) throws IOException, CertificateException {
+        if (path == null || path.isEmpty() || !new File(path).isFile()) {
+            return Collections.emptyList();
+        }
+        String pem = new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+        if (pem.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(X509Util.decodePemCertificates(pem));
+    }
+
+    /**
+     * Writes the certificates to a file of the same name in the snapshot
+     * directory and returns its path, or returns the configured path as is
+     * if there are no certificates, so the verifier sees the same missing or
+     * empty file.
+     */
+    private static String writePemCertificates(File snapshotDirectory, String path, List<X509Certificate> certificates) throws IOException, CertificateException {
+        if (certificates.isEmpty()) {
+            return path;
+        }
+        StringBuilder pem = new StringBuilder();
+        for (X509Certificate certificate : certificates) {
+            pem.append(X509Util.encodePemCertificate(certificate));
+        }
+        File snapshot = new File(snapshotDirectory, new File(path).getName());
+        snapshot.deleteOnExit();
+        Files.write(snapshot.toPath(), pem.toString().getBytes(StandardCharsets.UTF_8));
+        return snapshot.getAbsolutePath();
+    }
+
+    /**
+     * @return the path of the snapshot of the privacy CA certificates, to
+     * hand to the verifier library; the other certificate path getters are
+     * the same for their certificates
+     */
+    public String getPrivacyCaCertPath() {
+        return privacyCaCertPath;
+    }
+
+    public String getTagCaCertPath() {
+        return tagCaCertPath;
+    }
+
+    public String getFlavorSigningCertPath() {
+        return flavorSigningCertPath;
+    }
+
+    public String getCaCertPath() {
+        return caCertPath;
+    }
+
+    public List<X509Certificate> getPrivacyCaCertificates() {
+        return privacyCaCertificates;
+    }
+
+    public List<X509Certificate> getTagCaCertificates() {
+        return tagCaCertificates;
+    }
+
+    public List<X509Certificate> getCaCertificates() {
+        return caCertificates;
+    }
+
+    public List<X509Certificate> getFlavorSigningCertificates() {
+        return flavorSigningCertificates;
+    }
+
+    public boolean isSkipFlavorSignatureVerification() {
+        return skipFlavorSignatureVerification;
+    }
+
+    /**
+     * @return the verifier for the current thread, which must not be shared
+     * with other threads
+     */
+    public Verifier getVerifier() {
+        return verifiers.get();
+    }
+}
@@ -14,6 +14,7 @@ import com.intel.mtwilson.core.verifier.policy.Rule;
 import com.intel.mtwilson.core.verifier.policy.RuleResult;
 import com.intel.mtwilson.core.verifier.policy.TrustReport;
 import com.intel.mtwilson.core.verifier.policy.vendor.VendorTrustPolicyReader;
+import com.intel.mtwilson.flavor.business.VerificationContext;
 import com.intel.mtwilson.flavor.business.policy.fault.RuleAllOfFlavorsMissing;
 import com.intel.mtwilson.core.common.model.HostManifest;
 import com.intel.mtwilson.flavor.rest.v2.model.SignedFlavorCollection;
@@ -45,6 +46,12 @@ public class RuleAllOfFlavors extends BaseRule {
         this.skipFlavorSignatureVerification = skipFlavorSignatureVerification;
     }
 
+    public RuleAllOfFlavors(SignedFlavorCollection allOfFlavors, VerificationContext verificationContext) {
+        this(allOfFlavors, verificationContext.getPrivacyCaCertPath(), verificationContext.getTagCaCertPath(),
+                verificationContext.getFlavorSigningCertPath(), verificationContext.getCaCertPath(),
+                verificationContext.isSkipFlavorSignatureVerification());
+    }
+
     // HostManifest is required if vendor details are missing in flavor e.g. [SOFTWARE, ASSET_TAG]
     private VendorTrustPolicyReader getVendorTrustPolicyReader(SignedFlavor signedFlavor, HostManifest hostManifest) {
         HostTrustPolicyManager policymanager = new HostTrustPolicyManager(signedFlavor, hostManifest, privacyCaCert, tagCaCert, flavorSigningCertPath, caCertPath, skipFlavorSignatureVerification);
@@ -31,6 +31,10 @@ public class Report extends Document{
     private HostInfo hostInfo;
     private Date created;
     private Date expiration;
+    @JsonIgnore
+    private String hostManifestDigest;
+    @JsonIgnore
+    private String flavorDigest;
 
     public UUID getHostId() {
         return hostId;
@@ -80,6 +84,22 @@ public class Report extends Document{
         this.expiration = expiration;
     }
 
+    public String getHostManifestDigest() {
+        return hostManifestDigest;
+    }
+
+    public void setHostManifestDigest(String hostManifestDigest) {
+        this.hostManifestDigest = hostManifestDigest;
+    }
+
+    public String getFlavorDigest() {
+        return flavorDigest;
+    }
+
+    public void setFlavorDigest(String flavorDigest) {
+        this.flavorDigest = flavorDigest;
+    }
+
     public HostInfo getHostInfo() {
         return this.trustReport.getHostManifest().getHostInfo();
     }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.dcsg.cpg.crypto.RsaUtil;
+import com.intel.dcsg.cpg.x509.X509Builder;
+import com.intel.dcsg.cpg.x509.X509Util;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VerificationContextTest {
+
+    @Test
+    public void testVerifierReadsLoadedCertificates() throws Exception {
+        X509Certificate loaded = createCertificate("CN=loaded");
+        File directory = Files.createTempDirectory("verification-context-test").toFile();
+        File flavorSigningCert = new File(directory, "flavor-signer.crt.pem");
+        write(flavorSigningCert, loaded);
+
+        VerificationContext verificationContext = new VerificationContext(null, null,
+                flavorSigningCert.getAbsolutePath(), new File(directory, "missing.pem").getAbsolutePath(), false);
+        assertEquals(Collections.singletonList(loaded), verificationContext.getFlavorSigningCertificates());
+        assertTrue(verificationContext.getCaCertificates().isEmpty());
+
+        // replacing the configured file does not change what the verifier of this context reads
+        write(flavorSigningCert, createCertificate("CN=replaced"));
+        String snapshot = verificationContext.getFlavorSigningCertPath();
+        assertNotEquals(flavorSigningCert.getAbsolutePath(), snapshot);
+        String pem = new String(Files.readAllBytes(new File(snapshot).toPath()), StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonList(loaded), X509Util.decodePemCertificates(pem));
+
+        // a missing file is handed to the verifier as configured
+        assertEquals(new File(directory, "missing.pem").getAbsolutePath(), verificationContext.getCaCertPath());
+    }
+
+    private X509Certificate createCertificate(String dn) throws Exception {
+        return X509Builder.factory().selfSigned(dn, RsaUtil.generateRsaKeyPair(2048)).build();
+    }
+
+    private void write(File file, X509Certificate certificate) throws Exception {
+        Files.write(file.toPath(), X509Util.encodePemCertificate(certificate).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.core.flavor.model.SignedFlavor;
+import com.intel.mtwilson.core.verifier.Verifier;
+import com.intel.mtwilson.core.verifier.policy.RuleResult;
+import com.intel.mtwilson.core.verifier.policy.TrustReport;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Bounded LRU cache of flavor signature verification results.
+ *
+ * The flavor signature is checked by the verifier itself, which reports the
+ * outcome as the result of its flavor signature rule. When that rule passes,
+ * its result is remembered and later verifications of the same flavor ask the
+ * verifier to skip the signature check and carry the remembered result over
+ * to the new trust report instead. Entries are keyed by flavor ID, a SHA-256
+ * digest of the flavor content, a SHA-256 digest of the signature and a
+ * SHA-256 digest of the CMS CA and flavor signing certificates, so changing
+ * the flavor content, even with the signature left as it was, or replacing any
+ * of those certificates leads to a fresh check by the verifier. Failed checks
+ * are not cached. The maximum number of entries is set by
+ * {@code mtwilson.flavor.signature.cache.size}.
+ */
+public class FlavorSignatureCache {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorSignatureCache.class);
+    public static final String FLAVOR_SIGNATURE_CACHE_SIZE = "mtwilson.flavor.signature.cache.size";
+    private static final int DEFAULT_FLAVOR_SIGNATURE_CACHE_SIZE = 10000;
+    private static final String FLAVOR_SIGNATURE_RULE = ".FlavorTrusted";
+    private static final int maxEntries = My.configuration().getConfiguration().getInt(FLAVOR_SIGNATURE_CACHE_SIZE, DEFAULT_FLAVOR_SIGNATURE_CACHE_SIZE);
+    private static final ObjectWriter contentWriter = JacksonObjectMapperProvider.createDefaultMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .writer();
+
+    private static final Map<String, RuleResult> results = Collections.synchronizedMap(new LinkedHashMap<String, RuleResult>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RuleResult> eldest) {
+            return size() > maxEntries;
+        }
+    });
+    private static volatile VerificationContext cachedContext = null;
+    private static volatile String cachedCertificateDigest = null;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private FlavorSignatureCache() { }
+
+    /**
+     * Verifies the host manifest against the signed flavor, letting the
+     * verifier check the flavor signature only if it has not already passed
+     * for the same flavor, signature and certificates.
+     */
+    public static TrustReport verify(Verifier verifier, HostManifest hostManifest, SignedFlavor signedFlavor, VerificationContext verificationContext) {
+        if (verificationContext.isSkipFlavorSignatureVerification()) {
+            return verifier.verify(hostManifest, signedFlavor, true);
+        }
+        String key = getKey(signedFlavor, verificationContext);
+        RuleResult signatureResult = key == null ? null : results.get(key);
+        if (signatureResult != null) {
+            hits.incrementAndGet();
+            TrustReport trustReport = verifier.verify(hostManifest, signedFlavor, true);
+            trustReport.addResult(signatureResult);
+            return trustReport;
+        }
+        misses.incrementAndGet();
+        TrustReport trustReport = verifier.verify(hostManifest, signedFlavor, false);
+        if (key != null && trustReport != null && trustReport.getResults() != null) {
+            for (RuleResult result : trustReport.getResults()) {
+                if (result.getRuleName() != null && result.getRuleName().endsWith(FLAVOR_SIGNATURE_RULE) && result.isTrusted()) {
+                    results.put(key, result);
+                    break;
+                }
+            }
+        }
+        return trustReport;
+    }
+
+    /**
+     * Removes every cached result for the specified flavor.
+     */
+    public static void evict(String flavorId) {
+        if (flavorId == null) {
+            return;
+        }
+        String prefix = flavorId + ":";
+        synchronized (results) {
+            for (Iterator<String> it = results.keySet().iterator(); it.hasNext();) {
+                if (it.next().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        results.clear();
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static int size() {
+        return results.size();
+    }
+
+    static String getKey(SignedFlavor signedFlavor, VerificationContext verificationContext) {
+        if (signedFlavor == null || signedFlavor.getSignature() == null || signedFlavor.getFlavor() == null
+                || signedFlavor.getFlavor().getMeta() == null || signedFlavor.getFlavor().getMeta().getId() == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String contentDigest = Hex.encodeHexString(digest.digest(contentWriter.writeValueAsBytes(signedFlavor.getFlavor())));
+            String signatureDigest = Hex.encodeHexString(digest.digest(signedFlavor.getSignature().getBytes(StandardCharsets.UTF_8)));
+            return signedFlavor.getFlavor().getMeta().getId() + ":" + contentDigest + ":" + signatureDigest + ":" + getCertificateDigest(verificationContext);
+        } catch (Exception e) {
+            log.debug("Cannot determine signature cache key for flavor [{}]", signedFlavor.getFlavor().getMeta().getId(), e);
+            return null;
+        }
+    }
+
+    private static synchronized String getCertificateDigest(VerificationContext verificationContext) throws Exception {
+        if (cachedContext == verificationContext && cachedCertificateDigest != null) {
+            return cachedCertificateDigest;
+        }
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (List<X509Certificate> certificates : Arrays.asList(verificationContext.getCaCertificates(),
+                verificationContext.getFlavorSigningCertificates())) {
+            for (X509Certificate certificate : certificates) {
+                digest.update(certificate.getEncoded());
+            }
+            digest.update((byte) 0);
+        }
+        if (cachedContext != null) {
+            log.debug("Verification context changed, clearing {} cached flavor signature results", results.size());
+            results.clear();
+        }
+        cachedContext = verificationContext;
+        cachedCertificateDigest = Hex.encodeHexString(digest.digest());
+        return cachedCertificateDigest;
+    }
+}
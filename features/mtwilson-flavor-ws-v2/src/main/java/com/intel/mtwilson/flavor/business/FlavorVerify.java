@@ -7,12 +7,10 @@ package com.intel.mtwilson.flavor.business;
 
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.dcsg.cpg.x509.X509Util;
-import com.intel.mtwilson.My;
 import com.intel.mtwilson.core.common.model.HardwareFeature;
 import com.intel.mtwilson.core.common.model.HardwareFeatureDetails;
 import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.core.flavor.model.SignedFlavor;
-import com.intel.mtwilson.core.verifier.Verifier;
 import com.intel.mtwilson.core.verifier.policy.Fault;
 import com.intel.mtwilson.core.verifier.policy.RuleResult;
 import com.intel.mtwilson.core.verifier.policy.TrustMarker;
@@ -21,6 +19,10 @@ import com.intel.mtwilson.features.queue.QueueOperation;
 import com.intel.mtwilson.features.queue.model.QueueState;
 import com.intel.mtwilson.flavor.business.policy.rule.RequiredFlavorTypeExists;
 import com.intel.mtwilson.flavor.business.policy.rule.RuleAllOfFlavors;
+import static com.intel.mtwilson.flavor.business.FlavorVerifyStage.FETCH;
+import static com.intel.mtwilson.flavor.business.FlavorVerifyStage.PERSIST;
+import static com.intel.mtwilson.flavor.business.FlavorVerifyStage.SIGN;
+import static com.intel.mtwilson.flavor.business.FlavorVerifyStage.VERIFY;
 import com.intel.mtwilson.flavor.model.*;
 
 import static com.intel.mtwilson.flavor.model.MatchPolicy.MatchType.ALL_OF;
@@ -50,14 +52,12 @@ import static com.intel.mtwilson.i18n.HostState.*;
 
 import com.intel.mtwilson.flavor.rest.v2.resource.HostStatusResource;
 
-import java.io.File;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
 
-import com.intel.mtwilson.ms.common.MSConfig;
 import com.intel.mtwilson.supplemental.saml.SAML;
 import com.intel.mtwilson.supplemental.saml.MapFormatter;
 import com.intel.mtwilson.supplemental.saml.SamlAssertion;
@@ -70,6 +70,12 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.dsig.XMLSignatureException;
 import javax.xml.stream.XMLInputFactory;
@@ -87,11 +93,10 @@ import org.opensaml.core.xml.io.MarshallingException;
  */
 public class FlavorVerify extends QueueOperation {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorVerify.class);
-    private final String flavorSigningCertPath = My.configuration().getDirectoryPath() + File.separator + "flavor-signer.crt.pem";
-    private final String caCertPath = My.configuration().getDirectoryPath() + File.separator + "cms-ca-cert.pem";
 
     private UUID hostId;
     private boolean forceUpdate;
+    private VerificationContext verificationContext;
     
     public FlavorVerify() { }
     
@@ -105,40 +110,195 @@ public class FlavorVerify extends QueueOperation {
         this.forceUpdate = forceUpdate;
     }
     
+    public FlavorVerify(UUID hostId, boolean forceUpdate, VerificationContext verificationContext) {
+        this.hostId = hostId;
+        this.forceUpdate = forceUpdate;
+        this.verificationContext = verificationContext;
+    }
+    
     @Override
     public Boolean call() {
+        Verification verification = null;
         try {
-            // verify host ID is specified as input
-            if (this.hostId == null) {
-                String hostIdString = this.getParameter("host_id");
-                if (hostIdString == null || hostIdString.isEmpty()) {
-                    this.setQueueState(ERROR);
-                    throw new FlavorVerifyException("Host ID must be specified in parameters");
-                }
-                this.hostId = UUID.valueOf(hostIdString);
-            }
+            verification = prepare();
+            return fetch(verification) && verify(verification) && sign(verification) && persist(verification);
+        } catch (Exception e) {
+            return failed(verification, e);
+        }
+    }
 
-            // verify force update flag is specified as input
-            String forceUpdateString = this.getParameter("force_update");
-            if (forceUpdateString != null && !forceUpdateString.isEmpty() && Boolean.valueOf(forceUpdateString)) {
-                this.forceUpdate = true;
+    /**
+     * Reads the parameters on the specified executor, then runs each
+     * verification stage on its own stage executor, so the queue worker that
+     * started the operation is not held while waiting on the host and a slow
+     * host does not hold a thread that could be signing reports.
+     */
+    @Override
+    public CompletableFuture<?> callAsync(Executor executor) {
+        final AtomicReference<Verification> prepared = new AtomicReference<>();
+        return CompletableFuture.supplyAsync(new Supplier<Verification>() {
+            @Override
+            public Verification get() {
+                Verification verification = prepare();
+                prepared.set(verification);
+                return verification;
+            }
+        }, executor).thenApplyAsync(new NextStage() {
+            @Override
+            protected boolean run(Verification verification) {
+                return fetch(verification);
+            }
+        }, FETCH.getExecutor()).thenApplyAsync(new NextStage() {
+            @Override
+            protected boolean run(Verification verification) {
+                return verify(verification);
+            }
+        }, VERIFY.getExecutor()).thenApplyAsync(new NextStage() {
+            @Override
+            protected boolean run(Verification verification) {
+                return sign(verification);
             }
+        }, SIGN.getExecutor()).thenApplyAsync(new NextStage() {
+            @Override
+            protected boolean run(Verification verification) {
+                return persist(verification);
+            }
+        }, PERSIST.getExecutor()).thenApply(new Function<Verification, Boolean>() {
+            @Override
+            public Boolean apply(Verification verification) {
+                return verification != null;
+            }
+        }).exceptionally(new Function<Throwable, Boolean>() {
+            @Override
+            public Boolean apply(Throwable t) {
+                return failed(prepared.get(), t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            }
+        });
+    }
 
-            HostManifest hostManifest = retrieveHostManifest(hostId, forceUpdate);
+    /**
+     * Runs the next stage if the previous stage asked to continue, passing
+     * the verification on, or null to skip the remaining stages.
+     */
+    private abstract class NextStage implements Function<Verification, Verification> {
+        @Override
+        public Verification apply(Verification verification) {
+            return verification != null && run(verification) ? verification : null;
+        }
+
+        protected abstract boolean run(Verification verification);
+    }
 
-            log.debug("FlavorVerify: Hostmanifest retrieval for host {} with forceUpdate flag set to {} is {}", hostId, forceUpdate, hostManifest == null ? "Failure" : "Success");
+    /**
+     * State of one verification run. It is handed from stage to stage, and
+     * possibly from thread to thread, so the operation itself keeps nothing
+     * but its parameters between runs.
+     */
+    private static class Verification {
+        private final UUID hostId;
+        private final boolean forceUpdate;
+        private final VerificationContext verificationContext;
+        private HostManifest hostManifest;
+        private TrustReport trustReport;
+        private String hostManifestDigest;
+        private String flavorDigest;
+        private Report report;
+
+        private Verification(UUID hostId, boolean forceUpdate, VerificationContext verificationContext) {
+            this.hostId = hostId;
+            this.forceUpdate = forceUpdate;
+            this.verificationContext = verificationContext;
+        }
+    }
 
-            if (hostManifest == null || hostManifest.getHostInfo() == null
-                    || hostManifest.getHostInfo().getHardwareUuid() == null
-                    || hostManifest.getHostInfo().getHardwareUuid().isEmpty()
-                    || !UUID.isValid(hostManifest.getHostInfo().getHardwareUuid())) {
-                log.warn("Error communicating with host, cannot retrieve host manifest");
-                return false;
+    private Verification prepare() {
+        // verify host ID is specified as input
+        UUID verifyHostId = this.hostId;
+        if (verifyHostId == null) {
+            String hostIdString = this.getParameter("host_id");
+            if (hostIdString == null || hostIdString.isEmpty()) {
+                this.setQueueState(ERROR);
+                throw new FlavorVerifyException("Host ID must be specified in parameters");
             }
+            verifyHostId = UUID.valueOf(hostIdString);
+        }
+
+        // verify force update flag is specified as input
+        boolean verifyForceUpdate = this.forceUpdate;
+        String forceUpdateString = this.getParameter("force_update");
+        if (forceUpdateString != null && !forceUpdateString.isEmpty() && Boolean.valueOf(forceUpdateString)) {
+            verifyForceUpdate = true;
+        }
+
+        // use the shared verification context unless one was provided
+        VerificationContext verifyContext = this.verificationContext;
+        if (verifyContext == null) {
+            verifyContext = VerificationContextProvider.getContext();
+        }
+        return new Verification(verifyHostId, verifyForceUpdate, verifyContext);
+    }
+
+    /**
+     * Retrieves the host manifest and checks it identifies the host.
+     */
+    private boolean fetch(Verification verification) {
+        UUID hostId = verification.hostId;
+        long start = FETCH.begin();
+        boolean success = false;
+        try {
+            verification.hostManifest = retrieveHostManifest(hostId, verification.forceUpdate);
+            success = true;
+        } finally {
+            FETCH.end(start, success);
+        }
+        HostManifest hostManifest = verification.hostManifest;
 
+        log.debug("FlavorVerify: Hostmanifest retrieval for host {} with forceUpdate flag set to {} is {}", hostId, verification.forceUpdate, hostManifest == null ? "Failure" : "Success");
+
+        if (hostManifest == null || hostManifest.getHostInfo() == null
+                || hostManifest.getHostInfo().getHardwareUuid() == null
+                || hostManifest.getHostInfo().getHardwareUuid().isEmpty()
+                || !UUID.isValid(hostManifest.getHostInfo().getHardwareUuid())) {
+            log.warn("Error communicating with host, cannot retrieve host manifest");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Verifies the host manifest against the flavors of each flavorgroup, and
+     * keeps the collective trust report if it needs to be stored.
+     */
+    private boolean verify(Verification verification) {
+        UUID hostId = verification.hostId;
+        HostManifest hostManifest = verification.hostManifest;
+        VerificationContext verificationContext = verification.verificationContext;
+        boolean forceUpdate = verification.forceUpdate;
+        long start = VERIFY.begin();
+        boolean success = false;
+        try {
             // retrieve the flavorgroups
             List<Flavorgroup> flavorGroupsToVerify = getFlavorgroupsToVerify(hostId);
             UUID hardwareUuid = UUID.valueOf(hostManifest.getHostInfo().getHardwareUuid());
+            verification.hostManifestDigest = VerificationDigest.ofHostManifest(hostManifest);
+            verification.flavorDigest = VerificationDigest.ofFlavors(flavorGroupsToVerify, hardwareUuid, verificationContext);
+            // the previous trust report still stands if the host manifest and flavors are unchanged; it is
+            // kept as is while it is valid, and signed again with a new expiry when it has expired or the
+            // update is forced, as it is on every trust refresh
+            Report previousReport = retrievePreviousReport(hostId);
+            if (isPreviousReportCurrent(verification, previousReport)) {
+                if (forceUpdate || isExpired(previousReport)) {
+                    log.debug("Host manifest and flavors unchanged for host {}, renewing previous report", hostId.toString());
+                    verification.trustReport = previousReport.getTrustReport();
+                    VerificationDigest.renewed();
+                } else {
+                    log.debug("Host manifest and flavors unchanged for host {}, keeping previous report", hostId.toString());
+                    VerificationDigest.reused();
+                }
+                success = true;
+                return true;
+            }
+            VerificationDigest.verified();
             boolean isCollectiveTrustReportValid = true;
             // create collective trust report from hostgroups individual trustreport
             TrustReport collectiveTrustReport = null;
@@ -146,12 +306,12 @@ public class FlavorVerify extends QueueOperation {
                 HostTrustRequirements trustRequirementsForFlavorGroup = getHostTrustRequirementsForFlavorgroup(hostId, hardwareUuid, flavorgroup);
                 List<SignedFlavor> cachedFlavorsForFlavorgroup = retrieveCachedFlavorsForFlavorgroupToMatch(hostId, flavorgroup);
                 if(cachedFlavorsForFlavorgroup != null) {
-                    HostTrustCache hostTrustCacheForFlavorgroup = validateCachedFlavorsAgainstHostManifest(hostId, hostManifest, cachedFlavorsForFlavorgroup);
+                    HostTrustCache hostTrustCacheForFlavorgroup = validateCachedFlavorsAgainstHostManifest(hostId, hostManifest, cachedFlavorsForFlavorgroup, verificationContext);
                     TrustReport hostTrustReportForFlavorgroup = hostTrustCacheForFlavorgroup.getTrustReport();
-                    if (!isHostTrustReportValidForFlavorgroup(trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup)) {
+                    if (!isHostTrustReportValidForFlavorgroup(hostId, trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup, verificationContext)) {
                         isCollectiveTrustReportValid = false;
                         // Generate Host Trust Report for Flavor Group by verifying flavors against Host Manifest
-                        hostTrustReportForFlavorgroup = createHostTrustReportForFlavorgroup(hostManifest, trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup);
+                        hostTrustReportForFlavorgroup = createHostTrustReportForFlavorgroup(hostId, hostManifest, trustRequirementsForFlavorGroup, hostTrustCacheForFlavorgroup, verificationContext);
                     }
 
                     log.debug("Trust status for host {} for flavor group {} is {}", hostId.toString(), flavorgroup.getName(), hostTrustReportForFlavorgroup.isTrusted());
@@ -164,21 +324,88 @@ public class FlavorVerify extends QueueOperation {
             }
             if (collectiveTrustReport != null && (!isCollectiveTrustReportValid || forceUpdate)) {
                 log.debug("Trust cache update called, generating new SAML and saving new report for host: {}", hostId.toString());
-                storeTrustReport(hostId, collectiveTrustReport);
+                verification.trustReport = collectiveTrustReport;
             }
-            // update host_status so not in QUEUE state
-            new HostResource().updateHostStatus(hostId, CONNECTED, hostManifest);
-            this.setQueueState(COMPLETED);
-            log.info("Flavor verification completed succesfully for host with ID {}",hostId.toString());
+            success = true;
             return true;
-        } catch (Exception e) {
-            this.setQueueState(ERROR);
-            log.error("Error while running flavor verification for host [{}]: {}", this.hostId, e.getMessage());
-            log.debug("Error while running flavor verification for host [{}]", this.hostId, e);
-            return false;
+        } finally {
+            VERIFY.end(start, success);
         }
     }
 
+    /**
+     * Generates the SAML report for the trust report, if there is one to store.
+     */
+    private boolean sign(Verification verification) {
+        if (verification.trustReport == null) {
+            return true;
+        }
+        long start = SIGN.begin();
+        boolean success = false;
+        try {
+            verification.report = createReport(verification.hostId, verification.trustReport,
+                    verification.hostManifestDigest, verification.flavorDigest);
+            success = true;
+            return true;
+        } finally {
+            SIGN.end(start, success);
+        }
+    }
+
+    /**
+     * Stores the new report, if there is one, and updates the host status.
+     */
+    private boolean persist(Verification verification) {
+        UUID hostId = verification.hostId;
+        long start = PERSIST.begin();
+        boolean success = false;
+        try {
+            if (verification.report != null) {
+                new ReportRepository().create(verification.report);
+            }
+            // update host_status so not in QUEUE state
+            new HostResource().updateHostStatus(hostId, CONNECTED, verification.hostManifest);
+            success = true;
+        } finally {
+            PERSIST.end(start, success);
+        }
+        this.setQueueState(COMPLETED);
+        log.info("Flavor verification completed succesfully for host with ID {}",hostId.toString());
+        log.debug("Flavor verification stages: {} {}", FlavorVerifyStage.values(), VerificationDigest.getStatistics());
+        return true;
+    }
+
+    private Boolean failed(Verification verification, Throwable e) {
+        this.setQueueState(ERROR);
+        Object host = verification != null ? verification.hostId : this.getParameter("host_id");
+        log.error("Error while running flavor verification for host [{}]: {}", host, e.getMessage());
+        log.debug("Error while running flavor verification for host [{}]", host, e);
+        return false;
+    }
+
+    /**
+     * Returns true if the previous report for the host was verified against
+     * the same host manifest and flavors as this verification.
+     */
+    private boolean isPreviousReportCurrent(Verification verification, Report previousReport) {
+        return previousReport != null && previousReport.getTrustReport() != null
+                && verification.hostManifestDigest.equals(previousReport.getHostManifestDigest())
+                && verification.flavorDigest.equals(previousReport.getFlavorDigest());
+    }
+
+    private boolean isExpired(Report report) {
+        return report.getExpiration() == null || !report.getExpiration().after(new Date());
+    }
+
+    /**
+     * Returns the latest report stored for the host, or null if there is none.
+     */
+    Report retrievePreviousReport(UUID hostId) {
+        ReportLocator reportLocator = new ReportLocator();
+        reportLocator.hostId = hostId;
+        return new ReportRepository().retrieve(reportLocator);
+    }
+
     private List<Flavorgroup> getFlavorgroupsToVerify(UUID hostId) {
         FlavorgroupFilterCriteria flavorgroupFilterCriteria = new FlavorgroupFilterCriteria();
         flavorgroupFilterCriteria.hostId = hostId;
@@ -363,17 +590,14 @@ public class FlavorVerify extends QueueOperation {
         return flavorsToMatch;
     }
 
-    private HostTrustCache validateCachedFlavorsAgainstHostManifest(UUID hostId, HostManifest hostManifest, List<SignedFlavor> cachedFlavors) {
+    private HostTrustCache validateCachedFlavorsAgainstHostManifest(UUID hostId, HostManifest hostManifest, List<SignedFlavor> cachedFlavors, VerificationContext verificationContext) {
         HostTrustCache hostTrustCache = new HostTrustCache();
         hostTrustCache.setHostId(hostId);
         TrustReport collectiveTrustReport = null;
         try {
             for (SignedFlavor cachedFlavor : cachedFlavors) {
                 // call verifier
-                String privacyCaCert = My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath();
-                String tagCaCert = My.configuration().getAssetTagCaCertificateFile().getAbsolutePath();
-                Verifier verifier = new Verifier(privacyCaCert, tagCaCert, flavorSigningCertPath, caCertPath);
-                TrustReport individualTrustReport = verifier.verify(hostManifest, cachedFlavor, MSConfig.getConfiguration().getBoolean("skip.flavor.signature.verification"));
+                TrustReport individualTrustReport = verifyFlavor(hostManifest, cachedFlavor, verificationContext);
 
                 // if the flavor is trusted, add it to the collective trust report and to the return object
                 // else, delete it from the trust cache
@@ -402,7 +626,7 @@ public class FlavorVerify extends QueueOperation {
         return hostTrustCache;
     }
 
-    private TrustReport verify(UUID hostId, SignedFlavorCollection flavors, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements) {
+    private TrustReport verify(UUID hostId, SignedFlavorCollection flavors, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, VerificationContext verificationContext) {
         TrustReport collectiveTrustReport = null;
 
         // return null if no flavors were found
@@ -422,14 +646,11 @@ public class FlavorVerify extends QueueOperation {
             for (SignedFlavor signedFlavor : flavors.getSignedFlavors()) {
                 UUID flavorId = UUID.valueOf(signedFlavor.getFlavor().getMeta().getId());
                 log.debug("Found flavor with ID: {}", flavorId.toString());
-                // call verifier
-                String privacyCaCert = My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath();
-                String tagCaCert = My.configuration().getAssetTagCaCertificateFile().getAbsolutePath();
-                Verifier verifier = new Verifier(privacyCaCert, tagCaCert, flavorSigningCertPath, caCertPath);
                 List<FlavorMatchPolicy> flavorMatchPolicies= hostTrustRequirements.getFlavorMatchPolicy().getFlavorMatchPolicies();
                 for(FlavorMatchPolicy flavorMatchPolicy : flavorMatchPolicies) {
                     if (flavorMatchPolicy.getFlavorPart().getValue().equals(signedFlavor.getFlavor().getMeta().getDescription().getFlavorPart())) {
-                        TrustReport individualTrustReport = verifier.verify(hostManifest, signedFlavor, MSConfig.getConfiguration().getBoolean("skip.flavor.signature.verification"));
+                        // call verifier
+                        TrustReport individualTrustReport = verifyFlavor(hostManifest, signedFlavor, verificationContext);
 
                         // if the flavor is trusted, add it to the collective trust report
                         // and store the flavor host link in the trust cache
@@ -512,6 +733,10 @@ public class FlavorVerify extends QueueOperation {
         return collectiveTrustReport;
     }
     
+    private TrustReport verifyFlavor(HostManifest hostManifest, SignedFlavor signedFlavor, VerificationContext verificationContext) {
+        return FlavorSignatureCache.verify(verificationContext.getVerifier(), hostManifest, signedFlavor, verificationContext);
+    }
+    
     private Boolean createFlavorHostLink(UUID flavorId, UUID hostId) {
         // create a new flavor host link (trust cache record), only if it doesn't already exist
         FlavorHostLinkLocator flavorHostLinkLocator = new FlavorHostLinkLocator(flavorId, hostId);
@@ -526,12 +751,13 @@ public class FlavorVerify extends QueueOperation {
         return false;
     }
 
-    private TrustReport createTrustReport(HostManifest hostManifest, HostTrustRequirements hostTrustRequirements,
-                                          HostTrustCache trustCache, HashMap<String, Boolean> latestReqAndDefFlavorTypes) {
+    private TrustReport createTrustReport(UUID hostId, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements,
+                                          HostTrustCache trustCache, HashMap<String, Boolean> latestReqAndDefFlavorTypes,
+                                          VerificationContext verificationContext) {
         // Fetch flavors needed to verify
         SignedFlavorCollection flavorsToVerify = findFlavors(hostTrustRequirements.getFlavorgroupId(), hostManifest, latestReqAndDefFlavorTypes);
         // Verify flavor collection against host report
-        TrustReport trustReport = verify(hostId, flavorsToVerify, hostManifest, hostTrustRequirements);
+        TrustReport trustReport = verify(hostId, flavorsToVerify, hostManifest, hostTrustRequirements, verificationContext);
 
         // add results found in trust cache
         if (!isTrustCacheEmpty(trustCache)) {
@@ -549,12 +775,7 @@ public class FlavorVerify extends QueueOperation {
 
         // add all of flavors check rule to the trust report
         SignedFlavorCollection allOfFlavors = hostTrustRequirements.getAllOfFlavors();
-        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors,
-                My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath(),
-                My.configuration().getAssetTagCaCertificateFile().getAbsolutePath(),
-                flavorSigningCertPath,
-                caCertPath,
-                MSConfig.getConfiguration().getBoolean("skip.flavor.signature.verification"));
+        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors, verificationContext);
         ruleAllOfFlavors.setMarkers(getAllOfMarkers(hostTrustRequirements));
         trustReport = ruleAllOfFlavors.addFaults(trustReport);  // Add faults if every 'All of' flavors are not present
         
@@ -569,7 +790,7 @@ public class FlavorVerify extends QueueOperation {
         return markers;
     }
 
-    private boolean isHostTrustReportValidForFlavorgroup(HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache) {
+    private boolean isHostTrustReportValidForFlavorgroup(UUID hostId, HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache, VerificationContext verificationContext) {
         // No results found in Trust Cache
         if (isTrustCacheEmpty(trustCache)) {
             log.debug("No results found in trust cache for host: {}", hostId.toString());
@@ -579,7 +800,7 @@ public class FlavorVerify extends QueueOperation {
         // Missing Required and Defined Flavors
         TrustReport cachedTrustReport = trustCache.getTrustReport();
         List<FlavorPart> reqAndDefFlavorTypes = hostTrustRequirements.getDefinedAndRequiredFlavorTypes();
-        HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = getMissingRequiredFlavorPartsWithLatest(hostTrustRequirements, reqAndDefFlavorTypes, cachedTrustReport);
+        HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = getMissingRequiredFlavorPartsWithLatest(hostId, hostTrustRequirements, reqAndDefFlavorTypes, cachedTrustReport);
         if (!missingRequiredFlavorPartsWithLatest.isEmpty()) {
             log.debug("Host [{}] has missing required and defined flavor parts: {}", hostId.toString(), missingRequiredFlavorPartsWithLatest.keySet());
             return false;
@@ -587,12 +808,7 @@ public class FlavorVerify extends QueueOperation {
 
         // All Of Flavors present
         SignedFlavorCollection allOfFlavors = hostTrustRequirements.getAllOfFlavors();
-        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors,
-                My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath(),
-                My.configuration().getAssetTagCaCertificateFile().getAbsolutePath(),
-                flavorSigningCertPath,
-                caCertPath,
-                MSConfig.getConfiguration().getBoolean("skip.flavor.signature.verification"));
+        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors, verificationContext);
         ruleAllOfFlavors.setMarkers(getAllOfMarkers(hostTrustRequirements));
         if (areAllOfFlavorsMissingInCachedTrustReport(cachedTrustReport, ruleAllOfFlavors)) {
             log.debug("All of flavors exist in policy for host: {}", hostId.toString());
@@ -603,34 +819,29 @@ public class FlavorVerify extends QueueOperation {
         return true;
     }
 
-    private TrustReport createHostTrustReportForFlavorgroup(HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache) {
+    private TrustReport createHostTrustReportForFlavorgroup(UUID hostId, HostManifest hostManifest, HostTrustRequirements hostTrustRequirements, HostTrustCache trustCache, VerificationContext verificationContext) {
         //create a hashMap with latest match policy
         List<FlavorPart> reqAndDefFlavorTypes = hostTrustRequirements.getDefinedAndRequiredFlavorTypes();
         HashMap<String, Boolean> latestReqAndDefFlavorTypes = getLatestFlavorTypeMap(hostTrustRequirements, reqAndDefFlavorTypes);
 
         // No results found in Trust Cache
         if (isTrustCacheEmpty(trustCache)) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes);
+            return createTrustReport(hostId, hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes, verificationContext);
         }
 
         // Missing Required and Defined Flavors
         TrustReport cachedTrustReport = trustCache.getTrustReport();
-        HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = getMissingRequiredFlavorPartsWithLatest(hostTrustRequirements, reqAndDefFlavorTypes, cachedTrustReport);
+        HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = getMissingRequiredFlavorPartsWithLatest(hostId, hostTrustRequirements, reqAndDefFlavorTypes, cachedTrustReport);
         if (!missingRequiredFlavorPartsWithLatest.isEmpty()) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, missingRequiredFlavorPartsWithLatest);
+            return createTrustReport(hostId, hostManifest, hostTrustRequirements, trustCache, missingRequiredFlavorPartsWithLatest, verificationContext);
         }
         
         // All Of Flavors present
         SignedFlavorCollection allOfFlavors = hostTrustRequirements.getAllOfFlavors();
-        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors,
-                My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath(),
-                My.configuration().getAssetTagCaCertificateFile().getAbsolutePath(),
-                flavorSigningCertPath,
-                caCertPath,
-                MSConfig.getConfiguration().getBoolean("skip.flavor.signature.verification"));
+        RuleAllOfFlavors ruleAllOfFlavors = new RuleAllOfFlavors(allOfFlavors, verificationContext);
         ruleAllOfFlavors.setMarkers(getAllOfMarkers(hostTrustRequirements));
         if (areAllOfFlavorsMissingInCachedTrustReport(cachedTrustReport, ruleAllOfFlavors)) {
-            return createTrustReport(hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes);
+            return createTrustReport(hostId, hostManifest, hostTrustRequirements, trustCache, latestReqAndDefFlavorTypes, verificationContext);
         }
         return cachedTrustReport;
     }
@@ -654,7 +865,7 @@ public class FlavorVerify extends QueueOperation {
         return !ruleAllOfFlavors.allOfFlavorsEmpty() && !ruleAllOfFlavors.checkAllOfFlavorsExist(cachedTrustReport);
     }
 
-    private HashMap<String, Boolean> getMissingRequiredFlavorPartsWithLatest(HostTrustRequirements hostTrustRequirements, List<FlavorPart> reqAndDefFlavorTypes, TrustReport cachedTrustReport) {
+    private HashMap<String, Boolean> getMissingRequiredFlavorPartsWithLatest(UUID hostId, HostTrustRequirements hostTrustRequirements, List<FlavorPart> reqAndDefFlavorTypes, TrustReport cachedTrustReport) {
         HashMap<String, Boolean> missingRequiredFlavorPartsWithLatest = new HashMap<>();
         for (FlavorPart requiredFlavorType : reqAndDefFlavorTypes) {
             log.debug("Checking if required flavor type [{}] for host [{}] is missing", requiredFlavorType.name(), hostId.toString());
@@ -750,9 +961,9 @@ public class FlavorVerify extends QueueOperation {
         return mapSamlAssertion.assertion;
     }
     
-    private void storeTrustReport(UUID hostId, TrustReport trustReport) {
+    private Report createReport(UUID hostId, TrustReport trustReport, String hostManifestDigest, String flavorDigest) {
         String samlReport = generateSamlReport(trustReport);
-        Map<String, Date> dates = parseDatesFromSaml(samlReport);
+        Map<String, Date> dates = parseDatesFromSaml(hostId, samlReport);
         log.debug("flavorverify: {}", samlReport); 
         // Save Report in DB
         Report report = new Report();
@@ -762,7 +973,9 @@ public class FlavorVerify extends QueueOperation {
         report.setSaml(samlReport);
         report.setCreated(dates.get("created"));
         report.setExpiration(dates.get("expiration"));
-        new ReportRepository().create(report);       
+        report.setHostManifestDigest(hostManifestDigest);
+        report.setFlavorDigest(flavorDigest);
+        return report;
     }
 
     private TrustReport addRuleResults(TrustReport trustReport, List<RuleResult> ruleResults) {
@@ -772,7 +985,7 @@ public class FlavorVerify extends QueueOperation {
         return trustReport;
     }
     
-    private Map<String, Date> parseDatesFromSaml(String saml) {
+    private Map<String, Date> parseDatesFromSaml(UUID hostId, String saml) {
         String DATE_FORMAT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
         Map<String, Date> dates = new HashMap();
         
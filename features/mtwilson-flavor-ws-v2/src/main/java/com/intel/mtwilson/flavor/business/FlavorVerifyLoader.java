@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the flavor verification metrics with the platform MBean server:
+ * the report reuse counters and the throughput and latency of each stage.
+ * Runs the report history retention task while the application is running
+ * and shuts down the stage worker pools when it stops.
+ */
+@WebListener
+public class FlavorVerifyLoader implements ServletContextListener {
+    private transient static final Logger log = LoggerFactory.getLogger(FlavorVerifyLoader.class);
+    private static final String DOMAIN = "com.intel.mtwilson.flavor";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        register(DOMAIN + ":type=FlavorVerifyReports", new FlavorVerifyReports());
+        for (FlavorVerifyStage stage : FlavorVerifyStage.values()) {
+            register(DOMAIN + ":type=FlavorVerifyStage,name=" + stage.getName(), stage);
+        }
+        ReportHistoryMaintenance.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (Exception e) {
+                log.debug("Cannot unregister {}: {}", name, e.getMessage());
+            }
+        }
+        registered.clear();
+        ReportHistoryMaintenance.stop();
+        log.info("Shutting down flavor verification stages...");
+        FlavorVerifyStage.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void register(String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+            registered.add(objectName);
+        } catch (Exception e) {
+            log.warn("Cannot register flavor verification metrics {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+/**
+ * Exposes the report reuse counters of {@link VerificationDigest}.
+ */
+public class FlavorVerifyReports implements FlavorVerifyReportsMBean {
+
+    @Override
+    public long getReusedCount() {
+        return VerificationDigest.getReuseCount();
+    }
+
+    @Override
+    public long getRenewedCount() {
+        return VerificationDigest.getRenewCount();
+    }
+
+    @Override
+    public long getVerifiedCount() {
+        return VerificationDigest.getVerifyCount();
+    }
+
+    @Override
+    public double getReuseRate() {
+        return VerificationDigest.getReuseRate();
+    }
+}
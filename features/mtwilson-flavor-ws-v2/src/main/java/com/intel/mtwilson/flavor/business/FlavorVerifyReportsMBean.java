@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+/**
+ * Management interface of the report reuse counters, registered as
+ * {@code com.intel.mtwilson.flavor:type=FlavorVerifyReports}.
+ */
+public interface FlavorVerifyReportsMBean {
+    /**
+     * Verifications that kept the previous report as is.
+     */
+    long getReusedCount();
+
+    /**
+     * Verifications that signed the previous trust report again.
+     */
+    long getRenewedCount();
+
+    /**
+     * Verifications that verified the host against its flavors.
+     */
+    long getVerifiedCount();
+
+    double getReuseRate();
+}
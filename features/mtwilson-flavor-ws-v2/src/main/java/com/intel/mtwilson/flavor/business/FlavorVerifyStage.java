@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.mtwilson.My;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the flavor verification pipeline, with its own worker pool
+ * and throughput and latency counters.
+ *
+ * Flavor verification runs in four stages: host manifest retrieval (fetch),
+ * flavor verification (verify), SAML generation (sign) and report storage
+ * (persist). When the queue runs in async execution mode each stage runs on
+ * its own pool, sized by the stage's {@code mtwilson.flavor.verify.*.threads}
+ * setting, so a slow trust agent holds a fetch thread and not one that could
+ * be signing reports. Synchronous verification runs the same stages on the
+ * calling thread and records the same metrics, which {@link FlavorVerifyLoader}
+ * publishes as MBeans.
+ *
+ * Only signing is CPU bound. Fetch waits on trust agents, and verify and
+ * persist mostly wait on the database, each holding a connection while they
+ * run, so their defaults are sized for waiting rather than for the number of
+ * processors and the verify and persist threads together should stay below
+ * the connections left for the queue by {@code mtwilson.queue.db.reserved.connections}.
+ * Each pool has a bounded queue of {@code mtwilson.flavor.verify.*.queue.size}
+ * entries; when it is full, the thread handing work to the stage waits for
+ * room, which slows down the previous stage instead of piling up work or
+ * running the stage on a thread sized for another one. Work only flows
+ * forward through the stages, so a full stage cannot block itself. The pools
+ * are shut down by {@link FlavorVerifyLoader} when the application stops.
+ */
+public class FlavorVerifyStage implements FlavorVerifyStageMBean {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FlavorVerifyStage.class);
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    public static final FlavorVerifyStage FETCH = new FlavorVerifyStage("fetch", "mtwilson.flavor.verify.io.threads", 512);
+    public static final FlavorVerifyStage VERIFY = new FlavorVerifyStage("verify", "mtwilson.flavor.verify.cpu.threads", 32);
+    public static final FlavorVerifyStage SIGN = new FlavorVerifyStage("sign", "mtwilson.flavor.verify.sign.threads", PROCESSORS);
+    public static final FlavorVerifyStage PERSIST = new FlavorVerifyStage("persist", "mtwilson.flavor.verify.persist.threads", 16);
+
+    private final String name;
+    private final String threadsProperty;
+    private final int defaultThreads;
+    private final String queueSizeProperty;
+    private volatile ThreadPoolExecutor executor = null;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private FlavorVerifyStage(String name, String threadsProperty, int defaultThreads) {
+        this.name = name;
+        this.threadsProperty = threadsProperty;
+        this.defaultThreads = defaultThreads;
+        this.queueSizeProperty = "mtwilson.flavor.verify." + name + ".queue.size";
+    }
+
+    public static List<FlavorVerifyStage> values() {
+        return Arrays.asList(FETCH, VERIFY, SIGN, PERSIST);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int threads = Math.max(1, My.configuration().getConfiguration().getInt(threadsProperty, defaultThreads));
+                    int queueSize = Math.max(1, My.configuration().getConfiguration().getInt(queueSizeProperty, DEFAULT_QUEUE_SIZE));
+                    log.debug("Starting flavor verification {} stage with {} threads and a queue of {}", name, threads, queueSize);
+                    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                                private final AtomicInteger count = new AtomicInteger();
+                                @Override
+                                public Thread newThread(Runnable runnable) {
+                                    Thread thread = new Thread(runnable, "flavor-verify-" + name + "-" + count.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            }, new RejectedExecutionHandler() {
+                                @Override
+                                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+                                    waitForRoom(runnable, pool);
+                                }
+                            });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Shuts down the worker pool of each stage, waiting up to the specified
+     * time for work in progress to finish. A stage used again afterwards
+     * starts a new pool.
+     */
+    public static void shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (FlavorVerifyStage stage : values()) {
+            ThreadPoolExecutor current;
+            synchronized (stage) {
+                current = stage.executor;
+                stage.executor = null;
+            }
+            if (current == null) {
+                continue;
+            }
+            current.shutdown();
+            try {
+                if (!current.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.debug("Flavor verification {} stage did not finish in time, interrupting {} workers", stage.name, current.getActiveCount());
+                    current.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                current.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void waitForRoom(Runnable runnable, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Flavor verification " + name + " stage is shut down");
+        }
+        try {
+            pool.getQueue().put(runnable);
+            // the pool may have shut down while waiting, and would never run the work
+            if (pool.isShutdown() && pool.getQueue().remove(runnable)) {
+                throw new RejectedExecutionException("Flavor verification " + name + " stage is shut down");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the flavor verification " + name + " stage", e);
+        }
+    }
+
+    /**
+     * Marks the start of work in this stage.
+     *
+     * @return the start time to pass to {@link #end(long, boolean)}
+     */
+    public long begin() {
+        active.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(long start, boolean success) {
+        long elapsed = System.nanoTime() - start;
+        active.decrementAndGet();
+        if (success) {
+            completed.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        totalNanos.addAndGet(elapsed);
+        long max = maxNanos.get();
+        while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+            max = maxNanos.get();
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public long getAverageLatencyMillis() {
+        long count = completed.get() + failed.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / count);
+    }
+
+    @Override
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[completed=%d, failed=%d, active=%d, queued=%d, avg=%dms, max=%dms]",
+                name, getCompletedCount(), getFailedCount(), getActiveCount(), getQueueDepth(),
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+/**
+ * Management interface of a flavor verification stage, registered as
+ * {@code com.intel.mtwilson.flavor:type=FlavorVerifyStage,name=<stage>}.
+ */
+public interface FlavorVerifyStageMBean {
+    String getName();
+
+    int getActiveCount();
+
+    int getQueueDepth();
+
+    long getCompletedCount();
+
+    long getFailedCount();
+
+    long getAverageLatencyMillis();
+
+    long getMaxLatencyMillis();
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.dcsg.cpg.tls.policy.TlsPolicy;
+import com.intel.dcsg.cpg.tls.policy.TlsPolicyBuilder;
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.tls.policy.TlsPolicyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the TLS policies used to connect to hosts.
+ *
+ * Trust agents are connected to with a strict policy over the truststore file,
+ * which is loaded again only when the file is replaced or modified. Host TLS
+ * policies stored in the database are kept by policy ID together with their
+ * descriptor, and are removed when the policy is updated or deleted through
+ * {@link com.intel.mtwilson.flavor.rest.v2.repository.HostTlsPolicyRepository}
+ * or after {@code mtwilson.host.tls.policy.cache.ttl.seconds}, so changes made
+ * by another node are picked up. Trust first certificate policies record the
+ * certificate of the first connection and are never cached.
+ *
+ * Reusing the policy instance for repeated connections to the same host also
+ * lets the connection layer reuse its TLS state for that policy.
+ */
+public class HostTlsPolicyCache {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostTlsPolicyCache.class);
+    public static final String HOST_TLS_POLICY_CACHE_TTL = "mtwilson.host.tls.policy.cache.ttl.seconds";
+    private static final int DEFAULT_HOST_TLS_POLICY_CACHE_TTL = 300;
+    private static final String TRUST_FIRST_CERTIFICATE = "TRUST_FIRST_CERTIFICATE";
+    private static final long ttl = My.configuration().getConfiguration().getInt(HOST_TLS_POLICY_CACHE_TTL, DEFAULT_HOST_TLS_POLICY_CACHE_TTL) * 1000L;
+
+    private static final ConcurrentHashMap<UUID, Entry> policies = new ConcurrentHashMap<>();
+    private static volatile Truststore truststore = null;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private HostTlsPolicyCache() { }
+
+    /**
+     * Returns the strict TLS policy over the truststore file, loading the
+     * file only if it changed since it was last loaded.
+     */
+    public static TlsPolicy getTruststoreTlsPolicy(File truststoreFile, String password) throws IOException {
+        Truststore current = truststore;
+        if (current != null && current.isCurrent(truststoreFile)) {
+            hits.incrementAndGet();
+            return current.tlsPolicy;
+        }
+        synchronized (HostTlsPolicyCache.class) {
+            current = truststore;
+            if (current != null && current.isCurrent(truststoreFile)) {
+                hits.incrementAndGet();
+                return current.tlsPolicy;
+            }
+            misses.incrementAndGet();
+            log.debug("Loading truststore {} for host TLS policy", truststoreFile.getAbsolutePath());
+            long lastModified = truststoreFile.lastModified();
+            long length = truststoreFile.length();
+            TlsPolicy tlsPolicy = TlsPolicyBuilder.factory().strictWithKeystore(truststoreFile, password).build();
+            truststore = new Truststore(truststoreFile.getAbsolutePath(), lastModified, length, tlsPolicy);
+            return tlsPolicy;
+        }
+    }
+
+    /**
+     * Returns the cached TLS policy and descriptor for the host TLS policy
+     * ID, or null if it is not cached or has expired.
+     */
+    public static Entry get(UUID tlsPolicyId) {
+        if (tlsPolicyId == null) {
+            return null;
+        }
+        Entry entry = policies.get(tlsPolicyId);
+        if (entry == null || System.currentTimeMillis() - entry.created > ttl) {
+            if (entry != null) {
+                policies.remove(tlsPolicyId, entry);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    public static void put(UUID tlsPolicyId, TlsPolicyDescriptor tlsPolicyDescriptor, TlsPolicy tlsPolicy) {
+        if (tlsPolicyId == null || tlsPolicyDescriptor == null || tlsPolicy == null
+                || TRUST_FIRST_CERTIFICATE.equalsIgnoreCase(tlsPolicyDescriptor.getPolicyType())) {
+            return;
+        }
+        policies.put(tlsPolicyId, new Entry(tlsPolicyDescriptor, tlsPolicy));
+    }
+
+    public static void invalidate(UUID tlsPolicyId) {
+        if (tlsPolicyId != null && policies.remove(tlsPolicyId) != null) {
+            log.debug("Removed host TLS policy {} from cache", tlsPolicyId);
+        }
+    }
+
+    public static void invalidateAll() {
+        policies.clear();
+        truststore = null;
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static class Entry {
+        private final TlsPolicyDescriptor tlsPolicyDescriptor;
+        private final TlsPolicy tlsPolicy;
+        private final long created = System.currentTimeMillis();
+
+        private Entry(TlsPolicyDescriptor tlsPolicyDescriptor, TlsPolicy tlsPolicy) {
+            this.tlsPolicyDescriptor = tlsPolicyDescriptor;
+            this.tlsPolicy = tlsPolicy;
+        }
+
+        public TlsPolicyDescriptor getTlsPolicyDescriptor() {
+            return tlsPolicyDescriptor;
+        }
+
+        public TlsPolicy getTlsPolicy() {
+            return tlsPolicy;
+        }
+    }
+
+    private static class Truststore {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final TlsPolicy tlsPolicy;
+
+        private Truststore(String path, long lastModified, long length, TlsPolicy tlsPolicy) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.tlsPolicy = tlsPolicy;
+        }
+
+        private boolean isCurrent(File truststoreFile) {
+            return path.equals(truststoreFile.getAbsolutePath())
+                    && lastModified == truststoreFile.lastModified()
+                    && length == truststoreFile.length();
+        }
+    }
+}
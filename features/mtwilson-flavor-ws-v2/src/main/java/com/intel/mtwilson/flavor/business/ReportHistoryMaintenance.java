@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.mtwilson.My;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that drops the monthly report history partitions older than
+ * {@code mtwilson.report.history.retention.months}, every
+ * {@code mtwilson.report.history.maintenance.interval} seconds. The partitions
+ * are created by the mw_report_history insert trigger as reports are written.
+ * A retention of zero or less keeps the report history forever.
+ */
+public class ReportHistoryMaintenance implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ReportHistoryMaintenance.class);
+    public static final String REPORT_HISTORY_MAINTENANCE_INTERVAL = "mtwilson.report.history.maintenance.interval";
+    public static final String REPORT_HISTORY_RETENTION_MONTHS = "mtwilson.report.history.retention.months";
+    private static final long DEFAULT_REPORT_HISTORY_MAINTENANCE_INTERVAL = 3600;
+    private static final int DEFAULT_REPORT_HISTORY_RETENTION_MONTHS = 12;
+
+    private static final Object lock = new Object();
+    private static ScheduledExecutorService scheduler = null;
+
+    private final int retentionMonths;
+
+    private ReportHistoryMaintenance(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Schedules the maintenance task, running it once immediately.
+     */
+    public static void start() {
+        synchronized (lock) {
+            if (scheduler != null) {
+                return;
+            }
+            int retentionMonths = My.configuration().getConfiguration().getInt(REPORT_HISTORY_RETENTION_MONTHS, DEFAULT_REPORT_HISTORY_RETENTION_MONTHS);
+            if (retentionMonths <= 0) {
+                log.debug("Report history retention is disabled");
+                return;
+            }
+            long interval = Math.max(1, My.configuration().getConfiguration().getLong(REPORT_HISTORY_MAINTENANCE_INTERVAL, DEFAULT_REPORT_HISTORY_MAINTENANCE_INTERVAL));
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "report-history-maintenance");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleWithFixedDelay(new ReportHistoryMaintenance(retentionMonths), 0, interval, TimeUnit.SECONDS);
+            log.debug("Scheduled report history maintenance every {} seconds keeping {} months", interval, retentionMonths);
+        }
+    }
+
+    public static void stop() {
+        synchronized (lock) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            int dropped = My.jpa().mwReport().dropReportHistoryPartitions(retentionMonths);
+            if (dropped > 0) {
+                log.info("Report history maintenance dropped {} monthly partitions", dropped);
+            }
+        } catch (Exception e) {
+            // keep the task scheduled, the next run tries again
+            log.error("Error during report history maintenance: {}", e.getMessage());
+            log.debug("Error during report history maintenance", e);
+        }
+    }
+}
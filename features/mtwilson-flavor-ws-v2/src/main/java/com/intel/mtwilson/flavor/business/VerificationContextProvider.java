@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.ms.common.MSConfig;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the shared verification context used by flavor verification.
+ *
+ * The context is loaded on first use and reused until one of the certificate
+ * files changes on disk or the {@code skip.flavor.signature.verification}
+ * setting changes, at which point a new context is loaded and swapped in.
+ * These checks are rate limited by
+ * {@code mtwilson.verification.context.check.interval} (milliseconds).
+ */
+public class VerificationContextProvider {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(VerificationContextProvider.class);
+    public static final String SKIP_FLAVOR_SIGNATURE_VERIFICATION = "skip.flavor.signature.verification";
+    public static final String VERIFICATION_CONTEXT_CHECK_INTERVAL = "mtwilson.verification.context.check.interval";
+    private static final long DEFAULT_VERIFICATION_CONTEXT_CHECK_INTERVAL = 1000;
+    private static final long checkInterval = My.configuration().getConfiguration().getLong(VERIFICATION_CONTEXT_CHECK_INTERVAL, DEFAULT_VERIFICATION_CONTEXT_CHECK_INTERVAL);
+
+    private static final Object lock = new Object();
+    private static volatile VerificationContext context = null;
+    private static volatile long[] fileStamps = null;
+    private static volatile long lastChecked = 0;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong reloads = new AtomicLong();
+
+    private VerificationContextProvider() { }
+
+    /**
+     * Returns the current verification context, reloading it if any of the
+     * certificate files have been modified or the skip flavor signature
+     * verification setting has changed since it was last loaded.
+     */
+    public static VerificationContext getContext() {
+        VerificationContext current = context;
+        if (current != null && !isCheckDue()) {
+            hits.incrementAndGet();
+            return current;
+        }
+        String[] paths = getCertificatePaths();
+        long[] stamps = getFileStamps(paths);
+        boolean skipFlavorSignatureVerification = MSConfig.getConfiguration().getBoolean(SKIP_FLAVOR_SIGNATURE_VERIFICATION, false);
+        if (isCurrent(current, stamps, skipFlavorSignatureVerification)) {
+            lastChecked = System.currentTimeMillis();
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (lock) {
+            if (isCurrent(context, stamps, skipFlavorSignatureVerification)) {
+                hits.incrementAndGet();
+                return context;
+            }
+            try {
+                log.debug("Loading verification context from certificate files: {}", Arrays.toString(paths));
+                VerificationContext loaded = new VerificationContext(paths[0], paths[1], paths[2], paths[3],
+                        skipFlavorSignatureVerification);
+                context = loaded;
+                fileStamps = stamps;
+                lastChecked = System.currentTimeMillis();
+                reloads.incrementAndGet();
+                return loaded;
+            } catch (Exception e) {
+                throw new FlavorVerifyException("Cannot load verification context", e);
+            }
+        }
+    }
+
+    /**
+     * Discards the current context so the next caller loads a new one.
+     */
+    public static void reset() {
+        synchronized (lock) {
+            context = null;
+            fileStamps = null;
+            lastChecked = 0;
+        }
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getReloadCount() {
+        return reloads.get();
+    }
+
+    private static boolean isCurrent(VerificationContext current, long[] stamps, boolean skipFlavorSignatureVerification) {
+        return current != null && Arrays.equals(stamps, fileStamps)
+                && current.isSkipFlavorSignatureVerification() == skipFlavorSignatureVerification;
+    }
+
+    private static boolean isCheckDue() {
+        return System.currentTimeMillis() - lastChecked >= checkInterval;
+    }
+
+    private static String[] getCertificatePaths() {
+        return new String[] {
+            My.configuration().getPrivacyCaIdentityCacertsFile().getAbsolutePath(),
+            My.configuration().getAssetTagCaCertificateFile().getAbsolutePath(),
+            My.configuration().getDirectoryPath() + File.separator + "flavor-signer.crt.pem",
+            My.configuration().getDirectoryPath() + File.separator + "cms-ca-cert.pem"
+        };
+    }
+
+    private static long[] getFileStamps(String[] paths) {
+        long[] stamps = new long[paths.length * 2];
+        for (int i = 0; i < paths.length; i++) {
+            File file = new File(paths[i]);
+            stamps[i * 2] = file.lastModified();
+            stamps[i * 2 + 1] = file.length();
+        }
+        return stamps;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.flavor.rest.v2.model.Flavorgroup;
+import com.intel.mtwilson.flavor.rest.v2.repository.FlavorRepository;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Digests of the inputs to a host verification, stored with each report so a
+ * verification can keep the previous trust report while nothing it was
+ * verified against has changed. The previous report is kept as is while it is
+ * valid; when it has expired, or the update is forced as it is by the trust
+ * refresh, its trust report is signed again with a new expiry.
+ *
+ * The host manifest digest is a SHA-256 of the manifest serialized with sorted
+ * properties and map keys. The flavor digest covers the host's flavorgroups
+ * and their match policies, the IDs and signatures of the flavors in each
+ * flavorgroup that can apply to the host, and the certificates of the
+ * verification context.
+ */
+public class VerificationDigest {
+    private static final ObjectWriter canonicalWriter = JacksonObjectMapperProvider.createDefaultMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .writer();
+    private static VerificationContext cachedContext = null;
+    private static String cachedContextDigest = null;
+    private static final AtomicLong reused = new AtomicLong();
+    private static final AtomicLong renewed = new AtomicLong();
+    private static final AtomicLong verified = new AtomicLong();
+
+    private VerificationDigest() { }
+
+    public static String ofHostManifest(HostManifest hostManifest) {
+        try {
+            return sha256(canonicalWriter.writeValueAsString(hostManifest));
+        } catch (Exception e) {
+            throw new FlavorVerifyException("Cannot compute host manifest digest", e);
+        }
+    }
+
+    public static String ofFlavors(List<Flavorgroup> flavorgroups, UUID hardwareUuid, VerificationContext verificationContext) {
+        List<Flavorgroup> sorted = new ArrayList<>(flavorgroups);
+        Collections.sort(sorted, new Comparator<Flavorgroup>() {
+            @Override
+            public int compare(Flavorgroup a, Flavorgroup b) {
+                return a.getId().toString().compareTo(b.getId().toString());
+            }
+        });
+        try {
+            StringBuilder content = new StringBuilder(ofContext(verificationContext));
+            FlavorRepository flavorRepository = new FlavorRepository();
+            for (Flavorgroup flavorgroup : sorted) {
+                content.append('\n').append(flavorgroup.getId().toString())
+                        .append(':').append(canonicalWriter.writeValueAsString(flavorgroup.getFlavorMatchPolicyCollection()))
+                        .append(':').append(flavorRepository.getFlavorgroupDigest(flavorgroup.getId(), hardwareUuid));
+            }
+            return sha256(content.toString());
+        } catch (FlavorVerifyException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FlavorVerifyException("Cannot compute flavor digest", e);
+        }
+    }
+
+    /**
+     * Records a verification that kept the previous report.
+     */
+    public static void reused() {
+        reused.incrementAndGet();
+    }
+
+    /**
+     * Records a verification that signed the previous trust report again.
+     */
+    public static void renewed() {
+        renewed.incrementAndGet();
+    }
+
+    /**
+     * Records a verification that had to verify the host again.
+     */
+    public static void verified() {
+        verified.incrementAndGet();
+    }
+
+    public static long getReuseCount() {
+        return reused.get();
+    }
+
+    public static long getRenewCount() {
+        return renewed.get();
+    }
+
+    public static long getVerifyCount() {
+        return verified.get();
+    }
+
+    /**
+     * Returns the fraction of verifications that kept the previous trust
+     * report, whether or not it was signed again.
+     */
+    public static double getReuseRate() {
+        long reuseCount = reused.get() + renewed.get();
+        long total = reuseCount + verified.get();
+        return total == 0 ? 0 : (double) reuseCount / total;
+    }
+
+    public static String getStatistics() {
+        return String.format("report[reused=%d, renewed=%d, verified=%d, reuse rate=%.1f%%]",
+                getReuseCount(), getRenewCount(), getVerifyCount(), getReuseRate() * 100);
+    }
+
+    private static synchronized String ofContext(VerificationContext verificationContext) throws Exception {
+        if (cachedContext == verificationContext && cachedContextDigest != null) {
+            return cachedContextDigest;
+        }
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (List<X509Certificate> certificates : Arrays.asList(verificationContext.getPrivacyCaCertificates(),
+                verificationContext.getTagCaCertificates(), verificationContext.getCaCertificates(),
+                verificationContext.getFlavorSigningCertificates())) {
+            if (certificates != null) {
+                for (X509Certificate certificate : certificates) {
+                    digest.update(certificate.getEncoded());
+                }
+            }
+            digest.update((byte) 0);
+        }
+        digest.update((byte) (verificationContext.isSkipFlavorSignatureVerification() ? 1 : 0));
+        cachedContext = verificationContext;
+        cachedContextDigest = Hex.encodeHexString(digest.digest());
+        return cachedContextDigest;
+    }
+
+    private static String sha256(String content) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return Hex.encodeHexString(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
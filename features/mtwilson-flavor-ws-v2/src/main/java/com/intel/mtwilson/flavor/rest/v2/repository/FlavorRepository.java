@@ -10,6 +10,7 @@ import com.intel.mtwilson.My;
 import com.intel.mtwilson.core.flavor.common.FlavorPart;
 import com.intel.mtwilson.core.flavor.model.Flavor;
 import com.intel.mtwilson.core.flavor.model.SignedFlavor;
+import com.intel.mtwilson.flavor.business.FlavorSignatureCache;
 import com.intel.mtwilson.flavor.controller.MwFlavorJpaController;
 import com.intel.mtwilson.flavor.controller.exceptions.PreexistingEntityException;
 import com.intel.mtwilson.flavor.data.MwFlavor;
@@ -152,6 +153,7 @@ public class FlavorRepository {
         }
         try {
             mwFlavorJpaController.edit(item);
+            FlavorSignatureCache.evict(item.getId());
             log.debug("Updated the flavor {} successfully", item.getId());
         } catch (Exception ex) {
             log.error("Error during the storage of the flavor in the DB", ex);
@@ -226,6 +228,7 @@ public class FlavorRepository {
         if (signedFlavor != null) {
             try {
                 My.jpa().mwFlavor().destroy(signedFlavor.getFlavor().getMeta().getId());
+                FlavorSignatureCache.evict(signedFlavor.getFlavor().getMeta().getId());
             } catch (IOException | NonexistentEntityException ex) {
                 log.error("Error during deletion of flavor", ex);
                 throw new RepositoryDeleteException(ex);
@@ -271,6 +274,16 @@ public class FlavorRepository {
         }
     }
 
+    public String getFlavorgroupDigest(UUID flavorgroupId, UUID hardwareUuid) {
+        try {
+            return My.jpa().mwFlavor().getFlavorgroupDigest(flavorgroupId.toString(), hardwareUuid.toString());
+        } catch (Exception ex) {
+            log.error("Error during digest of flavors in flavorgroup [{}]", flavorgroupId.toString());
+            throw new RepositorySearchException(String.format(
+                    "Error during digest of flavors in flavorgroup [%s]", flavorgroupId.toString()), ex);
+        }
+    }
+
     public List<FlavorPart> getFlavorTypesInFlavorgroup(UUID flavorgroupId, List<FlavorPart> flavorParts) {
         try {
             MwFlavorJpaController mwFlavorJpaController = My.jpa().mwFlavor();
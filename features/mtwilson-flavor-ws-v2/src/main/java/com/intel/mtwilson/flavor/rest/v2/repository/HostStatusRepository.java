@@ -8,6 +8,7 @@ package com.intel.mtwilson.flavor.rest.v2.repository;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.dcsg.cpg.iso8601.Iso8601Date;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.core.common.model.HostManifest;
 import com.intel.mtwilson.flavor.controller.MwHostStatusJpaController;
 import com.intel.mtwilson.flavor.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.flavor.data.MwHostStatus;
@@ -23,9 +24,11 @@ import com.intel.mtwilson.repository.RepositorySearchException;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -139,8 +142,18 @@ public class HostStatusRepository {
            
             // Now that we have the final list, let us return it back
             if (hostStatusList != null && !hostStatusList.isEmpty()) {
+                // resolve the manifests of all the records at once
+                List<String> hostManifestDigests = new ArrayList<>();
                 for (MwHostStatus objHostStatus : hostStatusList) {
-                    objCollection.getHostStatus().add(convert(objHostStatus));
+                    if (objHostStatus.getHostManifestDigest() != null) {
+                        hostManifestDigests.add(objHostStatus.getHostManifestDigest());
+                    }
+                }
+                Map<String, HostManifest> hostManifests = My.jpa().mwHostManifest().findHostManifests(hostManifestDigests);
+                for (MwHostStatus objHostStatus : hostStatusList) {
+                    HostManifest hostManifest = objHostStatus.getHostManifestDigest() == null
+                            ? objHostStatus.getHostManifest() : hostManifests.get(objHostStatus.getHostManifestDigest());
+                    objCollection.getHostStatus().add(convert(objHostStatus, hostManifest));
                 }
             }
         } catch (IOException | ParseException ex) {
@@ -155,7 +168,12 @@ public class HostStatusRepository {
         MwHostStatus mwHostStatus = retrieveMwHostStatus(locator);
         if(mwHostStatus == null)
             return null;
-        return convert(mwHostStatus);
+        try {
+            return convert(mwHostStatus, My.jpa().mwHostManifest().findHostManifest(mwHostStatus));
+        } catch (IOException ex) {
+            log.error("host_status:retrieve - error retrieving host manifest.", ex);
+            throw new RepositoryRetrieveException(ex, locator);
+        }
     }
     
     private MwHostStatus retrieveMwHostStatus(HostStatusLocator locator) {
@@ -287,12 +305,12 @@ public class HostStatusRepository {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
-    private HostStatus convert(MwHostStatus mwHostStatus) {
+    private HostStatus convert(MwHostStatus mwHostStatus, HostManifest hostManifest) {
         HostStatus hostStatus = new HostStatus();
         if (mwHostStatus != null) {
             hostStatus.setHostId(UUID.valueOf(mwHostStatus.getHostId()));
             hostStatus.setCreated(mwHostStatus.getCreated());
-            hostStatus.setHostManifest(mwHostStatus.getHostManifest());
+            hostStatus.setHostManifest(hostManifest);
             hostStatus.setId(UUID.valueOf(mwHostStatus.getId()));
             hostStatus.setStatus(mwHostStatus.getStatus());
         }
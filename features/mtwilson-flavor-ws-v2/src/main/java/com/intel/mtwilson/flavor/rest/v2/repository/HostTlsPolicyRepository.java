@@ -6,6 +6,7 @@
 package com.intel.mtwilson.flavor.rest.v2.repository;
 
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.flavor.business.HostTlsPolicyCache;
 import com.intel.mtwilson.jaxrs2.server.resource.DocumentRepository;
 import com.intel.mtwilson.repository.RepositoryCreateConflictException;
 import com.intel.mtwilson.repository.RepositoryCreateException;
@@ -184,6 +185,7 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
                 record.setContent(writer.write(item.getDescriptor()));
             }
             dao.updateTlsPolicy(record);
+            HostTlsPolicyCache.invalidate(locator.id);
         } catch (IOException ex) {
             log.error("HostTlsPolicy:Store - Error during HostTlsPolicy update.", ex);
             throw new RepositoryStoreException(ex, locator);
@@ -237,6 +239,7 @@ public class HostTlsPolicyRepository implements DocumentRepository<HostTlsPolicy
 
         try (TlsPolicyDAO dao = TlsPolicyJdbiFactory.tlsPolicyDAO()) {
             dao.deleteTlsPolicyById(locator.id);
+            HostTlsPolicyCache.invalidate(locator.id);
         } catch (IOException ex) {
             log.error("HostTlsPolicy:Delete - Error during HostTlsPolicy deletion.", ex);
             throw new RepositoryDeleteException(ex, locator);
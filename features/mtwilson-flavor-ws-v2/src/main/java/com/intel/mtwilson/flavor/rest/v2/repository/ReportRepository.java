@@ -25,13 +25,13 @@ import com.intel.mtwilson.repository.RepositoryException;
 import com.intel.mtwilson.repository.RepositoryInvalidInputException;
 import com.intel.mtwilson.repository.RepositoryRetrieveException;
 import com.intel.mtwilson.repository.RepositorySearchException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class ReportRepository implements DocumentRepository<Report, ReportCollection, ReportFilterCriteria, ReportLocator> {
@@ -41,7 +41,39 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
     @Override
     public ReportCollection search(ReportFilterCriteria criteria) {
         log.debug("Got request to search for reports");
-        ReportCollection objCollection = new ReportCollection();
+        final ReportCollection objCollection = new ReportCollection();
+        search(criteria, new ReportHandler() {
+            @Override
+            public void handle(Report report) {
+                objCollection.getReports().add(report);
+            }
+        });
+        log.debug("Returning back {} of results", objCollection.getReports().size());
+        return objCollection;
+    }
+
+    /**
+     * Passes each report matching the criteria to the handler as it is read
+     * from the database, so a large result can be written out without
+     * holding all of the reports in memory.
+     */
+    public void search(ReportFilterCriteria criteria, ReportHandler handler) {
+        try (ReportCursor cursor = open(criteria)) {
+            Report report;
+            while ((report = cursor.next()) != null) {
+                handler.handle(report);
+            }
+        } catch (IOException ex) {
+            log.error("Error during search for reports", ex);
+            throw new RepositorySearchException(ex, criteria);
+        }
+    }
+
+    /**
+     * Opens a cursor over the reports matching the criteria. The caller must
+     * close the cursor, which holds a database connection while it is open.
+     */
+    public ReportCursor open(ReportFilterCriteria criteria) {
         try {
             // If user specifies no criteria, an empty result will be returned to prevent an unintentional process intensive query. 
             if (criteria.filter
@@ -55,7 +87,7 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
                     && (criteria.fromDate == null || criteria.fromDate.isEmpty())
                     && (criteria.latestPerHost == null || criteria.latestPerHost.isEmpty())
                     && (criteria.limit == 10000)) {
-                return objCollection; // Empty
+                return new ReportCursor(null); // Empty
             }
             
             MwReportJpaController jpaController = My.jpa().mwReport();
@@ -115,17 +147,16 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
                 log.debug("Reports between {} to {} will be retrieved", dateFormat.format(fromDate), dateFormat.format(toDate));
             }
 
-            List<MwReport> reportList;
             if (criteria.fromDate == null && criteria.toDate == null && latestPerHost) {
-                reportList = jpaController.findLatestMwReport(
+                return new ReportCursor(jpaController.openLatestMwReport(
                         reportId,
                         hostId,
                         hostName,
                         hostHardwareUuid,
                         hostStatus,
-                        criteria.limit);
+                        criteria.limit));
             } else {
-                reportList = jpaController.findMwReport(
+                return new ReportCursor(jpaController.openMwReport(
                         reportId,
                         hostId,
                         hostName,
@@ -134,22 +165,12 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
                         fromDate,
                         toDate,
                         latestPerHost,
-                        criteria.limit);
+                        criteria.limit));
             }
-
-            // Now that we have the final list, let us return it back.
-            if (reportList != null && !reportList.isEmpty()) {
-                for (MwReport objReport : reportList) {
-                    objCollection.getReports().add(convert(objReport));
-                }
-            }
-
-        } catch (IOException | ParseException ex) {
+        } catch (ParseException ex) {
             log.error("Error during search for reports", ex);
             throw new RepositorySearchException(ex, criteria);
         }
-        log.debug("Returning back {} of results", objCollection.getReports().size());
-        return objCollection;
     }
 
     @Override
@@ -226,6 +247,8 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
             if (item.getSaml() != null) {
                 mwReport.setSaml(item.getSaml());
             }
+            mwReport.setHostManifestDigest(item.getHostManifestDigest());
+            mwReport.setFlavorDigest(item.getFlavorDigest());
 
             MwReportJpaController reportJpa = My.jpa().mwReport();
             reportJpa.edit(mwReport);
@@ -270,6 +293,8 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
             mwReport.setExpiration(item.getExpiration());
             mwReport.setTrustReport(item.getTrustReport());
             mwReport.setSaml(item.getSaml());
+            mwReport.setHostManifestDigest(item.getHostManifestDigest());
+            mwReport.setFlavorDigest(item.getFlavorDigest());
 
             mwReportJpaController.create(mwReport);
             log.debug("Report created for host with ID {}", item.getHostId().toString());
@@ -332,6 +357,8 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
         obj.setExpiration(dbObj.getExpiration());
         obj.setTrustReport(dbObj.getTrustReport());
         obj.setTrustInformation(buildTrustInformation(dbObj.getTrustReport()));
+        obj.setHostManifestDigest(dbObj.getHostManifestDigest());
+        obj.setFlavorDigest(dbObj.getFlavorDigest());
 
         return obj;
     }
@@ -347,6 +374,46 @@ public class ReportRepository implements DocumentRepository<Report, ReportCollec
         return reportLocator;
     }
 
+    /**
+     * Receives the reports found by a report search, one at a time.
+     */
+    public interface ReportHandler {
+        void handle(Report report) throws IOException;
+    }
+
+    /**
+     * Reports found by a report search, read one at a time as they are
+     * requested.
+     */
+    public class ReportCursor implements Closeable {
+        private final MwReportJpaController.MwReportCursor cursor;
+
+        private ReportCursor(MwReportJpaController.MwReportCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Returns the next report, or null if there are no more reports.
+         */
+        public Report next() throws IOException {
+            if (cursor == null) {
+                return null;
+            }
+            MwReport mwReport = cursor.next();
+            if (mwReport == null) {
+                return null;
+            }
+            return convert(mwReport);
+        }
+
+        @Override
+        public void close() {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
     public TrustInformation buildTrustInformation(TrustReport trustReport) {
         Map<FlavorPart, FlavorsTrustStatus> flavorsTrustStatus = new HashMap();
         for (FlavorPart flavorPart : FlavorPart.values()) {
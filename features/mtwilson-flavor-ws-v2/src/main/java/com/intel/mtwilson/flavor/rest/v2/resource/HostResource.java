@@ -8,7 +8,7 @@ package com.intel.mtwilson.flavor.rest.v2.resource;
 import com.intel.dcsg.cpg.configuration.Configuration;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.dcsg.cpg.tls.policy.TlsPolicy;
-import com.intel.dcsg.cpg.tls.policy.TlsPolicyBuilder;
+import com.intel.mtwilson.flavor.business.HostTlsPolicyCache;
 import com.intel.dcsg.cpg.tls.policy.impl.PublicKeyTlsPolicy;
 import com.intel.dcsg.cpg.x509.repository.PublicKeyRepository;
 import com.intel.mtwilson.configuration.ConfigurationFactory;
@@ -41,6 +41,7 @@ import com.intel.mtwilson.flavor.rest.v2.utils.FlavorGroupUtils;
 import com.intel.mtwilson.jaxrs2.mediatype.DataMediaType;
 import com.intel.mtwilson.launcher.ws.ext.V2;
 import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.repository.RepositoryCreateException;
 import com.intel.mtwilson.repository.RepositoryInvalidInputException;
 import com.intel.mtwilson.flavor.rest.v2.model.FlavorgroupHostLinkCollection;
 import java.io.IOException;
@@ -60,6 +61,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 
+import com.intel.mtwilson.features.queue.QueueSignal;
 import com.intel.mtwilson.features.queue.model.Queue;
 import com.intel.mtwilson.features.queue.model.QueueCollection;
 import com.intel.mtwilson.features.queue.model.QueueFilterCriteria;
@@ -70,11 +72,9 @@ import com.intel.mtwilson.flavor.rest.v2.repository.FlavorHostLinkRepository;
 import com.intel.mtwilson.i18n.HostState;
 import static com.intel.mtwilson.i18n.HostState.QUEUE;
 import com.intel.mtwilson.core.common.datatypes.ConnectionString;
-import static com.intel.mtwilson.features.queue.model.QueueState.NEW;
 import com.intel.mtwilson.flavor.controller.MwHostStatusJpaController;
 import com.intel.mtwilson.flavor.controller.MwQueueJpaController;
 import com.intel.mtwilson.flavor.data.MwHostStatus;
-import com.intel.mtwilson.flavor.data.MwQueue;
 import com.intel.mtwilson.flavor.rest.v2.model.ReportLocator;
 import com.intel.mtwilson.flavor.rest.v2.repository.HostTlsPolicyRepository;
 import com.intel.mtwilson.flavor.rest.v2.repository.ReportRepository;
@@ -435,14 +435,17 @@ public class HostResource {
         // set host status to queue
         updateHostStatus(hostId, QUEUE, null);
 
-        // add host to queue with force update parameter
-        Map<String, String> actionParameters = new HashMap<>();
-        actionParameters.put("host_id", hostId.toString());
-        actionParameters.put("force_update", String.valueOf(forceUpdate));
-        Queue queue = new Queue();
-        queue.setActionParameters(actionParameters);
-        queue.setQueueAction("flavor-verify");
-        new QueueRepository().create(queue);
+        // add host to queue with force update parameter, the insert skips the host if another
+        // request queued it since the check above
+        try {
+            MwQueueJpaController queueJpa = My.jpa().mwQueue();
+            queueJpa.createFlavorVerifyQueueEntries(Collections.singletonList(hostId.toString()), forceUpdate);
+        } catch (Exception ex) {
+            log.error("Error adding host {} to flavor verify queue", hostId.toString(), ex);
+            throw new RepositoryCreateException();
+        }
+        // wake up the queue dispatcher
+        QueueSignal.signal();
     }
 
     //returns true if host already in queue else returns false
@@ -480,20 +483,10 @@ public class HostResource {
     public void addHostsToFlavorVerifyQueue(List<String> hostIds, boolean forceUpdate) {
         try {
             MwQueueJpaController queueJpa = My.jpa().mwQueue();
-            List<MwQueue> mwQueueList = new ArrayList();
-            for (String hostId : hostIds) {
-                Map<String, String> actionParameters = new HashMap<>();
-                actionParameters.put("host_id", hostId);
-                actionParameters.put("force_update", String.valueOf(forceUpdate));
-                Queue queue = new Queue();
-                queue.setId(new UUID());
-                queue.setActionParameters(actionParameters);
-                queue.setQueueAction("flavor-verify");
-                queue.setStatus(NEW);
-                MwQueue mwQueue = new QueueRepository().convertToMwQueue(queue);
-                mwQueueList.add(mwQueue);
-            }
-            queueJpa.createQueueList(mwQueueList);
+            // hosts queued since the caller filtered the list are skipped by the insert
+            queueJpa.createFlavorVerifyQueueEntries(hostIds, forceUpdate);
+            // wake up the queue dispatcher
+            QueueSignal.signal();
         } catch (Exception ex) {
             log.error("Error adding host to flavor verify queue", ex);
         }
@@ -659,31 +652,50 @@ public class HostResource {
     }
 
     public HostManifest getHostManifest(TlsPolicyDescriptor tlsPolicyDescriptor, ConnectionString connectionString, UUID tlsPolicyId) throws IOException {
-        TlsPolicy tlsPolicy;
-        HostTlsPolicy hostTlsPolicy = null;
-        if (!Vendor.VMWARE.equals(connectionString.getVendor())) {
-            tlsPolicy = TlsPolicyBuilder.factory().strictWithKeystore(My.configuration().getTruststoreFile(), KEYSTORE_PASSWORD).build();
-        } else {
-            hostTlsPolicy = getHostTlsPolicy(tlsPolicyId);
-            tlsPolicyDescriptor = getTlsPolicyDescriptor(tlsPolicyDescriptor, hostTlsPolicy);
-
-            // check if the tlsPolicyDescriptor is allowed. Throw error if not allowed.
-            validateTlsPolicyDescriptor(tlsPolicyDescriptor);
-
-            tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
-        }
+        ResolvedTlsPolicy resolvedTlsPolicy = resolveTlsPolicy(tlsPolicyDescriptor, connectionString, tlsPolicyId);
         if(Vendor.VMWARE.equals(connectionString.getVendor())){
             connectionString = HostRepository.generateConnectionString(connectionString.getConnectionString());
         }
         ConfigurationProvider configurationProvider = ConfigurationFactory.getConfigurationProvider();
         Configuration configuration = configurationProvider.load();
-        HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, configuration.get(AASConstants.AAS_API_URL), tlsPolicy);
+        HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, configuration.get(AASConstants.AAS_API_URL), resolvedTlsPolicy.tlsPolicy);
         HostManifest manifest = hostConnector.getHostManifest();
         // tlsPolicy gets populated in hostConnector, hence it's important to store it after that
-        storeTlsPolicyDescriptor(hostTlsPolicy, tlsPolicy);
+        storeTlsPolicyDescriptor(resolvedTlsPolicy.hostTlsPolicy, resolvedTlsPolicy.tlsPolicy);
         return manifest;
     }
 
+    /**
+     * Returns the TLS policy for connecting to the host: the truststore
+     * policy for trust agents, or for VMware hosts the specified descriptor,
+     * or else the cached or stored policy with the specified ID. The stored
+     * policy record is also returned when it was retrieved, so a trust first
+     * certificate policy can be updated after connecting.
+     */
+    private ResolvedTlsPolicy resolveTlsPolicy(TlsPolicyDescriptor tlsPolicyDescriptor, ConnectionString connectionString, UUID tlsPolicyId) throws IOException {
+        if (!Vendor.VMWARE.equals(connectionString.getVendor())) {
+            return new ResolvedTlsPolicy(HostTlsPolicyCache.getTruststoreTlsPolicy(My.configuration().getTruststoreFile(), KEYSTORE_PASSWORD), null);
+        }
+        HostTlsPolicyCache.Entry cachedTlsPolicy = tlsPolicyDescriptor == null ? HostTlsPolicyCache.get(tlsPolicyId) : null;
+        if (cachedTlsPolicy != null) {
+            // the allowed TLS policies may have changed since the policy was cached
+            validateTlsPolicyDescriptor(cachedTlsPolicy.getTlsPolicyDescriptor());
+            return new ResolvedTlsPolicy(cachedTlsPolicy.getTlsPolicy(), null);
+        }
+        boolean storedTlsPolicy = tlsPolicyDescriptor == null;
+        HostTlsPolicy hostTlsPolicy = getHostTlsPolicy(tlsPolicyId);
+        tlsPolicyDescriptor = getTlsPolicyDescriptor(tlsPolicyDescriptor, hostTlsPolicy);
+
+        // check if the tlsPolicyDescriptor is allowed. Throw error if not allowed.
+        validateTlsPolicyDescriptor(tlsPolicyDescriptor);
+
+        TlsPolicy tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
+        if (storedTlsPolicy) {
+            HostTlsPolicyCache.put(tlsPolicyId, tlsPolicyDescriptor, tlsPolicy);
+        }
+        return new ResolvedTlsPolicy(tlsPolicy, hostTlsPolicy);
+    }
+
     private void storeTlsPolicyDescriptor(HostTlsPolicy hostTlsPolicy, TlsPolicy tlsPolicy) {
         if (hostTlsPolicy != null && hostTlsPolicy.getDescriptor() != null
                 && hostTlsPolicy.getDescriptor().getPolicyType() != null
@@ -710,25 +722,13 @@ public class HostResource {
     }
 
     private HostInfo getHostInfo(TlsPolicyDescriptor tlsPolicyDescriptor, ConnectionString connectionString, UUID tlsPolicyId) throws IOException {
-        TlsPolicy tlsPolicy;
-        HostTlsPolicy hostTlsPolicy = null;
-        if (!Vendor.VMWARE.equals(connectionString.getVendor())) {
-            tlsPolicy = TlsPolicyBuilder.factory().strictWithKeystore(My.configuration().getTruststoreFile(), KEYSTORE_PASSWORD).build();
-        } else {
-            hostTlsPolicy = getHostTlsPolicy(tlsPolicyId);
-            tlsPolicyDescriptor = getTlsPolicyDescriptor(tlsPolicyDescriptor, hostTlsPolicy);
-
-            // check if the tlsPolicyDescriptor is allowed. Throw error if not allowed.
-            validateTlsPolicyDescriptor(tlsPolicyDescriptor);
-
-            tlsPolicy = TlsPolicyFactoryUtil.createTlsPolicy(tlsPolicyDescriptor);
-        }
+        ResolvedTlsPolicy resolvedTlsPolicy = resolveTlsPolicy(tlsPolicyDescriptor, connectionString, tlsPolicyId);
         ConfigurationProvider configurationProvider = ConfigurationFactory.getConfigurationProvider();
         Configuration configuration = configurationProvider.load();
-        HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, configuration.get(AASConstants.AAS_API_URL), tlsPolicy);
+        HostConnector hostConnector = new HostConnectorFactory().getHostConnector(connectionString, configuration.get(AASConstants.AAS_API_URL), resolvedTlsPolicy.tlsPolicy);
         HostInfo hostInfo = hostConnector.getHostDetails();
         // tlsPolicy gets populated in hostConnector, hence it's important to store it after that
-        storeTlsPolicyDescriptor(hostTlsPolicy, tlsPolicy);
+        storeTlsPolicyDescriptor(resolvedTlsPolicy.hostTlsPolicy, resolvedTlsPolicy.tlsPolicy);
         return  hostInfo;
     }
 
@@ -820,4 +820,14 @@ public class HostResource {
         FlavorgroupHostLink link = new FlavorgroupHostLinkRepository().retrieve(locator);
         return link != null;
     }
+
+    private static class ResolvedTlsPolicy {
+        private final TlsPolicy tlsPolicy;
+        private final HostTlsPolicy hostTlsPolicy;
+
+        private ResolvedTlsPolicy(TlsPolicy tlsPolicy, HostTlsPolicy hostTlsPolicy) {
+            this.tlsPolicy = tlsPolicy;
+            this.hostTlsPolicy = hostTlsPolicy;
+        }
+    }
 }
@@ -5,10 +5,16 @@
 
 package com.intel.mtwilson.flavor.rest.v2.resource;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.intel.dcsg.cpg.validation.ValidationUtil;
 import com.intel.mtwilson.flavor.business.FlavorVerify;
+import com.intel.mtwilson.flavor.business.VerificationContextProvider;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
 import com.intel.mtwilson.flavor.rest.v2.model.HostLocator;
 import com.intel.mtwilson.flavor.rest.v2.model.HostStatusLocator;
@@ -25,6 +31,14 @@ import com.intel.mtwilson.jaxrs2.mediatype.CryptoMediaType;
 import com.intel.mtwilson.jaxrs2.mediatype.DataMediaType;
 import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
 import com.intel.mtwilson.launcher.ws.ext.V2;
+import com.intel.mtwilson.repository.RepositorySearchException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
 import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -34,6 +48,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 
 import java.util.concurrent.FutureTask;
@@ -46,6 +62,8 @@ import java.util.concurrent.FutureTask;
 @Path("/reports")
 public class ReportResource {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReportResource.class);
+    private static final ObjectMapper jsonMapper = JacksonObjectMapperProvider.createDefaultMapper();
+    private static final ObjectWriter reportWriter = jsonMapper.writerFor(Report.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     private ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper(); // for debugging only
     private ReportRepository repository;
     
@@ -137,6 +155,54 @@ public class ReportResource {
         return getRepository().search(selector);
     }
     
+    /**
+     * Search for reports, writing each report to the response as it is read
+     * from the database. The output is the same JSON document as a
+     * {@link ReportCollection}, but the collection is never held in memory.
+     *
+     * @param selector
+     * @return
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @RequiresPermissions("reports:search")
+    public Response searchCollectionJson(@BeanParam final ReportFilterCriteria selector) {
+        ValidationUtil.validate(selector);
+        try { log.debug("searchCollectionJson: {}", mapper.writeValueAsString(selector)); } catch(JsonProcessingException e) { log.debug("Cannot serialize selector: {}", e.getMessage()); }
+        final ReportRepository.ReportCursor cursor = getRepository().open(selector);
+        final Report first = first(cursor, selector);
+        return Response.ok(new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                try {
+                    ObjectNode emptyCollection = jsonMapper.valueToTree(createEmptyCollection());
+                    JsonGenerator generator = jsonMapper.getFactory().createGenerator(output);
+                    generator.writeStartObject();
+                    Iterator<Map.Entry<String, JsonNode>> fields = emptyCollection.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        if (!"reports".equals(field.getKey())) {
+                            generator.writeObjectField(field.getKey(), field.getValue());
+                            continue;
+                        }
+                        generator.writeArrayFieldStart(field.getKey());
+                        for (Report report = first; report != null; report = cursor.next()) {
+                            reportWriter.writeValue(generator, report);
+                        }
+                        generator.writeEndArray();
+                    }
+                    // the document is only completed when every report was written; a failure
+                    // while reading propagates with the document left open so the response is
+                    // aborted instead of ending as a truncated but complete-looking collection
+                    generator.writeEndObject();
+                    generator.flush();
+                } finally {
+                    cursor.close();
+                }
+            }
+        }).build();
+    }
+    
     @GET
     @Produces(DataMediaType.APPLICATION_VND_API_JSON)
     @RequiresPermissions("reports:search")
@@ -149,20 +215,53 @@ public class ReportResource {
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, DataMediaType.APPLICATION_YAML, DataMediaType.TEXT_YAML})
     @Produces(CryptoMediaType.APPLICATION_SAML) 
     @RequiresPermissions("reports:search")
-    public String searchSamlReports(@BeanParam ReportFilterCriteria criteria) {
+    public Response searchSamlReports(@BeanParam final ReportFilterCriteria criteria) {
         ValidationUtil.validate(criteria);
-        ReportCollection objCollection = repository.search(criteria);
-        
-        if (objCollection != null && objCollection.getReports() != null && objCollection.getReports().size() > 0) {
-            StringBuilder samlList = new StringBuilder();
-            log.info("searchSamlReports: SAML Search - Retrieved {} of results.", objCollection.getReports().size());
-            for (Report reportObj : objCollection.getReports()) {
-                log.debug("searchSamlReports: Adding SAML report for host {}", reportObj.getHostId());
-                samlList.append(reportObj.getSaml());
+        final ReportRepository.ReportCursor cursor = repository.open(criteria);
+        final Report first = first(cursor, criteria);
+        if (first == null) {
+            cursor.close();
+            log.info("searchSamlReports: SAML Search - Retrieved 0 of results.");
+            return Response.noContent().build();
+        }
+        return Response.ok(new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                try {
+                    Writer samlList = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                    int count = 0;
+                    for (Report reportObj = first; reportObj != null; reportObj = cursor.next()) {
+                        log.debug("searchSamlReports: Adding SAML report for host {}", reportObj.getHostId());
+                        if (reportObj.getSaml() != null) {
+                            samlList.write(reportObj.getSaml());
+                        }
+                        count++;
+                    }
+                    samlList.flush();
+                    log.info("searchSamlReports: SAML Search - Retrieved {} of results.", count);
+                } finally {
+                    cursor.close();
+                }
             }
-            return samlList.toString();
+        }).build();
+    }
+
+    /**
+     * Reads the first report before the response is started, so an empty
+     * result or a failed search is reported with its own status instead of
+     * a streamed 200.
+     */
+    private Report first(ReportRepository.ReportCursor cursor, ReportFilterCriteria criteria) {
+        try {
+            return cursor.next();
+        } catch (IOException ex) {
+            cursor.close();
+            log.error("Error during search for reports", ex);
+            throw new RepositorySearchException(ex, criteria);
+        } catch (RuntimeException ex) {
+            cursor.close();
+            throw ex;
         }
-        return null;
     }
     
     private Report createReport(ReportCreateCriteria item) throws Exception {
@@ -170,7 +269,7 @@ public class ReportResource {
         if (host == null) {
             throw new WebApplicationException("Host doesn't exist", 400);
         }
-        Thread flavorVerify = new Thread(new FutureTask(new FlavorVerify(host.getId(), true)));
+        Thread flavorVerify = new Thread(new FutureTask(new FlavorVerify(host.getId(), true, VerificationContextProvider.getContext())));
         flavorVerify.run();
         flavorVerify.join(5000); // Wait for thread to finish or for 5 seconds
 
@@ -14,20 +14,30 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.KeyStore.ProtectionParameter;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import org.apache.commons.codec.binary.Hex;
 
 /**
+ * Loads the SAML issuer configuration.
+ *
+ * The issuer configuration, including the private key decrypted from the
+ * SAML keystore, is shared by all callers. It is loaded again only when the
+ * keystore file or the SAML configuration settings change.
  *
  * @author rksavino
  */
 public class IssuerConfigurationFactory {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(IssuerConfigurationFactory.class);
+    private static final Object lock = new Object();
+    private static volatile CachedIssuerConfiguration cached = null;
 
     public IssuerConfiguration loadIssuerConfiguration() {
         try {
@@ -45,40 +55,73 @@ public class IssuerConfigurationFactory {
                     configuration.set(SamlConfiguration.SAML_ISSUER, issuerName);
                 }
             }
-            log.debug("loadIssuerConfiguration creating IssuerConfiguration");
-            
+
             SamlConfiguration saml = new SamlConfiguration(configuration);
-            log.debug("SAML keystore file: {}", saml.getSamlKeystoreFile());
-            File keystoreFile = saml.getSamlKeystoreFile(); // replaces My.configuration().getSamlKeystoreFile();
-            
-            KeyStore keyStore;
-            try (FileInputStream keystoreInputStream = new FileInputStream(keystoreFile)) {
-                keyStore = getKeyStore(keystoreInputStream, saml.getSamlKeystorePassword()); /*configuration.getString("saml.keystore.password"*//*,System.getenv("SAMLPASSWORD")*/
-            }
-            
-            // set saml key password if exists in configuration, or set it to null otherwise
-            char[] samlKeyPassword = null;
-            if (saml.getSamlKeyPassword() != null && !saml.getSamlKeyPassword().isEmpty()
-                    && saml.getSamlKeyPassword().toCharArray() != null && saml.getSamlKeyPassword().toCharArray().length > 0) {
-                samlKeyPassword = saml.getSamlKeyPassword().toCharArray();
+            String cacheKey = getCacheKey(saml, issuerName);
+            CachedIssuerConfiguration current = cached;
+            if (current != null && current.cacheKey.equals(cacheKey)) {
+                return current.issuerConfiguration;
             }
-            ProtectionParameter samlKeyProtectionParam = null;
-            if (samlKeyPassword != null && samlKeyPassword.length > 0) {
-                samlKeyProtectionParam = new KeyStore.PasswordProtection(samlKeyPassword);
+            synchronized (lock) {
+                current = cached;
+                if (current != null && current.cacheKey.equals(cacheKey)) {
+                    return current.issuerConfiguration;
+                }
+                IssuerConfiguration issuerConfiguration = createIssuerConfiguration(configuration, saml, issuerName);
+                cached = new CachedIssuerConfiguration(cacheKey, issuerConfiguration);
+                return issuerConfiguration;
             }
-            
-            KeyStore.PrivateKeyEntry entry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(saml.getSamlKeyAlias(), samlKeyProtectionParam);
-            PrivateKey privateKey = entry.getPrivateKey();
-            Certificate certificate = entry.getCertificate();
-            String issuerServiceName = "Intel Security Libraries";
-            String jsr105provider = saml.getJsr105Provider(); // conf.getString(JSR105_PROVIDER, "org.jcp.xml.dsig.internal.dom.XMLDSigRI");
-            Integer validitySeconds = saml.getSamlValiditySeconds();
-            return new IssuerConfiguration(privateKey, certificate, configuration, issuerName, issuerServiceName, validitySeconds, jsr105provider);
         } catch (Exception e) {
             throw new IllegalStateException("Cannot load SAML issuer configuration", e);
         }
     }
-    
+
+    private IssuerConfiguration createIssuerConfiguration(Configuration configuration, SamlConfiguration saml, String issuerName) throws Exception {
+        log.debug("loadIssuerConfiguration creating IssuerConfiguration");
+        log.debug("SAML keystore file: {}", saml.getSamlKeystoreFile());
+        File keystoreFile = saml.getSamlKeystoreFile(); // replaces My.configuration().getSamlKeystoreFile();
+
+        KeyStore keyStore;
+        try (FileInputStream keystoreInputStream = new FileInputStream(keystoreFile)) {
+            keyStore = getKeyStore(keystoreInputStream, saml.getSamlKeystorePassword()); /*configuration.getString("saml.keystore.password"*//*,System.getenv("SAMLPASSWORD")*/
+        }
+
+        // set saml key password if exists in configuration, or set it to null otherwise
+        char[] samlKeyPassword = null;
+        if (saml.getSamlKeyPassword() != null && !saml.getSamlKeyPassword().isEmpty()
+                && saml.getSamlKeyPassword().toCharArray() != null && saml.getSamlKeyPassword().toCharArray().length > 0) {
+            samlKeyPassword = saml.getSamlKeyPassword().toCharArray();
+        }
+        ProtectionParameter samlKeyProtectionParam = null;
+        if (samlKeyPassword != null && samlKeyPassword.length > 0) {
+            samlKeyProtectionParam = new KeyStore.PasswordProtection(samlKeyPassword);
+        }
+
+        KeyStore.PrivateKeyEntry entry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(saml.getSamlKeyAlias(), samlKeyProtectionParam);
+        PrivateKey privateKey = entry.getPrivateKey();
+        Certificate certificate = entry.getCertificate();
+        String issuerServiceName = "Intel Security Libraries";
+        String jsr105provider = saml.getJsr105Provider(); // conf.getString(JSR105_PROVIDER, "org.jcp.xml.dsig.internal.dom.XMLDSigRI");
+        Integer validitySeconds = saml.getSamlValiditySeconds();
+        return new IssuerConfiguration(privateKey, certificate, configuration, issuerName, issuerServiceName, validitySeconds, jsr105provider);
+    }
+
+    /**
+     * Returns a digest of the keystore file and every setting the issuer
+     * configuration is built from, so the passwords are not kept in the key.
+     */
+    private String getCacheKey(SamlConfiguration saml, String issuerName) throws NoSuchAlgorithmException {
+        File keystoreFile = saml.getSamlKeystoreFile();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Object value : new Object[] { keystoreFile.getAbsolutePath(), keystoreFile.lastModified(), keystoreFile.length(),
+                saml.getSamlKeystorePassword(), saml.getSamlKeyAlias(), saml.getSamlKeyPassword(), issuerName,
+                saml.getSamlValiditySeconds(), saml.getJsr105Provider() }) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
     /**
      * Get a KeyStore object given the keystore filename and password.
      */
@@ -88,4 +131,14 @@ public class IssuerConfigurationFactory {
         result.load(in, password.toCharArray());
         return result;
     }
+
+    private static class CachedIssuerConfiguration {
+        private final String cacheKey;
+        private final IssuerConfiguration issuerConfiguration;
+
+        private CachedIssuerConfiguration(String cacheKey, IssuerConfiguration issuerConfiguration) {
+            this.cacheKey = cacheKey;
+            this.issuerConfiguration = issuerConfiguration;
+        }
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.saml;
+
+import com.intel.mtwilson.My;
+import com.intel.mtwilson.supplemental.saml.MapFormatter;
+import com.intel.mtwilson.supplemental.saml.SAML;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the SAML issuer configuration and signs a throwaway assertion at
+ * startup, so OpenSAML initialization, XML signature provider lookup and
+ * keystore decryption are not paid for by the first host verification.
+ * Disabled by setting {@code mtwilson.saml.warmup.enabled} to false.
+ */
+@WebListener
+public class SamlWarmupLoader implements ServletContextListener {
+    private transient static final Logger log = LoggerFactory.getLogger(SamlWarmupLoader.class);
+    public static final String SAML_WARMUP_ENABLED = "mtwilson.saml.warmup.enabled";
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        if (!My.configuration().getConfiguration().getBoolean(SAML_WARMUP_ENABLED, true)) {
+            log.debug("{}=false, skipping SAML warmup", SAML_WARMUP_ENABLED);
+            return;
+        }
+        Thread warmup = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    SAML saml = new SAML(new IssuerConfigurationFactory().loadIssuerConfiguration());
+                    Map<String, String> samlMap = new LinkedHashMap<>();
+                    samlMap.put("TRUST_OVERALL", "false");
+                    saml.generateSamlAssertion(new MapFormatter(samlMap));
+                    log.info("SAML signing warmed up in {} ms", System.currentTimeMillis() - start);
+                } catch (Exception e) {
+                    log.warn("Cannot warm up SAML signing: {}", e.getMessage());
+                    log.debug("SAML warmup failed", e);
+                }
+            }
+        }, "saml-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.intel.dcsg.cpg.extensions.Extensions;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.core.common.model.HostManifest;
+import com.intel.mtwilson.core.flavor.PlatformFlavor;
+import com.intel.mtwilson.core.flavor.PlatformFlavorFactory;
+import com.intel.mtwilson.core.flavor.model.Flavor;
+import com.intel.mtwilson.core.flavor.model.SignedFlavor;
+import com.intel.mtwilson.jackson.bouncycastle.BouncyCastleModule;
+import com.intel.mtwilson.jackson.validation.ValidationModule;
+import com.intel.mtwilson.jaxrs2.provider.JacksonObjectMapperProvider;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FlavorSignatureCacheTest {
+
+    private static final String SIGNATURE = "c2lnbmF0dXJl";
+    private final ObjectMapper mapper = JacksonObjectMapperProvider.createDefaultMapper();
+    private VerificationContext verificationContext;
+    private Flavor flavor;
+
+    @BeforeClass
+    public static void registerJacksonModules() {
+        Extensions.register(Module.class, BouncyCastleModule.class);
+        Extensions.register(Module.class, ValidationModule.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // no certificate files, so the context has no certificates
+        verificationContext = new VerificationContext(null, null, null, null, false);
+        String hostManifestAsJson = Resources.toString(Resources.getResource("hostmanifest.json"), Charsets.UTF_8);
+        HostManifest hostManifest = mapper.readValue(hostManifestAsJson, HostManifest.class);
+        PlatformFlavor platformFlavor = new PlatformFlavorFactory().getPlatformFlavor(hostManifest, null);
+        String flavorPart = platformFlavor.getFlavorPartNames().iterator().next();
+        flavor = mapper.readValue(platformFlavor.getFlavorPart(flavorPart).iterator().next(), Flavor.class);
+        flavor.getMeta().setId(new UUID().toString());
+    }
+
+    @Test
+    public void testSameContentHitsCache() throws Exception {
+        Flavor copy = mapper.readValue(mapper.writeValueAsString(flavor), Flavor.class);
+        String key = FlavorSignatureCache.getKey(new SignedFlavor(flavor, SIGNATURE), verificationContext);
+        assertNotNull(key);
+        assertEquals(key, FlavorSignatureCache.getKey(new SignedFlavor(copy, SIGNATURE), verificationContext));
+    }
+
+    @Test
+    public void testChangedContentMissesCache() throws Exception {
+        Flavor changed = mapper.readValue(mapper.writeValueAsString(flavor), Flavor.class);
+        changed.getMeta().getDescription().setLabel("changed-" + new UUID().toString());
+        // same flavor ID and same stored signature, but different content
+        String key = FlavorSignatureCache.getKey(new SignedFlavor(flavor, SIGNATURE), verificationContext);
+        String changedKey = FlavorSignatureCache.getKey(new SignedFlavor(changed, SIGNATURE), verificationContext);
+        assertNotNull(changedKey);
+        assertNotEquals(key, changedKey);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.flavor.business;
+
+import com.fasterxml.jackson.databind.Module;
+import com.intel.dcsg.cpg.extensions.Extensions;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLinkCollection;
+import com.intel.mtwilson.flavor.rest.v2.model.FlavorHostLinkFilterCriteria;
+import com.intel.mtwilson.flavor.rest.v2.model.Report;
+import com.intel.mtwilson.flavor.rest.v2.repository.FlavorHostLinkRepository;
+import com.intel.mtwilson.jackson.bouncycastle.BouncyCastleModule;
+import com.intel.mtwilson.jackson.validation.ValidationModule;
+import static com.intel.mtwilson.features.queue.model.QueueState.COMPLETED;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs flavor verification the way the queue creates it: with the no-arg
+ * constructor and the host ID in the parameters. Needs a configured database
+ * with a host whose trust cache (flavor host links) is not empty.
+ */
+public class FlavorVerifyQueueTest {
+
+    private UUID hostId;
+
+    @BeforeClass
+    public static void registerJacksonModules() {
+        Extensions.register(Module.class, BouncyCastleModule.class);
+        Extensions.register(Module.class, ValidationModule.class);
+    }
+
+    @Before
+    public void setUp() {
+        FlavorHostLinkFilterCriteria criteria = new FlavorHostLinkFilterCriteria();
+        criteria.filter = false;
+        FlavorHostLinkCollection links = new FlavorHostLinkRepository().search(criteria);
+        Assume.assumeTrue(links != null && links.getFlavorHostLinks() != null && !links.getFlavorHostLinks().isEmpty());
+        hostId = links.getFlavorHostLinks().get(0).getHostId();
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        FlavorVerify flavorVerify = createQueueOperation();
+        assertEquals(Boolean.TRUE, flavorVerify.call());
+        assertEquals(COMPLETED, flavorVerify.getQueueState());
+    }
+
+    @Test
+    public void testCallAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            FlavorVerify flavorVerify = createQueueOperation();
+            assertEquals(Boolean.TRUE, flavorVerify.callAsync(executor).get(60, TimeUnit.SECONDS));
+            assertEquals(COMPLETED, flavorVerify.getQueueState());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a flavor verification with the parameters of a queue entry.
+     * The host manifest is taken from the stored host status, and the
+     * previous report is ignored so the trust cache is always evaluated.
+     */
+    private FlavorVerify createQueueOperation() {
+        FlavorVerify flavorVerify = new FlavorVerify() {
+            @Override
+            Report retrievePreviousReport(UUID hostId) {
+                return null;
+            }
+        };
+        flavorVerify.setParameter("host_id", hostId.toString());
+        flavorVerify.setParameter("force_update", "false");
+        return flavorVerify;
+    }
+}
@@ -8,6 +8,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
+import javax.sql.DataSource;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.dbcp.BasicDataSource;
 
 /**
  *
@@ -17,6 +20,7 @@ public class MyJdbc {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MyJdbc.class);
 
     private MyConfiguration config;
+    private BasicDataSource dataSource = null;
     public MyJdbc(MyConfiguration config) {
         this.config = config;
     }
@@ -100,4 +104,98 @@ public class MyJdbc {
         Connection c = DriverManager.getConnection(url(), config.getDatabaseConnectionProperties());
         return c;
     }
+    
+    /**
+     * Returns the connection pool shared by the JDBI data access objects, so
+     * they do not open a new database connection for every call. Connections
+     * obtained from the pool must be closed to return them to the pool.
+     * 
+     * The pool is sized by its own settings, dbcp.jdbi.max.active (16),
+     * dbcp.jdbi.max.idle (8) and dbcp.jdbi.min.idle (2), and otherwise uses
+     * the same dbcp.* settings as the JPA persistence units, plus
+     * dbcp.max.wait (milliseconds to wait for a connection when all are in
+     * use) and dbcp.validation.while.idle and dbcp.time.between.eviction.runs
+     * (milliseconds) for validating idle connections. Leak detection is off
+     * by default; dbcp.remove.abandoned and dbcp.remove.abandoned.timeout
+     * (seconds) reclaim connections that were never closed, and
+     * dbcp.log.abandoned logs them with the stack trace of the code that
+     * borrowed them, which is costly on every borrow.
+     * 
+     * Connection budget: the JPA pool holds up to dbcp.max.active
+     * connections, of which queue workers use at most dbcp.max.active minus
+     * mtwilson.queue.db.reserved.connections (32). This pool should fit in
+     * the reserved connections together with the other work outside the
+     * queue, so each node opens at most dbcp.max.active plus
+     * dbcp.jdbi.max.active connections, and the database max_connections
+     * must cover that for every node.
+     * 
+     * @return
+     * @throws ClassNotFoundException 
+     */
+    public synchronized DataSource dataSource() throws ClassNotFoundException {
+        if( dataSource == null ) {
+            String driver = driver();
+            Class.forName(driver);
+            Configuration c = config.getConfiguration();
+            BasicDataSource pool = new BasicDataSource();
+            pool.setDriverClassName(driver);
+            pool.setUrl(url());
+            Properties connectionProperties = config.getDatabaseConnectionProperties();
+            for(String name : connectionProperties.stringPropertyNames()) {
+                pool.addConnectionProperty(name, connectionProperties.getProperty(name));
+            }
+            pool.setMaxActive(c.getInt("dbcp.jdbi.max.active", 16));
+            pool.setMaxIdle(c.getInt("dbcp.jdbi.max.idle", 8));
+            pool.setMinIdle(c.getInt("dbcp.jdbi.min.idle", 2));
+            pool.setMaxWait(c.getLong("dbcp.max.wait", 10000));
+            String validationQuery = c.getString("dbcp.validation.query", "");
+            if( validationQuery.isEmpty() && !driver.contains("derby") ) {
+                validationQuery = "SELECT 1";
+            }
+            if( !validationQuery.isEmpty() ) {
+                pool.setValidationQuery(validationQuery);
+            }
+            pool.setTestOnBorrow(c.getBoolean("dbcp.validation.on.borrow", true));
+            pool.setTestOnReturn(c.getBoolean("dbcp.validation.on.return", false));
+            pool.setTestWhileIdle(c.getBoolean("dbcp.validation.while.idle", true));
+            pool.setTimeBetweenEvictionRunsMillis(c.getLong("dbcp.time.between.eviction.runs", 60000));
+            pool.setRemoveAbandoned(c.getBoolean("dbcp.remove.abandoned", false));
+            pool.setRemoveAbandonedTimeout(c.getInt("dbcp.remove.abandoned.timeout", 300));
+            pool.setLogAbandoned(c.getBoolean("dbcp.log.abandoned", false));
+            log.debug("Created JDBC connection pool for {} with max active {}", pool.getUrl(), pool.getMaxActive());
+            dataSource = pool;
+        }
+        return dataSource;
+    }
+    
+    public synchronized int getActiveConnectionCount() {
+        return dataSource == null ? 0 : dataSource.getNumActive();
+    }
+    
+    public synchronized int getIdleConnectionCount() {
+        return dataSource == null ? 0 : dataSource.getNumIdle();
+    }
+    
+    public synchronized String getPoolStatistics() {
+        if( dataSource == null ) {
+            return "pool[not started]";
+        }
+        return String.format("pool[active=%d, idle=%d, max active=%d]", dataSource.getNumActive(), dataSource.getNumIdle(), dataSource.getMaxActive());
+    }
+    
+    /**
+     * Closes the idle connections of the shared pool; connections still in
+     * use are closed when they are returned.
+     */
+    public synchronized void close() {
+        if( dataSource != null ) {
+            try {
+                dataSource.close();
+            }
+            catch(SQLException e) {
+                log.error("Cannot close JDBC connection pool", e);
+            }
+            dataSource = null;
+        }
+    }
 }
@@ -59,6 +59,10 @@ public class MyJpa {
         return new MwHostStatusJpaController(pm.getFlavorData());
     }
     
+    public MwHostManifestJpaController mwHostManifest() throws IOException {
+        return new MwHostManifestJpaController(pm.getFlavorData());
+    }
+    
     public MwLinkFlavorHostJpaController mwLinkFlavorHost() throws IOException {
         return new MwLinkFlavorHostJpaController(pm.getFlavorData());
     }
@@ -114,6 +114,9 @@ public class MyPersistenceManager extends PersistenceManager {
         prop.put("javax.persistence.jdbc.sslmode", config.getDatabaseSSLMode());
         prop.put("javax.persistence.jdbc.sslrootcert", config.getDatabaseSSLCert());
         prop.put("eclipselink.jdbc.batch-writing", "JDBC");
+        // reuse prepared statements for parameterized queries such as the flavor match query
+        prop.put("eclipselink.jdbc.cache-statements", String.valueOf(myConfig.getBoolean("mtwilson.jpa.cache.statements", true)));
+        prop.put("eclipselink.jdbc.cache-statements.size", myConfig.getString("mtwilson.jpa.cache.statements.size", "100"));
         log.debug("FlavorData javax.persistence.jdbc.url={}", prop.getProperty("javax.persistence.jdbc.url"));
         copyDbcpProperties(myConfig, prop);
         return prop;
@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- Function which notifies listening queue dispatchers that new entries were added to the queue
+CREATE OR REPLACE FUNCTION notify_mw_queue_insert()
+  RETURNS trigger AS
+  '
+    BEGIN
+      PERFORM pg_notify(''mw_queue_insert'', '''');
+      RETURN NULL;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Register a statement level trigger so a batch insert raises a single notification
+CREATE TRIGGER mw_queue_insert_notify_trigger
+AFTER INSERT ON mw_queue
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_mw_queue_insert();
@@ -0,0 +1,11 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+ALTER TABLE mw_queue ADD COLUMN claimed_by varchar(255) NULL;
+ALTER TABLE mw_queue ADD COLUMN claimed_at timestamp NULL;
+CREATE INDEX idx_mw_queue_status_created ON mw_queue (status, created);
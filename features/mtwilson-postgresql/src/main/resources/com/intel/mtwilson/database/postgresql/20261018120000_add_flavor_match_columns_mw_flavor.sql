@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+ALTER TABLE mw_flavor ADD COLUMN flavor_part varchar(32) NULL;
+ALTER TABLE mw_flavor ADD COLUMN os_name varchar(255) NULL;
+ALTER TABLE mw_flavor ADD COLUMN os_version varchar(255) NULL;
+ALTER TABLE mw_flavor ADD COLUMN vmm_name varchar(255) NULL;
+ALTER TABLE mw_flavor ADD COLUMN vmm_version varchar(255) NULL;
+ALTER TABLE mw_flavor ADD COLUMN tboot_installed varchar(16) NULL;
+ALTER TABLE mw_flavor ADD COLUMN hardware_uuid varchar(36) NULL;
+ALTER TABLE mw_flavor ADD COLUMN feature_mask integer NOT NULL DEFAULT 0;
+
+-- two bits per hardware feature (present, enabled) in the order tpm, txt, cbnt, suefi
+UPDATE mw_flavor SET
+    flavor_part = content -> 'meta' -> 'description' ->> 'flavor_part',
+    os_name = content -> 'meta' -> 'description' ->> 'os_name',
+    os_version = content -> 'meta' -> 'description' ->> 'os_version',
+    vmm_name = content -> 'meta' -> 'description' ->> 'vmm_name',
+    vmm_version = content -> 'meta' -> 'description' ->> 'vmm_version',
+    tboot_installed = content -> 'meta' -> 'description' ->> 'tboot_installed',
+    hardware_uuid = LOWER(content -> 'meta' -> 'description' ->> 'hardware_uuid'),
+    feature_mask =
+        (CASE WHEN content -> 'hardware' -> 'feature' ->> 'tpm' IS NULL THEN 0
+              WHEN content -> 'hardware' -> 'feature' -> 'tpm' ->> 'enabled' = 'true' THEN 3 ELSE 1 END) |
+        (CASE WHEN content -> 'hardware' -> 'feature' ->> 'txt' IS NULL THEN 0
+              WHEN content -> 'hardware' -> 'feature' -> 'txt' ->> 'enabled' = 'true' THEN 12 ELSE 4 END) |
+        (CASE WHEN content -> 'hardware' -> 'feature' ->> 'cbnt' IS NULL THEN 0
+              WHEN content -> 'hardware' -> 'feature' -> 'cbnt' ->> 'enabled' = 'true' THEN 48 ELSE 16 END) |
+        (CASE WHEN content -> 'hardware' -> 'feature' ->> 'suefi' IS NULL THEN 0
+              WHEN content -> 'hardware' -> 'feature' -> 'suefi' ->> 'enabled' = 'true' THEN 192 ELSE 64 END);
+
+CREATE INDEX idx_mw_flavor_flavor_part ON mw_flavor (flavor_part);
+CREATE INDEX idx_mw_flavor_os ON mw_flavor (os_name, os_version);
+CREATE INDEX idx_mw_flavor_vmm ON mw_flavor (vmm_name, vmm_version);
+CREATE INDEX idx_mw_flavor_hardware_uuid ON mw_flavor (hardware_uuid);
+CREATE INDEX idx_mw_flavor_flavor_part_feature_mask ON mw_flavor (flavor_part, feature_mask);
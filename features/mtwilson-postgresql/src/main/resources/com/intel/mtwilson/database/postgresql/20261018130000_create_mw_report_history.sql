@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- Append-only history of trust reports, one row per stored report. Rows are kept
+-- in monthly partitions (mw_report_history_YYYYMM) that inherit from this table.
+CREATE TABLE mw_report_history (
+  id char(36) NOT NULL,
+  report_id char(36) NOT NULL,
+  host_id char(36) NOT NULL,
+  created timestamp NOT NULL,
+  expiration timestamp NOT NULL,
+  trusted boolean NULL,
+  trust_report json NOT NULL,
+  saml text NOT NULL
+);
+
+-- Function which creates the monthly partition for a report if it does not exist
+-- and inserts the report into it.
+CREATE OR REPLACE FUNCTION mw_report_history_insert()
+  RETURNS trigger AS
+  '
+    DECLARE
+      partition_name text := ''mw_report_history_'' || to_char(NEW.created, ''YYYYMM'');
+      partition_start timestamp := date_trunc(''month'', NEW.created);
+    BEGIN
+      IF NOT EXISTS(SELECT relname FROM pg_class WHERE relname=partition_name) THEN
+        BEGIN
+          EXECUTE format(''CREATE TABLE %I (PRIMARY KEY (id), CHECK (created >= %L AND created < %L)) INHERITS (mw_report_history)'',
+              partition_name, partition_start, partition_start + interval ''1 month'');
+          EXECUTE format(''CREATE INDEX %I ON %I (host_id, created DESC)'', partition_name || ''_host_created'', partition_name);
+          EXECUTE format(''CREATE INDEX %I ON %I (created)'', partition_name || ''_created'', partition_name);
+        EXCEPTION WHEN duplicate_table THEN
+          -- created by a concurrent insert
+          NULL;
+        END;
+      END IF;
+      EXECUTE format(''INSERT INTO %I VALUES ($1.*)'', partition_name) USING NEW;
+      RETURN NULL;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Register a trigger to route inserts on the main mw_report_history table to the monthly partitions
+CREATE TRIGGER mw_report_history_insert_trigger
+BEFORE INSERT ON mw_report_history
+FOR EACH ROW EXECUTE PROCEDURE mw_report_history_insert();
+
+-- Copy the report history kept so far in the audit log
+INSERT INTO mw_report_history (id, report_id, host_id, created, expiration, trusted, trust_report, saml)
+SELECT id, entity_id, host_id, created, CAST(CAST(expiration AS timestamptz) AS timestamp),
+    CAST(trust_report ->> 'trusted' AS boolean), trust_report, saml
+FROM (
+  SELECT au.id, au.entity_id, au.created,
+    (SELECT col ->> 'value' FROM json_array_elements(au.data -> 'columns') col WHERE col ->> 'name' = 'host_id') AS host_id,
+    (SELECT col -> 'value' FROM json_array_elements(au.data -> 'columns') col WHERE col ->> 'name' = 'trust_report') AS trust_report,
+    (SELECT col ->> 'value' FROM json_array_elements(au.data -> 'columns') col WHERE col ->> 'name' = 'expiration') AS expiration,
+    (SELECT col ->> 'value' FROM json_array_elements(au.data -> 'columns') col WHERE col ->> 'name' = 'saml') AS saml
+  FROM mw_audit_log_entry au
+  WHERE au.entity_type = 'MwReport'
+  AND au.action <> 'DELETE'
+) r
+WHERE host_id IS NOT NULL
+AND json_typeof(trust_report) = 'object'
+AND expiration IS NOT NULL
+AND saml IS NOT NULL;
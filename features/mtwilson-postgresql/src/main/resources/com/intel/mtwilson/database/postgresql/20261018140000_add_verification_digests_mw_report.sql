@@ -0,0 +1,12 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- digests of the host manifest and flavors a report was verified against,
+-- used to keep a valid report without verifying again when neither changed
+ALTER TABLE mw_report ADD COLUMN host_manifest_digest varchar(64) NULL;
+ALTER TABLE mw_report ADD COLUMN flavor_digest varchar(64) NULL;
@@ -0,0 +1,12 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- flavor-verify entries by host, used to skip hosts that are already queued
+-- when a list of hosts is queued in one statement; not unique because a host
+-- may be queued once without and once with force update
+CREATE INDEX idx_mw_queue_flavor_verify_host_id ON mw_queue ((action_parameters ->> 'host_id')) WHERE queue_action = 'flavor-verify';
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- Host manifests stored once per distinct content. Each top level section of a
+-- manifest other than host_info and aik_certificate is stored once per distinct
+-- content as deflate compressed JSON; the manifest lists the digests of its
+-- sections. host_info and aik_certificate are kept in the manifest row so host
+-- status can still be searched by them.
+CREATE TABLE mw_host_manifest_section (
+  digest varchar(64) NOT NULL,
+  body bytea NOT NULL,
+  size integer NOT NULL,
+  created timestamp NOT NULL,
+  PRIMARY KEY (digest)
+);
+
+CREATE TABLE mw_host_manifest (
+  digest varchar(64) NOT NULL,
+  host_info json NULL,
+  aik_certificate text NULL,
+  sections json NOT NULL,
+  created timestamp NOT NULL,
+  PRIMARY KEY (digest)
+);
+
+-- new host status rows reference the manifest instead of storing it in
+-- host_report; host_report is only read for rows written before this change
+ALTER TABLE mw_host_status ADD COLUMN host_manifest_digest varchar(64) NULL;
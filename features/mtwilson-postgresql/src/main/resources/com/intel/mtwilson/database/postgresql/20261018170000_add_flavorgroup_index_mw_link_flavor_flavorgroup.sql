@@ -0,0 +1,10 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- finds the flavors of a flavorgroup without scanning the link table
+CREATE INDEX idx_link_flavor_flavorgroup_flavorgroup_id ON mw_link_flavor_flavorgroup (flavorgroup_id);
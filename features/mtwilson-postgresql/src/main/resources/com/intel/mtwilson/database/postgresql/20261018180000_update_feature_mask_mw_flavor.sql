@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- a hardware feature without an enabled value of true or false matches no host,
+-- as it did before feature_mask was added, so it gets the bits 10 that no host
+-- query asks for; two bits per hardware feature in the order tpm, txt, cbnt, suefi
+UPDATE mw_flavor SET feature_mask =
+    (CASE WHEN content -> 'hardware' -> 'feature' -> 'tpm' IS NULL THEN 0
+          WHEN content -> 'hardware' -> 'feature' -> 'tpm' ->> 'enabled' = 'true' THEN 3
+          WHEN content -> 'hardware' -> 'feature' -> 'tpm' ->> 'enabled' = 'false' THEN 1 ELSE 2 END) |
+    (CASE WHEN content -> 'hardware' -> 'feature' -> 'txt' IS NULL THEN 0
+          WHEN content -> 'hardware' -> 'feature' -> 'txt' ->> 'enabled' = 'true' THEN 12
+          WHEN content -> 'hardware' -> 'feature' -> 'txt' ->> 'enabled' = 'false' THEN 4 ELSE 8 END) |
+    (CASE WHEN content -> 'hardware' -> 'feature' -> 'cbnt' IS NULL THEN 0
+          WHEN content -> 'hardware' -> 'feature' -> 'cbnt' ->> 'enabled' = 'true' THEN 48
+          WHEN content -> 'hardware' -> 'feature' -> 'cbnt' ->> 'enabled' = 'false' THEN 16 ELSE 32 END) |
+    (CASE WHEN content -> 'hardware' -> 'feature' -> 'suefi' IS NULL THEN 0
+          WHEN content -> 'hardware' -> 'feature' -> 'suefi' ->> 'enabled' = 'true' THEN 192
+          WHEN content -> 'hardware' -> 'feature' -> 'suefi' ->> 'enabled' = 'false' THEN 64 ELSE 128 END);
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- Function which drops the monthly report history partitions that ended more than
+-- retention_months months before the start of the current month, returning the
+-- number of partitions dropped. Called periodically by the verification service.
+CREATE OR REPLACE FUNCTION drop_mw_report_history_partitions(retention_months integer)
+  RETURNS integer AS
+  '
+    DECLARE
+      cutoff timestamp := date_trunc(''month'', now()::timestamp) - retention_months * interval ''1 month'';
+      partition_row RECORD;
+      dropped_count integer := 0;
+    BEGIN
+      FOR partition_row IN
+        SELECT c.relname FROM pg_inherits i
+        INNER JOIN pg_class c ON c.oid = i.inhrelid
+        INNER JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = ''mw_report_history'' AND c.relname ~ ''^mw_report_history_[0-9]{6}$''
+      LOOP
+        IF to_timestamp(right(partition_row.relname, 6), ''YYYYMM'')::timestamp < cutoff THEN
+          -- another node may drop the same partition at the same time
+          EXECUTE format(''DROP TABLE IF EXISTS %I'', partition_row.relname);
+          dropped_count := dropped_count + 1;
+        END IF;
+      END LOOP;
+      RETURN dropped_count;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
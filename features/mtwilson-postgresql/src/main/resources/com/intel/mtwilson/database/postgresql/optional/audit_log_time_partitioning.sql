@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Created: Oct 18, 2026
+ */
+
+-- Optional storage layout for the audit log: native range partitioning of
+-- mw_audit_log_entry by month (mw_audit_log_entry_YYYYMM) instead of row count
+-- rotation. Requires PostgreSQL 10 or later and is not applied by database
+-- setup; run it once with psql, then set mtwilson.audit.log.partitioning=time
+-- so the audit log maintenance task creates and drops monthly partitions. The
+-- script creates the partitions up to three months ahead, matching the default
+-- of mtwilson.audit.log.partitions.ahead, since an entry whose month has no
+-- partition cannot be inserted.
+
+BEGIN;
+
+-- Function which creates the monthly partitions from the month of from_date
+-- up to months_ahead months after the current month.
+CREATE OR REPLACE FUNCTION create_audit_log_time_partitions(from_date timestamp, months_ahead integer)
+  RETURNS integer AS
+  '
+    DECLARE
+      partition_start timestamp := date_trunc(''month'', LEAST(from_date, now()::timestamp));
+      last_start timestamp := date_trunc(''month'', now()::timestamp) + months_ahead * interval ''1 month'';
+      partition_name text;
+      created_count integer := 0;
+    BEGIN
+      WHILE partition_start <= last_start LOOP
+        partition_name := ''mw_audit_log_entry_'' || to_char(partition_start, ''YYYYMM'');
+        IF NOT EXISTS(SELECT relname FROM pg_class WHERE relname=partition_name) THEN
+          EXECUTE format(''CREATE TABLE %I PARTITION OF mw_audit_log_entry (PRIMARY KEY (id)) FOR VALUES FROM (%L) TO (%L)'',
+              partition_name, partition_start, partition_start + interval ''1 month'');
+          EXECUTE format(''CREATE INDEX %I ON %I (entity_type, created)'', partition_name || ''_type_created'', partition_name);
+          created_count := created_count + 1;
+        END IF;
+        partition_start := partition_start + interval ''1 month'';
+      END LOOP;
+      RETURN created_count;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Function which drops the monthly partitions that ended more than
+-- retention_months months before the start of the current month.
+CREATE OR REPLACE FUNCTION drop_audit_log_time_partitions(retention_months integer)
+  RETURNS integer AS
+  '
+    DECLARE
+      cutoff timestamp := date_trunc(''month'', now()::timestamp) - retention_months * interval ''1 month'';
+      partition_row RECORD;
+      dropped_count integer := 0;
+    BEGIN
+      FOR partition_row IN
+        SELECT c.relname FROM pg_inherits i
+        INNER JOIN pg_class c ON c.oid = i.inhrelid
+        INNER JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = ''mw_audit_log_entry'' AND c.relname ~ ''^mw_audit_log_entry_[0-9]{6}$''
+      LOOP
+        IF to_timestamp(right(partition_row.relname, 6), ''YYYYMM'')::timestamp < cutoff THEN
+          EXECUTE format(''DROP TABLE %I'', partition_row.relname);
+          dropped_count := dropped_count + 1;
+        END IF;
+      END LOOP;
+      RETURN dropped_count;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Row count rotation does not apply to the time partitioned layout
+CREATE OR REPLACE FUNCTION public.rotate_audit_log_partitions(
+    max_row_count integer,
+    num_rotations integer)
+  RETURNS integer AS
+  '
+    BEGIN
+      RETURN 0;
+    END;
+  '
+LANGUAGE plpgsql VOLATILE
+COST 100;
+
+-- Replace the rotated table, and its mw_audit_log_entry_N partitions, with a
+-- partitioned table holding the same rows
+DROP TRIGGER IF EXISTS insert_partition_trigger ON mw_audit_log_entry;
+ALTER TABLE mw_audit_log_entry RENAME TO mw_audit_log_entry_rotated;
+CREATE TABLE mw_audit_log_entry (
+  id CHAR(36) NOT NULL,
+  entity_id varchar(150) NULL,
+  entity_type varchar(150) NULL,
+  created timestamp NOT NULL,
+  action varchar(50) NULL,
+  data json
+) PARTITION BY RANGE (created);
+
+SELECT create_audit_log_time_partitions(COALESCE((SELECT min(created) FROM mw_audit_log_entry_rotated), now()::timestamp), 3);
+
+INSERT INTO mw_audit_log_entry (id, entity_id, entity_type, created, action, data)
+SELECT id, entity_id, entity_type, created, action, data FROM mw_audit_log_entry_rotated;
+
+DROP TABLE mw_audit_log_entry_rotated CASCADE;
+
+COMMIT;
@@ -11,25 +11,25 @@ import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.features.queue.model.Queue;
 import com.intel.mtwilson.features.queue.model.QueueCollection;
-import com.intel.mtwilson.features.queue.model.QueueFilterCriteria;
 import com.intel.mtwilson.features.queue.model.QueueFuture;
 import com.intel.mtwilson.features.queue.model.QueueLocator;
 import com.intel.mtwilson.features.queue.model.QueueState;
 import static com.intel.mtwilson.features.queue.model.QueueState.ERROR;
-import static com.intel.mtwilson.features.queue.model.QueueState.NEW;
 import static com.intel.mtwilson.features.queue.model.QueueState.PENDING;
 import static com.intel.mtwilson.features.queue.model.QueueState.RETURNED;
 import com.intel.mtwilson.features.queue.repository.QueueRepository;
 import com.intel.mtwilson.text.transform.PascalCaseNamingStrategy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.config.Ini;
@@ -59,8 +59,47 @@ public class QueueExecution implements Runnable {
     private final int DEFAULT_QUEUE_MAX_THREADS = 128;
     int maxThreads = My.configuration().getConfiguration().getInt("mtwilson.queue.max.threads", DEFAULT_QUEUE_MAX_THREADS);
     
+    // queue admission, at most one window of entries waits for a worker and workers are limited
+    // to the database connections left after the reserved connections are taken out of the pool;
+    // the reserved connections cover other work, including the JDBI pool (dbcp.jdbi.max.active)
+    private static final int DEFAULT_QUEUE_WINDOW_SIZE = 256;
+    private static final int DEFAULT_QUEUE_DB_RESERVED_CONNECTIONS = 32;
+    int windowSize = My.configuration().getConfiguration().getInt("mtwilson.queue.window.size", DEFAULT_QUEUE_WINDOW_SIZE);
+    int dbMaxActive = My.configuration().getConfiguration().getInt("dbcp.max.active", 200);
+    int dbReservedConnections = My.configuration().getConfiguration().getInt("mtwilson.queue.db.reserved.connections", DEFAULT_QUEUE_DB_RESERVED_CONNECTIONS);
+    
+    // queue dispatch mode, either "poll" to run the queue on a fixed interval or "event"
+    // to also wake up as soon as entries are added to the queue
+    public static final String QUEUE_DISPATCH_MODE_POLL = "poll";
+    public static final String QUEUE_DISPATCH_MODE_EVENT = "event";
+    String dispatchMode = My.configuration().getConfiguration().getString("mtwilson.queue.dispatch.mode", QUEUE_DISPATCH_MODE_POLL);
+    boolean notificationsEnabled = My.configuration().getConfiguration().getBoolean("mtwilson.queue.notification.enabled", true);
+    
+    // queue execution mode, either "thread" to run each queue operation on a queue worker or "async"
+    // to let queue operations run their network bound parts on their own executors, in which case up
+    // to the configured number of entries may be in flight without holding a queue worker each; keep it
+    // below the capacity of the first stage the operations hand off to (for flavor verification, the
+    // fetch threads plus the fetch queue size) so entries wait here and not in the stage pools
+    public static final String QUEUE_EXECUTION_MODE_THREAD = "thread";
+    public static final String QUEUE_EXECUTION_MODE_ASYNC = "async";
+    private static final int DEFAULT_QUEUE_ASYNC_MAX_IN_FLIGHT = 1024;
+    String executionMode = My.configuration().getConfiguration().getString("mtwilson.queue.execution.mode", QUEUE_EXECUTION_MODE_THREAD);
+    int asyncMaxInFlight = My.configuration().getConfiguration().getInt("mtwilson.queue.async.max.inflight", DEFAULT_QUEUE_ASYNC_MAX_IN_FLIGHT);
+    
+    // queue claiming, entries are claimed in batches by node so several nodes can share one queue table,
+    // entries left PENDING by a node that stopped are claimed again once the claim timeout passes, and
+    // entries that failed are retried once the error retry delay passes
+    private static final int DEFAULT_QUEUE_CLAIM_BATCH_SIZE = 1000;
+    private static final int DEFAULT_QUEUE_CLAIM_TIMEOUT_SECONDS = 3600;
+    private static final int DEFAULT_QUEUE_ERROR_RETRY_SECONDS = 60;
+    int claimBatchSize = My.configuration().getConfiguration().getInt("mtwilson.queue.claim.batch.size", DEFAULT_QUEUE_CLAIM_BATCH_SIZE);
+    int claimTimeoutSeconds = My.configuration().getConfiguration().getInt("mtwilson.queue.claim.timeout.seconds", DEFAULT_QUEUE_CLAIM_TIMEOUT_SECONDS);
+    int errorRetrySeconds = My.configuration().getConfiguration().getInt("mtwilson.queue.error.retry.seconds", DEFAULT_QUEUE_ERROR_RETRY_SECONDS);
+    String nodeId = My.configuration().getConfiguration().getString("mtwilson.queue.node.id", getDefaultNodeId());
+    
     // thread executer service
-    private ExecutorService threadExecutor = null;
+    private QueueScheduler threadExecutor = null;
+    private QueueNotificationListener notificationListener = null;
     
     public QueueExecution() {
         if (sleepInterval <= 0) {
@@ -74,8 +113,30 @@ public class QueueExecution implements Runnable {
         running = true;
     }
     
+    private static String getDefaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            log.warn("Cannot determine local host name for queue node ID: {}", e.getMessage());
+            return "localhost";
+        }
+    }
+    
     public void cancel() {
         running = false;
+        QueueSignal.signal();
+    }
+    
+    public QueueScheduler getScheduler() {
+        return threadExecutor;
+    }
+    
+    private boolean isEventDispatchMode() {
+        return QUEUE_DISPATCH_MODE_EVENT.equalsIgnoreCase(dispatchMode);
+    }
+    
+    private boolean isAsyncExecutionMode() {
+        return QUEUE_EXECUTION_MODE_ASYNC.equalsIgnoreCase(executionMode);
     }
     
     private void setSubject(Subject subject) {
@@ -113,7 +174,11 @@ public class QueueExecution implements Runnable {
     
     @Override
     public void run() {
-        threadExecutor = Executors.newFixedThreadPool(maxThreads);
+        threadExecutor = new QueueScheduler(maxThreads, windowSize, dbMaxActive, dbReservedConnections);
+        boolean asyncExecutionMode = isAsyncExecutionMode();
+        if (asyncExecutionMode) {
+            threadExecutor.setMaxInFlight(asyncMaxInFlight);
+        }
         QueueRepository queueRepositoryObject = new QueueRepository();
         // try to login as superuser
         try {
@@ -146,34 +211,33 @@ public class QueueExecution implements Runnable {
         }
         
         try {
-            //check if there are any PENDING items in the queue when the queue starts for the first time
-            QueueFilterCriteria criteriaForPendingItems = new QueueFilterCriteria();
-            criteriaForPendingItems.queueStates = new ArrayList();
-            criteriaForPendingItems.queueStates.add(PENDING.name());
-            QueueCollection queueCollectionWithPendingEntries = new QueueRepository().search(criteriaForPendingItems);
-            
-            if (queueCollectionWithPendingEntries != null && queueCollectionWithPendingEntries.getQueueEntries() != null
-                        && !queueCollectionWithPendingEntries.getQueueEntries().isEmpty()) {
-                for (Queue queueEntry : queueCollectionWithPendingEntries.getQueueEntries()) {
-                    UUID queueEntryId = queueEntry.getId();
-                    updateQueueEntryStatus(queueEntryId, RETURNED, "Entry stuck at startup.");
-                    log.debug("Moving unfinished queue entries to RETURNED state.");
-                }
-            }
+            // return any PENDING items claimed by this node when the queue starts for the first time,
+            // leaving entries claimed by other nodes sharing the database alone
+            int returnedEntries = new QueueRepository().returnClaimed(nodeId, "Entry stuck at startup.");
+            log.debug("Moved {} unfinished queue entries to RETURNED state.", returnedEntries);
         } catch (Exception e) {
             log.warn("Error while processing unfinished queue entries: {}", e.getMessage(), e);
         }
         
-        Set<QueueFuture> queueSet = ConcurrentHashMap.newKeySet();
+        final Set<QueueFuture> queueSet = ConcurrentHashMap.newKeySet();
+        boolean eventDispatchMode = isEventDispatchMode();
+        if (eventDispatchMode && notificationsEnabled) {
+            // wake up on entries added by other nodes sharing the database
+            notificationListener = new QueueNotificationListener();
+            Thread notificationThread = new Thread(notificationListener, "queue-notification-listener");
+            notificationThread.setDaemon(true);
+            notificationThread.start();
+        }
+        log.info("Queue execution running in {} dispatch mode and {} execution mode", eventDispatchMode ? QUEUE_DISPATCH_MODE_EVENT : QUEUE_DISPATCH_MODE_POLL,
+                asyncExecutionMode ? QUEUE_EXECUTION_MODE_ASYNC : QUEUE_EXECUTION_MODE_THREAD);
         try {
             while(running){
-                // retrieve all queue entries
-                QueueFilterCriteria criteria = new QueueFilterCriteria();
-                criteria.queueStates = new ArrayList();
-                criteria.queueStates.add(NEW.name());
-                criteria.queueStates.add(RETURNED.name());
-                criteria.queueStates.add(ERROR.name());
-                QueueCollection queueCollection = new QueueRepository().search(criteria);
+                // claim as many queue entries for this node as the scheduler can admit, moving them to PENDING
+                int admitted = threadExecutor.admit(queueSet.size(), claimBatchSize);
+                QueueCollection queueCollection = null;
+                if (admitted > 0) {
+                    queueCollection = new QueueRepository().claim(nodeId, admitted, claimTimeoutSeconds, errorRetrySeconds);
+                }
                 if (queueCollection == null || queueCollection.getQueueEntries() == null
                         || queueCollection.getQueueEntries().isEmpty()) {
                     log.debug("No queue entries found");
@@ -184,9 +248,6 @@ public class QueueExecution implements Runnable {
                             break;
                         }
 
-                        // set queue entry status to PENDING
-                        updateQueueEntryStatus(queueEntry.getId(), PENDING, null);
-
                         // validation queue entry has an action and ID
                         if (queueEntry.getQueueAction() == null || queueEntry.getId() == null) {
                             updateQueueEntryStatus(queueEntry.getId(), ERROR, "Invalid queue entry format. Either queue action or ID is not valid content.");
@@ -203,50 +264,45 @@ public class QueueExecution implements Runnable {
 
                         // add the queue operation to the thread executor
                         queueOperation.setQueueState(PENDING);
-                        queueSet.add(new QueueFuture(queueEntry.getId(), queueOperation, threadExecutor.submit(queueOperation)));
+                        try {
+                            if (asyncExecutionMode) {
+                                submitAsync(queueEntry.getId(), queueOperation, queueSet, eventDispatchMode);
+                            } else if (eventDispatchMode) {
+                                submitWithCompletionCallback(queueEntry.getId(), queueOperation, queueSet);
+                            } else {
+                                queueSet.add(new QueueFuture(queueEntry.getId(), queueOperation, threadExecutor.submit(queueOperation)));
+                            }
+                        } catch (RejectedExecutionException e) {
+                            log.debug("Queue scheduler is full, returning queue entry [{}]", queueEntry.getId());
+                            updateQueueEntryStatus(queueEntry.getId(), RETURNED, "Queue scheduler is full.");
+                        }
                     }
                 }
                 // check status of each thread and remove the once completed from set and from queue table
                 // The purpose of this below loop is to ensure that all the threads have completed processing.
                 // Also, if cancel is called, it will cancel all queue executions and return the entries to the queue
+                // In event dispatch mode, completed entries are handled by the completion callback instead.
                 for (QueueFuture qf : queueSet) {
                     UUID queueEntryId = qf.getQueueEntryId();
                     Future<?> runningCommand = qf.getFuture();
+                    if (runningCommand == null) {
+                        continue;
+                    }
                     if (!running) {
                         runningCommand.cancel(true);
                         continue;
                     }
 //                        runningCommand.get(timeout, TimeUnit.SECONDS);
-                    if(runningCommand.isDone()){
-                        QueueState queueState = ((QueueOperation)qf.getCallable()).getQueueState();
-                        if(queueState == null)
-                            queueState = QueueState.ERROR;
-                        switch(queueState){
-                            case TIMEOUT:
-                                log.debug("Thread timed out");
-                                break;
-                            case CONNECTION_FAILURE:
-                                log.debug("Failed to connect to host.");
-                                break;
-                            case ERROR:
-                                runningCommand.cancel(true);
-                                log.error("Exception while retrieving queue operation.");
-                                queueSet.remove(qf);
-                                updateQueueEntryStatus(queueEntryId, ERROR, "Exception thrown during queue operation.");
-                                continue;
-                            case COMPLETED:
-                        }
-                        // delete queue entry after successful execution
-                        QueueLocator locator = new QueueLocator();
-                        locator.id = queueEntryId;
-                        new QueueRepository().delete(locator);
-                        
-                        log.debug("Successfully executed queue entry: {}", queueEntryId);
+                    if(!eventDispatchMode && runningCommand.isDone()){
+                        completeQueueEntry(queueEntryId, (QueueOperation)qf.getCallable());
                         queueSet.remove(qf);
                     }
                 }
+                log.debug("Queue scheduler: {} entries in flight, queue depth {}, {} of {} workers active, {} rejected, {} deferred",
+                        queueSet.size(), threadExecutor.getQueueDepth(), threadExecutor.getActiveWorkerCount(), threadExecutor.getWorkerCount(),
+                        threadExecutor.getRejectedCount(), threadExecutor.getDeferredCount());
                 try {
-                    TimeUnit.SECONDS.sleep(sleepInterval);
+                    awaitNextPass(eventDispatchMode);
                 }
                 catch (InterruptedException ie) {
                     for (QueueFuture qf : queueSet) {
@@ -259,6 +315,9 @@ public class QueueExecution implements Runnable {
         } catch (Exception e) {
             log.warn("Error while calling queue operation: {}", e.getMessage(), e);
         }  finally {
+            if (notificationListener != null) {
+                notificationListener.cancel();
+            }
             for (QueueFuture qf : queueSet) {
                 UUID queueEntryId = qf.getQueueEntryId();
                 updateQueueEntryStatus(queueEntryId, RETURNED, "Thread cancelled.");
@@ -266,7 +325,9 @@ public class QueueExecution implements Runnable {
             }
             try {
                 threadExecutor.shutdown();
-                while (!threadExecutor.isTerminated()) { }
+                while (!threadExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    log.debug("Waiting for queue threads to complete");
+                }
                 log.debug("All queue threads completed, executor shutdown");
             } catch (Exception e) {
                 log.error("Cannot shutdown queue thread executor service: {}", e.getMessage(), e);
@@ -289,6 +350,134 @@ public class QueueExecution implements Runnable {
         }
     }
     
+    /**
+     * Waits before the next dispatcher pass. In event dispatch mode the wait
+     * ends as soon as the queue is signalled, falling back to polling at the
+     * configured interval; in poll mode it always lasts the full interval.
+     */
+    void awaitNextPass(boolean eventDispatchMode) throws InterruptedException {
+        if (eventDispatchMode) {
+            QueueSignal.await(sleepInterval, TimeUnit.SECONDS);
+        } else {
+            TimeUnit.SECONDS.sleep(sleepInterval);
+        }
+    }
+    
+    /**
+     * Submits the queue operation to the thread executor and handles its
+     * result on the worker thread as soon as it finishes, instead of waiting
+     * for the dispatcher to find the completed future.
+     */
+    private void submitWithCompletionCallback(final UUID queueEntryId, final QueueOperation queueOperation, final Set<QueueFuture> queueSet) {
+        final QueueFuture queueFuture = new QueueFuture(queueEntryId, queueOperation, null);
+        queueSet.add(queueFuture);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queueOperation.call();
+                } catch (Exception e) {
+                    log.debug("Error while running queue operation for queue entry [{}]", queueEntryId, e);
+                    queueOperation.setQueueState(ERROR);
+                }
+                // leave cancelled entries for the shutdown handler to return to the queue
+                if (running) {
+                    try {
+                        completeQueueEntry(queueEntryId, queueOperation);
+                    } catch (Exception e) {
+                        log.warn("Error while completing queue entry [{}]: {}", queueEntryId, e.getMessage(), e);
+                    }
+                    queueSet.remove(queueFuture);
+                    signalCompletion(queueOperation);
+                }
+            }
+        };
+        try {
+            queueFuture.setFuture(threadExecutor.submit(task));
+        } catch (RejectedExecutionException e) {
+            queueSet.remove(queueFuture);
+            throw e;
+        }
+    }
+    
+    /**
+     * Starts the queue operation asynchronously. In event dispatch mode the
+     * result is handled as soon as the operation completes, otherwise the
+     * dispatcher finds the completed future on its next pass.
+     */
+    private void submitAsync(final UUID queueEntryId, final QueueOperation queueOperation, final Set<QueueFuture> queueSet, boolean completionCallback) {
+        final QueueFuture queueFuture = new QueueFuture(queueEntryId, queueOperation, null);
+        queueSet.add(queueFuture);
+        CompletableFuture<?> future;
+        try {
+            future = queueOperation.callAsync(threadExecutor);
+        } catch (RejectedExecutionException e) {
+            queueSet.remove(queueFuture);
+            throw e;
+        }
+        queueFuture.setFuture(future);
+        if (!completionCallback) {
+            return;
+        }
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object result, Throwable t) {
+                if (t != null) {
+                    log.debug("Error while running queue operation for queue entry [{}]", queueEntryId, t);
+                    queueOperation.setQueueState(ERROR);
+                }
+                // leave cancelled entries for the shutdown handler to return to the queue
+                if (running) {
+                    try {
+                        completeQueueEntry(queueEntryId, queueOperation);
+                    } catch (Exception e) {
+                        log.warn("Error while completing queue entry [{}]: {}", queueEntryId, e.getMessage(), e);
+                    }
+                    queueSet.remove(queueFuture);
+                    signalCompletion(queueOperation);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Lets the dispatcher claim more entries now that a worker slot is free.
+     * A failed operation does not wake it up: failures tend to come together,
+     * for example when the database or the hosts are unreachable, and the
+     * dispatcher picks up the free slot on its next poll instead.
+     */
+    void signalCompletion(QueueOperation queueOperation) {
+        QueueState queueState = queueOperation.getQueueState();
+        if (queueState != null && queueState != ERROR) {
+            QueueSignal.signal();
+        }
+    }
+    
+    private void completeQueueEntry(UUID queueEntryId, QueueOperation queueOperation) {
+        QueueState queueState = queueOperation.getQueueState();
+        if(queueState == null)
+            queueState = QueueState.ERROR;
+        switch(queueState){
+            case TIMEOUT:
+                log.debug("Thread timed out");
+                break;
+            case CONNECTION_FAILURE:
+                log.debug("Failed to connect to host.");
+                break;
+            case ERROR:
+                log.error("Exception while retrieving queue operation.");
+                updateQueueEntryStatus(queueEntryId, ERROR, "Exception thrown during queue operation.");
+                return;
+            case COMPLETED:
+        }
+        // delete queue entry after successful execution
+        QueueLocator locator = new QueueLocator();
+        locator.id = queueEntryId;
+        new QueueRepository().delete(locator);
+        
+        log.debug("Successfully executed queue entry: {}", queueEntryId);
+    }
+    
     private QueueOperation findQueueOperation(Queue queueEntry) {
         // find available queue operations
         List<QueueOperation> queueOperations = Extensions.findAll(QueueOperation.class);
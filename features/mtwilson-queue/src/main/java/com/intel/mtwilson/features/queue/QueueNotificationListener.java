@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.features.queue;
+
+import com.intel.mtwilson.My;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens for PostgreSQL notifications raised by the mw_queue insert trigger
+ * and wakes the local queue dispatcher, so entries added by another
+ * verification service node are picked up without waiting for a poll.
+ *
+ * The listener holds one dedicated database connection and reconnects
+ * after a short delay if the connection is lost.
+ */
+public class QueueNotificationListener implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(QueueNotificationListener.class);
+    public static final String QUEUE_NOTIFICATION_CHANNEL = "mw_queue_insert";
+    private static final int NOTIFICATION_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_SECONDS = 5;
+    private volatile boolean running = true;
+
+    public void cancel() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try (Connection connection = My.jdbc().connection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + QUEUE_NOTIFICATION_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.debug("Listening for queue notifications on channel {}", QUEUE_NOTIFICATION_CHANNEL);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(NOTIFICATION_TIMEOUT_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        log.trace("Received {} queue notifications", notifications.length);
+                        QueueSignal.signal();
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Error while listening for queue notifications: {}", e.getMessage());
+                log.debug("Error while listening for queue notifications", e);
+                try {
+                    TimeUnit.SECONDS.sleep(RECONNECT_DELAY_SECONDS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        log.debug("Stopped listening for queue notifications");
+    }
+}
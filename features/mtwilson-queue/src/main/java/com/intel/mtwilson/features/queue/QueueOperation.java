@@ -9,6 +9,10 @@ import com.intel.mtwilson.features.queue.model.QueueState;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * 
@@ -45,4 +49,24 @@ public abstract class QueueOperation implements Callable {
         if (parameters == null) { parameters = new HashMap(); }
         this.parameters.put(p, v);
     }
+    
+    /**
+     * Starts the queue operation and returns a future that completes with its
+     * result. The default implementation runs {@link #call()} on the given
+     * executor; operations that spend most of their time waiting on the network
+     * may override this to run those parts on their own executors so the queue
+     * worker is not held while they wait.
+     */
+    public CompletableFuture<?> callAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Object>() {
+            @Override
+            public Object get() {
+                try {
+                    return call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, executor);
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.features.queue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool for queue operations.
+ *
+ * The number of workers is the configured maximum thread count, limited to
+ * the database connections left after the reserved connections are taken
+ * out of {@code dbcp.max.active}. At most one window of operations may wait
+ * for a worker; the dispatcher asks {@link #admit(int, int)} how many
+ * entries it may claim and leaves the rest in the queue table, so memory
+ * use does not grow with the size of the queue backlog.
+ *
+ * Operations that complete asynchronously do not hold a worker while they
+ * wait, so the dispatcher may keep more entries in flight than the workers
+ * and window allow; see {@link #setMaxInFlight(int)}.
+ */
+public class QueueScheduler implements Executor {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(QueueScheduler.class);
+    private final int workers;
+    private final int windowSize;
+    private final ThreadPoolExecutor executor;
+    private volatile int maxInFlight;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public QueueScheduler(int maxThreads, int windowSize, int dbMaxActive, int dbReservedConnections) {
+        int dbHeadroom = dbMaxActive - dbReservedConnections;
+        this.workers = Math.max(1, dbHeadroom > 0 ? Math.min(maxThreads, dbHeadroom) : 1);
+        this.windowSize = Math.max(1, windowSize);
+        this.maxInFlight = workers + this.windowSize;
+        if (workers < maxThreads) {
+            log.info("Limiting queue workers to {} to leave {} of {} database connections available", workers, dbReservedConnections, dbMaxActive);
+        }
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(this.windowSize), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "queue-worker-" + count.incrementAndGet());
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns the number of entries the dispatcher may take on, given the
+     * number of entries it already holds, up to the specified maximum. Each
+     * call that admits nothing is counted as deferred.
+     */
+    public int admit(int inFlight, int maxEntries) {
+        int available = Math.min(maxInFlight - inFlight, maxEntries);
+        if (available <= 0) {
+            deferred.incrementAndGet();
+            log.debug("Deferring queue entries, {} of {} entries in flight", inFlight, maxInFlight);
+            return 0;
+        }
+        return available;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+            submitted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public Future<?> submit(Runnable task) {
+        try {
+            Future<?> future = executor.submit(task);
+            submitted.incrementAndGet();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        try {
+            Future<T> future = executor.submit(task);
+            submitted.incrementAndGet();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public int getWorkerCount() {
+        return workers;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveWorkerCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getDeferredCount() {
+        return deferred.get();
+    }
+}
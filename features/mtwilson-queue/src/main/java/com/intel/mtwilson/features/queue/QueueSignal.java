@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.features.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process wake up signal for the queue dispatcher.
+ *
+ * Anything that adds entries to the queue, or frees capacity to run them,
+ * calls {@link #signal()} so a dispatcher waiting in {@link #await(long, TimeUnit)}
+ * picks them up immediately instead of waiting for the next poll interval.
+ * Signals raised while nobody is waiting are remembered until the next await.
+ */
+public class QueueSignal {
+    private static final Object monitor = new Object();
+    private static boolean signalled = false;
+    private static final AtomicLong signals = new AtomicLong();
+    private static final AtomicLong wakeups = new AtomicLong();
+
+    private QueueSignal() { }
+
+    public static void signal() {
+        signals.incrementAndGet();
+        synchronized (monitor) {
+            signalled = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the queue is signalled or the timeout elapses, and clears
+     * the signal.
+     *
+     * @return true if the queue was signalled, false if the timeout elapsed
+     */
+    public static boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (monitor) {
+            while (!signalled) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+            }
+            signalled = false;
+        }
+        wakeups.incrementAndGet();
+        return true;
+    }
+
+    public static long getSignalCount() {
+        return signals.get();
+    }
+
+    public static long getWakeupCount() {
+        return wakeups.get();
+    }
+}
@@ -20,6 +20,8 @@ public class Queue extends Document {
     private Date updated;
     private QueueState status;
     private String message;
+    private String claimedBy;
+    private Date claimedAt;
     
     public String getQueueAction() {
         return queueAction;
@@ -68,4 +70,20 @@ public class Queue extends Document {
     public void setMessage(String message) {
         this.message = message;
     }
+    
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+    
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+    
+    public Date getClaimedAt() {
+        return claimedAt;
+    }
+    
+    public void setClaimedAt(Date claimedAt) {
+        this.claimedAt = claimedAt;
+    }
 }
@@ -7,6 +7,7 @@ package com.intel.mtwilson.features.queue.repository;
 
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.My;
+import com.intel.mtwilson.features.queue.QueueSignal;
 import com.intel.mtwilson.features.queue.model.Queue;
 import com.intel.mtwilson.features.queue.model.QueueCollection;
 import com.intel.mtwilson.features.queue.model.QueueFilterCriteria;
@@ -81,6 +82,45 @@ public class QueueRepository {
         return queueCollection;
     }
 
+    /**
+     * Claims up to maxEntries runnable queue entries for the specified node,
+     * moving them to the PENDING state in a single database round trip.
+     * PENDING entries claimed more than claimTimeoutSeconds ago are reclaimed,
+     * and ERROR entries are retried errorRetrySeconds after they failed.
+     */
+    public QueueCollection claim(String nodeId, int maxEntries, int claimTimeoutSeconds, int errorRetrySeconds) {
+        log.debug("Received request to claim up to {} queue entries for node {}", maxEntries, nodeId);
+        QueueCollection queueCollection = new QueueCollection();
+        try {
+            MwQueueJpaController mwQueueJpaController = My.jpa().mwQueue();
+            List<MwQueue> mwQueueList = mwQueueJpaController.claimMwQueueEntries(nodeId, maxEntries, claimTimeoutSeconds, errorRetrySeconds);
+            if (mwQueueList != null) {
+                for (MwQueue mwQueue : mwQueueList) {
+                    queueCollection.getQueueEntries().add(convert(mwQueue));
+                }
+            }
+        } catch (Exception ex) {
+            log.error("Error during claim of queue entries", ex);
+            throw new RepositoryStoreException(ex);
+        }
+        log.debug("Claimed {} queue entries for node {}", queueCollection.getQueueEntries().size(), nodeId);
+        return queueCollection;
+    }
+    
+    /**
+     * Returns the PENDING queue entries claimed by the specified node back to
+     * the queue.
+     */
+    public int returnClaimed(String nodeId, String message) {
+        log.debug("Received request to return queue entries claimed by node {}", nodeId);
+        try {
+            return My.jpa().mwQueue().returnClaimedMwQueueEntries(nodeId, message);
+        } catch (Exception ex) {
+            log.error("Error while returning claimed queue entries", ex);
+            throw new RepositoryStoreException(ex);
+        }
+    }
+
     @RequiresPermissions("queue:retrieve")
     public Queue retrieve(QueueLocator locator) {
         if (locator == null || locator.id == null) {
@@ -168,6 +208,7 @@ public class QueueRepository {
             
             MwQueueJpaController mwQueueJpaController = My.jpa().mwQueue();
             mwQueueJpaController.create(mwQueue);
+            QueueSignal.signal();
             
             return item;
         } catch (IOException ex) {
@@ -212,6 +253,8 @@ public class QueueRepository {
             queue.setUpdated(mwQueue.getUpdated());
             queue.setStatus(QueueState.valueOf(mwQueue.getStatus()));
             queue.setMessage(mwQueue.getMessage());
+            queue.setClaimedBy(mwQueue.getClaimedBy());
+            queue.setClaimedAt(mwQueue.getClaimedAt());
         }
         return queue;
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.features.queue;
+
+import com.intel.mtwilson.features.queue.model.QueueState;
+import static com.intel.mtwilson.features.queue.model.QueueState.COMPLETED;
+import static com.intel.mtwilson.features.queue.model.QueueState.ERROR;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how the queue dispatcher waits between passes: in event dispatch
+ * mode a signal ends the wait long before the poll interval, in poll mode it
+ * does not, and only successful completions signal the dispatcher.
+ */
+public class QueueExecutionDispatchTest {
+    private static final long POLL_INTERVAL_SECONDS = 60;
+    private QueueExecution queueExecution;
+
+    @Before
+    public void setUp() throws Exception {
+        queueExecution = new QueueExecution();
+        queueExecution.sleepInterval = POLL_INTERVAL_SECONDS;
+        // clear any signal left over from another test
+        QueueSignal.await(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testEventDispatchWakesOnSignal() throws Exception {
+        Thread dispatcher = startPass(true);
+        QueueSignal.signal();
+        dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(dispatcher.isAlive());
+    }
+
+    @Test
+    public void testPollDispatchWaitsForInterval() throws Exception {
+        Thread dispatcher = startPass(false);
+        QueueSignal.signal();
+        dispatcher.join(500);
+        assertTrue(dispatcher.isAlive());
+        dispatcher.interrupt();
+        dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void testOnlySuccessfulCompletionSignals() {
+        long signals = QueueSignal.getSignalCount();
+        queueExecution.signalCompletion(createQueueOperation(ERROR));
+        assertEquals(signals, QueueSignal.getSignalCount());
+        queueExecution.signalCompletion(createQueueOperation(COMPLETED));
+        assertEquals(signals + 1, QueueSignal.getSignalCount());
+    }
+
+    /**
+     * Starts a dispatcher pass wait on its own thread, returning once the
+     * thread is about to wait.
+     */
+    private Thread startPass(final boolean eventDispatchMode) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    queueExecution.awaitNextPass(eventDispatchMode);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        started.await();
+        return dispatcher;
+    }
+
+    private QueueOperation createQueueOperation(QueueState queueState) {
+        QueueOperation queueOperation = new QueueOperation() {
+            @Override
+            public Object call() {
+                return Boolean.TRUE;
+            }
+        };
+        queueOperation.setQueueState(queueState);
+        return queueOperation;
+    }
+}
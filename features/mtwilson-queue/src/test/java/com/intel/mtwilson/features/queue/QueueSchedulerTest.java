@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.features.queue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class QueueSchedulerTest {
+
+    @Test
+    public void testWorkersLimitedByDatabaseHeadroom() {
+        QueueScheduler scheduler = new QueueScheduler(128, 16, 40, 32);
+        assertEquals(8, scheduler.getWorkerCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testAdmissionStopsWhenWindowIsFull() throws Exception {
+        QueueScheduler scheduler = new QueueScheduler(2, 3, 200, 32);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        assertEquals(5, scheduler.admit(0, 1000));
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(blocked);
+        }
+        assertEquals(0, scheduler.admit(5, 1000));
+        assertEquals(1, scheduler.getDeferredCount());
+        try {
+            scheduler.submit(blocked);
+            fail("Expected submission beyond the window to be rejected");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, scheduler.getRejectedCount());
+        }
+        assertEquals(3, scheduler.getQueueDepth());
+        release.countDown();
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(5, scheduler.getSubmittedCount());
+    }
+}
@@ -11,6 +11,11 @@ import java.sql.SQLException;
 import java.util.Calendar;
 
 /**
+ * Deletes request log entries that are older than the anti-replay protection
+ * window. Requests are only logged in the database when
+ * {@code mtwilson.shiro.request.log.enabled} is true, for servers that share
+ * the database and must detect a request replayed to another server; otherwise
+ * the {@link ReplayWindow} of each server is enough.
  *
  * @author jbuhacoff
  */
@@ -18,14 +23,24 @@ import java.util.Calendar;
 public class ArchiveRequestLog implements Runnable {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ArchiveRequestLog.class);
+    public static final String SHIRO_REQUEST_LOG_ENABLED = "mtwilson.shiro.request.log.enabled";
+
+    public static boolean isRequestLogEnabled() {
+        return My.configuration().getConfiguration().getBoolean(SHIRO_REQUEST_LOG_ENABLED, false);
+    }
 
     @Override
     public void run() {
+        if (!isRequestLogEnabled()) {
+            return;
+        }
         try (LoginDAO dao = MyJdbi.authz()) {
             // get the configured window size (in time) 
             int expiresAfter = My.configuration().getAntiReplayProtectionWindowMilliseconds(); 
             Calendar expirationTime = Calendar.getInstance();
-            expirationTime.add(Calendar.MILLISECOND, -expiresAfter);
+            // requests may be dated up to one window ahead of the time they were received, so
+            // their digests are kept for two windows like in the ReplayWindow
+            expirationTime.add(Calendar.MILLISECOND, -2 * expiresAfter);
             // delete requests older than the expiration time
             dao.deleteRequestLogEntriesEarlierThan(expirationTime.getTime());
         } catch (IOException | SQLException e) {
@@ -52,6 +52,8 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(JdbcCertificateRealm.class);
     private String localAddress;
+    private final ReplayWindow replayWindow = ReplayWindow.getInstance();
+    private final boolean requestLogEnabled = ArchiveRequestLog.isRequestLogEnabled();
 
     public JdbcCertificateRealm() {
         super();
@@ -68,6 +70,15 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
             log.debug("Cannot determine local network address", e);
             localAddress = String.format("unknown-%s", getRandomNodeId());
         }
+        // authentication info is not cached because every request must pass
+        // the anti-replay check in doGetAuthenticationInfo
+        setAuthenticationCachingEnabled(false);
+        if (JdbcRealmCacheManager.isEnabled()) {
+            setCacheManager(new JdbcRealmCacheManager());
+            setAuthorizationCachingEnabled(true);
+        } else {
+            setAuthorizationCachingEnabled(false);
+        }
     }
     
     private String getRandomNodeId() {
@@ -81,7 +92,20 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
     public boolean supports(AuthenticationToken token) {
         return token instanceof X509AuthenticationToken;
     }
-    
+
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        Collection<LoginCertificateId> loginCertificateIds = principals.byType(LoginCertificateId.class);
+        if (loginCertificateIds.isEmpty()) {
+            return super.getAuthorizationCacheKey(principals);
+        }
+        StringBuilder key = new StringBuilder();
+        for (LoginCertificateId loginCertificateId : loginCertificateIds) {
+            key.append(loginCertificateId.getLoginCertificateId().toString()).append(' ');
+        }
+        return key.toString();
+    }
+
     @Override
     protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection pc) {
         if (pc == null) {
@@ -135,7 +159,7 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
             Fingerprint fingerprint = (Fingerprint)xToken.getPrincipal();
             log.debug("doGetAuthenticationInfo for fingerprint {}", fingerprint.getHex());
             try (LoginDAO dao = MyJdbi.authz()) {
-                // anti-replay protection: check the database to see if we have already received a request with this signature
+                // anti-replay protection: check if we have already received a request with this signature
                 // it should not affect legitimate clients because if they send the same logical request twice, the timestamp and
                 // nonce would be different which would result in a different digest and signature and thus would still have be unique
                 Credential credential = (Credential)xToken.getCredentials();
@@ -146,9 +170,9 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
                 requestLogEntry.setReceived(new Date());
                 requestLogEntry.setContent(xToken.getSignatureInput().toString());
                 try {
-                    // first, look at the date header in the request and compare to our current time; if it's earlier than
-                    // the earliest entry in the request log, then we have to reject it in order to prevent replay attacks
-                    // of messages that we already deleted from the request log.
+                    // first, look at the date header in the request and compare to our current time; if it's outside
+                    // the anti-replay protection window, then we have to reject it in order to prevent replay attacks
+                    // of messages that we already expired from the window.
                     // clients MUST include a date header in the request and cover it with the signature.
                     // clients SHOULD synchronize their clocks (at least for the requests) with our server clock to avoid rejecting messages unnecessarily
                     if( xToken.getSignatureInput().headers == null || !xToken.getSignatureInput().headers.containsKey("Date") ) {
@@ -163,19 +187,27 @@ public class JdbcCertificateRealm extends AuthorizingRealm {
                             return null;
                         }
                     }
-                    // third, ensure that the request is not earlier than the start of our anti-replay protection window (represented by the earliest request received in the request log) 
+                    // third, ensure that the request date is within our anti-replay protection window; requests dated
+                    // outside the window would be replayable after their digest expires from the window
                     Date requestDate = Rfc822Date.parse(xToken.getSignatureInput().headers.get("Date"));
-                    RequestLogEntry earliest = dao.findRequestLogEntryByEarliestDate();
-                    if( earliest != null && requestDate.before(earliest.getReceived()) ) {
-                        log.debug("request date is before anti-replay window; must be rejected");
+                    if( !replayWindow.isWithinWindow(requestDate, requestLogEntry.getReceived()) ) {
+                        log.debug("request date is outside anti-replay window; must be rejected");
                         return null;
                     }
-                    // fourth, try to insert the request into the log - it will fail if there is already a request with the same digest
-                    log.debug("inserting request log entry with digest {} from source {} received at {} by {}", requestLogEntry.getDigest(), requestLogEntry.getSource(), requestLogEntry.getReceived(), requestLogEntry.getInstance());
-                    dao.insertRequestLogEntry(requestLogEntry);
-                    // so at this point, we have inserted a new request into the request log 
-                    // and it's protected from replay because the request digest is in the log so
-                    // if a duplicate request comes in then it won't be able to insert (above)
+                    // fourth, record the request digest in the anti-replay window - it will fail if there is already a request with the same digest
+                    if( !replayWindow.add(requestLogEntry.getDigest(), requestLogEntry.getReceived()) ) {
+                        log.debug("request digest {} was already received; must be rejected", requestLogEntry.getDigest());
+                        return null;
+                    }
+                    // fifth, when several servers share the database, try to insert the request into the log so
+                    // a replay to another server is detected too - it will fail if there is already a request with the same digest
+                    if( requestLogEnabled ) {
+                        log.debug("inserting request log entry with digest {} from source {} received at {} by {}", requestLogEntry.getDigest(), requestLogEntry.getSource(), requestLogEntry.getReceived(), requestLogEntry.getInstance());
+                        dao.insertRequestLogEntry(requestLogEntry);
+                    }
+                    // so at this point, we have recorded a new request and it's protected from
+                    // replay because the request digest is in the window (and the log) so
+                    // if a duplicate request comes in then it will be rejected (above)
                 }
                 catch(Exception e) {
                     log.debug("Cannot insert request log entry", e); // probably a duplicate, but could also be database connection issue
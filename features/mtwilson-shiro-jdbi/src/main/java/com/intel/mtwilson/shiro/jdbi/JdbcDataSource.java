@@ -22,7 +22,7 @@ public class JdbcDataSource implements DataSource {
     @Override
     public Connection getConnection() throws SQLException {
         try {
-            return My.jdbc().connection();
+            return My.jdbc().dataSource().getConnection();
         }
         catch(IOException e) {
             throw new SQLException(e);
@@ -36,12 +36,37 @@ public class JdbcPasswordRealm extends AuthorizingRealm {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(JdbcPasswordRealm.class);
 
+    public JdbcPasswordRealm() {
+        super();
+        // the cached authentication info holds the password hash, not the password,
+        // and is checked by the credentials matcher on every request
+        if (JdbcRealmCacheManager.isEnabled()) {
+            setCacheManager(new JdbcRealmCacheManager());
+            setAuthenticationCachingEnabled(true);
+            setAuthorizationCachingEnabled(true);
+        } else {
+            setCachingEnabled(false);
+        }
+    }
+
     @Override
     public boolean supports(AuthenticationToken token) {
         return token instanceof UsernamePasswordToken;
     }
-    
-    
+
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        Collection<LoginPasswordId> loginPasswordIds = principals.byType(LoginPasswordId.class);
+        if (loginPasswordIds.isEmpty()) {
+            return super.getAuthorizationCacheKey(principals);
+        }
+        StringBuilder key = new StringBuilder();
+        for (LoginPasswordId loginPasswordId : loginPasswordIds) {
+            key.append(loginPasswordId.getLoginPasswordId().toString()).append(' ');
+        }
+        return key.toString();
+    }
+
     
     @Override
     protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection pc) {
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.My;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.configuration.Configuration;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+
+/**
+ * Cache manager for the authentication and authorization info of the JDBC
+ * realms, so an API request does not query the user, login, role and
+ * permission tables again for a user whose info was loaded recently.
+ *
+ * Each cache holds at most {@code mtwilson.shiro.cache.max.entries} entries,
+ * evicting the least recently used one, and each entry expires
+ * {@code mtwilson.shiro.cache.ttl} seconds after it was loaded. The caches are
+ * shared by all realm instances and cleared with {@link #invalidate()} when
+ * users, logins, roles or permissions are changed through the user management
+ * API; changes made by another server or by the setup commands are picked up
+ * when the entries expire.
+ */
+public class JdbcRealmCacheManager implements CacheManager {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(JdbcRealmCacheManager.class);
+    public static final String SHIRO_CACHE_ENABLED = "mtwilson.shiro.cache.enabled";
+    public static final String SHIRO_CACHE_TTL = "mtwilson.shiro.cache.ttl";
+    public static final String SHIRO_CACHE_MAX_ENTRIES = "mtwilson.shiro.cache.max.entries";
+    private static final long DEFAULT_SHIRO_CACHE_TTL = 300;
+    private static final int DEFAULT_SHIRO_CACHE_MAX_ENTRIES = 1000;
+
+    private static final ConcurrentMap<String, TtlCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true unless {@code mtwilson.shiro.cache.enabled} is false, in
+     * which case the realms query the database on every request.
+     */
+    public static boolean isEnabled() {
+        return My.configuration().getConfiguration().getBoolean(SHIRO_CACHE_ENABLED, true);
+    }
+
+    @Override
+    public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+        TtlCache cache = caches.get(name);
+        if (cache == null) {
+            Configuration configuration = My.configuration().getConfiguration();
+            long ttl = Math.max(1, configuration.getLong(SHIRO_CACHE_TTL, DEFAULT_SHIRO_CACHE_TTL));
+            int maxEntries = Math.max(1, configuration.getInt(SHIRO_CACHE_MAX_ENTRIES, DEFAULT_SHIRO_CACHE_MAX_ENTRIES));
+            TtlCache created = new TtlCache(name, ttl * 1000, maxEntries);
+            cache = caches.putIfAbsent(name, created);
+            if (cache == null) {
+                log.debug("Created realm cache {} with ttl {} seconds and {} entries", name, ttl, maxEntries);
+                cache = created;
+            }
+        }
+        return (Cache<K, V>) cache;
+    }
+
+    /**
+     * Clears the cached authentication and authorization info of all users.
+     * Called after a user, login, role or permission is created, changed or
+     * deleted.
+     */
+    public static void invalidate() {
+        for (TtlCache cache : caches.values()) {
+            cache.clear();
+        }
+        log.debug("Invalidated realm caches: {}", getStatistics());
+    }
+
+    public static long getHitCount() {
+        long count = 0;
+        for (TtlCache cache : caches.values()) {
+            count += cache.hits.get();
+        }
+        return count;
+    }
+
+    public static long getMissCount() {
+        long count = 0;
+        for (TtlCache cache : caches.values()) {
+            count += cache.misses.get();
+        }
+        return count;
+    }
+
+    public static String getStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        for (TtlCache cache : caches.values()) {
+            if (statistics.length() > 0) {
+                statistics.append(", ");
+            }
+            statistics.append(String.format("%s[size=%d, hits=%d, misses=%d]", cache.name, cache.size(), cache.hits.get(), cache.misses.get()));
+        }
+        return statistics.toString();
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expires;
+
+        private Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private static class TtlCache implements Cache<Object, Object> {
+        private final String name;
+        private final long ttl;
+        private final LinkedHashMap<Object, Entry> entries;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private TtlCache(String name, long ttl, final int maxEntries) {
+            this.name = name;
+            this.ttl = ttl;
+            this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        @Override
+        public synchronized Object get(Object key) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            Entry previous = entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+            return previous == null ? null : previous.value;
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            Entry previous = entries.remove(key);
+            return previous == null ? null : previous.value;
+        }
+
+        @Override
+        public synchronized void clear() {
+            entries.clear();
+        }
+
+        @Override
+        public synchronized int size() {
+            removeExpired();
+            return entries.size();
+        }
+
+        @Override
+        public synchronized Set<Object> keys() {
+            removeExpired();
+            return new HashSet<>(entries.keySet());
+        }
+
+        @Override
+        public synchronized Collection<Object> values() {
+            removeExpired();
+            Collection<Object> values = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                values.add(entry.value);
+            }
+            return values;
+        }
+
+        private void removeExpired() {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expires <= now) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
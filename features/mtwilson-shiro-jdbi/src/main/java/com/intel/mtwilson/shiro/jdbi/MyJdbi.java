@@ -4,13 +4,10 @@
  */
 package com.intel.mtwilson.shiro.jdbi;
 
-import com.intel.dcsg.cpg.jpa.PersistenceManager;
 import com.intel.mtwilson.My;
-import com.intel.mtwilson.MyPersistenceManager;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Properties;
 import javax.sql.DataSource;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.tweak.ConnectionFactory;
@@ -29,9 +26,12 @@ public class MyJdbi {
         private static final DataSource ds = createDataSource();
 
         private static DataSource createDataSource() {
-            //#5820: Call to static method 'com.intel.mtwilson.MyPersistenceManager.getASDataJpaProperties' via instance reference.
-            Properties jpaProperties = MyPersistenceManager.getFlavorDataJpaProperties(My.configuration());
-            return PersistenceManager.createDataSource(jpaProperties);
+            // shared with the other JDBI data access objects
+            try {
+                return My.jdbc().dataSource();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Cannot create database connection pool", e);
+            }
         }
     }
 
@@ -73,7 +73,7 @@ public class MyJdbi {
         @Override
         public Connection openConnection() throws SQLException {
             try {
-                Connection connection = My.jdbc().connection();
+                Connection connection = My.jdbc().dataSource().getConnection();
                 log.debug("MyJdbi (mtwilson-shiro-jdbi) connection: {}", connection);
                 return connection;
             } catch (IOException | ClassNotFoundException | SQLException e) {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.shiro.jdbi;
+
+import com.intel.mtwilson.My;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory anti-replay protection for signed requests.
+ *
+ * A request is accepted only if its date is within the anti-replay protection
+ * window of the current time, in either direction, and its signature digest
+ * was not seen before. Digests are kept for twice the window: a request dated
+ * at the far end of the window can still be replayed until its date falls
+ * behind the window, and that is never more than two windows after it was
+ * first received.
+ *
+ * Digests are grouped into time buckets by the time they were received, and
+ * whole buckets expire together, so expiry does not scan the set of digests.
+ * The ring holds one bucket more than the retention period so the oldest
+ * bucket still covers a full two windows when the current one starts.
+ */
+public class ReplayWindow {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReplayWindow.class);
+    private static final int BUCKETS = 16;
+
+    private static class InstanceHolder {
+        private static final ReplayWindow instance = new ReplayWindow(My.configuration().getAntiReplayProtectionWindowMilliseconds());
+    }
+
+    private final long window;
+    private final long bucketWidth;
+    private final ConcurrentHashMap<String, Long> digests = new ConcurrentHashMap<>();
+    private final Bucket[] buckets = new Bucket[BUCKETS + 1];
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ReplayWindow(long windowMilliseconds) {
+        window = Math.max(1, windowMilliseconds);
+        bucketWidth = Math.max(1, (2 * window + BUCKETS - 1) / BUCKETS);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    public static ReplayWindow getInstance() {
+        return InstanceHolder.instance;
+    }
+
+    public long getWindowMilliseconds() {
+        return window;
+    }
+
+    /**
+     * Returns true if the request date is within the anti-replay protection
+     * window of the time the request was received.
+     */
+    public boolean isWithinWindow(Date requestDate, Date received) {
+        long skew = requestDate.getTime() - received.getTime();
+        return skew >= -window && skew <= window;
+    }
+
+    /**
+     * Records the digest of a request received at the specified time, returning
+     * false if the same digest was already recorded and has not yet expired.
+     */
+    public boolean add(String digest, Date received) {
+        long slot = received.getTime() / bucketWidth;
+        Bucket bucket = buckets[(int) (slot % buckets.length)];
+        synchronized (bucket) {
+            if (bucket.slot < slot) {
+                // the bucket was last used one full rotation ago, its digests have expired
+                expire(bucket);
+                bucket.slot = slot;
+            }
+            slot = bucket.slot;
+            Long previous = digests.putIfAbsent(digest, slot);
+            if (previous != null) {
+                // a digest recorded more than BUCKETS slots ago has expired but its bucket
+                // may not have been reused yet
+                if (previous >= slot - BUCKETS || !digests.replace(digest, previous, slot)) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+            }
+            bucket.digests.add(digest);
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    public int size() {
+        return digests.size();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void expire(Bucket bucket) {
+        String digest;
+        int count = 0;
+        while ((digest = bucket.digests.poll()) != null) {
+            // the digest may have been recorded again in a newer bucket after it expired
+            if (digests.remove(digest, bucket.slot)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.trace("Expired {} request digests from the anti-replay window", count);
+        }
+    }
+
+    private static class Bucket {
+        private long slot = -1;
+        private final Queue<String> digests = new ConcurrentLinkedQueue<>();
+    }
+}
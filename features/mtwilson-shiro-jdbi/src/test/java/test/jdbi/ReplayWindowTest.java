@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package test.jdbi;
+
+import com.intel.mtwilson.shiro.jdbi.ReplayWindow;
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ReplayWindowTest {
+    private static final long WINDOW = 60000;
+
+    @Test
+    public void testRejectReplayedDigest() {
+        ReplayWindow window = new ReplayWindow(WINDOW);
+        Date received = new Date(1000000000000L);
+        assertTrue(window.add("digest-1", received));
+        assertTrue(window.add("digest-2", received));
+        assertFalse(window.add("digest-1", new Date(received.getTime() + 1000)));
+        assertEquals(1, window.getRejectedCount());
+    }
+
+    @Test
+    public void testKeepDigestForTwoWindows() {
+        ReplayWindow window = new ReplayWindow(WINDOW);
+        long received = 1000000000000L;
+        assertTrue(window.add("digest", new Date(received)));
+        assertFalse(window.add("digest", new Date(received + 2 * WINDOW - 1)));
+        assertTrue(window.add("digest", new Date(received + 3 * WINDOW)));
+    }
+
+    @Test
+    public void testExpireBuckets() {
+        ReplayWindow window = new ReplayWindow(WINDOW);
+        long received = 1000000000000L;
+        for (int i = 0; i < 100; i++) {
+            assertTrue(window.add("digest-" + i, new Date(received)));
+        }
+        // reusing every bucket of the ring expires the first batch
+        for (long time = received; time <= received + 3 * WINDOW; time += 1000) {
+            window.add("later-" + time, new Date(time));
+        }
+        assertTrue(window.size() < 100 + 3 * WINDOW / 1000);
+        assertTrue(window.add("digest-0", new Date(received + 3 * WINDOW)));
+    }
+
+    @Test
+    public void testRequestDateWithinWindow() {
+        ReplayWindow window = new ReplayWindow(WINDOW);
+        Date received = new Date(1000000000000L);
+        assertTrue(window.isWithinWindow(new Date(received.getTime() - WINDOW), received));
+        assertTrue(window.isWithinWindow(new Date(received.getTime() + WINDOW), received));
+        assertFalse(window.isWithinWindow(new Date(received.getTime() - WINDOW - 1), received));
+        assertFalse(window.isWithinWindow(new Date(received.getTime() + WINDOW + 1), received));
+    }
+}
@@ -4,12 +4,10 @@
  */
 package com.intel.mtwilson.tag.dao;
 
-import com.intel.dcsg.cpg.jpa.PersistenceManager;
 import com.intel.mtwilson.tag.dao.jdbi.CertificateRequestDAO;
 import com.intel.mtwilson.tag.dao.jdbi.TpmPasswordDAO;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.tag.dao.jdbi.FileDAO;
-import com.intel.mtwilson.MyPersistenceManager;
 import com.intel.mtwilson.jooq.util.JooqContainer;
 import com.intel.mtwilson.tag.dao.jdbi.TagCertificateDAO;
 import java.io.IOException;
@@ -32,7 +30,12 @@ public class TagJdbi {
 
     synchronized public static void createDataSource() throws IOException {
         if (ds == null) {
-            ds = PersistenceManager.createDataSource(MyPersistenceManager.getFlavorDataJpaProperties(My.configuration()));
+            try {
+                // shared with the other JDBI data access objects
+                ds = My.jdbc().dataSource();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
         }
     }
 
@@ -14,6 +14,7 @@ import com.intel.mtwilson.My;
 import com.intel.mtwilson.configuration.ConfigurationFactory;
 import com.intel.mtwilson.configuration.ConfigurationProvider;
 import com.intel.mtwilson.tag.dao.TagJdbi;
+import com.intel.mtwilson.tag.dao.jdbi.FileDAO;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -54,23 +55,25 @@ public class ReplaceTagKeyPair extends InteractiveCommand {
         // update the database with the tag private key with cert appended
         String caKeyCertContent = X509Util.encodePemCertificate(publicKeyCert);
         String cakeyContent = RsaUtil.encodePemPrivateKey(privateKey).concat(caKeyCertContent);
-        com.intel.mtwilson.tag.model.File file = TagJdbi.fileDao().findByName(TAG_PRIVATE_KEY_FILE);
-        if (file == null) {
-            log.warn("Tag key pair file does not currently exist in the database [{}]", TAG_PRIVATE_KEY_FILE);
-            TagJdbi.fileDao().insert(new UUID(), TAG_PRIVATE_KEY_FILE, getOptions()
-                    .getString("type", "text/plain"), cakeyContent.getBytes("UTF-8"));
-        } else {
-            TagJdbi.fileDao().update(file.getId(), TAG_PRIVATE_KEY_FILE, getOptions()
-                    .getString("type",  file.getContentType()), cakeyContent.getBytes("UTF-8"));
-        }
-        
-        // update the database with the tag ca cert
-        com.intel.mtwilson.tag.model.File cacertsFile = TagJdbi.fileDao().findByName(TAG_CACERTS_FILE);
-        if (cacertsFile == null) {
-            log.warn("Tag CA certificates file does not currently exist in the database [{}]", TAG_CACERTS_FILE);
-            TagJdbi.fileDao().insert(new UUID(), TAG_CACERTS_FILE, "text/plain", caKeyCertContent.getBytes("UTF-8"));
-        } else {
-            TagJdbi.fileDao().update(cacertsFile.getId(), TAG_CACERTS_FILE, "text/plain", caKeyCertContent.getBytes("UTF-8"));
+        try (FileDAO fileDao = TagJdbi.fileDao()) {
+            com.intel.mtwilson.tag.model.File file = fileDao.findByName(TAG_PRIVATE_KEY_FILE);
+            if (file == null) {
+                log.warn("Tag key pair file does not currently exist in the database [{}]", TAG_PRIVATE_KEY_FILE);
+                fileDao.insert(new UUID(), TAG_PRIVATE_KEY_FILE, getOptions()
+                        .getString("type", "text/plain"), cakeyContent.getBytes("UTF-8"));
+            } else {
+                fileDao.update(file.getId(), TAG_PRIVATE_KEY_FILE, getOptions()
+                        .getString("type",  file.getContentType()), cakeyContent.getBytes("UTF-8"));
+            }
+
+            // update the database with the tag ca cert
+            com.intel.mtwilson.tag.model.File cacertsFile = fileDao.findByName(TAG_CACERTS_FILE);
+            if (cacertsFile == null) {
+                log.warn("Tag CA certificates file does not currently exist in the database [{}]", TAG_CACERTS_FILE);
+                fileDao.insert(new UUID(), TAG_CACERTS_FILE, "text/plain", caKeyCertContent.getBytes("UTF-8"));
+            } else {
+                fileDao.update(cacertsFile.getId(), TAG_CACERTS_FILE, "text/plain", caKeyCertContent.getBytes("UTF-8"));
+            }
         }
         // write to disk also for easy sharing with mtwilson: tag-cacerts.pem
         try(FileOutputStream out = new FileOutputStream(My.configuration().getAssetTagCaCertificateFile())) {
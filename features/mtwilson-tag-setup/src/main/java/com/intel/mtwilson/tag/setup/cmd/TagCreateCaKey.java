@@ -14,6 +14,7 @@ import com.intel.dcsg.cpg.x509.X509Builder;
 import com.intel.dcsg.cpg.x509.X509Util;
 import com.intel.mtwilson.My;
 import com.intel.mtwilson.tag.dao.TagJdbi;
+import com.intel.mtwilson.tag.dao.jdbi.FileDAO;
 import java.io.FileOutputStream;
 import java.security.KeyPair;
 import java.security.cert.X509Certificate;
@@ -72,30 +73,32 @@ public class TagCreateCaKey extends TagCommand {
         byte[] combinedPrivateKeyAndCertPemBytes = combinedPrivateKeyAndCertPem.getBytes("UTF-8");
         byte[] cacertPemContent = cacertPem.getBytes("UTF-8");
 
-        // for now... there can only be ONE CA private key in the database  (but we support storing multiple certs)
-        File cakeyFile = TagJdbi.fileDao().findByName(PRIVATEKEY_FILE);
-        if( cakeyFile == null ) {
-            // create new private key file
-            TagJdbi.fileDao().insert(new UUID(), PRIVATEKEY_FILE, "text/plain", combinedPrivateKeyAndCertPemBytes);
-        }
-        else {
-            // replace existing private key...
-            TagJdbi.fileDao().update(cakeyFile.getId(), PRIVATEKEY_FILE, "text/plain", combinedPrivateKeyAndCertPemBytes);
-        }
+        try(FileDAO fileDao = TagJdbi.fileDao()) {
+            // for now... there can only be ONE CA private key in the database  (but we support storing multiple certs)
+            File cakeyFile = fileDao.findByName(PRIVATEKEY_FILE);
+            if( cakeyFile == null ) {
+                // create new private key file
+                fileDao.insert(new UUID(), PRIVATEKEY_FILE, "text/plain", combinedPrivateKeyAndCertPemBytes);
+            }
+            else {
+                // replace existing private key...
+                fileDao.update(cakeyFile.getId(), PRIVATEKEY_FILE, "text/plain", combinedPrivateKeyAndCertPemBytes);
+            }
 
-        // add the ca cert to the list of approved certs
-        File cacertsFile = TagJdbi.fileDao().findByName(CACERTS_FILE);
-        if( cacertsFile == null ) {
-            // create new cacerts file
-            TagJdbi.fileDao().insert(new UUID(), CACERTS_FILE, "text/plain", cacertPemContent);
-        }
-        else {
-            // append new cacert to existing file in database
-            byte[] content = ByteArray.concat(cacertsFile.getContent(), cacertPemContent);
-            TagJdbi.fileDao().update(cacertsFile.getId(), CACERTS_FILE, "text/plain", content);
-            // and write to disk also for easy sharing with mtwilson: tag-cacerts.pem
-            try(FileOutputStream out = new FileOutputStream(My.configuration().getAssetTagCaCertificateFile())) {
-                IOUtils.write(content, out);
+            // add the ca cert to the list of approved certs
+            File cacertsFile = fileDao.findByName(CACERTS_FILE);
+            if( cacertsFile == null ) {
+                // create new cacerts file
+                fileDao.insert(new UUID(), CACERTS_FILE, "text/plain", cacertPemContent);
+            }
+            else {
+                // append new cacert to existing file in database
+                byte[] content = ByteArray.concat(cacertsFile.getContent(), cacertPemContent);
+                fileDao.update(cacertsFile.getId(), CACERTS_FILE, "text/plain", content);
+                // and write to disk also for easy sharing with mtwilson: tag-cacerts.pem
+                try(FileOutputStream out = new FileOutputStream(My.configuration().getAssetTagCaCertificateFile())) {
+                    IOUtils.write(content, out);
+                }
             }
         }
 
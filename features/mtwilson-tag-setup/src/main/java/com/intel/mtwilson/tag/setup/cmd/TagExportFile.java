@@ -6,6 +6,7 @@ package com.intel.mtwilson.tag.setup.cmd;
 
 import com.intel.mtwilson.tag.setup.TagCommand;
 import com.intel.mtwilson.tag.dao.TagJdbi;
+import com.intel.mtwilson.tag.dao.jdbi.FileDAO;
 import com.intel.mtwilson.tag.model.File;
 import java.io.FileNotFoundException;
 import org.slf4j.Logger;
@@ -23,7 +24,10 @@ public class TagExportFile extends TagCommand {
         if( args.length < 1 ) { throw new IllegalArgumentException("Usage: export-file <filename>"); }
         String filename = args[0];
         
-        File file = TagJdbi.fileDao().findByName(filename);
+        File file;
+        try(FileDAO fileDao = TagJdbi.fileDao()) {
+            file = fileDao.findByName(filename);
+        }
         if( file == null ) {
             throw new FileNotFoundException();
         }
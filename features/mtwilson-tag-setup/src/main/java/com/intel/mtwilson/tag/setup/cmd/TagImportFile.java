@@ -7,6 +7,7 @@ package com.intel.mtwilson.tag.setup.cmd;
 import com.intel.mtwilson.tag.setup.TagCommand;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.tag.dao.TagJdbi;
+import com.intel.mtwilson.tag.dao.jdbi.FileDAO;
 import com.intel.mtwilson.tag.model.File;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -26,14 +27,16 @@ public class TagImportFile extends TagCommand {
                 
         byte[] content = IOUtils.toByteArray(System.in);
         
-        File file = TagJdbi.fileDao().findByName(filename);
-        if( file == null ) {
-            // create new file
-            TagJdbi.fileDao().insert(new UUID(), filename, getOptions().getString("type", "text/plain") , content);
-        }
-        else {
-            // update existing file
-            TagJdbi.fileDao().update(file.getId(), filename, getOptions().getString("type",  file.getContentType()), content);
+        try(FileDAO fileDao = TagJdbi.fileDao()) {
+            File file = fileDao.findByName(filename);
+            if( file == null ) {
+                // create new file
+                fileDao.insert(new UUID(), filename, getOptions().getString("type", "text/plain") , content);
+            }
+            else {
+                // update existing file
+                fileDao.update(file.getId(), filename, getOptions().getString("type",  file.getContentType()), content);
+            }
         }
         
     }
@@ -15,7 +15,7 @@ public class TlsPolicyJdbiFactory {
 
     public static TlsPolicyDAO tlsPolicyDAO() {
         try {
-            return JdbiUtil.getDBI(My.jdbc().connection()).open(TlsPolicyDAO.class);
+            return JdbiUtil.getDBI(My.jdbc().dataSource().getConnection()).open(TlsPolicyDAO.class);
         }
         catch(Exception e) {
             throw new RuntimeException(e);
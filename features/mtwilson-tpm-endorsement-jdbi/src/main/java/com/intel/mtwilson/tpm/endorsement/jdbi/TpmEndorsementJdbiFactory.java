@@ -15,7 +15,7 @@ public class TpmEndorsementJdbiFactory {
 
     public static TpmEndorsementDAO tpmEndorsementDAO() {
         try {
-            return JdbiUtil.getDBI(My.jdbc().connection()).open(TpmEndorsementDAO.class);
+            return JdbiUtil.getDBI(My.jdbc().dataSource().getConnection()).open(TpmEndorsementDAO.class);
         }
         catch(Exception e) {
             throw new RuntimeException(e);
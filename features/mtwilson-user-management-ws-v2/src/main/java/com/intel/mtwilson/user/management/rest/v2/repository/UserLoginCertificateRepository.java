@@ -27,6 +27,7 @@ import com.intel.mtwilson.user.management.rest.v2.model.Status;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRole;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRoleCollection;
 import com.intel.mtwilson.user.management.rest.v2.model.UserLoginCertificateRoleFilterCriteria;
+import com.intel.mtwilson.shiro.jdbi.JdbcRealmCacheManager;
 import com.intel.mtwilson.shiro.jdbi.LoginDAO;
 import com.intel.mtwilson.shiro.jdbi.MyJdbi;
 import java.util.ArrayList;
@@ -138,6 +139,7 @@ public class UserLoginCertificateRepository implements DocumentRepository<UserLo
                     obj.setStatus(item.getStatus());
                 
                 loginDAO.updateUserLoginCertificateById(obj.getId(), obj.isEnabled(), obj.getStatus(), obj.getComment());
+                JdbcRealmCacheManager.invalidate();
                 log.debug("UserLoginCertificate:Store - Updated the user login certificate with id {} successfully.", obj.getId());
 
                 // Before we add the roles we need to delete the existing ones
@@ -199,6 +201,7 @@ public class UserLoginCertificateRepository implements DocumentRepository<UserLo
                 obj.setStatus(Status.PENDING);
                 loginDAO.insertUserLoginCertificate(obj.getId(), obj.getUserId(), obj.getCertificate(), obj.getSha1Hash(), obj.getSha256Hash(), obj.getSha384Hash(),
                         obj.getExpires(), obj.isEnabled(), obj.getStatus(), obj.getComment());
+                JdbcRealmCacheManager.invalidate();
                 log.debug("UserLoginCertificate:Create - Created the user login certificate for user with id {} successfully.", obj.getUserId());
             } else {
                 log.error("UserLoginCertificate:Create - User login certificate for user with Id {} will not be created since a duplicate already exists.", obj.getUserId());
@@ -228,6 +231,7 @@ public class UserLoginCertificateRepository implements DocumentRepository<UserLo
                 repo.delete(criteria);
                 
                 loginDAO.deleteUserLoginCertificateById(locator.id);
+                JdbcRealmCacheManager.invalidate();
                 log.debug("UserLoginCertificate:Delete - Deleted the user login certificate with id {} successfully.", locator.id);
             } else {
                 log.info("UserLoginCertificate:Delete - User login certificate does not exist in the system.");